@@ -16,6 +16,9 @@
 # limitations under the License.
 #
 
+# dc-core の CellSweeper (com.fujitsu.dc.core.es.ads.cellSweep.enabled=true) を有効にした場合、
+# 本スクリプトによる掃除は不要となる。
+
 ROOT_DIR=
 DATE=`/bin/date +%Y%m%d`
 SWEEP_LOG=${ROOT_DIR}/fj/dc1-cell-sweeper/log/dc1-cell-sweeper.log
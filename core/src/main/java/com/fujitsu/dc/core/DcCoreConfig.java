@@ -163,6 +163,11 @@ public class DcCoreConfig {
         public static final String ORDERBY_SORT_ORDER = KEY_ROOT
                 + "odata.query.orderby.sort.order";
 
+        /**
+         * $filter, $orderby, $selectから組み立てたクエリのテンプレートをキャッシュする最大件数(0の場合はキャッシュしない).
+         */
+        public static final String COMPILED_QUERY_CACHE_SIZE = KEY_ROOT + "odata.query.compiled.cache.size";
+
     }
 
     /**
@@ -188,6 +193,11 @@ public class DcCoreConfig {
          * コレクションの階層の深さの最大数.
          */
         public static final String COLLECTION_DEPTH_MAX_NUM = KEY_ROOT + "dav.depth.maxnum";
+
+        /**
+         * PROPFINDで子リソースを一括取得する際の1回あたりの取得件数.
+         */
+        public static final String PROPFIND_MULTIGET_SIZE = KEY_ROOT + "dav.propfind.multiget.size";
     }
 
     /**
@@ -299,6 +309,31 @@ public class DcCoreConfig {
          */
         public static final String RETRY_INTERVAL = KEY_ROOT + "es.retryInterval";
 
+        /**
+         * 同一内容の読み込みリクエストを集約するか否か.
+         */
+        public static final String READ_COALESCING_ENABLED = KEY_ROOT + "es.read.coalescing.enabled";
+
+        /**
+         * 接続先ノードの一覧をクラスタから取得するか否か.
+         */
+        public static final String CLIENT_SNIFF = KEY_ROOT + "es.client.sniff";
+
+        /**
+         * 読み込みリクエストの送信先ノードの選択方針(default/local/routing/latency).
+         */
+        public static final String NODE_SELECTION_MODE = KEY_ROOT + "es.nodeSelection.mode";
+
+        /**
+         * ラックを表すノード属性名.
+         */
+        public static final String NODE_SELECTION_RACK_ATTRIBUTE = KEY_ROOT + "es.nodeSelection.rackAttribute";
+
+        /**
+         * 自ノードのラック.
+         */
+        public static final String NODE_SELECTION_LOCAL_RACK = KEY_ROOT + "es.nodeSelection.localRack";
+
         /**
          * AuthenticDataStoreの設定.
          */
@@ -353,6 +388,23 @@ public class DcCoreConfig {
              * コネクションプールのvalidationQuery.
              */
             public static final String CP_VALIDATION_QUERY = ADS_ROOT + "jdbc.cp.validationQuery";
+            /**
+             * コネクションプールでPreparedStatementをプールするか否か.
+             */
+            public static final String CP_POOL_PREPARED_STATEMENTS = ADS_ROOT + "jdbc.cp.poolPreparedStatements";
+            /**
+             * コネクションプールでプールするPreparedStatementの最大数(コネクションあたり).
+             */
+            public static final String CP_MAX_OPEN_PREPARED_STATEMENTS = ADS_ROOT
+                    + "jdbc.cp.maxOpenPreparedStatements";
+            /**
+             * バッチ実行するSQLを複数行のSQLに書き換えて送信するか否か(MySQL Connector/J の rewriteBatchedStatements).
+             */
+            public static final String JDBC_REWRITE_BATCHED_STATEMENTS = ADS_ROOT + "jdbc.rewriteBatchedStatements";
+            /**
+             * 一括登録時に1回のバッチ実行で送信する最大件数.
+             */
+            public static final String JDBC_BATCH_SIZE = ADS_ROOT + "jdbc.batchSize";
         }
     }
 
@@ -393,6 +445,28 @@ public class DcCoreConfig {
         public static final String ROOT = KEY_ROOT + "blobStore.root";
     }
 
+    /**
+     * Cell一括削除の設定.
+     */
+    public static final class CellBulkDeletion {
+        /**
+         * Cell一括削除ジョブを同時に実行する数.
+         */
+        public static final String WORKERS = KEY_ROOT + "cellBulkDeletion.workers";
+        /**
+         * WebDavファイルのID一覧を1回のスクロールで各シャードから取得する件数.
+         */
+        public static final String FETCH_COUNT = KEY_ROOT + "cellBulkDeletion.fetchCount";
+        /**
+         * WebDavファイルを並行して削除するスレッド数.
+         */
+        public static final String BLOB_DELETION_THREADS = KEY_ROOT + "cellBulkDeletion.blobDeletionThreads";
+        /**
+         * 1秒あたりに削除するWebDavファイルの最大数(全ジョブ合計). 0以下の場合は無制限.
+         */
+        public static final String BLOB_DELETION_PER_SEC = KEY_ROOT + "cellBulkDeletion.blobDeletionPerSec";
+    }
+
     /**
      * ユーザデータ内のプロパティの数、階層の制限設定.
      */
@@ -459,6 +533,12 @@ public class DcCoreConfig {
          */
         public static final String SCHEMA_CACHE_ENABLED = KEY_ROOT + "cache.schema.enabled";
 
+        /**
+         * NTKP(NavigationTargetKeyProperty)の値のキャッシュを有効とするか否か.
+         * 許容値： true/false
+         */
+        public static final String NTKP_CACHE_ENABLED = KEY_ROOT + "cache.ntkp.enabled";
+
         /**
          * memcachedホスト名.
          */
@@ -589,6 +669,51 @@ public class DcCoreConfig {
          * memcachedに格納するbarインストール処理状況の有効期限（秒).
          */
         public static final String BAR_PROGRESS_EXPIRE_IN_SEC = KEY_ROOT + "bar.progress.expireInSec";
+
+        /**
+         * ユーザデータの一括登録を並行して実行する数のプロパティキー.
+         */
+        public static final String BAR_USERDATA_BULK_CONCURRENCY = KEY_ROOT + "bar.userdata.bulkConcurrency";
+
+        /**
+         * WebDavファイルを登録するスレッド数のプロパティキー.
+         */
+        public static final String BAR_DAVFILE_WRITE_THREADS = KEY_ROOT + "bar.davfile.writeThreads";
+
+        /**
+         * 登録待ちのWebDavファイルを保持する合計サイズの上限(MB)のプロパティキー.
+         */
+        public static final String BAR_DAVFILE_WRITE_BUFFER_SIZE = KEY_ROOT + "bar.davfile.writeBufferSize";
+
+        /**
+         * barインストールを同時に実行する数のプロパティキー.
+         */
+        public static final String BAR_INSTALL_CONCURRENCY = KEY_ROOT + "bar.install.concurrency";
+
+        /**
+         * 実行待ちのbarインストールをユニットユーザに関係なく優先実行するまでの待ち時間(秒)のプロパティキー.
+         */
+        public static final String BAR_INSTALL_QUEUE_AGING_IN_SEC = KEY_ROOT + "bar.install.queue.agingInSec";
+
+        /**
+         * サーバ停止時に実行中のbarインストールの終了を待ち合わせる時間(秒)のプロパティキー.
+         */
+        public static final String BAR_INSTALL_AWAIT_SHUTDOWN_IN_SEC = KEY_ROOT + "bar.install.awaitShutdownInSec";
+
+        /**
+         * barファイル出力時にユーザデータを並行して取得するスレッド数のプロパティキー.
+         */
+        public static final String BAR_EXPORT_READ_THREADS = KEY_ROOT + "bar.export.readThreads";
+
+        /**
+         * barファイル出力時にユーザデータを一度に取得する件数のプロパティキー.
+         */
+        public static final String BAR_EXPORT_PAGE_SIZE = KEY_ROOT + "bar.export.pageSize";
+
+        /**
+         * barファイル出力時にEntityTypeごとに先行して取得しておくページ数のプロパティキー.
+         */
+        public static final String BAR_EXPORT_PREFETCH_PAGES = KEY_ROOT + "bar.export.prefetchPages";
     }
 
     /**
@@ -616,6 +741,18 @@ public class DcCoreConfig {
          */
         public static final String REPAIR_ADS_INVOCATION_FILE_PATH = KEY_ROOT + "es.ads.repair.invocationFlagFile";
         static final String DEFAULT_REPAIR_ADS_INVOCATION_FILE_PATH = "/fj/dc-core/invokeRepair";
+
+        /**
+         * Repair処理で一度にElasticsearch/Adsへ問い合わせる最大件数.
+         */
+        public static final String REPAIR_BATCH_SIZE = KEY_ROOT + "es.ads.repair.batchSize";
+        static final int DEFAULT_REPAIR_BATCH_SIZE = 100;
+
+        /**
+         * Repair処理を並行して実行するスレッド数.
+         */
+        public static final String REPAIR_PARALLELISM = KEY_ROOT + "es.ads.repair.parallelism";
+        static final int DEFAULT_REPAIR_PARALLELISM = 4;
     }
 
     /**
@@ -636,6 +773,120 @@ public class DcCoreConfig {
         public static final String COUNT_ITERATION = KEY_ROOT + "es.ads.log.count.iteration";
     }
 
+    /**
+     * Adsへの非同期書き込み(write-behind)の設定.
+     */
+    public static final class AdsWriteBehind {
+        /**
+         * Adsへの書き込みを非同期に行うか否か.
+         */
+        public static final String ENABLED = KEY_ROOT + "es.ads.writeBehind.enabled";
+        /**
+         * 書き込みキューのセグメントファイルの出力先ディレクトリ.
+         */
+        public static final String DIR = KEY_ROOT + "es.ads.writeBehind.dir";
+        /**
+         * 書き込みキューに積める最大件数.
+         */
+        public static final String CAPACITY = KEY_ROOT + "es.ads.writeBehind.capacity";
+        /**
+         * 書き込みキューを処理するワーカースレッド数.
+         */
+        public static final String WORKERS = KEY_ROOT + "es.ads.writeBehind.workers";
+        /**
+         * ワーカースレッドが一度にAdsへ反映する最大件数.
+         */
+        public static final String BATCH_SIZE = KEY_ROOT + "es.ads.writeBehind.batchSize";
+        /**
+         * セグメントファイルをディスクに同期する間隔(ミリ秒).
+         */
+        public static final String FSYNC_INTERVAL_IN_MILLIS = KEY_ROOT + "es.ads.writeBehind.fsyncIntervalInMillis";
+        /**
+         * 書き込みキューが満杯の場合の待ち時間(ミリ秒). 超過した場合は同期的にAdsへ書き込む.
+         */
+        public static final String OFFER_TIMEOUT_IN_MILLIS = KEY_ROOT + "es.ads.writeBehind.offerTimeoutInMillis";
+        /**
+         * 1セグメントファイルあたりの最大件数.
+         */
+        public static final String SEGMENT_RECORDS = KEY_ROOT + "es.ads.writeBehind.segmentRecords";
+        /**
+         * shutdown時、キューに残った書き込みの反映待ち時間(秒).
+         */
+        public static final String AWAIT_SHUTDOWN_IN_SEC = KEY_ROOT + "es.ads.writeBehind.awaitShutdownInSec";
+    }
+
+    /**
+     * ElasticsearchとAdsの整合性チェックの設定.
+     */
+    public static final class AdsConsistency {
+        /**
+         * 整合性チェックを定期実行するか否か.
+         */
+        public static final String ENABLED = KEY_ROOT + "es.ads.consistency.enabled";
+        /**
+         * 整合性チェックが最初に起動するまでの遅延時間(秒).
+         */
+        public static final String INITIAL_DELAY_IN_SEC = KEY_ROOT + "es.ads.consistency.initialDelayInSec";
+        /**
+         * 整合性チェックの実行間隔(秒).
+         */
+        public static final String INTERVAL_IN_SEC = KEY_ROOT + "es.ads.consistency.intervalInSec";
+        /**
+         * 中断した整合性チェックを再開するためのチェックポイントファイルのパス.
+         */
+        public static final String CHECKPOINT_FILE = KEY_ROOT + "es.ads.consistency.checkpointFile";
+        /**
+         * 範囲を絞り込む際の、uuidの先頭文字数の上限.
+         */
+        public static final String MAX_DEPTH = KEY_ROOT + "es.ads.consistency.maxDepth";
+        /**
+         * 範囲内の件数がこの値以下であれば、絞り込みをやめてuuid単位で比較する.
+         */
+        public static final String LEAF_SIZE = KEY_ROOT + "es.ads.consistency.leafSize";
+        /**
+         * Elasticsearchから1秒あたりに読み込む最大件数.
+         */
+        public static final String SCAN_DOCS_PER_SEC = KEY_ROOT + "es.ads.consistency.scanDocsPerSec";
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除の設定.
+     */
+    public static final class CellSweep {
+        /**
+         * 掃除処理を定期実行するか否か.
+         */
+        public static final String ENABLED = KEY_ROOT + "es.ads.cellSweep.enabled";
+        /**
+         * 掃除処理が最初に起動するまでの遅延時間(秒).
+         */
+        public static final String INITIAL_DELAY_IN_SEC = KEY_ROOT + "es.ads.cellSweep.initialDelayInSec";
+        /**
+         * 掃除処理の実行間隔(秒).
+         */
+        public static final String INTERVAL_IN_SEC = KEY_ROOT + "es.ads.cellSweep.intervalInSec";
+        /**
+         * 並行して掃除するCell(テーブル単位)の数.
+         */
+        public static final String THREADS = KEY_ROOT + "es.ads.cellSweep.threads";
+        /**
+         * 1回の削除で扱うレコード数の下限.
+         */
+        public static final String MIN_CHUNK_SIZE = KEY_ROOT + "es.ads.cellSweep.minChunkSize";
+        /**
+         * 1回の削除で扱うレコード数の上限.
+         */
+        public static final String MAX_CHUNK_SIZE = KEY_ROOT + "es.ads.cellSweep.maxChunkSize";
+        /**
+         * 1回の削除にかかる時間の目標値(ミリ秒). 超過した場合は削除件数を減らす.
+         */
+        public static final String TARGET_LATENCY_IN_MILLIS = KEY_ROOT + "es.ads.cellSweep.targetLatencyInMillis";
+        /**
+         * 1回の削除後に休止する時間の、削除にかかった時間に対する比率.
+         */
+        public static final String PAUSE_RATIO = KEY_ROOT + "es.ads.cellSweep.pauseRatio";
+    }
+
     static {
         // 各種メッセージ出力クラスを強制的にロードする
         DcCoreLog.loadConfig();
@@ -939,6 +1190,14 @@ public class DcCoreConfig {
         return Integer.parseInt(get(Dav.COLLECTION_DEPTH_MAX_NUM));
     }
 
+    /**
+     * PROPFINDで子リソースを一括取得する際の1回あたりの取得件数を取得.
+     * @return 1回あたりの取得件数
+     */
+    public static int getPropfindMultiGetSize() {
+        return Integer.parseInt(get(Dav.PROPFIND_MULTIGET_SIZE));
+    }
+
     /**
      * @return N:Nの$linksが作成可能な最大件数を取得.
      */
@@ -1009,6 +1268,13 @@ public class DcCoreConfig {
         return Boolean.parseBoolean(get(OData.ORDERBY_SORT_ORDER));
     }
 
+    /**
+     * @return クエリのテンプレートをキャッシュする最大件数.
+     */
+    public static int getCompiledQueryCacheSize() {
+        return Integer.parseInt(get(OData.COMPILED_QUERY_CACHE_SIZE));
+    }
+
     /**
      * @return Lockのタイプ.
      */
@@ -1183,6 +1449,45 @@ public class DcCoreConfig {
         return get(ES.RETRY_INTERVAL);
     }
 
+    /**
+     * @return ESへの同一内容の読み込みリクエストを集約するか否か.
+     */
+    public static boolean isEsReadCoalescingEnabled() {
+        return Boolean.parseBoolean(get(ES.READ_COALESCING_ENABLED));
+    }
+
+    /**
+     * @return 接続先ノードの一覧をESクラスタから取得するか否か.
+     */
+    public static boolean isEsClientSniff() {
+        return Boolean.parseBoolean(get(ES.CLIENT_SNIFF));
+    }
+
+    /**
+     * @return ESへの読み込みリクエストの送信先ノードの選択方針.
+     */
+    public static String getEsNodeSelectionMode() {
+        return get(ES.NODE_SELECTION_MODE);
+    }
+
+    /**
+     * @return ラックを表すESノードの属性名.
+     */
+    public static String getEsNodeSelectionRackAttribute() {
+        return get(ES.NODE_SELECTION_RACK_ATTRIBUTE);
+    }
+
+    /**
+     * @return 自ノードのラック(未指定の場合はnull).
+     */
+    public static String getEsNodeSelectionLocalRack() {
+        String rack = get(ES.NODE_SELECTION_LOCAL_RACK);
+        if (rack == null || rack.isEmpty()) {
+            return null;
+        }
+        return rack;
+    }
+
     /**
      * @return barインストールの非同期処理状況の有効期限(s).
      */
@@ -1190,6 +1495,69 @@ public class DcCoreConfig {
         return get(BAR.BAR_PROGRESS_EXPIRE_IN_SEC);
     }
 
+    /**
+     * @return barインストール時にユーザデータの一括登録を並行して実行する数.
+     */
+    public static int getBarUserdataBulkConcurrency() {
+        return Math.max(1, Integer.parseInt(get(BAR.BAR_USERDATA_BULK_CONCURRENCY)));
+    }
+
+    /**
+     * @return barインストール時にWebDavファイルを登録するスレッド数.
+     */
+    public static int getBarDavFileWriteThreads() {
+        return Math.max(1, Integer.parseInt(get(BAR.BAR_DAVFILE_WRITE_THREADS)));
+    }
+
+    /**
+     * @return barインストール時に登録待ちのWebDavファイルを保持する合計サイズの上限(MB).
+     */
+    public static int getBarDavFileWriteBufferSize() {
+        return Math.max(1, Integer.parseInt(get(BAR.BAR_DAVFILE_WRITE_BUFFER_SIZE)));
+    }
+
+    /**
+     * @return barインストールを同時に実行する数.
+     */
+    public static int getBarInstallConcurrency() {
+        return Math.max(1, Integer.parseInt(get(BAR.BAR_INSTALL_CONCURRENCY)));
+    }
+
+    /**
+     * @return 実行待ちのbarインストールをユニットユーザに関係なく優先実行するまでの待ち時間(s).
+     */
+    public static long getBarInstallQueueAgingInSec() {
+        return Long.parseLong(get(BAR.BAR_INSTALL_QUEUE_AGING_IN_SEC));
+    }
+
+    /**
+     * @return サーバ停止時に実行中のbarインストールの終了を待ち合わせる時間(s).
+     */
+    public static long getBarInstallAwaitShutdownInSec() {
+        return Long.parseLong(get(BAR.BAR_INSTALL_AWAIT_SHUTDOWN_IN_SEC));
+    }
+
+    /**
+     * @return barファイル出力時にユーザデータを並行して取得するスレッド数.
+     */
+    public static int getBarExportReadThreads() {
+        return Integer.parseInt(get(BAR.BAR_EXPORT_READ_THREADS));
+    }
+
+    /**
+     * @return barファイル出力時にユーザデータを一度に取得する件数.
+     */
+    public static int getBarExportPageSize() {
+        return Integer.parseInt(get(BAR.BAR_EXPORT_PAGE_SIZE));
+    }
+
+    /**
+     * @return barファイル出力時にEntityTypeごとに先行して取得しておくページ数.
+     */
+    public static int getBarExportPrefetchPages() {
+        return Integer.parseInt(get(BAR.BAR_EXPORT_PREFETCH_PAGES));
+    }
+
     /**
      * @return ES ADSにjdbcを使うときの、DBCP用Property.
      */
@@ -1204,9 +1572,21 @@ public class DcCoreConfig {
         ret.setProperty("maxIdle", get(ES.ADS.CP_MAX_IDLE));
         ret.setProperty("maxWait", get(ES.ADS.CP_MAX_WAIT));
         ret.setProperty("validationQuery", get(ES.ADS.CP_VALIDATION_QUERY));
+        ret.setProperty("poolPreparedStatements", get(ES.ADS.CP_POOL_PREPARED_STATEMENTS));
+        ret.setProperty("maxOpenPreparedStatements", get(ES.ADS.CP_MAX_OPEN_PREPARED_STATEMENTS));
+        ret.setProperty("connectionProperties",
+                "rewriteBatchedStatements=" + get(ES.ADS.JDBC_REWRITE_BATCHED_STATEMENTS));
         return ret;
     }
 
+    /**
+     * ES ADSへの一括登録時に1回のバッチ実行で送信する最大件数.
+     * @return 最大件数
+     */
+    public static int getEsAdsJdbcBatchSize() {
+        return Math.max(1, Integer.parseInt(get(ES.ADS.JDBC_BATCH_SIZE)));
+    }
+
     /**
      * @return Cacheのタイプ.
      */
@@ -1259,6 +1639,14 @@ public class DcCoreConfig {
         return Boolean.parseBoolean(get(Cache.SCHEMA_CACHE_ENABLED));
     }
 
+    /**
+     * NTKPの値のキャッシュが有効か否かを返す.
+     * @return 有効な場合はtrue.
+     */
+    public static boolean isNtkpCacheEnabled() {
+        return Boolean.parseBoolean(get(Cache.NTKP_CACHE_ENABLED));
+    }
+
     /**
      * @return memcachedキャッシュ有効期限.
      */
@@ -1439,6 +1827,34 @@ public class DcCoreConfig {
         }
     }
 
+    /**
+     * Repair処理で一度にElasticsearch/Adsへ問い合わせる最大件数.
+     * @return Repair処理で一度にElasticsearch/Adsへ問い合わせる最大件数.
+     */
+    public static int getAdsRepairBatchSize() {
+        String value = get(AdsRepair.REPAIR_BATCH_SIZE);
+        if (null != value && !value.isEmpty()) {
+            return Math.max(1, Integer.valueOf(value));
+        } else {
+            // Default値.
+            return AdsRepair.DEFAULT_REPAIR_BATCH_SIZE;
+        }
+    }
+
+    /**
+     * Repair処理を並行して実行するスレッド数.
+     * @return Repair処理を並行して実行するスレッド数.
+     */
+    public static int getAdsRepairParallelism() {
+        String value = get(AdsRepair.REPAIR_PARALLELISM);
+        if (null != value && !value.isEmpty()) {
+            return Math.max(1, Integer.valueOf(value));
+        } else {
+            // Default値.
+            return AdsRepair.DEFAULT_REPAIR_PARALLELISM;
+        }
+    }
+
     /**
      * 設定情報をリロードします.
      */
@@ -1531,6 +1947,230 @@ public class DcCoreConfig {
         return Integer.parseInt(get(AdsFailureLog.COUNT_ITERATION));
     }
 
+    /**
+     * Adsへの書き込みを非同期に行うか否かを取得.
+     * @return 非同期に行う場合はtrue
+     */
+    public static boolean isAdsWriteBehindEnabled() {
+        return Boolean.parseBoolean(get(AdsWriteBehind.ENABLED));
+    }
+
+    /**
+     * Adsへの非同期書き込みキューの出力先ディレクトリを取得.
+     * @return 出力先ディレクトリ
+     */
+    public static String getAdsWriteBehindDir() {
+        return get(AdsWriteBehind.DIR);
+    }
+
+    /**
+     * Adsへの非同期書き込みキューに積める最大件数を取得.
+     * @return 最大件数
+     */
+    public static int getAdsWriteBehindCapacity() {
+        return Integer.parseInt(get(AdsWriteBehind.CAPACITY));
+    }
+
+    /**
+     * Adsへの非同期書き込みを行うワーカースレッド数を取得.
+     * @return ワーカースレッド数
+     */
+    public static int getAdsWriteBehindWorkers() {
+        return Math.max(1, Integer.parseInt(get(AdsWriteBehind.WORKERS)));
+    }
+
+    /**
+     * Adsへの非同期書き込みで一度に反映する最大件数を取得.
+     * @return 最大件数
+     */
+    public static int getAdsWriteBehindBatchSize() {
+        return Math.max(1, Integer.parseInt(get(AdsWriteBehind.BATCH_SIZE)));
+    }
+
+    /**
+     * Adsへの非同期書き込みキューをディスクに同期する間隔(ミリ秒)を取得.
+     * @return 同期間隔(ミリ秒)
+     */
+    public static long getAdsWriteBehindFsyncIntervalInMillis() {
+        return Long.parseLong(get(AdsWriteBehind.FSYNC_INTERVAL_IN_MILLIS));
+    }
+
+    /**
+     * Adsへの非同期書き込みキューが満杯の場合の待ち時間(ミリ秒)を取得.
+     * @return 待ち時間(ミリ秒)
+     */
+    public static long getAdsWriteBehindOfferTimeoutInMillis() {
+        return Long.parseLong(get(AdsWriteBehind.OFFER_TIMEOUT_IN_MILLIS));
+    }
+
+    /**
+     * Adsへの非同期書き込みキューの1セグメントファイルあたりの最大件数を取得.
+     * @return 最大件数
+     */
+    public static int getAdsWriteBehindSegmentRecords() {
+        return Math.max(1, Integer.parseInt(get(AdsWriteBehind.SEGMENT_RECORDS)));
+    }
+
+    /**
+     * shutdown時、Adsへの非同期書き込みキューの反映待ち時間(秒)を取得.
+     * @return 反映待ち時間(秒)
+     */
+    public static long getAdsWriteBehindAwaitShutdownInSec() {
+        return Long.parseLong(get(AdsWriteBehind.AWAIT_SHUTDOWN_IN_SEC));
+    }
+
+    /**
+     * ElasticsearchとAdsの整合性チェックを定期実行するか否か.
+     * @return 定期実行する場合はtrue
+     */
+    public static boolean isAdsConsistencyCheckEnabled() {
+        return Boolean.parseBoolean(get(AdsConsistency.ENABLED));
+    }
+
+    /**
+     * 整合性チェックが最初に起動するまでの遅延時間(秒)を取得.
+     * @return 遅延時間(秒)
+     */
+    public static long getAdsConsistencyInitialDelayInSec() {
+        return Long.parseLong(get(AdsConsistency.INITIAL_DELAY_IN_SEC));
+    }
+
+    /**
+     * 整合性チェックの実行間隔(秒)を取得.
+     * @return 実行間隔(秒)
+     */
+    public static long getAdsConsistencyIntervalInSec() {
+        return Long.parseLong(get(AdsConsistency.INTERVAL_IN_SEC));
+    }
+
+    /**
+     * 整合性チェックのチェックポイントファイルのパスを取得.
+     * @return チェックポイントファイルのパス
+     */
+    public static String getAdsConsistencyCheckpointFile() {
+        return get(AdsConsistency.CHECKPOINT_FILE);
+    }
+
+    /**
+     * 整合性チェックで範囲を絞り込む際の、uuidの先頭文字数の上限を取得.
+     * @return 先頭文字数の上限
+     */
+    public static int getAdsConsistencyMaxDepth() {
+        return Math.max(1, Integer.parseInt(get(AdsConsistency.MAX_DEPTH)));
+    }
+
+    /**
+     * 整合性チェックでuuid単位の比較に切り替える範囲内の件数を取得.
+     * @return 件数
+     */
+    public static int getAdsConsistencyLeafSize() {
+        return Integer.parseInt(get(AdsConsistency.LEAF_SIZE));
+    }
+
+    /**
+     * 整合性チェックでElasticsearchから1秒あたりに読み込む最大件数を取得.
+     * @return 最大件数(0以下の場合は無制限)
+     */
+    public static int getAdsConsistencyScanDocsPerSec() {
+        return Integer.parseInt(get(AdsConsistency.SCAN_DOCS_PER_SEC));
+    }
+
+    /**
+     * Cell一括削除ジョブを同時に実行する数を取得.
+     * @return 同時に実行する数
+     */
+    public static int getCellBulkDeletionWorkers() {
+        return Math.max(1, Integer.parseInt(get(CellBulkDeletion.WORKERS)));
+    }
+
+    /**
+     * Cell一括削除でWebDavファイルのID一覧を1回のスクロールで取得する件数を取得.
+     * @return 取得件数
+     */
+    public static int getCellBulkDeletionFetchCount() {
+        return Math.max(1, Integer.parseInt(get(CellBulkDeletion.FETCH_COUNT)));
+    }
+
+    /**
+     * Cell一括削除でWebDavファイルを並行して削除するスレッド数を取得.
+     * @return スレッド数
+     */
+    public static int getCellBulkDeletionBlobDeletionThreads() {
+        return Math.max(1, Integer.parseInt(get(CellBulkDeletion.BLOB_DELETION_THREADS)));
+    }
+
+    /**
+     * Cell一括削除で1秒あたりに削除するWebDavファイルの最大数を取得.
+     * @return 最大数(0以下の場合は無制限)
+     */
+    public static int getCellBulkDeletionBlobDeletionPerSec() {
+        return Integer.parseInt(get(CellBulkDeletion.BLOB_DELETION_PER_SEC));
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除を定期実行するか否かを取得.
+     * @return 定期実行する場合はtrue
+     */
+    public static boolean isCellSweepEnabled() {
+        return Boolean.parseBoolean(get(CellSweep.ENABLED));
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除が最初に起動するまでの遅延時間(秒)を取得.
+     * @return 遅延時間(秒)
+     */
+    public static long getCellSweepInitialDelayInSec() {
+        return Long.parseLong(get(CellSweep.INITIAL_DELAY_IN_SEC));
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除の実行間隔(秒)を取得.
+     * @return 実行間隔(秒)
+     */
+    public static long getCellSweepIntervalInSec() {
+        return Long.parseLong(get(CellSweep.INTERVAL_IN_SEC));
+    }
+
+    /**
+     * 削除済みCellのADSデータを並行して掃除する数を取得.
+     * @return 並行数
+     */
+    public static int getCellSweepThreads() {
+        return Math.max(1, Integer.parseInt(get(CellSweep.THREADS)));
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除で1回に削除するレコード数の下限を取得.
+     * @return レコード数の下限
+     */
+    public static int getCellSweepMinChunkSize() {
+        return Math.max(1, Integer.parseInt(get(CellSweep.MIN_CHUNK_SIZE)));
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除で1回に削除するレコード数の上限を取得.
+     * @return レコード数の上限
+     */
+    public static int getCellSweepMaxChunkSize() {
+        return Math.max(getCellSweepMinChunkSize(), Integer.parseInt(get(CellSweep.MAX_CHUNK_SIZE)));
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除で1回の削除にかかる時間の目標値(ミリ秒)を取得.
+     * @return 目標値(ミリ秒)
+     */
+    public static long getCellSweepTargetLatencyInMillis() {
+        return Long.parseLong(get(CellSweep.TARGET_LATENCY_IN_MILLIS));
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除で1回の削除後に休止する時間の比率を取得.
+     * @return 削除にかかった時間に対する休止時間の比率
+     */
+    public static double getCellSweepPauseRatio() {
+        return Math.max(0, Double.parseDouble(get(CellSweep.PAUSE_RATIO)));
+    }
+
     /**
      * パスワード認証成功時に、Accountの最終ログイン時刻を更新するか否か().
      * @return true:更新する(デフォルト) false:更新しない
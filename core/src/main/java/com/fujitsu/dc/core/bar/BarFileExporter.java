@@ -0,0 +1,415 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.bar;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.wink.webdav.model.Multistatus;
+import org.apache.wink.webdav.model.ObjectFactory;
+import org.apache.wink.webdav.model.Propstat;
+import org.apache.wink.webdav.model.Resourcetype;
+import org.apache.wink.webdav.model.Response;
+import org.json.simple.JSONObject;
+import org.odata4j.core.OEntity;
+import org.odata4j.edm.EdmDataServices;
+import org.odata4j.edm.EdmEntitySet;
+import org.odata4j.expression.BoolCommonExpression;
+import org.odata4j.format.xml.EdmxFormatWriter;
+import org.odata4j.producer.EntitiesResponse;
+import org.odata4j.producer.InlineCount;
+import org.odata4j.producer.QueryInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.auth.AccessContext;
+import com.fujitsu.dc.core.model.Box;
+import com.fujitsu.dc.core.model.Cell;
+import com.fujitsu.dc.core.model.DavCmp;
+import com.fujitsu.dc.core.model.ModelFactory;
+import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
+import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
+import com.fujitsu.dc.core.model.impl.es.DavCmpEsImpl;
+import com.fujitsu.dc.core.model.impl.es.IndexNameEncoder;
+import com.fujitsu.dc.core.odata.DcODataProducer;
+import com.fujitsu.dc.core.odata.DcOptionsQueryParser;
+
+/**
+ * Boxの内容をbarファイルとして出力するクラス.
+ * <p>
+ * WebDAVの階層(90_rootprops.xml、WebDAVファイル、サービスソース)、ODataコレクションのスキーマ(00_$metadata.xml)、
+ * ユーザデータ(90_data)を、barファイルインストール({@link BarFileReadRunner})が読み込む順序・形式で
+ * zip形式のストリームに直接出力する。
+ * WebDAVファイルはファイル全体をメモリに読み込まずに出力し、ユーザデータはEntityTypeごとに一定件数ずつ並行して取得するため、
+ * Boxのサイズによらずメモリ使用量は一定の範囲に収まる。
+ * </p>
+ */
+public class BarFileExporter implements StreamingOutput {
+
+    static Logger log = LoggerFactory.getLogger(BarFileExporter.class);
+
+    private static final long THREAD_KEEP_ALIVE_SEC = 60L;
+    private static final String BAR_VERSION = "2";
+    private static final String BOX_VERSION = "1";
+    private static final String DCBOX = "dcbox:";
+    private static final String ODATA_TYPE = "dc:odata";
+    private static final String SERVICE_TYPE = "dc:service";
+
+    /** ユーザデータを取得するスレッドプール. */
+    private static ThreadPoolExecutor readExecutor;
+
+    private final Box box;
+    private final BinaryDataAccessor binaryDataAccessor;
+
+    /**
+     * 出力対象のWebDAVリソース.
+     */
+    static class ExportEntry {
+        private final String path;
+        private final String type;
+        private final DavCmp davCmp;
+        private final String nodeId;
+
+        ExportEntry(String path, String type, DavCmp davCmp, String nodeId) {
+            this.path = path;
+            this.type = type;
+            this.davCmp = davCmp;
+            this.nodeId = nodeId;
+        }
+    }
+
+    /**
+     * ユーザデータの取得結果(1ページ分).
+     */
+    static class Page {
+        private final List<OEntity> entities;
+        private final RuntimeException error;
+
+        Page(List<OEntity> entities, RuntimeException error) {
+            this.entities = entities;
+            this.error = error;
+        }
+
+        boolean isLast() {
+            return this.error != null || this.entities.isEmpty();
+        }
+    }
+
+    /**
+     * コンストラクタ.
+     * @param cell 出力対象のCell
+     * @param box 出力対象のBox
+     */
+    public BarFileExporter(Cell cell, Box box) {
+        this.box = box;
+        String owner = cell.getOwner();
+        String unitUserName = null;
+        if (owner == null) {
+            unitUserName = AccessContext.TYPE_ANONYMOUS;
+        } else {
+            unitUserName = IndexNameEncoder.encodeEsIndexName(owner);
+        }
+        this.binaryDataAccessor = new BinaryDataAccessor(DcCoreConfig.getBlobStoreRoot(), unitUserName,
+                DcCoreConfig.getPhysicalDeleteMode());
+    }
+
+    private static synchronized ThreadPoolExecutor getReadExecutor() {
+        if (readExecutor == null) {
+            int threads = DcCoreConfig.getBarExportReadThreads();
+            readExecutor = new ThreadPoolExecutor(threads, threads, THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            // 出力対象がない間はスレッドを残さない
+            readExecutor.allowCoreThreadTimeOut(true);
+        }
+        return readExecutor;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        ZipArchiveOutputStream zos = new ZipArchiveOutputStream(output);
+        zos.setEncoding("UTF-8");
+
+        // WebDAVの階層を辿り、90_rootprops.xmlの内容と出力対象のリソースを収集する
+        DavCmp boxCmp = ModelFactory.boxCmp(this.box);
+        Multistatus rootProps = new ObjectFactory().createMultistatus();
+        List<ExportEntry> entries = new ArrayList<ExportEntry>();
+        collectResources(boxCmp, "", rootProps, entries);
+
+        putDirectory(zos, BarFileReadRunner.ROOT_DIR);
+        putDirectory(zos, BarFileReadRunner.META_DIR);
+        writeManifest(zos);
+        zos.putArchiveEntry(new ZipArchiveEntry(BarFileReadRunner.META_DIR + BarFileReadRunner.ROOTPROPS_XML));
+        Multistatus.marshal(rootProps, new CloseShieldOutputStream(zos));
+        zos.closeArchiveEntry();
+
+        if (!entries.isEmpty()) {
+            putDirectory(zos, BarFileReadRunner.CONTENTS_DIR);
+            for (ExportEntry entry : entries) {
+                writeEntry(zos, entry);
+            }
+        }
+        zos.finish();
+        zos.flush();
+    }
+
+    /**
+     * コレクション配下のリソースを深さ優先で収集する.
+     * 親コレクションのResponseが子より先に並ぶため、90_rootprops.xmlの階層定義の順序をそのまま満たす。
+     */
+    private void collectResources(DavCmp colCmp, String path, Multistatus rootProps, List<ExportEntry> entries) {
+        String url = DCBOX + "/" + path;
+        List<Response> responses = colCmp.propfind(null, "1", url, false).getResponse();
+        if (path.isEmpty()) {
+            // Box自身
+            rootProps.getResponse().add(responses.get(0));
+        }
+        Map<String, String> children = ((DavCmpEsImpl) colCmp).getDavNode().getChildren();
+        for (Response response : responses.subList(1, responses.size())) {
+            String href = response.getHref().get(0);
+            String name = decode(href.substring(href.lastIndexOf("/") + 1));
+            String childPath = path + name;
+            String type = getResourceType(response);
+            // インストール時は__srcコレクション及びサービスソースも90_rootprops.xmlの定義から作成されるため、定義に含める
+            rootProps.getResponse().add(response);
+            if (DavCmp.TYPE_DAV_FILE.equals(type)) {
+                entries.add(new ExportEntry(childPath, type, null, children.get(name)));
+                continue;
+            }
+            DavCmp childCmp = colCmp.getChild(name);
+            if (childCmp == null || DavCmp.TYPE_NULL.equals(childCmp.getType())) {
+                // 収集中に削除されたコレクションは出力しない
+                continue;
+            }
+            if (DavCmp.TYPE_COL_SVC.equals(type)) {
+                checkServiceSource(childCmp, childPath);
+            }
+            entries.add(new ExportEntry(childPath + "/", type, childCmp, null));
+            if (!DavCmp.TYPE_COL_ODATA.equals(type)) {
+                collectResources(childCmp, childPath + "/", rootProps, entries);
+            }
+        }
+    }
+
+    /**
+     * サービスコレクション直下に__srcコレクションが存在することを確認する.
+     * barインストール時は__srcコレクションの定義がないサービスコレクションをエラー(PL-BI-2016)とするため、
+     * インストールできないbarファイルを出力しないよう、この時点でエラーとする。
+     */
+    private void checkServiceSource(DavCmp svcCmp, String svcPath) {
+        DavCmp srcCmp = svcCmp.getChild(DavCmp.SERVICE_SRC_COLLECTION);
+        if (srcCmp == null || !DavCmp.TYPE_COL_WEBDAV.equals(srcCmp.getType())) {
+            log.info("Service collection without " + DavCmp.SERVICE_SRC_COLLECTION + " cannot be exported: " + svcPath);
+            throw DcCoreException.Server.UNKNOWN_ERROR;
+        }
+    }
+
+    private String getResourceType(Response response) {
+        for (Propstat propstat : response.getPropstat()) {
+            Resourcetype resourceType = propstat.getProp().getResourcetype();
+            if (resourceType == null) {
+                continue;
+            }
+            if (resourceType.getCollection() == null) {
+                return DavCmp.TYPE_DAV_FILE;
+            }
+            for (Element element : resourceType.getAny()) {
+                if (ODATA_TYPE.equals(element.getNodeName())) {
+                    return DavCmp.TYPE_COL_ODATA;
+                } else if (SERVICE_TYPE.equals(element.getNodeName())) {
+                    return DavCmp.TYPE_COL_SVC;
+                }
+            }
+            return DavCmp.TYPE_COL_WEBDAV;
+        }
+        return DavCmp.TYPE_DAV_FILE;
+    }
+
+    private String decode(String name) {
+        try {
+            return URLDecoder.decode(name, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return name;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeManifest(ZipArchiveOutputStream zos) throws IOException {
+        JSONObject manifest = new JSONObject();
+        manifest.put("bar_version", BAR_VERSION);
+        manifest.put("box_version", BOX_VERSION);
+        manifest.put("DefaultPath", this.box.getName());
+        manifest.put("schema", this.box.getSchema());
+        zos.putArchiveEntry(new ZipArchiveEntry(BarFileReadRunner.META_DIR + BarFileReadRunner.MANIFEST_JSON));
+        zos.write(manifest.toJSONString().getBytes("UTF-8"));
+        zos.closeArchiveEntry();
+    }
+
+    private void writeEntry(ZipArchiveOutputStream zos, ExportEntry entry) throws IOException {
+        String entryName = BarFileReadRunner.CONTENTS_DIR + entry.path;
+        if (DavCmp.TYPE_DAV_FILE.equals(entry.type)) {
+            // サービスソースは{serviceCollection}/__src/{scriptName}を{serviceCollection}/{scriptName}として出力する
+            entryName = entryName.replace("/" + DavCmp.SERVICE_SRC_COLLECTION + "/", "/");
+            zos.putArchiveEntry(new ZipArchiveEntry(entryName));
+            try {
+                this.binaryDataAccessor.copy(entry.nodeId, zos);
+            } catch (BinaryDataAccessException e) {
+                throw DcCoreException.Dav.DAV_UNAVAILABLE.reason(e);
+            }
+            zos.closeArchiveEntry();
+            return;
+        }
+        if (entry.path.endsWith("/" + DavCmp.SERVICE_SRC_COLLECTION + "/")) {
+            // __srcコレクションはbarファイル内にディレクトリを作成しない
+            return;
+        }
+        putDirectory(zos, entryName);
+        if (DavCmp.TYPE_COL_ODATA.equals(entry.type)) {
+            writeODataCollection(zos, entryName, entry.davCmp.getODataProducer());
+        }
+    }
+
+    /**
+     * ODataコレクションのスキーマとユーザデータを出力する.
+     * EntityTypeごとの取得処理はスレッドプールで先行して実行し、出力はEntityTypeの順に行う。
+     */
+    private void writeODataCollection(ZipArchiveOutputStream zos, String colEntryName, final DcODataProducer producer)
+            throws IOException {
+        EdmDataServices metadata = producer.getMetadata();
+        zos.putArchiveEntry(new ZipArchiveEntry(colEntryName + BarFileReadRunner.METADATA_XML));
+        Writer writer = new OutputStreamWriter(new CloseShieldOutputStream(zos), "UTF-8");
+        EdmxFormatWriter.write(metadata, writer);
+        writer.flush();
+        zos.closeArchiveEntry();
+
+        List<EdmEntitySet> entitySets = new ArrayList<EdmEntitySet>();
+        for (EdmEntitySet entitySet : metadata.getEntitySets()) {
+            entitySets.add(entitySet);
+        }
+        String dataDir = colEntryName + BarFileReadRunner.USERDATA_DIR_NAME + "/";
+        putDirectory(zos, dataDir);
+        if (entitySets.isEmpty()) {
+            return;
+        }
+
+        final int pageSize = DcCoreConfig.getBarExportPageSize();
+        final int prefetchPages = DcCoreConfig.getBarExportPrefetchPages();
+        List<BlockingQueue<Page>> queues = new ArrayList<BlockingQueue<Page>>();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (final EdmEntitySet entitySet : entitySets) {
+                final BlockingQueue<Page> queue = new ArrayBlockingQueue<Page>(prefetchPages);
+                queues.add(queue);
+                futures.add(getReadExecutor().submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        readEntities(producer, entitySet, pageSize, queue);
+                        return null;
+                    }
+                }));
+            }
+            UserDataJsonWriter jsonWriter = new UserDataJsonWriter();
+            for (int i = 0; i < entitySets.size(); i++) {
+                String entityDir = dataDir + entitySets.get(i).getName() + "/";
+                putDirectory(zos, entityDir);
+                long count = 0;
+                Page page = queues.get(i).take();
+                while (!page.isLast()) {
+                    for (OEntity entity : page.entities) {
+                        zos.putArchiveEntry(new ZipArchiveEntry(entityDir + (++count) + ".json"));
+                        Writer entityWriter = new OutputStreamWriter(new CloseShieldOutputStream(zos), "UTF-8");
+                        jsonWriter.write(null, entityWriter, entity);
+                        entityWriter.flush();
+                        zos.closeArchiveEntry();
+                    }
+                    page = queues.get(i).take();
+                }
+                if (page.error != null) {
+                    throw page.error;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            // 出力を中断した場合に、取得処理がキューへの格納待ちのまま残らないようにする
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * __idの昇順に一定件数ずつユーザデータを取得し、キューに格納する.
+     * 取得位置を件数で指定すると後半ほど検索コストが増加するため、前ページの最後の__idより大きいものを条件として取得する。
+     * 最後に空のページ(または取得エラー)を格納する。
+     */
+    private void readEntities(DcODataProducer producer, EdmEntitySet entitySet, int pageSize,
+            BlockingQueue<Page> queue) throws InterruptedException {
+        String lastId = null;
+        try {
+            while (true) {
+                BoolCommonExpression filter = null;
+                if (lastId != null) {
+                    filter = DcOptionsQueryParser.parseFilter("__id gt '" + lastId.replace("'", "''") + "'");
+                }
+                QueryInfo queryInfo = new QueryInfo(InlineCount.NONE, pageSize, null, filter,
+                        DcOptionsQueryParser.parseOrderBy("__id asc"), null, null, null, null);
+                EntitiesResponse response = producer.getEntities(entitySet.getName(), queryInfo);
+                List<OEntity> entities = response.getEntities();
+                queue.put(new Page(entities, null));
+                if (entities.size() < pageSize) {
+                    if (!entities.isEmpty()) {
+                        queue.put(new Page(new ArrayList<OEntity>(), null));
+                    }
+                    return;
+                }
+                lastId = (String) entities.get(entities.size() - 1).getProperty("__id").getValue();
+            }
+        } catch (RuntimeException e) {
+            log.info("Failed to read user data for export. entitySet: " + entitySet.getName(), e);
+            queue.put(new Page(null, e));
+        }
+    }
+
+    private void putDirectory(ZipArchiveOutputStream zos, String name) throws IOException {
+        zos.putArchiveEntry(new ZipArchiveEntry(name));
+        zos.closeArchiveEntry();
+    }
+}
@@ -151,9 +151,8 @@ public class BarFileInstaller {
         }
 
         // 非同期実行
-        // TODO 多重実行時を考慮してスレッドプール化するなどの対策が必要
-        Thread thread = new Thread(runner);
-        thread.start();
+        // 同時実行数を制限するため、実行キューに登録してユニットユーザ単位で順番に実行する
+        BarInstallQueue.submit(runner, this.cell.getOwner());
 
         // レスポンスの返却
         ResponseBuilder res = Response.status(HttpStatus.SC_ACCEPTED);
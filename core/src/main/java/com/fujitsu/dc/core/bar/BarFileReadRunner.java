@@ -28,11 +28,13 @@ import java.io.StringReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -117,6 +119,7 @@ import com.fujitsu.dc.core.model.impl.es.DavCmpEsImpl;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.odata.UserDataODataProducer;
 import com.fujitsu.dc.core.model.impl.es.odata.UserSchemaODataProducer;
+import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.progress.Progress;
 import com.fujitsu.dc.core.model.progress.ProgressInfo;
 import com.fujitsu.dc.core.model.progress.ProgressManager;
@@ -124,6 +127,7 @@ import com.fujitsu.dc.core.odata.DcEdmxFormatParser;
 import com.fujitsu.dc.core.odata.DcODataProducer;
 import com.fujitsu.dc.core.odata.OEntityWrapper;
 import com.fujitsu.dc.core.rs.cell.EventResource;
+import com.fujitsu.dc.core.rs.odata.BulkLinkRequest;
 import com.fujitsu.dc.core.rs.odata.BulkRequest;
 import com.fujitsu.dc.core.rs.odata.ODataEntitiesResource;
 import com.fujitsu.dc.core.rs.odata.ODataEntityResource;
@@ -192,6 +196,8 @@ public class BarFileReadRunner implements Runnable {
             .get(DcCoreConfig.BAR.BAR_USERDATA_BULK_SIZE));
     private Event event;
     private DcEventBus eventBus;
+    private BarInstallPipeline pipeline;
+    private Map<String, Integer> childrenCounts = new HashMap<String, Integer>();
     private BarInstallProgressInfo progressInfo;
 
     /**
@@ -495,6 +501,10 @@ public class BarFileReadRunner implements Runnable {
 
         DavCmpEsImpl davCmp = null;
         List<String> doneKeys = new ArrayList<String>();
+        // エントリの読み込みと並行してWebDavファイル・ユーザデータを登録する
+        this.pipeline = new BarInstallPipeline(DcCoreConfig.getBarDavFileWriteThreads(),
+                DcCoreConfig.getBarDavFileWriteBufferSize(), DcCoreConfig.getBarUserdataBulkConcurrency());
+        Lock odataLock = null;
         try {
             ZipArchiveEntry zae = null;
             String currentPath = null;
@@ -502,9 +512,14 @@ public class BarFileReadRunner implements Runnable {
             List<JSONMappedObject> userDataLinks = new ArrayList<JSONMappedObject>();
             LinkedHashMap<String, BulkRequest> bulkRequests = new LinkedHashMap<String, BulkRequest>();
             Map<String, String> fileNameMap = new HashMap<String, String>();
+            Set<String> userDataKeys = new HashSet<String>();
             DcODataProducer producer = null;
 
             while ((zae = this.zipArchiveInputStream.getNextZipEntry()) != null) {
+                // 先行して投入した登録処理が失敗している場合は中断する
+                if (this.pipeline.isFailed()) {
+                    return false;
+                }
                 String entryName = zae.getName();
                 log.debug("Entry Name: " + entryName);
                 log.debug("Entry Size: " + zae.getSize());
@@ -517,13 +532,17 @@ public class BarFileReadRunner implements Runnable {
                 // ODataCollectionからDav/ServiceCollection/別ODataCollectionのリソースに対する処理に変わった際に
                 // ユーザデータの登録やリンクの登録をする必要があれば、処理を実行する
                 if (currentPath != null && !entryName.startsWith(currentPath)) {
-                    if (!execBulkRequest(davCmp.getCellId(), bulkRequests, fileNameMap, producer)) {
+                    if (!execBulkRequest(davCmp.getCellId(), bulkRequests, fileNameMap, producer)
+                            || !this.pipeline.awaitBulks()) {
                         return false;
                     }
+                    // リンクの登録処理でロックを取得するため、先にユーザデータ登録用のロックを解放する
+                    odataLock = releaseLock(odataLock);
                     if (!createUserdataLinks(producer, userDataLinks)) {
                         return false;
                     }
                     userDataLinks = new ArrayList<JSONMappedObject>();
+                    userDataKeys.clear();
                     currentPath = null;
                 }
                 int entryType = getEntryType(entryName, odataCols, webdavCols, serviceCols, this.davFileMap);
@@ -565,7 +584,11 @@ public class BarFileReadRunner implements Runnable {
                             continue;
                         } else if (userodataDirMatcher.matches() && getFileExtension(entryName).equals(".json")) {
                             userDataCount++;
-                            if (!setBulkRequests(entryName, producer, bulkRequests, fileNameMap)) {
+                            // 一括登録は並行して実行するため、コレクションのユーザデータ登録中はロックを保持し続ける
+                            if (odataLock == null) {
+                                odataLock = producer.lock();
+                            }
+                            if (!setBulkRequests(entryName, producer, bulkRequests, fileNameMap, userDataKeys)) {
                                 return false;
                             }
                             doneKeys.add(entryName);
@@ -588,17 +611,20 @@ public class BarFileReadRunner implements Runnable {
                 case TYPE_DAV_FILE:
                     // WebDAVコレクションの登録
                     // bar/90_contents/{davcol_name}配下のエントリを1つずつ登録する
+                    // 登録結果は登録処理の完了時に出力する
                     if (!registWebDavFile(entryName, this.zipArchiveInputStream, webdavCols)) {
                         return false;
                     }
-                    break;
+                    doneKeys.add(entryName);
+                    continue;
 
                 case TYPE_SVC_FILE:
                     // Serviceコレクションの登録
                     if (!installSvcCollection(webdavCols, entryName)) {
                         return false;
                     }
-                    break;
+                    doneKeys.add(entryName);
+                    continue;
 
                 case TYPE_MISMATCH:
                     // ODataコレクション配下ではなく、かつ、rootpropsに定義されていないエントリ
@@ -616,26 +642,49 @@ public class BarFileReadRunner implements Runnable {
 
             // ODataCollectionのリソースに対する処理に終わった際に、ユーザデータの登録やリンクの登録をする必要があれば実行する
             if (currentPath != null) {
-                if (!execBulkRequest(davCmp.getCellId(), bulkRequests, fileNameMap, producer)) {
+                if (!execBulkRequest(davCmp.getCellId(), bulkRequests, fileNameMap, producer)
+                        || !this.pipeline.awaitBulks()) {
                     return false;
                 }
+                odataLock = releaseLock(odataLock);
                 if (!createUserdataLinks(producer, userDataLinks)) {
                     return false;
                 }
                 userDataLinks = null;
             }
+            // WebDavファイルの登録完了を待ち合わせる
+            if (!this.pipeline.awaitAll()) {
+                return false;
+            }
         } catch (IOException ex) {
             isSuccess = false;
             log.info("IOException: " + ex.getMessage(), ex.fillInStackTrace());
             String message = DcCoreMessageUtils.getMessage("PL-BI-2000");
             writeOutputStream(true, CODE_BAR_INSTALL_FAILED, "", message);
-
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.info("InterruptedException: " + ex.getMessage(), ex.fillInStackTrace());
+            String message = DcCoreMessageUtils.getMessage("PL-BI-2000");
+            writeOutputStream(true, CODE_BAR_INSTALL_FAILED, "", message);
+            return false;
+        } finally {
+            // 実行中の登録処理の完了を待ってからロックを解放する
+            this.pipeline.shutdown();
+            this.pipeline = null;
+            releaseLock(odataLock);
         }
         // 必須データ（bar/90_contents/{odatacol_name}/00_$metadata.xml)の確認
         isSuccess = checkNecessaryFile(isSuccess, odataCols, doneKeys);
         return isSuccess;
     }
 
+    private Lock releaseLock(Lock lock) {
+        if (lock != null) {
+            lock.release();
+        }
+        return null;
+    }
+
     private boolean checkNecessaryFile(boolean isSuccess, Map<String, DavCmpEsImpl> odataCols, List<String> doneKeys) {
         Set<String> colList = odataCols.keySet();
         for (String colName : colList) {
@@ -667,7 +716,8 @@ public class BarFileReadRunner implements Runnable {
     private boolean setBulkRequests(String entryName,
             DcODataProducer producer,
             LinkedHashMap<String, BulkRequest> bulkRequests,
-            Map<String, String> fileNameMap) {
+            Map<String, String> fileNameMap,
+            Set<String> userDataKeys) {
         BulkRequest bulkRequest = new BulkRequest();
         String key = DcUUID.randomUUID();
         try {
@@ -697,7 +747,8 @@ public class BarFileReadRunner implements Runnable {
             // TODO 複合主キー対応、ユニークキーのチェック、NTKP対応
             key = oEntity.getEntitySetName() + ":" + (String) docHandler.getStaticFields().get("__id");
 
-            if (bulkRequests.containsKey(key)) {
+            // 一括登録は並行して実行されるため、登録済みの一括登録とのID競合もここでチェックする
+            if (bulkRequests.containsKey(key) || userDataKeys.contains(key)) {
                 throw DcCoreException.OData.ENTITY_ALREADY_EXISTS;
             }
 
@@ -715,6 +766,7 @@ public class BarFileReadRunner implements Runnable {
         }
         bulkRequests.put(key, bulkRequest);
         fileNameMap.put(key, entryName);
+        userDataKeys.add(key);
         return true;
     }
 
@@ -737,12 +789,30 @@ public class BarFileReadRunner implements Runnable {
         return entityTypeName;
     }
 
-    private boolean execBulkRequest(String cellId, LinkedHashMap<String, BulkRequest> bulkRequests,
+    private boolean execBulkRequest(final String cellId, LinkedHashMap<String, BulkRequest> bulkRequests,
             Map<String, String> fileNameMap,
-            DcODataProducer producer) {
-        // バルクで一括登録を実行
-        producer.bulkCreateEntity(producer.getMetadata(), bulkRequests, cellId);
+            final DcODataProducer producer) throws InterruptedException {
+        if (bulkRequests.isEmpty()) {
+            return true;
+        }
+        // 一括登録は別スレッドで実行するため、登録対象を複製してから投入する
+        final LinkedHashMap<String, BulkRequest> requests = new LinkedHashMap<String, BulkRequest>(bulkRequests);
+        final Map<String, String> fileNames = new HashMap<String, String>(fileNameMap);
+        bulkRequests.clear();
+        fileNameMap.clear();
+        this.pipeline.submitBulk(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                // ロックは呼び出し元(createContents)で取得済み
+                producer.bulkCreateEntityWithoutLock(producer.getMetadata(), requests, cellId);
+                return checkBulkResponse(requests, fileNames);
+            }
+        });
+        return true;
+    }
 
+    private boolean checkBulkResponse(LinkedHashMap<String, BulkRequest> bulkRequests,
+            Map<String, String> fileNameMap) {
         // レスポンスのチェック
         for (Entry<String, BulkRequest> request : bulkRequests.entrySet()) {
             // エラーが発生していた場合はエラーのレスポンスを返却する
@@ -763,9 +833,6 @@ public class BarFileReadRunner implements Runnable {
             }
             writeOutputStream(false, "PL-BI-1003", fileNameMap.get(request.getKey()));
         }
-
-        bulkRequests.clear();
-        fileNameMap.clear();
         return true;
     }
 
@@ -813,12 +880,13 @@ public class BarFileReadRunner implements Runnable {
 
     /**
      * WebDAVファイルの登録を行う.
+     * エントリの内容を読み込んだ後、ファイルの登録は登録用のスレッドで実行し、登録結果は登録完了時に出力する.
      * @param entryName barファイルのエントリ名
      * @param inputStream データ
      * @param webdavCols WebDAVコレクション一覧
-     * @return true: 登録成功、false:登録失敗
+     * @return true: 登録成功(登録用スレッドへの投入成功)、false:登録失敗
      */
-    protected boolean registWebDavFile(String entryName, InputStream inputStream,
+    protected boolean registWebDavFile(final String entryName, InputStream inputStream,
             Map<String, DavCmpEsImpl> webdavCols) {
 
         // 登録先のファイルパス・コレクション名を取得
@@ -830,8 +898,13 @@ public class BarFileReadRunner implements Runnable {
         String parentId = parentCmp.getId();
 
         // 親コレクション内のコレクション・ファイル数のチェック
+        // 登録は非同期に行われるため、最初に確認した件数に投入済みの件数を加算して判定する
+        Integer childrenCount = this.childrenCounts.get(parentId);
+        if (childrenCount == null) {
+            childrenCount = parentCmp.getChildrenCount();
+        }
         int maxChildResource = DcCoreConfig.getMaxChildResourceCount();
-        if (parentCmp.getChildrenCount() >= maxChildResource) {
+        if (childrenCount >= maxChildResource) {
             // コレクション内に作成可能なコレクション・ファイル数の制限を超えたため、エラーとする
             String message = DcCoreMessageUtils.getMessage("PR400-DV-0007");
             log.info(message);
@@ -849,7 +922,7 @@ public class BarFileReadRunner implements Runnable {
 
         String davNodeId = davNode.getId();
 
-        DavCmpEsImpl fileCmp = new DavCmpEsImpl(
+        final DavCmpEsImpl fileCmp = new DavCmpEsImpl(
                 fileName,
                 parentCmp,
                 this.cell,
@@ -869,15 +942,47 @@ public class BarFileReadRunner implements Runnable {
         }
 
         // ファイル登録
+        final byte[] data;
         try {
-            fileCmp.putForCreate(contentType, new CloseShieldInputStream(inputStream));
-        } catch (Exception e) {
+            data = IOUtils.toByteArray(new CloseShieldInputStream(inputStream));
+        } catch (IOException e) {
+            String message = DcCoreMessageUtils.getMessage("PL-BI-2004");
+            log.info(message + ": " + e.getMessage(), e.fillInStackTrace());
+            writeOutputStream(true, "PL-BI-1004", entryName, message);
+            return false;
+        }
+        this.childrenCounts.put(parentId, childrenCount + 1);
+        if (this.pipeline == null) {
+            return putWebDavFile(entryName, fileCmp, contentType, data);
+        }
+        final String fileContentType = contentType;
+        try {
+            this.pipeline.submitDavWrite(data.length, new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return putWebDavFile(entryName, fileCmp, fileContentType, data);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             String message = DcCoreMessageUtils.getMessage("PL-BI-2004");
             log.info(message + ": " + e.getMessage(), e.fillInStackTrace());
             writeOutputStream(true, "PL-BI-1004", entryName, message);
             return false;
         }
+        return true;
+    }
 
+    private boolean putWebDavFile(String entryName, DavCmpEsImpl fileCmp, String contentType, byte[] data) {
+        try {
+            fileCmp.putForCreate(contentType, new ByteArrayInputStream(data));
+        } catch (Exception e) {
+            String message = DcCoreMessageUtils.getMessage("PL-BI-2004");
+            log.info(message + ": " + e.getMessage(), e.fillInStackTrace());
+            writeOutputStream(true, "PL-BI-1004", entryName, message);
+            return false;
+        }
+        writeOutputStream(false, "PL-BI-1003", entryName);
         return true;
     }
 
@@ -1667,7 +1772,7 @@ public class BarFileReadRunner implements Runnable {
      * @param detail
      *        処理失敗時の詳細情報(PL-BI-2xxx)
      */
-    private void writeOutputStream(boolean isError, String code, String path, String detail) {
+    private synchronized void writeOutputStream(boolean isError, String code, String path, String detail) {
         String message = DcCoreMessageUtils.getMessage(code);
         if (detail == null) {
             message = message.replace("{0}", "");
@@ -1870,15 +1975,32 @@ public class BarFileReadRunner implements Runnable {
         int linkSize = userDataLinks.size();
         int linkCount = 0;
         String message = DcCoreMessageUtils.getMessage("PL-BI-1002");
+        // リンクは一定件数ごとにまとめて一括登録する
+        List<BulkLinkRequest> linkRequests = new ArrayList<BulkLinkRequest>();
         for (JSONMappedObject json : userDataLinks) {
-            linkCount++;
-            if (!createUserdataLink(json, producer)) {
+            BulkLinkRequest linkRequest = createUserdataLinkRequest(json);
+            if (linkRequest == null) {
                 return false;
             }
-            if (linkCount % linksOutputStreamSize == 0) {
-                writeOutputStream(false, "PL-BI-1002",
-                        String.format("userDataLinks %d / %d", linkCount, linkSize), message);
+            linkRequests.add(linkRequest);
+            if (linkRequests.size() >= bulkSize) {
+                if (!execBulkLinkRequest(producer, linkRequests)) {
+                    return false;
+                }
+                long outputCount = linkCount / linksOutputStreamSize;
+                linkCount += linkRequests.size();
+                linkRequests.clear();
+                if (linkCount / linksOutputStreamSize != outputCount) {
+                    writeOutputStream(false, "PL-BI-1002",
+                            String.format("userDataLinks %d / %d", linkCount, linkSize), message);
+                }
+            }
+        }
+        if (!linkRequests.isEmpty()) {
+            if (!execBulkLinkRequest(producer, linkRequests)) {
+                return false;
             }
+            linkCount += linkRequests.size();
         }
         writeOutputStream(false, "PL-BI-1002",
                 String.format("userDataLinks %d / %d", linkCount, linkSize), message);
@@ -1886,10 +2008,11 @@ public class BarFileReadRunner implements Runnable {
     }
 
     /**
-     * 10_odatarelations.jsonに定義されているリンク情報をESへ登録する.
+     * 10_odatarelations.jsonに定義されているリンク情報から$links一括登録のリクエストを生成する.
      * @param mappedObject JSONファイルから読み込んだオブジェクト
+     * @return $links一括登録のリクエスト. 生成に失敗した場合はnull
      */
-    private boolean createUserdataLink(JSONMappedObject mappedObject, DcODataProducer producer) {
+    private BulkLinkRequest createUserdataLinkRequest(JSONMappedObject mappedObject) {
         OEntityId sourceEntity = null;
         OEntityId newTargetEntity = null;
         try {
@@ -1917,24 +2040,50 @@ public class BarFileReadRunner implements Runnable {
             OEntityKey toOEKey = OEntityKey.parse(toKey);
             newTargetEntity = OEntityIds.create(((JSONUserDataLinks) mappedObject).getToType(), toOEKey);
 
-            // $linksの登録
-            producer.createLink(sourceEntity, targetNavProp, newTargetEntity);
+            return new BulkLinkRequest(sourceEntity, targetNavProp, newTargetEntity);
         } catch (Exception e) {
-            String path = "";
-            String targetPath = "";
-            if (sourceEntity != null) {
-                path = sourceEntity.getEntitySetName() + sourceEntity.getEntityKey();
-            }
-            if (newTargetEntity != null) {
-                targetPath = "Target Link to " + newTargetEntity.getEntitySetName() + newTargetEntity.getEntityKey();
-            }
-            log.info(e.getMessage() + " [" + path + "]", e.fillInStackTrace());
-            writeOutputStream(true, "PL-BI-1004", path, targetPath);
+            writeUserdataLinkError(e, sourceEntity, newTargetEntity);
+            return null;
+        }
+    }
+
+    /**
+     * 10_odatarelations.jsonに定義されているリンク情報をESへ一括登録する.
+     * @param producer 登録先のProducer
+     * @param linkRequests $links一括登録のリクエスト
+     * @return 全てのリンクの登録に成功した場合はtrue
+     */
+    private boolean execBulkLinkRequest(DcODataProducer producer, List<BulkLinkRequest> linkRequests) {
+        try {
+            producer.bulkCreateLinks(linkRequests);
+        } catch (Exception e) {
+            BulkLinkRequest first = linkRequests.get(0);
+            writeUserdataLinkError(e, first.getSourceEntity(), first.getTargetEntity());
             return false;
         }
+        for (BulkLinkRequest linkRequest : linkRequests) {
+            if (linkRequest.getError() != null) {
+                writeUserdataLinkError(linkRequest.getError(), linkRequest.getSourceEntity(),
+                        linkRequest.getTargetEntity());
+                return false;
+            }
+        }
         return true;
     }
 
+    private void writeUserdataLinkError(Exception e, OEntityId sourceEntity, OEntityId newTargetEntity) {
+        String path = "";
+        String targetPath = "";
+        if (sourceEntity != null) {
+            path = sourceEntity.getEntitySetName() + sourceEntity.getEntityKey();
+        }
+        if (newTargetEntity != null) {
+            targetPath = "Target Link to " + newTargetEntity.getEntitySetName() + newTargetEntity.getEntityKey();
+        }
+        log.info(e.getMessage() + " [" + path + "]", e.fillInStackTrace());
+        writeOutputStream(true, "PL-BI-1004", path, targetPath);
+    }
+
     private void createCollection(String collectionUrl,
             String entryName,
             Cell parentCell,
@@ -2411,6 +2560,33 @@ public class BarFileReadRunner implements Runnable {
         writeToProgressCache(true);
     }
 
+    /**
+     * 実行待ちの順番を更新し、キャッシュに記録する.
+     * @param queuePosition 実行待ちの順番(1始まり). 実行を開始した場合は0
+     */
+    void setQueuePosition(int queuePosition) {
+        if (this.progressInfo == null || this.progressInfo.getQueuePosition() == queuePosition) {
+            return;
+        }
+        this.progressInfo.setQueuePosition(queuePosition);
+        writeToProgressCache(true);
+    }
+
+    /**
+     * サーバ停止により実行されなかったインストールの情報をキャッシュに記録し、barファイルを削除する.
+     */
+    void writeShutdownProgressCache() {
+        if (this.progressInfo != null) {
+            this.progressInfo.setQueuePosition(0);
+            String message = DcCoreMessageUtils.getMessage("PL-BI-2019");
+            writeOutputStream(true, CODE_BAR_INSTALL_FAILED, this.cell.getUrl() + boxName, message);
+        }
+        writeErrorProgressCache();
+        if (this.barFile.exists() && !this.barFile.delete()) {
+            log.warn("Failed to remove bar file. [" + this.barFile.getAbsolutePath() + "].");
+        }
+    }
+
     /**
      * エラー情報をキャッシュに記録する.
      */
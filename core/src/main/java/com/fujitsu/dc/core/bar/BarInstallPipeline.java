@@ -0,0 +1,222 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.bar;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * barファイルの読み込みと並行して、WebDavファイルの登録とユーザデータの一括登録を実行するクラス.
+ * <p>
+ * barファイルの読み込み(展開)は呼び出し元のスレッドで行い、WebDavファイルの登録は登録用のスレッドに、
+ * ユーザデータの一括登録は指定した数まで並行して実行するスレッドに渡す。
+ * 登録待ちのWebDavファイルはメモリ上に保持するため、合計サイズの上限に達した場合は空きができるまで読み込みを待ち合わせる。
+ * いずれかの登録に失敗した場合は{@link #isFailed()}がtrueとなり、呼び出し元は以降の読み込みを中止する。
+ * 登録処理で例外が発生した場合は、最初に発生した例外を{@link #isFailed()}及び待ち合わせの際に呼び出し元のスレッドでスローする。
+ * </p>
+ */
+class BarInstallPipeline {
+
+    static Logger log = LoggerFactory.getLogger(BarInstallPipeline.class);
+
+    private static final int KB = 1024;
+
+    private final ExecutorService davExecutor;
+    private final ExecutorService bulkExecutor;
+    private final int davBufferKb;
+    private final Semaphore davPermits;
+    private final Semaphore bulkPermits;
+    private final List<Future<Boolean>> davFutures = new ArrayList<Future<Boolean>>();
+    private final List<Future<Boolean>> bulkFutures = new ArrayList<Future<Boolean>>();
+    private volatile boolean failed = false;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    /**
+     * コンストラクタ.
+     * @param davWriteThreads WebDavファイルを登録するスレッド数
+     * @param davWriteBufferSize 登録待ちのWebDavファイルを保持する合計サイズの上限(MB)
+     * @param bulkConcurrency 並行して実行するユーザデータ一括登録の数
+     */
+    BarInstallPipeline(int davWriteThreads, int davWriteBufferSize, int bulkConcurrency) {
+        this.davExecutor = Executors.newFixedThreadPool(davWriteThreads);
+        this.bulkExecutor = Executors.newFixedThreadPool(bulkConcurrency);
+        this.davBufferKb = davWriteBufferSize * KB;
+        this.davPermits = new Semaphore(this.davBufferKb);
+        this.bulkPermits = new Semaphore(bulkConcurrency);
+    }
+
+    /**
+     * いずれかの登録に失敗したか否かを返す.
+     * 登録処理で例外が発生していた場合は、その例外をスローする。
+     * @return 失敗している場合はtrue
+     */
+    boolean isFailed() {
+        rethrowFailure();
+        return failed;
+    }
+
+    /**
+     * WebDavファイルの登録を投入する.
+     * @param size 登録するファイルのサイズ(byte)
+     * @param task 登録処理. 成功した場合はtrueを返すこと
+     * @throws InterruptedException 待ち合わせ中に割り込まれた場合
+     */
+    void submitDavWrite(long size, Callable<Boolean> task) throws InterruptedException {
+        // 上限を超えるサイズのファイルも登録できるよう、確保するサイズは上限までとする
+        int permits = (int) Math.max(1, Math.min(davBufferKb, size / KB));
+        davPermits.acquire(permits);
+        pruneDone(davFutures);
+        davFutures.add(davExecutor.submit(wrap(task, davPermits, permits)));
+    }
+
+    /**
+     * ユーザデータの一括登録を投入する.
+     * 並行数の上限に達している場合は、実行中の一括登録が完了するまで待ち合わせる。
+     * @param task 一括登録処理. 成功した場合はtrueを返すこと
+     * @throws InterruptedException 待ち合わせ中に割り込まれた場合
+     */
+    void submitBulk(Callable<Boolean> task) throws InterruptedException {
+        bulkPermits.acquire();
+        pruneDone(bulkFutures);
+        bulkFutures.add(bulkExecutor.submit(wrap(task, bulkPermits, 1)));
+    }
+
+    /**
+     * 投入済みのユーザデータ一括登録の完了を待ち合わせる.
+     * 登録処理で例外が発生していた場合は、その例外をスローする。
+     * @return 全ての登録が成功している場合はtrue
+     * @throws InterruptedException 待ち合わせ中に割り込まれた場合
+     */
+    boolean awaitBulks() throws InterruptedException {
+        await(bulkFutures);
+        rethrowFailure();
+        return !failed;
+    }
+
+    /**
+     * 投入済みの全ての登録の完了を待ち合わせる.
+     * 登録処理で例外が発生していた場合は、その例外をスローする。
+     * @return 全ての登録が成功している場合はtrue
+     * @throws InterruptedException 待ち合わせ中に割り込まれた場合
+     */
+    boolean awaitAll() throws InterruptedException {
+        await(bulkFutures);
+        await(davFutures);
+        rethrowFailure();
+        return !failed;
+    }
+
+    /**
+     * スレッドを停止する.
+     * 実行中の登録は中断せず、完了まで待ち合わせる。
+     */
+    void shutdown() {
+        davExecutor.shutdown();
+        bulkExecutor.shutdown();
+        try {
+            while (!davExecutor.awaitTermination(1, TimeUnit.MINUTES)
+                    || !bulkExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Waiting for bar install tasks to terminate.");
+            }
+        } catch (InterruptedException e) {
+            davExecutor.shutdownNow();
+            bulkExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Callable<Boolean> wrap(final Callable<Boolean> task, final Semaphore semaphore, final int permits) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                try {
+                    // 先行する登録が失敗している場合は実行しない
+                    if (failed) {
+                        return false;
+                    }
+                    if (!task.call()) {
+                        failed = true;
+                        return false;
+                    }
+                    return true;
+                } catch (Exception e) {
+                    log.info("Bar install task failed: " + e.getMessage(), e);
+                    fail(e);
+                    return false;
+                } finally {
+                    semaphore.release(permits);
+                }
+            }
+        };
+    }
+
+    private void await(List<Future<Boolean>> futures) throws InterruptedException {
+        for (Future<Boolean> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // wrap()で捕捉しないErrorが発生した場合
+                fail(e.getCause());
+            }
+        }
+        futures.clear();
+    }
+
+    private void fail(Throwable e) {
+        failure.compareAndSet(null, e);
+        failed = true;
+    }
+
+    /**
+     * 登録処理で最初に発生した例外を、呼び出し元のスレッドでスローする.
+     * 従来どおり呼び出し元で例外として扱えるよう、非チェック例外はそのままスローする。
+     */
+    private void rethrowFailure() {
+        Throwable e = failure.get();
+        if (e == null) {
+            return;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IllegalStateException(e.getMessage(), e);
+    }
+
+    private static void pruneDone(List<Future<Boolean>> futures) {
+        Iterator<Future<Boolean>> it = futures.iterator();
+        while (it.hasNext()) {
+            if (it.next().isDone()) {
+                it.remove();
+            }
+        }
+    }
+}
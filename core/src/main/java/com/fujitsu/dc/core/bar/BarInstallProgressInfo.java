@@ -45,6 +45,7 @@ public class BarInstallProgressInfo implements ProgressInfo {
     private long progressCount = 0L;
     private int progressInPercent = 0;
     private int lastPercent = 0;
+    private volatile int queuePosition = 0;
 
     /**
      * コンストラクタ.
@@ -161,6 +162,18 @@ public class BarInstallProgressInfo implements ProgressInfo {
     public String getProgress() {
         return progressInPercent + "%";
     }
+    /**
+     * @return 実行待ちの順番(1始まり). 実行中・実行済みの場合は0
+     */
+    public int getQueuePosition() {
+        return queuePosition;
+    }
+    /**
+     * @param queuePosition 実行待ちの順番(1始まり). 実行を開始した場合は0
+     */
+    public void setQueuePosition(int queuePosition) {
+        this.queuePosition = queuePosition;
+    }
     /**
      * @return the message
      */
@@ -192,6 +205,9 @@ public class BarInstallProgressInfo implements ProgressInfo {
         barInfoJson.put("started_at", getStartTime());
         barInfoJson.put("status", getStatus().toString());
         barInfoJson.put("progress", getProgress());
+        if (this.queuePosition > 0) {
+            barInfoJson.put("queue_position", this.queuePosition);
+        }
         if (this.status == STATUS.FAILED) {
             barInfoJson.put("message", getMessage());
         }
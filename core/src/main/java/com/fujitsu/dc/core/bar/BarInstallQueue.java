@@ -0,0 +1,232 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.bar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+
+/**
+ * barインストール処理の実行キュー.
+ * <p>
+ * barインストールは同時実行数を制限したスレッドプールで実行する。
+ * 実行待ちのインストールはユニットユーザ(Cellのオーナー)ごとのキューに登録順で保持し、
+ * ユニットユーザ間では順番に(ラウンドロビンで)取り出すことで、特定のユニットユーザがスレッドを占有しないようにする。
+ * ただし、待ち時間が一定時間を超えたインストールはユニットユーザに関係なく優先して実行する(エージング)。
+ * 実行待ちの間は、実行順序をbarインストールの処理状況(queue_position)として出力する。
+ * </p>
+ */
+public final class BarInstallQueue {
+
+    static Logger log = LoggerFactory.getLogger(BarInstallQueue.class);
+
+    private static final long THREAD_KEEP_ALIVE_SEC = 60L;
+    private static final long MILLIS_PER_SEC = 1000L;
+
+    /** barインストールを実行するスレッドプール. */
+    private static ThreadPoolExecutor executor;
+    /** ユニットユーザごとの実行待ちインストール. */
+    private static Map<String, LinkedList<Job>> queues = new HashMap<String, LinkedList<Job>>();
+    /** 実行待ちインストールが存在するユニットユーザ(先頭が次に取り出す対象). */
+    private static LinkedList<String> owners = new LinkedList<String>();
+    private static boolean shuttingDown = false;
+
+    private BarInstallQueue() {
+    }
+
+    /**
+     * 実行待ちのインストール.
+     */
+    static class Job {
+        private final BarFileReadRunner runner;
+        private final String owner;
+        private final long queuedAt;
+
+        Job(BarFileReadRunner runner, String owner) {
+            this.runner = runner;
+            this.owner = owner;
+            this.queuedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * barインストールを実行キューに登録する.
+     * @param runner barインストール処理
+     * @param owner インストール先Cellのユニットユーザ(オーナー)
+     */
+    public static void submit(BarFileReadRunner runner, String owner) {
+        String key = owner;
+        if (key == null) {
+            key = "";
+        }
+        synchronized (BarInstallQueue.class) {
+            if (shuttingDown) {
+                runner.writeShutdownProgressCache();
+                return;
+            }
+            LinkedList<Job> queue = queues.get(key);
+            if (queue == null) {
+                queue = new LinkedList<Job>();
+                queues.put(key, queue);
+                owners.addLast(key);
+            }
+            queue.addLast(new Job(runner, key));
+            updateQueuePositions();
+            // 実行スレッドは空いている順に、その時点で最も優先度の高いインストールを取り出して実行する
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    Job job = poll();
+                    if (job != null) {
+                        job.runner.run();
+                    }
+                }
+            });
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            int concurrency = DcCoreConfig.getBarInstallConcurrency();
+            executor = new ThreadPoolExecutor(concurrency, concurrency, THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            // インストール対象がない間はスレッドを残さない
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * 次に実行するインストールを取り出す.
+     * @return 実行するインストール. 実行待ちがない場合はnull
+     */
+    private static synchronized Job poll() {
+        if (shuttingDown) {
+            return null;
+        }
+        Job job = peekNext(queues, owners);
+        if (job == null) {
+            return null;
+        }
+        remove(queues, owners, job);
+        job.runner.setQueuePosition(0);
+        updateQueuePositions();
+        return job;
+    }
+
+    /**
+     * 次に実行するインストールを返す. 取り出しは行わない.
+     * 待ち時間がエージング時間を超えたインストールがあれば、そのうち最も古いものを返す。
+     * それ以外の場合は、ラウンドロビンで次のユニットユーザの先頭のインストールを返す。
+     */
+    private static Job peekNext(Map<String, LinkedList<Job>> jobQueues, LinkedList<String> jobOwners) {
+        if (jobOwners.isEmpty()) {
+            return null;
+        }
+        long agingMillis = DcCoreConfig.getBarInstallQueueAgingInSec() * MILLIS_PER_SEC;
+        long now = System.currentTimeMillis();
+        Job oldest = null;
+        for (String owner : jobOwners) {
+            Job head = jobQueues.get(owner).getFirst();
+            if (oldest == null || head.queuedAt < oldest.queuedAt) {
+                oldest = head;
+            }
+        }
+        if (now - oldest.queuedAt >= agingMillis) {
+            return oldest;
+        }
+        return jobQueues.get(jobOwners.getFirst()).getFirst();
+    }
+
+    /**
+     * インストールをキューから取り除き、取り出したユニットユーザを巡回順の末尾に回す.
+     */
+    private static void remove(Map<String, LinkedList<Job>> jobQueues, LinkedList<String> jobOwners, Job job) {
+        LinkedList<Job> queue = jobQueues.get(job.owner);
+        queue.removeFirst();
+        jobOwners.remove(job.owner);
+        if (queue.isEmpty()) {
+            jobQueues.remove(job.owner);
+        } else {
+            jobOwners.addLast(job.owner);
+        }
+    }
+
+    /**
+     * 実行待ちのインストールに、現時点で想定される実行順序を通知する.
+     */
+    private static void updateQueuePositions() {
+        // 取り出し処理をキューの複製に対して模擬して実行順序を求める
+        Map<String, LinkedList<Job>> copiedQueues = new HashMap<String, LinkedList<Job>>();
+        for (Map.Entry<String, LinkedList<Job>> entry : queues.entrySet()) {
+            copiedQueues.put(entry.getKey(), new LinkedList<Job>(entry.getValue()));
+        }
+        LinkedList<String> copiedOwners = new LinkedList<String>(owners);
+        int position = 1;
+        Job job = null;
+        while ((job = peekNext(copiedQueues, copiedOwners)) != null) {
+            remove(copiedQueues, copiedOwners, job);
+            job.runner.setQueuePosition(position++);
+        }
+    }
+
+    /**
+     * 実行キューを停止する.
+     * 実行待ちのインストールは開始せず、処理状況を失敗として記録する。
+     * 実行中のインストールは中断を要求し、一定時間終了を待ち合わせる。
+     */
+    public static void shutdown() {
+        List<Job> pending = new ArrayList<Job>();
+        ThreadPoolExecutor running = null;
+        synchronized (BarInstallQueue.class) {
+            shuttingDown = true;
+            for (LinkedList<Job> queue : queues.values()) {
+                pending.addAll(queue);
+            }
+            queues.clear();
+            owners.clear();
+            running = executor;
+        }
+        for (Job job : pending) {
+            job.runner.writeShutdownProgressCache();
+        }
+        if (running == null) {
+            return;
+        }
+        log.info("Shutting down bar install executor. pending: " + pending.size()
+                + ", running: " + running.getActiveCount());
+        running.shutdownNow();
+        try {
+            long awaitShutdownInSec = DcCoreConfig.getBarInstallAwaitShutdownInSec();
+            if (!running.awaitTermination(awaitShutdownInSec, TimeUnit.SECONDS)) {
+                log.warn("Shutting down timed out. Bar install executor have not been terminated.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.bar;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.UriInfo;
+
+import org.odata4j.core.OEntity;
+import org.odata4j.core.OProperty;
+import org.odata4j.format.json.JsonWriter;
+
+import com.fujitsu.dc.core.model.ctl.Common;
+import com.fujitsu.dc.core.odata.DcJsonFormatWriter;
+import com.fujitsu.dc.core.odata.DcJsonWriter;
+
+/**
+ * barファイルの90_data配下に格納するユーザデータのJSONを出力するクラス.
+ * ユーザデータ登録時のリクエストボディと同じ形式で出力し、__metadataや__published等のシステム項目は出力しない.
+ */
+class UserDataJsonWriter extends DcJsonFormatWriter<OEntity> {
+
+    /**
+     * コンストラクタ.
+     */
+    UserDataJsonWriter() {
+        super(null);
+    }
+
+    @Override
+    public void write(UriInfo uriInfo, Writer w, OEntity target) {
+        writeContent(uriInfo, new DcJsonWriter(w), target);
+    }
+
+    @Override
+    protected void writeContent(UriInfo uriInfo, JsonWriter jw, OEntity target) {
+        List<OProperty<?>> properties = new ArrayList<OProperty<?>>();
+        for (OProperty<?> property : target.getProperties()) {
+            String name = property.getName();
+            if (Common.P_PUBLISHED.getName().equals(name) || Common.P_UPDATED.getName().equals(name)) {
+                continue;
+            }
+            properties.add(property);
+        }
+        jw.startObject();
+        writeOProperties(jw, properties);
+        jw.endObject();
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.cell;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.json.simple.JSONObject;
+
+import com.fujitsu.dc.core.model.progress.ProgressInfo;
+
+/**
+ * Cell一括削除用非同期処理状況オブジェクト.
+ */
+public class CellBulkDeletionProgressInfo implements ProgressInfo {
+
+    private static final int PERCENTAGE = 100;
+    private static final String PROCESS_NAME = "cellBulkDeletion";
+
+    private String cellId;
+    private String cellName;
+    private String queuedTime;
+    private String startTime;
+    private String endTime;
+    private STATUS status;
+
+    private long davFileCount = 0L;
+    private long deletedCount = 0L;
+    private long failedCount = 0L;
+
+    /**
+     * コンストラクタ.
+     * @param cellId Cellのuuid
+     * @param cellName Cell名
+     */
+    public CellBulkDeletionProgressInfo(String cellId, String cellName) {
+        this.cellId = cellId;
+        this.cellName = cellName;
+        this.status = STATUS.PROCESSING;
+        this.queuedTime = now();
+    }
+
+    private static String now() {
+        SimpleDateFormat sdfIso8601ExtendedFormatUtc = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        sdfIso8601ExtendedFormatUtc.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return sdfIso8601ExtendedFormatUtc.format(new Date());
+    }
+
+    /**
+     * 削除処理の開始を記録する.
+     * @param count 削除対象のWebDavファイル数
+     */
+    public synchronized void start(long count) {
+        this.startTime = now();
+        this.davFileCount = count;
+    }
+
+    /**
+     * WebDavファイルの削除件数を更新する.
+     * @param deleted 削除したファイル数（増分）
+     * @param failed 削除に失敗したファイル数（増分）
+     */
+    public synchronized void addDelta(long deleted, long failed) {
+        this.deletedCount += deleted;
+        this.failedCount += failed;
+    }
+
+    /**
+     * 削除処理の終了を記録する.
+     * @param result 終了時の処理状況
+     */
+    public synchronized void end(STATUS result) {
+        this.endTime = now();
+        this.status = result;
+    }
+
+    /**
+     * @return the process
+     */
+    public String getProcessName() {
+        return PROCESS_NAME;
+    }
+
+    /**
+     * @return the cellId
+     */
+    public String getCellId() {
+        return cellId;
+    }
+
+    /**
+     * @return the status
+     */
+    public synchronized STATUS getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the progress
+     */
+    public synchronized String getProgress() {
+        if (this.status == STATUS.COMPLETED) {
+            return PERCENTAGE + "%";
+        }
+        if (this.davFileCount <= 0) {
+            return "0%";
+        }
+        long processed = Math.min(this.deletedCount + this.failedCount, this.davFileCount);
+        return (int) (((double) processed * PERCENTAGE) / this.davFileCount) + "%";
+    }
+
+    /**
+     * 保存されているデータの内容をJSON形式で取得する.
+     * @return JSONオブジェクト.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized JSONObject getJsonObject() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("process", getProcessName());
+        JSONObject info = new JSONObject();
+        jsonObject.put("cellBulkDeletionInfo", info);
+        info.put("cell_id", this.cellId);
+        info.put("cell_name", this.cellName);
+        info.put("queued_at", this.queuedTime);
+        info.put("started_at", this.startTime);
+        info.put("ended_at", this.endTime);
+        info.put("status", this.status.toString());
+        info.put("progress", getProgress());
+        info.put("davfile_count", this.davFileCount);
+        info.put("deleted_davfile_count", this.deletedCount);
+        info.put("failed_davfile_count", this.failedCount);
+        return jsonObject;
+    }
+
+    /**
+     * 保存されているデータの内容をJSON文字列で取得する.
+     * @return JSON文字列
+     */
+    public String toString() {
+        return getJsonObject().toJSONString();
+    }
+}
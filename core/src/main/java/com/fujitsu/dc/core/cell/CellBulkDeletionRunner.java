@@ -16,11 +16,20 @@
  */
 package com.fujitsu.dc.core.cell;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.common.es.response.DcSearchHit;
+import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.event.EventUtils;
 import com.fujitsu.dc.core.model.Cell;
@@ -28,20 +37,37 @@ import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
 import com.fujitsu.dc.core.model.impl.es.accessor.CellAccessor;
+import com.fujitsu.dc.core.model.progress.Progress;
+import com.fujitsu.dc.core.model.progress.ProgressInfo;
+import com.fujitsu.dc.core.model.progress.ProgressManager;
 
 /**
  * Cell配下のリソースを削除するスレッドクラス.
+ * <p>
+ * 削除処理は{@link #submit()}によりキューに登録し、バックグラウンドのスレッドプールで順に実行する。
+ * WebDavファイルはスクロールサーチで列挙し、専用のスレッドプールで並行して削除する。
+ * ファイル削除の流量は全ジョブ合計で1秒あたりの上限を設け、通常のリクエスト処理のI/Oを圧迫しないようにする。
+ * 処理状況は{@link ProgressManager}に「cell-{CellのID}」をキーとして出力する。
+ * </p>
  */
 public class CellBulkDeletionRunner implements Runnable {
 
-    private static final int DAVFILE_DEFAULT_FETCH_COUNT = 1000;
+    private static final long THREAD_KEEP_ALIVE_SEC = 60L;
 
     /**
      * ログ用オブジェクト.
      */
     static Logger log = LoggerFactory.getLogger(CellBulkDeletionRunner.class);
 
+    /** Cell一括削除ジョブを実行するスレッドプール. */
+    private static ThreadPoolExecutor jobExecutor;
+    /** WebDavファイルを並行して削除するスレッドプール. */
+    private static ThreadPoolExecutor blobDeletionExecutor;
+    /** 次にWebDavファイルの削除を開始してよい時刻(System.nanoTime()基準). */
+    private static long nextDeletionTime = System.nanoTime();
+
     Cell cell;
+    CellBulkDeletionProgressInfo progressInfo;
 
     /**
      * コンストラクタ.
@@ -49,12 +75,57 @@ public class CellBulkDeletionRunner implements Runnable {
      */
     public CellBulkDeletionRunner(Cell cell) {
         this.cell = cell;
+        this.progressInfo = new CellBulkDeletionProgressInfo(cell.getId(), cell.getName());
+    }
+
+    /**
+     * 削除処理をキューに登録する.
+     */
+    public void submit() {
+        writeToProgressCache();
+        getJobExecutor().execute(this);
+    }
+
+    private static synchronized ThreadPoolExecutor getJobExecutor() {
+        if (jobExecutor == null) {
+            int workers = DcCoreConfig.getCellBulkDeletionWorkers();
+            jobExecutor = new ThreadPoolExecutor(workers, workers, THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            // 削除対象がない間はスレッドを残さない
+            jobExecutor.allowCoreThreadTimeOut(true);
+        }
+        return jobExecutor;
+    }
+
+    private static synchronized ThreadPoolExecutor getBlobDeletionExecutor() {
+        if (blobDeletionExecutor == null) {
+            int threads = DcCoreConfig.getCellBulkDeletionBlobDeletionThreads();
+            blobDeletionExecutor = new ThreadPoolExecutor(threads, threads, THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            blobDeletionExecutor.allowCoreThreadTimeOut(true);
+        }
+        return blobDeletionExecutor;
     }
 
     /**
      * Cell配下のリソースを削除する処理.
      */
     public void run() {
+        try {
+            execute();
+            this.progressInfo.end(ProgressInfo.STATUS.COMPLETED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Cell Bulk Deletion Interrupted. CellId:[" + this.cell.getId() + "]");
+            this.progressInfo.end(ProgressInfo.STATUS.FAILED);
+        } catch (RuntimeException e) {
+            log.warn("Cell Bulk Deletion Failed. CellId:[" + this.cell.getId() + "]", e);
+            this.progressInfo.end(ProgressInfo.STATUS.FAILED);
+        }
+        writeToProgressCache();
+    }
+
+    private void execute() throws InterruptedException {
         CellAccessor cellAccessor = (CellAccessor) EsModel.cell();
 
         String cellId = this.cell.getId();
@@ -62,29 +133,70 @@ public class CellBulkDeletionRunner implements Runnable {
         String cellOwner = this.cell.getOwner();
         String unitUserName = this.cell.getUnitUserName();
         String unitUserNameWithOutPrefix = this.cell.getUnitUserNameWithOutPrefix();
-        String cellInfoLog = String.format(" CellId:[%s], CellName:[%s], CellUnitUserName:[%s]", cellId, cellName,
-                unitUserName);
+        final String cellInfoLog = String.format(" CellId:[%s], CellName:[%s], CellUnitUserName:[%s]", cellId,
+                cellName, unitUserName);
 
         // セルIDとタイプ情報をクエリに使用してWebDavファイルの管理情報一覧の件数を取得する
         long davfileCount = cellAccessor.getDavFileTotalCount(cellId, unitUserNameWithOutPrefix);
+        this.progressInfo.start(davfileCount);
+        writeToProgressCache();
 
-        // 1000件ずつ、WebDavファイルの管理情報件数まで以下を実施する
-        int fetchCount = DAVFILE_DEFAULT_FETCH_COUNT;
-        BinaryDataAccessor accessor = new BinaryDataAccessor(
+        // WebDavファイルの管理情報をスクロールサーチで列挙し、取得した単位で並行して削除する
+        final BinaryDataAccessor accessor = new BinaryDataAccessor(
                 DcCoreConfig.getBlobStoreRoot(), unitUserNameWithOutPrefix, DcCoreConfig.getPhysicalDeleteMode());
-        for (int i = 0; i <= davfileCount; i += fetchCount) {
-            // WebDavファイルのID一覧を取得する
-            List<String> davFileIdList = cellAccessor.getDavFileIdList(
-                                                         cellId, unitUserNameWithOutPrefix, fetchCount, i);
-            // BinaryDataAccessorのdeleteメソッドにて「.deleted」にリネームする
-            for (String davFileId : davFileIdList) {
-                try {
-                    accessor.delete(davFileId);
-                } catch (BinaryDataAccessException e) {
-                    // 削除に失敗した場合はログを出力して処理を続行する
-                    log.warn(String.format("Delete DavFile Failed DavFileId:[%s].", davFileId) + cellInfoLog, e);
+        DcSearchResponse response = cellAccessor.startDavFileIdScroll(cellId, unitUserNameWithOutPrefix,
+                DcCoreConfig.getCellBulkDeletionFetchCount());
+        String scrollId = response.getScrollId();
+        while (true) {
+            response = cellAccessor.scrollDavFileIdList(scrollId);
+            DcSearchHit[] hits = response.getHits().getHits();
+            if (hits.length == 0) {
+                break;
+            }
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (DcSearchHit hit : hits) {
+                final String davFileId = hit.getId();
+                futures.add(getBlobDeletionExecutor().submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                        acquireDeletionPermit();
+                        // BinaryDataAccessorのdeleteメソッドにて「.deleted」にリネームする
+                        try {
+                            accessor.delete(davFileId);
+                            return true;
+                        } catch (BinaryDataAccessException e) {
+                            // 削除に失敗した場合はログを出力して処理を続行する
+                            log.warn(String.format("Delete DavFile Failed DavFileId:[%s].", davFileId)
+                                    + cellInfoLog, e);
+                            return false;
+                        }
+                    }
+                }));
+            }
+            long deleted = 0;
+            long failed = 0;
+            try {
+                for (Future<Boolean> future : futures) {
+                    try {
+                        if (future.get()) {
+                            deleted++;
+                        } else {
+                            failed++;
+                        }
+                    } catch (ExecutionException e) {
+                        log.warn("Delete DavFile Failed." + cellInfoLog, e.getCause());
+                        failed++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                for (Future<Boolean> future : futures) {
+                    future.cancel(true);
                 }
+                throw e;
             }
+            this.progressInfo.addDelta(deleted, failed);
+            writeToProgressCache();
+            scrollId = response.getScrollId();
         }
         log.info("DavFile Deletion End.");
 
@@ -101,4 +213,41 @@ public class CellBulkDeletionRunner implements Runnable {
         cellAccessor.cellBulkDeletion(cellId, unitUserNameWithOutPrefix);
         log.info("Cell Entity Resource Deletion End.");
     }
+
+    /**
+     * WebDavファイルの削除を開始してよい時刻まで待ち合わせる.
+     * 1秒あたりの削除数の上限は、実行中の全ジョブで共有する。
+     * @throws InterruptedException 待ち合わせ中に割り込まれた場合
+     */
+    static void acquireDeletionPermit() throws InterruptedException {
+        int perSec = DcCoreConfig.getCellBulkDeletionBlobDeletionPerSec();
+        if (perSec <= 0) {
+            return;
+        }
+        long wait;
+        synchronized (CellBulkDeletionRunner.class) {
+            long now = System.nanoTime();
+            if (nextDeletionTime - now < 0) {
+                nextDeletionTime = now;
+            }
+            wait = nextDeletionTime - now;
+            nextDeletionTime += TimeUnit.SECONDS.toNanos(1) / perSec;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * キャッシュへCell一括削除の処理状況を出力する.
+     */
+    private void writeToProgressCache() {
+        String key = "cell-" + this.cell.getId();
+        try {
+            ProgressManager.putProgress(key, new Progress(key, this.progressInfo.toString()));
+        } catch (RuntimeException e) {
+            // 処理状況の出力に失敗しても削除処理は続行する
+            log.info("Failed to write progress(" + key + ").", e);
+        }
+    }
 }
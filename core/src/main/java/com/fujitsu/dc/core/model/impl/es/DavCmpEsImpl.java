@@ -68,6 +68,7 @@ import com.fujitsu.dc.common.auth.token.Role;
 import com.fujitsu.dc.common.es.response.DcActionResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcSearchHit;
 import com.fujitsu.dc.common.es.response.DcSearchHits;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
@@ -396,44 +397,68 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
             return res;
         }
 
-        DcSearchResponse resp = getChildResource();
-        if (resp == null) {
+        Map<String, String> children = this.davNode.getChildren();
+        if (children == null || children.isEmpty()) {
             return res;
         }
 
-        DcSearchHit[] hits = resp.getHits().getHits();
+        // 子要素はnodeIdが既知のため、検索ではなくIDを指定した一括取得を一定件数ずつ行い、Responseを追加する
+        int pageSize = DcCoreConfig.getPropfindMultiGetSize();
+        List<String> pageNames = new ArrayList<String>();
+        Iterator<String> itr = children.keySet().iterator();
+        while (itr.hasNext()) {
+            pageNames.add(itr.next());
+            if (pageNames.size() >= pageSize || !itr.hasNext()) {
+                addChildResponses(resps, pageNames, children, reqUri, propfind, isAclRead);
+                pageNames.clear();
+            }
+        }
 
-        if (hits.length == 0) {
-            return res;
+        return res;
+    }
+
+    /**
+     * 指定された子リソースの情報を一括取得し、Responseを追加する.
+     * @param resps 追加先のResponseのリスト
+     * @param childNames 子リソース名のリスト
+     * @param children 子リソース名とnodeIdの対応
+     * @param reqUri リクエストURI
+     * @param propfind Propfind
+     * @param isAclRead ACL読み込み権限の有無
+     */
+    private void addChildResponses(List<org.apache.wink.webdav.model.Response> resps, List<String> childNames,
+            Map<String, String> children, String reqUri, Propfind propfind, boolean isAclRead) {
+        List<String> ids = new ArrayList<String>();
+        for (String childName : childNames) {
+            ids.add(children.get(childName));
         }
 
         // 子要素をnodeIdをキーに格納
         final Map<String, Map<String, Object>> mapJson = new HashMap<String, Map<String, Object>>();
-        for (DcSearchHit hit : hits) {
-            String id = hit.getId();
-            Map<String, Object> childJson = hit.getSource();
-            mapJson.put(id, childJson);
+        DcMultiGetResponse resp = this.getEsColType().multiGet(ids);
+        if (resp == null) {
+            return;
+        }
+        for (DcGetResponse getResp : resp) {
+            mapJson.put(getResp.getId(), getResp.getSource());
         }
 
-        // Responseを追加
-        Iterator<String> itr = this.davNode.getChildren().keySet().iterator();
-        while (itr.hasNext()) {
-            String childName = itr.next();
-            String childNodeId = this.davNode.getChildren().get(childName);
-            Map<String, Object> childJson = mapJson.get(childNodeId);
-
+        for (String childName : childNames) {
+            Map<String, Object> childJson = mapJson.get(children.get(childName));
+            if (childJson == null) {
+                // 取得中に削除された子リソースはResponseに含めない
+                continue;
+            }
+            String encodedName = childName;
             try {
-                childName = URLEncoder.encode(childName, "UTF-8");
+                encodedName = URLEncoder.encode(childName, "UTF-8");
             } catch (UnsupportedEncodingException e) {
                 log.debug("UnsupportedEncodingException:" + childName);
             }
-            org.apache.wink.webdav.model.Response rs = this.createDavResponse(childName, reqUri + "/" + childName,
-                    childJson, propfind, isAclRead);
+            org.apache.wink.webdav.model.Response rs = this.createDavResponse(encodedName,
+                    reqUri + "/" + encodedName, childJson, propfind, isAclRead);
             resps.add(rs);
-
         }
-
-        return res;
     }
 
     /**
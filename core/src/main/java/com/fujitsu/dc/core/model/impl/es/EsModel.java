@@ -91,6 +91,13 @@ public class EsModel {
             }
         });
 
+        // 同一内容の読み込みリクエストの集約有無を設定
+        EsClient.setReadCoalescingEnabled(DcCoreConfig.isEsReadCoalescingEnabled());
+        // 接続先ノードの取得方法と、読み込みリクエストの送信先ノードの選択方針を設定
+        EsClient.setSniff(DcCoreConfig.isEsClientSniff());
+        EsClient.setNodeSelection(DcCoreConfig.getEsNodeSelectionMode(),
+                DcCoreConfig.getEsNodeSelectionRackAttribute(), DcCoreConfig.getEsNodeSelectionLocalRack());
+
         esClient = new EsClient(DcCoreConfig.getEsClusterName(), DcCoreConfig.getEsHosts());
     }
 
@@ -17,6 +17,7 @@
 package com.fujitsu.dc.core.model.impl.es;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,20 @@ public final class QueryMapFactory {
         return query;
     }
 
+    /**
+     * idsクエリの情報を格納したMapのインスタンスを生成して返却する.
+     * @param ids 検索対象のID一覧
+     * @return 入力値を格納したMap
+     */
+    public static Map<String, Object> idsQuery(Collection<String> ids) {
+        Map<String, Object> query = new HashMap<String, Object>();
+        Map<String, Object> values = new HashMap<String, Object>();
+
+        values.put("values", new ArrayList<String>(ids));
+        query.put("ids", values);
+        return query;
+    }
+
     /**
      * sortクエリの情報を格納したMapのインスタンスを生成して返却する.
      * @param key ソートキー
@@ -95,6 +95,35 @@ public class CellAccessor extends AbstractEntitySetAccessor {
         return davFileIdList;
     }
 
+    /**
+     * セル配下のDavFileID一覧を取得するスクロールサーチを開始する.
+     * 取得開始位置を指定した検索と異なり、件数が多い場合でも取得位置に比例して検索コストが増加しない。
+     * スキャン検索のため、最初の応答にはDavFileIDは含まれない。続きは{@link #scrollDavFileIdList(String)}で取得すること。
+     * @param cellId 削除対象のセルID
+     * @param unitUserName ユニットユーザ名
+     * @param size 1回のスクロールで各シャードから取得する件数
+     * @return 検索結果
+     */
+    public DcSearchResponse startDavFileIdScroll(String cellId, String unitUserName, int size) {
+        // CellAccessorはadインデックスに対するアクセスのため、ユニットユーザ側のアクセッサを取得
+        DataSourceAccessor accessor = EsModel.dsa(unitUserName);
+
+        Map<String, Object> searchQuery = getDavFileFilterQuery(cellId);
+        searchQuery.put("size", size);
+        // IDのみを取得する
+        searchQuery.put("_source", false);
+        return EsModel.client().scrollSearch(accessor.getIndex().getName(), null, searchQuery);
+    }
+
+    /**
+     * セル配下のDavFileID一覧を取得するスクロールサーチを継続する.
+     * @param scrollId スクロールID
+     * @return 検索結果
+     */
+    public DcSearchResponse scrollDavFileIdList(String scrollId) {
+        return EsModel.client().scrollSearch(scrollId);
+    }
+
     private Map<String, Object> getDavFileFilterQuery(String cellId) {
         Map<String, Object> cellQuery = new HashMap<String, Object>();
         cellQuery.put("c", cellId);
@@ -145,6 +174,16 @@ public class CellAccessor extends AbstractEntitySetAccessor {
     protected void createAds(EntitySetDocHandler docHandler) {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    docHandler.getUnitUserName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             String unitUserName = docHandler.getUnitUserName();
             try {
                 getAds().createCell(unitUserName, docHandler);
@@ -160,24 +199,12 @@ public class CellAccessor extends AbstractEntitySetAccessor {
                         DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e1.getMessage()).reason(e1).writeLog();
 
                         // Adsの登録に失敗した場合は、専用のログに書込む
-                        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                                docHandler.getCellId(), null, null);
-                        AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                                docHandler.getUnitUserName(), docHandler.getType(), lockKey,
-                                docHandler.getCellId(), docHandler.getId(),
-                                AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
                         recordAdsWriteFailureLog(loginfo);
                     }
                 } else {
                     DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                     // Adsの登録に失敗した場合は、専用のログに書込む
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, null);
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            docHandler.getUnitUserName(), docHandler.getType(), lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
                     recordAdsWriteFailureLog(loginfo);
                 }
             }
@@ -193,18 +220,22 @@ public class CellAccessor extends AbstractEntitySetAccessor {
     protected void updateAds(EntitySetDocHandler docHandler, long version) {
         // 更新に成功した場合、マスタデータを更新する
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    docHandler.getUnitUserName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().updateCell(docHandler.getUnitUserName(), docHandler);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        docHandler.getUnitUserName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -222,18 +253,22 @@ public class CellAccessor extends AbstractEntitySetAccessor {
 
         // 削除に成功した場合、マスタデータを削除する
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    docHandler.getUnitUserName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().deleteCell(unitUserName, id);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        docHandler.getUnitUserName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
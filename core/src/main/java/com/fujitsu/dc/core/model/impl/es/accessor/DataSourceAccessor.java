@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,7 @@ import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.common.es.response.EsClientException;
@@ -46,6 +48,7 @@ import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsConnectionException;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteBehindQueue;
 import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
@@ -138,6 +141,22 @@ public class DataSourceAccessor {
         return this.type.getType();
     }
 
+    /**
+     * ドキュメントの複数件一括取得.
+     * 取得に失敗したドキュメントがある場合は、存在しないドキュメントとして扱わずにエラーとする.
+     * @param ids ドキュメントのIDのリスト
+     * @return 応答
+     */
+    public DcMultiGetResponse multiGet(final List<String> ids) {
+        try {
+            return this.type.multiGet(ids);
+        } catch (EsClientException.EsNoResponseException e) {
+            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        } catch (EsClientException.EsMultiGetItemFailedException e) {
+            throw DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+        }
+    }
+
     /**
      * ドキュメントの１件取得.
      * @param id ドキュメントのID
@@ -361,19 +380,30 @@ public class DataSourceAccessor {
             throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
         }
         if (this.ads != null) {
+            // 非同期書き込みが有効な場合は、キューに登録できなかったものだけを同期的に書き込む
+            List<EntitySetDocHandler> syncRequest = new ArrayList<EntitySetDocHandler>();
+            List<AdsWriteFailureLogInfo> syncLogInfo = new ArrayList<AdsWriteFailureLogInfo>();
+            for (EntitySetDocHandler docHandler : adsBulkRequest) {
+                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                        docHandler.getCellId(), null, docHandler.getNodeId());
+                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                        this.getIndex().getName(), docHandler.getType(), lockKey,
+                        docHandler.getCellId(), docHandler.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
+                if (!writeBehindAds(loginfo)) {
+                    syncRequest.add(docHandler);
+                    syncLogInfo.add(loginfo);
+                }
+            }
             try {
-                this.ads.bulkEntity(this.index.getName(), adsBulkRequest);
+                if (syncRequest.size() > 0) {
+                    this.ads.bulkEntity(this.index.getName(), syncRequest);
+                }
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
-                for (EntitySetDocHandler docHandler : adsBulkRequest) {
+                for (AdsWriteFailureLogInfo loginfo : syncLogInfo) {
                     // Adsの登録に失敗した場合は、専用のログに書込む
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), docHandler.getType(), lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
                     recordAdsWriteFailureLog(loginfo);
                 }
             }
@@ -403,52 +433,73 @@ public class DataSourceAccessor {
             throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
         }
         if (this.ads != null) {
+            // 非同期書き込みが有効な場合は、キューに登録できなかったものだけを同期的に書き込む
+            // ESでのバージョン情報を取得するためにesBulkRequestをループさせている
+            List<EntitySetDocHandler> syncEntityRequest = new ArrayList<EntitySetDocHandler>();
+            List<AdsWriteFailureLogInfo> syncEntityLogInfo = new ArrayList<AdsWriteFailureLogInfo>();
+            DcBulkItemResponse[] responseItems = response.items();
+            int responseIndex = 0;
+            int adsBulkEntityRequestIndex = 0;
+            for (EsBulkRequest request : esBulkRequest) {
+                if (adsBulkEntityRequestIndex >= adsBulkEntityRequest.size()) {
+                    break;
+                }
+                if (request.getType().equals(EsModel.TYPE_CTL_LINK)) {
+                    responseIndex++;
+                    continue;
+                }
+                DcBulkItemResponse itemResponse = responseItems[responseIndex++];
+                EntitySetDocHandler docHandler = adsBulkEntityRequest.get(adsBulkEntityRequestIndex++);
+                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                        docHandler.getCellId(), null, docHandler.getNodeId());
+                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                        this.getIndex().getName(), docHandler.getType(), lockKey,
+                        docHandler.getCellId(), docHandler.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, itemResponse.version(),
+                        docHandler.getUpdated());
+                if (!writeBehindAds(loginfo)) {
+                    syncEntityRequest.add(docHandler);
+                    syncEntityLogInfo.add(loginfo);
+                }
+            }
             try {
                 // Entityテーブル更新
-                if (adsBulkEntityRequest.size() > 0) {
-                    this.ads.bulkUpdateEntity(this.index.getName(), adsBulkEntityRequest);
+                if (syncEntityRequest.size() > 0) {
+                    this.ads.bulkUpdateEntity(this.index.getName(), syncEntityRequest);
                 }
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
-                // Adsの登録に失敗した場合は、専用のログに書込む
-                // ESでのバージョン情報を取得するためにesBulkRequestをループさせている
-                DcBulkItemResponse[] responseItems = response.items();
-                int responseIndex = 0;
-                int adsBulkEntityRequestIndex = 0;
-                for (EsBulkRequest request : esBulkRequest) {
-                    if (request.getType().equals(EsModel.TYPE_CTL_LINK)) {
-                        responseIndex++;
-                        continue;
-                    }
-                    DcBulkItemResponse itemResponse = responseItems[responseIndex++];
-                    EntitySetDocHandler docHandler = adsBulkEntityRequest.get(adsBulkEntityRequestIndex++);
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), docHandler.getType(), lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, itemResponse.version(),
-                            docHandler.getUpdated());
+                for (AdsWriteFailureLogInfo loginfo : syncEntityLogInfo) {
+                    // Adsの登録に失敗した場合は、専用のログに書込む
                     recordAdsWriteFailureLog(loginfo);
                 }
             }
+
+            List<LinkDocHandler> syncLinkRequest = new ArrayList<LinkDocHandler>();
+            List<AdsWriteFailureLogInfo> syncLinkLogInfo = new ArrayList<AdsWriteFailureLogInfo>();
+            for (LinkDocHandler docHandler : adsBulkLinkRequest) {
+                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                        docHandler.getCellId(), null, docHandler.getNodeId());
+                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                        this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
+                        docHandler.getCellId(), docHandler.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
+                if (!writeBehindAds(loginfo)) {
+                    syncLinkRequest.add(docHandler);
+                    syncLinkLogInfo.add(loginfo);
+                }
+            }
             try {
                 // Linkテーブル追加
-                if (adsBulkLinkRequest.size() > 0) {
-                    this.ads.bulkCreateLink(this.index.getName(), adsBulkLinkRequest);
+                if (syncLinkRequest.size() > 0) {
+                    this.ads.bulkCreateLink(this.index.getName(), syncLinkRequest);
                 }
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
-                for (LinkDocHandler docHandler : adsBulkLinkRequest) {
+                for (AdsWriteFailureLogInfo loginfo : syncLinkLogInfo) {
                     // Adsの登録に失敗した場合は、専用のログに書込む
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
                     recordAdsWriteFailureLog(loginfo);
                 }
             }
@@ -558,6 +609,24 @@ public class DataSourceAccessor {
         }
     }
 
+    /**
+     * Adsへの非同期書き込みが有効な場合、書き込み情報を非同期書き込みキューに登録する.
+     * キューが満杯のまま待ち時間を超えた場合など登録できなかった場合は、リペア用のエラー情報を書き込む。
+     * 同期的にAdsへ書き込むと、先に古いデータを読み込んだ非同期書き込みに上書きされるおそれがあるため、キューを迂回して書き込まない。
+     * @param loginfo 書き込み情報
+     * @return 非同期書き込みが有効な場合はtrue. falseの場合は呼び出し元で同期的にAdsへ書き込むこと
+     */
+    protected boolean writeBehindAds(AdsWriteFailureLogInfo loginfo) {
+        AdsWriteBehindQueue queue = AdsWriteBehindQueue.getInstance();
+        if (queue == null) {
+            return false;
+        }
+        if (!queue.offer(loginfo)) {
+            recordAdsWriteFailureLog(loginfo);
+        }
+        return true;
+    }
+
     /**
      * Ads書込みエラー時にファイルにリペア用のエラー情報を書込む.
      * @param loginfo リペア用のエラー情報
@@ -133,17 +133,21 @@ public class DavNodeAccessor extends DataSourceAccessor {
     protected void createAds(DavNode davNode) {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
+                    davNode.getBoxId(), null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, davNode.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().createDavNode(getIndex().getName(), davNode);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, davNode.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -184,17 +188,21 @@ public class DavNodeAccessor extends DataSourceAccessor {
 
         // 削除に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
+                    davNode.getBoxId(), null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, davNode.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().deleteDavNode(getIndex().getName(), id);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, davNode.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -267,17 +275,21 @@ public class DavNodeAccessor extends DataSourceAccessor {
     protected void updateAds(DavNode davNode, long version) {
         // 更新に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
+                    davNode.getBoxId(), null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, davNode.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().updateDavNode(getIndex().getName(), davNode);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, davNode.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
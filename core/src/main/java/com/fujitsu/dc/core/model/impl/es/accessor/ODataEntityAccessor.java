@@ -48,6 +48,16 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
     protected void createAds(EntitySetDocHandler docHandler) {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             String indexName = getIndex().getName();
             try {
                 getAds().createEntity(indexName, docHandler);
@@ -63,24 +73,12 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
                         DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e1.getMessage()).reason(e1).writeLog();
 
                         // Adsの登録に失敗した場合は、専用のログに書込む
-                        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                                docHandler.getCellId(), null, docHandler.getNodeId());
-                        AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                                this.getIndex().getName(), docHandler.getType(), lockKey,
-                                docHandler.getCellId(), docHandler.getId(),
-                                AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
                         recordAdsWriteFailureLog(loginfo);
                     }
                 } else {
                     DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                     // Adsの登録に失敗した場合は、専用のログに書込む
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), docHandler.getType(), lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
                     recordAdsWriteFailureLog(loginfo);
                 }
             }
@@ -95,18 +93,22 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
     protected void updateAds(EntitySetDocHandler docHandler, long version) {
         // 更新に成功した場合、マスタデータを更新する
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().updateEntity(getIndex().getName(), docHandler);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -123,18 +125,22 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
 
         // 削除に成功した場合、マスタデータを削除する
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().deleteEntity(getIndex().getName(), id);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
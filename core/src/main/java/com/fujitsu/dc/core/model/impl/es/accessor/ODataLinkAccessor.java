@@ -75,18 +75,22 @@ public class ODataLinkAccessor extends DataSourceAccessor {
     protected void createAds(LinkDocHandler docHandler) {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().createLink(getIndex().getName(), docHandler);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -125,18 +129,22 @@ public class ODataLinkAccessor extends DataSourceAccessor {
     protected void updateAds(LinkDocHandler docHandler, long version) {
         // 更新に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().updateLink(getIndex().getName(), docHandler);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -177,18 +185,22 @@ public class ODataLinkAccessor extends DataSourceAccessor {
 
         // 削除に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, docHandler.getUpdated());
+            // 非同期書き込みが有効な場合は、キューに登録して終了する
+            if (writeBehindAds(loginfo)) {
+                return;
+            }
             try {
                 getAds().deleteLink(getIndex().getName(), id);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
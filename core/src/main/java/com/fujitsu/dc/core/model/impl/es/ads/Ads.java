@@ -71,12 +71,21 @@ public interface Ads {
 
     /**
      * Entity Document一括更新に伴い、Adsの対応レコード一括更新を行う.
+     * 存在しないレコードは登録し、存在するレコードはリンク情報(links)のみを更新する.
      * @param index index
      * @param bulkRequestList 一括更新データ
      * @throws AdsException 処理失敗時発生
      */
     void bulkUpdateEntity(String index, List<EntitySetDocHandler> bulkRequestList) throws AdsException;
 
+    /**
+     * 既存のEntityレコードの全項目を一括更新する.
+     * @param index index
+     * @param bulkRequestList 一括更新データ
+     * @throws AdsException 処理失敗時、または更新対象のレコードが存在しない場合に発生
+     */
+    void bulkUpdateEntityAllColumns(String index, List<EntitySetDocHandler> bulkRequestList) throws AdsException;
+
     /**
      * リカバリ用に、ADS内の特定indexに対応するEntityのリストを取得する。
      * @param index index
@@ -257,6 +266,66 @@ public interface Ads {
      */
     List<JSONObject> searchDavNodeList(String index, List<String> idList) throws AdsException;
 
+    /**
+     * 整合性チェック用に、ADS内の特定indexに対応するEntityをuuidの先頭文字列で範囲分割し、範囲ごとの件数とハッシュ値を集計する。
+     * ハッシュ値は、各レコードの「uuid:更新日時」のCRC32の総和とする。
+     * @param index index
+     * @param idPrefix 集計対象とするuuidの先頭文字列
+     * @param prefixLength 範囲分割に用いるuuidの先頭文字数
+     * @return 範囲ごとの集計結果(prefix, count, hash)のJSONObjectのリスト.
+     * @throws AdsException 取得失敗時
+     */
+    List<JSONObject> getEntityRangeSummaryList(String index, String idPrefix, int prefixLength) throws AdsException;
+
+    /**
+     * 整合性チェック用に、ADS内の特定indexに対応するEntityのうち、uuidが指定した文字列で始まるもののリストを取得する。
+     * @param index index
+     * @param idPrefix 取得対象とするuuidの先頭文字列
+     * @return JSONObjectのリスト.
+     * @throws AdsException 取得失敗時
+     */
+    List<JSONObject> getEntityListByIdPrefix(String index, String idPrefix) throws AdsException;
+
+    /**
+     * 整合性チェック用に、ADS内の特定indexに対応するLinkをuuidの先頭文字列で範囲分割し、範囲ごとの件数とハッシュ値を集計する。
+     * ハッシュ値は、各レコードの「uuid:更新日時」のCRC32の総和とする。
+     * @param index index
+     * @param idPrefix 集計対象とするuuidの先頭文字列
+     * @param prefixLength 範囲分割に用いるuuidの先頭文字数
+     * @return 範囲ごとの集計結果(prefix, count, hash)のJSONObjectのリスト.
+     * @throws AdsException 取得失敗時
+     */
+    List<JSONObject> getLinkRangeSummaryList(String index, String idPrefix, int prefixLength) throws AdsException;
+
+    /**
+     * 整合性チェック用に、ADS内の特定indexに対応するLinkのうち、uuidが指定した文字列で始まるもののリストを取得する。
+     * @param index index
+     * @param idPrefix 取得対象とするuuidの先頭文字列
+     * @return JSONObjectのリスト.
+     * @throws AdsException 取得失敗時
+     */
+    List<JSONObject> getLinkListByIdPrefix(String index, String idPrefix) throws AdsException;
+
+    /**
+     * 整合性チェック用に、ADS内の特定indexに対応するDavNodeをuuidの先頭文字列で範囲分割し、範囲ごとの件数とハッシュ値を集計する。
+     * ハッシュ値は、各レコードの「uuid:更新日時」のCRC32の総和とする。
+     * @param index index
+     * @param idPrefix 集計対象とするuuidの先頭文字列
+     * @param prefixLength 範囲分割に用いるuuidの先頭文字数
+     * @return 範囲ごとの集計結果(prefix, count, hash)のJSONObjectのリスト.
+     * @throws AdsException 取得失敗時
+     */
+    List<JSONObject> getDavNodeRangeSummaryList(String index, String idPrefix, int prefixLength) throws AdsException;
+
+    /**
+     * 整合性チェック用に、ADS内の特定indexに対応するDavNodeのうち、uuidが指定した文字列で始まるもののリストを取得する。
+     * @param index index
+     * @param idPrefix 取得対象とするuuidの先頭文字列
+     * @return JSONObjectのリスト.
+     * @throws AdsException 取得失敗時
+     */
+    List<JSONObject> getDavNodeListByIdPrefix(String index, String idPrefix) throws AdsException;
+
     /**
      * 指定されたIDのCellのリソースをENTITYテーブルから削除する.
      * @param index 対象インデックス
@@ -309,4 +378,45 @@ public interface Ads {
      */
     void insertCellDeleteRecord(String dbName, String cellId) throws AdsException;
 
+    /**
+     * セル削除用管理テーブルから、削除待ちのセル情報を登録日時の古い順に取得する.
+     * @param size 取得件数
+     * @return セル情報(db_name, table_name, cell_id)の一覧
+     * @throws AdsException 取得失敗時
+     */
+    List<JSONObject> getCellDeleteRecordList(int size) throws AdsException;
+
+    /**
+     * セル削除用管理テーブルからセル情報を削除する.
+     * @param dbName セル削除対象のDB名
+     * @param tableName セル削除対象のテーブル名
+     * @param cellId セル削除対象のセルID
+     * @throws AdsException 削除失敗時
+     */
+    void deleteCellDeleteRecord(String dbName, String tableName, String cellId) throws AdsException;
+
+    /**
+     * 削除対象セル配下のレコードのuuid一覧を取得する.
+     * @param index index
+     * @param tableName テーブル名(ENTITY, LINK, DAV_NODE)
+     * @param cellId セル削除対象のセルID
+     * @param size 取得件数
+     * @return uuidの一覧
+     * @throws AdsException 取得失敗時
+     */
+    List<String> getCellResourceIdList(String index, String tableName, String cellId, int size)
+            throws AdsException;
+
+    /**
+     * 削除対象セル配下のレコードをuuid指定で削除する.
+     * @param index index
+     * @param tableName テーブル名(ENTITY, LINK, DAV_NODE)
+     * @param cellId セル削除対象のセルID
+     * @param idList 削除するレコードのuuid一覧
+     * @return 削除件数
+     * @throws AdsException 削除失敗時
+     */
+    int deleteCellResourceById(String index, String tableName, String cellId, List<String> idList)
+            throws AdsException;
+
 }
@@ -0,0 +1,299 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogException;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+
+/**
+ * ADS非同期書き込み用の永続キュー(1パーティション分)を扱うクラス.
+ * 登録された書き込み情報を追記専用のセグメントファイルに出力したうえでメモリ上のキューに積む。
+ * セグメントファイルは一定件数ごとに切り替え、含まれる全件の反映が完了した時点で削除する。
+ * ファイルの同期(fsync)は呼び出し毎には行わず、{@link #sync()}の呼び出し時にまとめて行う。
+ */
+class AdsWriteBehindLog {
+
+    /** ログ用オブジェクト. */
+    static Logger log = LoggerFactory.getLogger(AdsWriteBehindLog.class);
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final String SEGMENT_PREFIX = "segment.";
+
+    /**
+     * キューに積まれた書き込み情報.
+     */
+    static class Entry {
+        private final AdsWriteFailureLogInfo info;
+        private final long segment;
+
+        Entry(AdsWriteFailureLogInfo info, long segment) {
+            this.info = info;
+            this.segment = segment;
+        }
+
+        AdsWriteFailureLogInfo getInfo() {
+            return info;
+        }
+    }
+
+    private final File dir;
+    private final int segmentRecords;
+    private final Semaphore permits;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+    /** セグメント番号毎の未反映件数. */
+    private final Map<Long, Integer> outstanding = new HashMap<Long, Integer>();
+
+    private FileOutputStream out;
+    private FileChannel channel;
+    private long segment;
+    private int writtenRecords;
+    private boolean dirty;
+
+    /**
+     * コンストラクタ.
+     * @param dir セグメントファイルの出力先ディレクトリ
+     * @param capacity キューに積める最大件数
+     * @param segmentRecords 1セグメントファイルあたりの最大件数
+     */
+    AdsWriteBehindLog(File dir, int capacity, int segmentRecords) {
+        this.dir = dir;
+        this.permits = new Semaphore(capacity);
+        this.segmentRecords = segmentRecords;
+    }
+
+    /**
+     * 前回起動時に残ったセグメントファイルから書き込み情報を読み込み、ファイルを削除する.
+     * @return 読み込んだ書き込み情報
+     * @throws IOException ファイルの読み込みに失敗した場合
+     */
+    synchronized List<AdsWriteFailureLogInfo> recover() throws IOException {
+        List<AdsWriteFailureLogInfo> infos = new ArrayList<AdsWriteFailureLogInfo>();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory. [" + dir.getAbsolutePath() + "]");
+        }
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File parent, String name) {
+                return name.startsWith(SEGMENT_PREFIX);
+            }
+        });
+        Arrays.sort(files);
+        for (File file : files) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        infos.add(AdsWriteFailureLogInfo.parse(line));
+                    } catch (AdsWriteFailureLogException e) {
+                        // 書き込み途中で停止した最終行は読み飛ばす
+                        log.info("Skipped invalid write-behind record. [" + line + "]");
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            if (segment <= parseSegment(file)) {
+                segment = parseSegment(file) + 1;
+            }
+            if (!file.delete()) {
+                log.warn("Failed to delete write-behind segment. [" + file.getAbsolutePath() + "]");
+            }
+        }
+        return infos;
+    }
+
+    /**
+     * 書き込み情報をキューに登録する.
+     * キューが満杯の場合は、空きができるまで指定時間待ち合わせる。
+     * @param info 書き込み情報
+     * @param timeoutMillis 待ち合わせ時間(ミリ秒)
+     * @return 登録できた場合はtrue、満杯のままタイムアウトした場合またはファイル出力に失敗した場合はfalse
+     * @throws InterruptedException 待ち合わせ中に割り込まれた場合
+     */
+    boolean offer(AdsWriteFailureLogInfo info, long timeoutMillis) throws InterruptedException {
+        if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        synchronized (this) {
+            try {
+                if (channel == null || writtenRecords >= segmentRecords) {
+                    roll();
+                }
+                channel.write(ByteBuffer.wrap(info.toString().getBytes(CHARSET)));
+            } catch (IOException e) {
+                log.warn("Failed to write write-behind record.", e);
+                permits.release();
+                return false;
+            }
+            writtenRecords++;
+            dirty = true;
+            Integer count = outstanding.get(segment);
+            outstanding.put(segment, count == null ? 1 : count + 1);
+            queue.add(new Entry(info, segment));
+        }
+        return true;
+    }
+
+    /**
+     * キューから書き込み情報を取り出す.
+     * @param maxSize 取り出す最大件数
+     * @param timeoutMillis キューが空の場合の待ち合わせ時間(ミリ秒)
+     * @return 取り出した書き込み情報。キューが空のままタイムアウトした場合は空のリスト
+     * @throws InterruptedException 待ち合わせ中に割り込まれた場合
+     */
+    List<Entry> take(int maxSize, long timeoutMillis) throws InterruptedException {
+        List<Entry> entries = new ArrayList<Entry>();
+        Entry first = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (first != null) {
+            entries.add(first);
+            queue.drainTo(entries, maxSize - 1);
+        }
+        return entries;
+    }
+
+    /**
+     * 書き込み情報の反映完了を記録する.
+     * 全件の反映が完了したセグメントファイルは削除する。
+     * @param entries 反映が完了した書き込み情報
+     */
+    synchronized void complete(List<Entry> entries) {
+        for (Entry entry : entries) {
+            int count = outstanding.get(entry.segment) - 1;
+            if (count > 0) {
+                outstanding.put(entry.segment, count);
+            } else {
+                outstanding.remove(entry.segment);
+                if (entry.segment != segment) {
+                    deleteSegment(entry.segment);
+                }
+            }
+        }
+        permits.release(entries.size());
+    }
+
+    /**
+     * 出力中のセグメントファイルをディスクに同期する.
+     */
+    synchronized void sync() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            log.warn("Failed to sync write-behind segment.", e);
+        }
+    }
+
+    /**
+     * キューに残っている件数を取得する.
+     * @return 未反映の件数
+     */
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * 出力中のセグメントファイルを閉じる.
+     * 全件の反映が完了している場合は、次回起動時に再処理されないようセグメントファイルを削除する。
+     */
+    synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        sync();
+        closeChannel();
+        if (!outstanding.containsKey(segment)) {
+            deleteSegment(segment);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            dirty = false;
+            closeChannel();
+            if (!outstanding.containsKey(segment)) {
+                deleteSegment(segment);
+            }
+            segment++;
+        }
+        out = new FileOutputStream(segmentFile(segment), true);
+        channel = out.getChannel();
+        writtenRecords = 0;
+    }
+
+    private void closeChannel() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.info("Failed to close write-behind segment.", e);
+            }
+            out = null;
+            channel = null;
+        }
+    }
+
+    private void deleteSegment(long seq) {
+        File file = segmentFile(seq);
+        if (file.exists() && !file.delete()) {
+            log.warn("Failed to delete write-behind segment. [" + file.getAbsolutePath() + "]");
+        }
+    }
+
+    private File segmentFile(long seq) {
+        // ファイル名の辞書順が番号順となるよう、0埋めする
+        return new File(dir, String.format("%s%019d", SEGMENT_PREFIX, seq));
+    }
+
+    private static long parseSegment(File file) {
+        try {
+            return Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogException;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogWriter;
+import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.response.DcSearchHit;
+import com.fujitsu.dc.common.es.response.DcSearchResponse;
+import com.fujitsu.dc.common.es.response.EsClientException;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.DcCoreLog;
+import com.fujitsu.dc.core.model.Cell;
+import com.fujitsu.dc.core.model.DavNode;
+import com.fujitsu.dc.core.model.impl.es.doc.CellDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.UserDataDocHandler;
+import com.fujitsu.dc.core.model.impl.es.odata.UserDataODataProducer;
+import com.fujitsu.dc.core.model.impl.es.repair.EsAccessor;
+
+/**
+ * ADSへの書き込みを非同期に行う(write-behind)ためのキュー.
+ * ESへの書き込み後、ADSへの書き込み内容をADS書き込み失敗ログと同じ形式で永続キューに登録し、
+ * ワーカースレッドがElasticsearch上の最新データを取得してADSに反映する。
+ * 同一データへの書き込みは同じパーティションに振り分けることで、登録順に反映されるようにしている。
+ * ADSへの反映に失敗した場合は、ADS書き込み失敗ログに出力し、RepairAdsによるリペアに委ねる。
+ */
+public class AdsWriteBehindQueue {
+
+    /** ログ用オブジェクト. */
+    static Logger log = LoggerFactory.getLogger(AdsWriteBehindQueue.class);
+
+    private static final String MYSQL_BAD_TABLE_ERROR = "42S02";
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    private static AdsWriteBehindQueue instance;
+    private static boolean stopped = false;
+
+    private final AdsWriteBehindLog[] partitions;
+    private final Thread[] workers;
+    private final ScheduledExecutorService syncExecutor;
+    private final long offerTimeoutMillis;
+    private final int batchSize;
+    private volatile boolean running = true;
+
+    /**
+     * 非同期書き込みキューを取得する.
+     * 初回呼び出し時にキューを生成し、ワーカースレッドを起動する。
+     * @return 非同期書き込みキュー。非同期書き込みが無効な場合はnull
+     */
+    public static AdsWriteBehindQueue getInstance() {
+        if (!DcCoreConfig.isAdsWriteBehindEnabled()) {
+            return null;
+        }
+        synchronized (AdsWriteBehindQueue.class) {
+            if (instance == null && !stopped
+                    && DcCoreConfig.ES.ADS.TYPE_JDBC.equals(DcCoreConfig.getEsAdsType())) {
+                instance = new AdsWriteBehindQueue();
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * 非同期書き込みキューを停止する.
+     * 停止までに反映できなかった書き込み情報はセグメントファイルに残り、次回起動時にADS書き込み失敗ログへ移される。
+     */
+    public static synchronized void shutdown() {
+        stopped = true;
+        if (instance == null) {
+            return;
+        }
+        instance.stop(DcCoreConfig.getAdsWriteBehindAwaitShutdownInSec());
+        instance = null;
+    }
+
+    private AdsWriteBehindQueue() {
+        int workerCount = DcCoreConfig.getAdsWriteBehindWorkers();
+        int capacity = Math.max(1, DcCoreConfig.getAdsWriteBehindCapacity() / workerCount);
+        this.offerTimeoutMillis = DcCoreConfig.getAdsWriteBehindOfferTimeoutInMillis();
+        this.batchSize = DcCoreConfig.getAdsWriteBehindBatchSize();
+        this.partitions = new AdsWriteBehindLog[workerCount];
+        this.workers = new Thread[workerCount];
+        File baseDir = new File(DcCoreConfig.getAdsWriteBehindDir());
+        for (int i = 0; i < workerCount; i++) {
+            partitions[i] = new AdsWriteBehindLog(new File(baseDir, String.valueOf(i)), capacity,
+                    DcCoreConfig.getAdsWriteBehindSegmentRecords());
+            try {
+                // 前回停止時に反映できなかった書き込み情報は、RepairAdsでリペアさせる
+                for (AdsWriteFailureLogInfo info : partitions[i].recover()) {
+                    recordAdsWriteFailureLog(info);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to recover write-behind segments.", e);
+            }
+            workers[i] = new Thread(new Worker(partitions[i]), "ads-write-behind-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        syncExecutor = Executors.newSingleThreadScheduledExecutor();
+        syncExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (AdsWriteBehindLog partition : partitions) {
+                    partition.sync();
+                }
+            }
+        }, DcCoreConfig.getAdsWriteBehindFsyncIntervalInMillis(),
+                DcCoreConfig.getAdsWriteBehindFsyncIntervalInMillis(), TimeUnit.MILLISECONDS);
+        log.info(String.format("ADS write-behind queue started with %d workers.", workerCount));
+    }
+
+    /**
+     * ADSへの書き込み情報をキューに登録する.
+     * キューが満杯の場合は空きができるまで待ち合わせ、待ち時間を超えた場合はfalseを返す。
+     * その場合、実行中のワーカーと競合しないよう、呼び出し元ではADSへ同期的に書き込まずにリペア用のエラー情報を書き込むこと。
+     * @param info 書き込み情報
+     * @return キューに登録できた場合はtrue
+     */
+    public boolean offer(AdsWriteFailureLogInfo info) {
+        if (!running) {
+            return false;
+        }
+        AdsWriteBehindLog partition = partitions[(info.getUuid().hashCode() & Integer.MAX_VALUE) % partitions.length];
+        try {
+            if (partition.offer(info, offerTimeoutMillis)) {
+                return true;
+            }
+            log.info("ADS write-behind queue is full. Recording to ADS write failure log.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void stop(long awaitShutdownInSec) {
+        running = false;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(awaitShutdownInSec);
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        syncExecutor.shutdown();
+        for (AdsWriteBehindLog partition : partitions) {
+            partition.close();
+            if (partition.size() > 0) {
+                log.warn(String.format("ADS write-behind queue stopped with %d pending records.", partition.size()));
+            }
+        }
+    }
+
+    /**
+     * 1パーティション分の書き込み情報をADSに反映するワーカー.
+     */
+    class Worker implements Runnable {
+        private final AdsWriteBehindLog partition;
+        private JdbcAds ads;
+
+        Worker(AdsWriteBehindLog partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public void run() {
+            while (running || partition.size() > 0) {
+                List<AdsWriteBehindLog.Entry> entries;
+                try {
+                    entries = partition.take(batchSize, POLL_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (entries.isEmpty()) {
+                    continue;
+                }
+                List<AdsWriteFailureLogInfo> infos = new ArrayList<AdsWriteFailureLogInfo>();
+                for (AdsWriteBehindLog.Entry entry : entries) {
+                    infos.add(entry.getInfo());
+                }
+                try {
+                    apply(infos);
+                } catch (RuntimeException e) {
+                    // 予期しないエラーの場合も、リペアの対象となるよう書き込み失敗ログに出力してから完了とする
+                    log.warn("Unexpected error in ADS write-behind worker.", e);
+                    recordAdsWriteFailureLogs(infos);
+                } finally {
+                    partition.complete(entries);
+                }
+            }
+        }
+
+        private void apply(List<AdsWriteFailureLogInfo> infos) {
+            // 同一データへの書き込みは最後の1件のみ反映すればよいため、インデックス・タイプ・routingId単位にまとめる
+            Map<String, Map<String, AdsWriteFailureLogInfo>> groups =
+                    new LinkedHashMap<String, Map<String, AdsWriteFailureLogInfo>>();
+            for (AdsWriteFailureLogInfo info : infos) {
+                String key = info.getIndexName() + "\t" + info.getType() + "\t" + info.getRoutingId();
+                Map<String, AdsWriteFailureLogInfo> group = groups.get(key);
+                if (group == null) {
+                    group = new LinkedHashMap<String, AdsWriteFailureLogInfo>();
+                    groups.put(key, group);
+                }
+                group.remove(info.getUuid());
+                group.put(info.getUuid(), info);
+            }
+            for (Map<String, AdsWriteFailureLogInfo> group : groups.values()) {
+                List<AdsWriteFailureLogInfo> groupInfos = new ArrayList<AdsWriteFailureLogInfo>(group.values());
+                try {
+                    if (ads == null) {
+                        ads = new JdbcAds();
+                    }
+                    try {
+                        applyGroup(groupInfos);
+                    } catch (AdsException e) {
+                        // インデックスが存在しない場合はインデックスを作成して再実行する
+                        if (!(e.getCause() instanceof SQLException)
+                                || !MYSQL_BAD_TABLE_ERROR.equals(((SQLException) e.getCause()).getSQLState())) {
+                            throw e;
+                        }
+                        ads.createIndex(groupInfos.get(0).getIndexName());
+                        applyGroup(groupInfos);
+                    }
+                } catch (AdsException e) {
+                    DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
+                    recordAdsWriteFailureLogs(groupInfos);
+                } catch (EsClientException e) {
+                    log.info("Failed to get documents from Elasticsearch for ADS write-behind.", e);
+                    recordAdsWriteFailureLogs(groupInfos);
+                } catch (DcCoreException e) {
+                    DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
+                    recordAdsWriteFailureLogs(groupInfos);
+                }
+            }
+        }
+
+        /**
+         * Elasticsearch上の最新データを取得し、ADSの登録/更新/削除を行う.
+         * @param infos インデックス・タイプ・routingIdが同一の書き込み情報
+         * @throws AdsException ADSへの書き込みに失敗した場合
+         */
+        private void applyGroup(List<AdsWriteFailureLogInfo> infos) throws AdsException {
+            AdsWriteFailureLogInfo first = infos.get(0);
+            String indexName = first.getIndexName();
+            String type = first.getType();
+            String routingId = first.getRoutingId();
+            if ("".equals(routingId)) {
+                routingId = EsIndex.CELL_ROUTING_KEY_NAME;
+            }
+            // TypeがCellである場合は、Elasticsearchのインデックス名を「{UnitPrefix}_ad」に変更する
+            String esIndexName = indexName;
+            if (Cell.EDM_TYPE_NAME.equals(type)) {
+                esIndexName = DcCoreConfig.getEsUnitPrefix() + "_" + EsIndex.CATEGORY_AD;
+            }
+            List<String> idList = new ArrayList<String>();
+            for (AdsWriteFailureLogInfo info : infos) {
+                idList.add(info.getUuid());
+            }
+
+            DcSearchResponse esResponse = EsAccessor.search(esIndexName, routingId, idList, type);
+            if (esResponse == null) {
+                throw new EsClientException("Index not found. [" + esIndexName + "]");
+            }
+            Set<String> adsIds = new HashSet<String>();
+            for (JSONObject row : searchAds(indexName, type, idList)) {
+                adsIds.add((String) row.get("id"));
+            }
+
+            List<EntitySetDocHandler> createEntities = new ArrayList<EntitySetDocHandler>();
+            List<EntitySetDocHandler> updateEntities = new ArrayList<EntitySetDocHandler>();
+            List<LinkDocHandler> createLinks = new ArrayList<LinkDocHandler>();
+            Set<String> esIds = new HashSet<String>();
+            for (DcSearchHit hit : esResponse.getHits().getHits()) {
+                esIds.add(hit.getId());
+                boolean exists = adsIds.contains(hit.getId());
+                if (Cell.EDM_TYPE_NAME.equals(type)) {
+                    EntitySetDocHandler oedh = new CellDocHandler(hit);
+                    if (exists) {
+                        ads.updateCell(indexName, oedh);
+                    } else {
+                        ads.createCell(indexName, oedh);
+                    }
+                } else if ("link".equals(type)) {
+                    LinkDocHandler ldh = new LinkDocHandler(hit);
+                    if (exists) {
+                        ads.updateLink(indexName, ldh);
+                    } else {
+                        createLinks.add(ldh);
+                    }
+                } else if ("dav".equals(type)) {
+                    DavNode davNode = DavNode.createFromJsonString(hit.getId(), hit.sourceAsString());
+                    if (exists) {
+                        ads.updateDavNode(indexName, davNode);
+                    } else {
+                        ads.createDavNode(indexName, davNode);
+                    }
+                } else {
+                    EntitySetDocHandler oedh;
+                    if (type.equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
+                        oedh = new UserDataDocHandler(hit);
+                    } else {
+                        oedh = new OEntityDocHandler(hit);
+                    }
+                    if (oedh.getDynamicFields() == null) {
+                        oedh.setDynamicFields(new HashMap<String, Object>());
+                    }
+                    if (exists) {
+                        updateEntities.add(oedh);
+                    } else {
+                        createEntities.add(oedh);
+                    }
+                }
+            }
+            // Entity/Linkは一括で書き込む
+            if (!createEntities.isEmpty()) {
+                ads.bulkEntity(indexName, createEntities);
+            }
+            if (!updateEntities.isEmpty()) {
+                ads.bulkUpdateEntityAllColumns(indexName, updateEntities);
+            }
+            if (!createLinks.isEmpty()) {
+                ads.bulkCreateLink(indexName, createLinks);
+            }
+            // Elasticsearch上に存在しないデータは削除する
+            for (String id : idList) {
+                if (!esIds.contains(id) && adsIds.contains(id)) {
+                    deleteAds(indexName, type, id);
+                }
+            }
+        }
+
+        private List<JSONObject> searchAds(String indexName, String type, List<String> idList)
+                throws AdsException {
+            if (Cell.EDM_TYPE_NAME.equals(type)) {
+                return ads.searchCellList(indexName, idList);
+            } else if ("link".equals(type)) {
+                return ads.searchLinkList(indexName, idList);
+            } else if ("dav".equals(type)) {
+                return ads.searchDavNodeList(indexName, idList);
+            } else {
+                return ads.searchEntityList(indexName, idList);
+            }
+        }
+
+        private void deleteAds(String indexName, String type, String id) throws AdsException {
+            if (Cell.EDM_TYPE_NAME.equals(type)) {
+                ads.deleteCell(indexName, id);
+            } else if ("link".equals(type)) {
+                ads.deleteLink(indexName, id);
+            } else if ("dav".equals(type)) {
+                ads.deleteDavNode(indexName, id);
+            } else {
+                ads.deleteEntity(indexName, id);
+            }
+        }
+    }
+
+    private static void recordAdsWriteFailureLogs(List<AdsWriteFailureLogInfo> infos) {
+        for (AdsWriteFailureLogInfo info : infos) {
+            recordAdsWriteFailureLog(info);
+        }
+    }
+
+    /**
+     * Ads書込みエラー時にファイルにリペア用のエラー情報を書込む.
+     * @param loginfo リペア用のエラー情報
+     */
+    private static void recordAdsWriteFailureLog(AdsWriteFailureLogInfo loginfo) {
+        AdsWriteFailureLogWriter adsWriteFailureLogWriter = AdsWriteFailureLogWriter.getInstance(
+                DcCoreConfig.getAdsWriteFailureLogDir(),
+                DcCoreConfig.getCoreVersion(),
+                DcCoreConfig.getAdsWriteFailureLogPhysicalDelete());
+        try {
+            adsWriteFailureLogWriter.writeActiveFile(loginfo);
+        } catch (AdsWriteFailureLogException e) {
+            DcCoreLog.Server.WRITE_ADS_FAILURE_LOG_ERROR.reason(e).writeLog();
+            DcCoreLog.Server.WRITE_ADS_FAILURE_LOG_INFO.params(loginfo.toString());
+        }
+    }
+}
@@ -59,6 +59,13 @@ public class JdbcAds implements Ads {
 
     static final String MANAGEMENT_DB_NAME = "pcs_management";
 
+    /** テーブル名：ENTITY. */
+    public static final String TABLE_ENTITY = "ENTITY";
+    /** テーブル名：LINK. */
+    public static final String TABLE_LINK = "LINK";
+    /** テーブル名：DAV_NODE. */
+    public static final String TABLE_DAV_NODE = "DAV_NODE";
+
     /**
      * コンストラクタ.
      * @throws AdsConnectionException ADS接続失敗
@@ -133,6 +140,19 @@ public class JdbcAds implements Ads {
         ip.bulkUpdateEntityLink(bulkRequestList);
     }
 
+    /**
+     * 既存のEntityレコードの全項目を一括更新する.
+     * @param index index
+     * @param bulkRequestList 一括更新データ
+     * @throws AdsException 処理失敗時、または更新対象のレコードが存在しない場合に発生
+     */
+    @Override
+    public void bulkUpdateEntityAllColumns(String index, List<EntitySetDocHandler> bulkRequestList)
+            throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        ip.bulkUpdateEntityAllColumns(bulkRequestList);
+    }
+
     @Override
     public void createCell(String index, EntitySetDocHandler docHandler) throws AdsException {
         IndexPeer ip = this.getIndexPeer(index);
@@ -241,6 +261,45 @@ public class JdbcAds implements Ads {
         return ip.searchDavNodeList(idList);
     }
 
+    @Override
+    public List<JSONObject> getEntityRangeSummaryList(String index, String idPrefix, int prefixLength)
+            throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        return ip.getRangeSummaryList(ip.sqlEntityRangeSummary, idPrefix, prefixLength);
+    }
+
+    @Override
+    public List<JSONObject> getEntityListByIdPrefix(String index, String idPrefix) throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        return ip.getEntityListByIdPrefix(idPrefix);
+    }
+
+    @Override
+    public List<JSONObject> getLinkRangeSummaryList(String index, String idPrefix, int prefixLength)
+            throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        return ip.getRangeSummaryList(ip.sqlLinkRangeSummary, idPrefix, prefixLength);
+    }
+
+    @Override
+    public List<JSONObject> getLinkListByIdPrefix(String index, String idPrefix) throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        return ip.getLinkListByIdPrefix(idPrefix);
+    }
+
+    @Override
+    public List<JSONObject> getDavNodeRangeSummaryList(String index, String idPrefix, int prefixLength)
+            throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        return ip.getRangeSummaryList(ip.sqlDavNodeRangeSummary, idPrefix, prefixLength);
+    }
+
+    @Override
+    public List<JSONObject> getDavNodeListByIdPrefix(String index, String idPrefix) throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        return ip.getDavNodeListByIdPrefix(idPrefix);
+    }
+
     /**
      * Link Document生成に伴い、Adsの一括登録用のレコード生成を行う.
      * @param index index
@@ -295,6 +354,32 @@ public class JdbcAds implements Ads {
         ip.insertCellDeleteRecord(dbName, cellId);
     }
 
+    @Override
+    public List<JSONObject> getCellDeleteRecordList(int size) throws AdsException {
+        IndexPeer ip = this.getIndexPeer(MANAGEMENT_DB_NAME);
+        return ip.getCellDeleteRecordList(size);
+    }
+
+    @Override
+    public void deleteCellDeleteRecord(String dbName, String tableName, String cellId) throws AdsException {
+        IndexPeer ip = this.getIndexPeer(MANAGEMENT_DB_NAME);
+        ip.deleteCellDeleteRecord(dbName, tableName, cellId);
+    }
+
+    @Override
+    public List<String> getCellResourceIdList(String index, String tableName, String cellId, int size)
+            throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        return ip.getCellResourceIdList(tableName, cellId, size);
+    }
+
+    @Override
+    public int deleteCellResourceById(String index, String tableName, String cellId, List<String> idList)
+            throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        return ip.deleteCellResourceById(tableName, cellId, idList);
+    }
+
     @Override
     public void createIndex(String index) throws AdsException {
         Connection con = null;
@@ -419,6 +504,12 @@ public class JdbcAds implements Ads {
         String sqlCountCellResourceFromEntity;
         String sqlCountCellResourceFromDavNode;
         String sqlCountCellResourceFromLink;
+        String sqlSelectCellResourceIdFromEntity;
+        String sqlSelectCellResourceIdFromDavNode;
+        String sqlSelectCellResourceIdFromLink;
+        String sqlDeleteCellResourceByIdFromEntity;
+        String sqlDeleteCellResourceByIdFromDavNode;
+        String sqlDeleteCellResourceByIdFromLink;
         String sqlEntitySelect;
         String sqlEntityCount;
         String sqlCellSelect;
@@ -432,9 +523,17 @@ public class JdbcAds implements Ads {
         String sqlCellSearch;
         String sqlLinkSearch;
         String sqlDavNodeSearch;
+        String sqlEntityRangeSummary;
+        String sqlLinkRangeSummary;
+        String sqlDavNodeRangeSummary;
+        String sqlEntityRangeSelect;
+        String sqlLinkRangeSelect;
+        String sqlDavNodeRangeSelect;
 
         // 管理DB用SQL群
         String sqlCellDeleteInsert;
+        String sqlCellDeleteSelect;
+        String sqlCellDeleteDelete;
 
         static final StatementHandler NOP_STATEMENT_HANDLER = new StatementHandler() {
             @Override
@@ -461,6 +560,31 @@ public class JdbcAds implements Ads {
             }
         };
 
+        static final QueryResultHandler QUERY_RESULT_HANDLER_FOR_RANGE_SUMMARY = new QueryResultHandler() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public Object handle(ResultSet resultSet) throws AdsException {
+                try {
+                    List<JSONObject> ret = new ArrayList<JSONObject>();
+                    while (resultSet.next()) {
+                        JSONObject json = new JSONObject();
+                        json.put("prefix", resultSet.getString(1));
+                        json.put("count", resultSet.getLong(2));
+                        json.put("hash", resultSet.getLong(3));
+                        ret.add(json);
+                    }
+                    return ret;
+                } catch (SQLException e) {
+                    throw new AdsException(e);
+                }
+            }
+
+            @Override
+            public Object handleQueryIsEmpty() throws AdsException {
+                return new ArrayList<JSONObject>();
+            }
+        };
+
         IndexPeer(DataSource ds, String index) {
             this.ds = ds;
             this.index = index;
@@ -492,6 +616,19 @@ public class JdbcAds implements Ads {
             this.sqlCountCellResourceFromLink = Sql.countCellResourceFromLink
                     .replace(SCHEMA_NAME_REPLACING_KEY, this.index);
 
+            this.sqlSelectCellResourceIdFromEntity = Sql.selectCellResourceIdFromEntity
+                    .replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlSelectCellResourceIdFromDavNode = Sql.selectCellResourceIdFromDavNode
+                    .replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlSelectCellResourceIdFromLink = Sql.selectCellResourceIdFromLink
+                    .replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlDeleteCellResourceByIdFromEntity = Sql.deleteCellResourceByIdFromEntity
+                    .replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlDeleteCellResourceByIdFromDavNode = Sql.deleteCellResourceByIdFromDavNode
+                    .replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlDeleteCellResourceByIdFromLink = Sql.deleteCellResourceByIdFromLink
+                    .replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+
             this.sqlEntitySelect = Sql.selectEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlEntityCount = Sql.countEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlCellSelect = Sql.selectCell.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
@@ -506,8 +643,17 @@ public class JdbcAds implements Ads {
             this.sqlLinkSearch = Sql.searchLink.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlDavNodeSearch = Sql.searchDav.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
 
+            this.sqlEntityRangeSummary = Sql.rangeSummaryEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlLinkRangeSummary = Sql.rangeSummaryLink.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlDavNodeRangeSummary = Sql.rangeSummaryDav.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlEntityRangeSelect = Sql.rangeSelectEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlLinkRangeSelect = Sql.rangeSelectLink.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlDavNodeRangeSelect = Sql.rangeSelectDav.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+
             // 管理DB用SQL群
             this.sqlCellDeleteInsert = Sql.insertCellDelete.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlCellDeleteSelect = Sql.selectCellDelete.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlCellDeleteDelete = Sql.deleteCellDelete.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
         }
 
         void createEntity(final EntitySetDocHandler oedh) throws AdsException {
@@ -529,52 +675,64 @@ public class JdbcAds implements Ads {
         }
 
         void bulkEntity(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
-            // 一括登録のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlEntityBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
+            // 件数によらず同一のSQLとなるよう、1行分のSQLをバッチ実行する
+            String sql = this.sqlEntityBulkInsert + "(?,?,?,?,?,?,?,?,?,?,?,?)";
+            List<StatementHandler> handlers = new ArrayList<StatementHandler>();
+            for (List<EntitySetDocHandler> chunk : chunk(bulkRequestList)) {
+                handlers.add(new StatementHandlerForBulkEntity(chunk));
             }
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkEntity(bulkRequestList),
-                    bulkRequestList.size());
+            this.executeBatchUpdateSql(sql, handlers, bulkRequestList.size());
 
         }
 
         void bulkUpdateEntityLink(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
-            // 一括更新のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlEntityBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
+            // 件数によらず同一のSQLとなるよう、1行分のSQLをバッチ実行する
+            String sql = this.sqlEntityBulkInsert + "(?,?,?,?,?,?,?,?,?,?,?,?)"
+                    + " on duplicate key update links=values(links)";
+            List<StatementHandler> handlers = new ArrayList<StatementHandler>();
+            for (List<EntitySetDocHandler> chunk : chunk(bulkRequestList)) {
+                handlers.add(new StatementHandlerForBulkEntity(chunk));
             }
-
-            sql.append(" on duplicate key update ");
-            sql.append("links=values(links)");
-
             int expectedUpdateCount = bulkRequestList.size() * 2;
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkEntity(bulkRequestList),
-                    expectedUpdateCount);
+            this.executeBatchUpdateSql(sql, handlers, expectedUpdateCount);
 
         }
 
+        void bulkUpdateEntityAllColumns(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
+            // 1件ずつの更新(entity-update.sql)をバッチ実行する. プレースホルダの並びは一括登録と同一
+            // 更新対象のレコードが存在しない場合は更新件数が一致しないためエラーとなる
+            List<StatementHandler> handlers = new ArrayList<StatementHandler>();
+            for (List<EntitySetDocHandler> chunk : chunk(bulkRequestList)) {
+                handlers.add(new StatementHandlerForBulkEntity(chunk));
+            }
+            this.executeBatchUpdateSql(this.sqlEntityUpdate, handlers, bulkRequestList.size());
+        }
+
         void bulkCreateLink(final List<LinkDocHandler> bulkRequestList) throws AdsException {
-            // 一括登録のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlLinkBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
+            // 件数によらず同一のSQLとなるよう、1行分のSQLをバッチ実行する
+            String sql = this.sqlLinkBulkInsert + "(?,?,?,?,?,?,?,?,?,?)";
+            List<StatementHandler> handlers = new ArrayList<StatementHandler>();
+            for (List<LinkDocHandler> chunk : chunk(bulkRequestList)) {
+                handlers.add(new StatementHandlerForBulkLink(chunk));
             }
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkLink(bulkRequestList),
-                    bulkRequestList.size());
+            this.executeBatchUpdateSql(sql, handlers, bulkRequestList.size());
 
         }
 
+        /**
+         * 一括登録データを、1回のバッチ実行で送信する件数ごとに分割する.
+         * @param bulkRequestList 一括登録データ
+         * @return 分割した一括登録データ
+         */
+        private static <T> List<List<T>> chunk(List<T> bulkRequestList) {
+            int batchSize = DcCoreConfig.getEsAdsJdbcBatchSize();
+            List<List<T>> chunks = new ArrayList<List<T>>();
+            for (int from = 0; from < bulkRequestList.size(); from += batchSize) {
+                chunks.add(bulkRequestList.subList(from, Math.min(from + batchSize, bulkRequestList.size())));
+            }
+            return chunks;
+        }
+
         void createCell(final EntitySetDocHandler docHandler) throws AdsException {
             this.executeUpdateSql(this.sqlCellInsert, new StatementHandlerForCell(docHandler));
         }
@@ -663,13 +821,120 @@ public class JdbcAds implements Ads {
         }
 
         void insertCellDeleteRecord(String dbName, String cellId) throws AdsException {
-            String[] tableNames = {"ENTITY", "LINK", "DAV_NODE" };
+            String[] tableNames = {TABLE_ENTITY, TABLE_LINK, TABLE_DAV_NODE };
             for (String tableName : tableNames) {
                 this.executeUpdateSql(this.sqlCellDeleteInsert,
                         new StatementHandlerForCellDelete(dbName, tableName, cellId));
             }
         }
 
+        @SuppressWarnings("unchecked")
+        List<JSONObject> getCellDeleteRecordList(final int size) throws AdsException {
+            Object ret = this.executeQuerySql(this.sqlCellDeleteSelect,
+                    new StatementHandler() {
+                        @Override
+                        public void handle(PreparedStatement stmt) throws SQLException {
+                            stmt.setInt(1, size);
+                        }
+                    },
+                    new QueryResultHandler() {
+                        @Override
+                        public Object handle(ResultSet resultSet) throws AdsException {
+                            try {
+                                List<JSONObject> ret = new ArrayList<JSONObject>();
+                                while (resultSet.next()) {
+                                    JSONObject json = new JSONObject();
+                                    json.put("db_name", resultSet.getString(Sql.IDX_CELL_DELETE_DB_NAME));
+                                    json.put("table_name", resultSet.getString(Sql.IDX_CELL_DELETE_TABLE_NAME));
+                                    json.put("cell_id", resultSet.getString(Sql.IDX_CELL_DELETE_CELL_ID));
+                                    ret.add(json);
+                                }
+                                return ret;
+                            } catch (SQLException e) {
+                                throw new AdsException(e);
+                            }
+                        }
+                        @Override
+                        public Object handleQueryIsEmpty() throws AdsException {
+                            return new ArrayList<JSONObject>();
+                        }
+                    });
+            return (List<JSONObject>) ret;
+        }
+
+        void deleteCellDeleteRecord(String dbName, String tableName, String cellId) throws AdsException {
+            // 他のプロセスが先に削除した場合も正常終了とするため、件数は確認しない
+            this.executeUpdateSqlForCount(this.sqlCellDeleteDelete,
+                    new StatementHandlerForCellDelete(dbName, tableName, cellId));
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> getCellResourceIdList(String tableName, final String cellId, final int size)
+                throws AdsException {
+            String sql;
+            if (TABLE_ENTITY.equals(tableName)) {
+                sql = this.sqlSelectCellResourceIdFromEntity;
+            } else if (TABLE_LINK.equals(tableName)) {
+                sql = this.sqlSelectCellResourceIdFromLink;
+            } else if (TABLE_DAV_NODE.equals(tableName)) {
+                sql = this.sqlSelectCellResourceIdFromDavNode;
+            } else {
+                throw new AdsException("Unknown table name. [" + tableName + "]");
+            }
+            Object ret = this.executeQuerySql(sql,
+                    new StatementHandler() {
+                        @Override
+                        public void handle(PreparedStatement stmt) throws SQLException {
+                            stmt.setString(1, cellId);
+                            stmt.setInt(2, size);
+                        }
+                    },
+                    new QueryResultHandler() {
+                        @Override
+                        public Object handle(ResultSet resultSet) throws AdsException {
+                            try {
+                                List<String> ret = new ArrayList<String>();
+                                while (resultSet.next()) {
+                                    ret.add(resultSet.getString(1));
+                                }
+                                return ret;
+                            } catch (SQLException e) {
+                                throw new AdsException(e);
+                            }
+                        }
+                        @Override
+                        public Object handleQueryIsEmpty() throws AdsException {
+                            return new ArrayList<String>();
+                        }
+                    });
+            return (List<String>) ret;
+        }
+
+        int deleteCellResourceById(String tableName, final String cellId, final List<String> idList)
+                throws AdsException {
+            String sql;
+            if (TABLE_ENTITY.equals(tableName)) {
+                sql = this.sqlDeleteCellResourceByIdFromEntity;
+            } else if (TABLE_LINK.equals(tableName)) {
+                sql = this.sqlDeleteCellResourceByIdFromLink;
+            } else if (TABLE_DAV_NODE.equals(tableName)) {
+                sql = this.sqlDeleteCellResourceByIdFromDavNode;
+            } else {
+                throw new AdsException("Unknown table name. [" + tableName + "]");
+            }
+            return this.executeUpdateSqlForCount(createSearchSqlQueryString(sql, idList),
+                    new StatementHandler() {
+                        @Override
+                        public void handle(PreparedStatement stmt) throws SQLException {
+                            int index = 1;
+                            stmt.setString(index++, cellId);
+                            for (String uuid : idList) {
+                                stmt.setString(index++, uuid);
+                            }
+                        }
+                    });
+        }
+
         Long countEntity() throws AdsException {
             Object ret = this.executeQuerySql(
                     this.sqlEntityCount,
@@ -1057,6 +1322,52 @@ public class JdbcAds implements Ads {
             return (List<JSONObject>) ret;
         }
 
+        @SuppressWarnings("unchecked")
+        List<JSONObject> getRangeSummaryList(final String sql, final String idPrefix, final int prefixLength)
+                throws AdsException {
+            Object ret = this.executeQuerySql(sql,
+                    new StatementHandler() {
+                        @Override
+                        public void handle(PreparedStatement stmt) throws SQLException {
+                            stmt.setInt(1, prefixLength);
+                            stmt.setString(2, createLikePrefixPattern(idPrefix));
+                        }
+                    },
+                    QUERY_RESULT_HANDLER_FOR_RANGE_SUMMARY);
+            return (List<JSONObject>) ret;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<JSONObject> getEntityListByIdPrefix(final String idPrefix) throws AdsException {
+            Object ret = this.executeQuerySql(this.sqlEntityRangeSelect, new StatementHandlerForIdPrefix(idPrefix),
+                    createEntityQueryResultHandler());
+            return (List<JSONObject>) ret;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<JSONObject> getLinkListByIdPrefix(final String idPrefix) throws AdsException {
+            Object ret = this.executeQuerySql(this.sqlLinkRangeSelect, new StatementHandlerForIdPrefix(idPrefix),
+                    createLinkQueryResultHandler());
+            return (List<JSONObject>) ret;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<JSONObject> getDavNodeListByIdPrefix(final String idPrefix) throws AdsException {
+            Object ret = this.executeQuerySql(this.sqlDavNodeRangeSelect, new StatementHandlerForIdPrefix(idPrefix),
+                    createDavNodeQueryResultHandler());
+            return (List<JSONObject>) ret;
+        }
+
+        /**
+         * uuidの前方一致検索用に、LIKE句のパターンを作成する.
+         * uuidに含まれ得る「_」がワイルドカードとして扱われないよう、エスケープする。
+         * @param idPrefix uuidの先頭文字列
+         * @return LIKE句のパターン
+         */
+        static String createLikePrefixPattern(String idPrefix) {
+            return idPrefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        }
+
         Connection getConnection() throws AdsException {
             try {
                 // 接続する。
@@ -1186,6 +1497,104 @@ public class JdbcAds implements Ads {
             }
         }
 
+        /**
+         * 更新系SQLを実行し、更新件数を返却する.
+         * @param sql SQL
+         * @param sp プレースホルダへ値を埋め込むHandler
+         * @return 更新件数
+         * @throws AdsException SQLの実行に失敗した場合
+         */
+        int executeUpdateSqlForCount(String sql, StatementHandler sp) throws AdsException {
+            Connection con = this.getConnection();
+            PreparedStatement stmt = null;
+            try {
+                stmt = con.prepareStatement(sql);
+                sp.handle(stmt);
+                int count = stmt.executeUpdate();
+                if (!AUTO_COMMIT) {
+                    con.commit();
+                }
+                return count;
+            } catch (SQLException e) {
+                if (null != stmt) {
+                    DcCoreLog.Server.JDBC_EXEC_SQL.params(
+                            ((DelegatingPreparedStatement) stmt).getDelegate().toString()).writeLog();
+                }
+                throw new AdsException(e);
+            } finally {
+                try {
+                    if (null != stmt) {
+                        stmt.close();
+                    }
+                    con.close();
+                } catch (SQLException e) {
+                    DcCoreLog.Server.RDB_DISCONNECT_FAIL.params(e.getMessage()).reason(e).writeLog();
+                    throw new AdsException(e);
+                }
+            }
+        }
+
+        /**
+         * 同一のSQLをバッチ実行する.
+         * 途中まで反映された状態とならないよう、全てのバッチを1トランザクションで実行する。
+         * @param sql 1行分のSQL
+         * @param handlers 1回のバッチ実行ごとにプレースホルダへ値を埋め込んでaddBatchするHandler
+         * @param expectedCount 想定する更新件数
+         * @throws AdsException SQLの実行に失敗した場合、または更新件数が想定と異なる場合
+         */
+        void executeBatchUpdateSql(String sql, List<StatementHandler> handlers, int expectedCount)
+                throws AdsException {
+            Connection con = this.getConnection();
+            PreparedStatement stmt = null;
+            boolean autoCommit = AUTO_COMMIT;
+            int count = 0;
+            boolean countUnknown = false;
+            try {
+                autoCommit = con.getAutoCommit();
+                con.setAutoCommit(false);
+                stmt = con.prepareStatement(sql);
+                for (StatementHandler sp : handlers) {
+                    sp.handle(stmt);
+                    for (int result : stmt.executeBatch()) {
+                        if (result >= 0) {
+                            count += result;
+                        } else {
+                            // rewriteBatchedStatementsにより複数行のSQLに書き換えられた場合は、行ごとの件数は返却されない
+                            countUnknown = true;
+                        }
+                    }
+                }
+                con.commit();
+            } catch (SQLException e) {
+                if (null != stmt) {
+                    DcCoreLog.Server.JDBC_EXEC_SQL.params(
+                            ((DelegatingPreparedStatement) stmt).getDelegate().toString()).writeLog();
+                }
+                try {
+                    con.rollback();
+                } catch (SQLException e1) {
+                    log.info("Failed to rollback.", e1);
+                }
+                throw new AdsException(e);
+            } finally {
+                try {
+                    if (null != stmt) {
+                        stmt.close();
+                    }
+                    con.setAutoCommit(autoCommit);
+                    con.close();
+                } catch (SQLException e) {
+                    DcCoreLog.Server.RDB_DISCONNECT_FAIL.params(e.getMessage()).reason(e).writeLog();
+                    throw new AdsException(e);
+                }
+            }
+            if (!countUnknown && count != expectedCount) {
+                throw new AdsException("["
+                        + count + "] rows have been affected while " + expectedCount
+                        + " row is expected to be affected.");
+            }
+        }
+
         /**
          * SQLのPreparedStatementを受け取ってプレースホルダに値を埋め込むHandler.
          */
@@ -1244,8 +1653,8 @@ public class JdbcAds implements Ads {
 
             @Override
             public void handle(PreparedStatement stmt) throws SQLException {
-                int index = 1;
                 for (EntitySetDocHandler docHandler : bulkRequestList) {
+                    int index = 1;
                     stmt.setString(index++, docHandler.getType());
                     stmt.setString(index++, docHandler.getCellId());
                     stmt.setString(index++, docHandler.getBoxId());
@@ -1258,6 +1667,7 @@ public class JdbcAds implements Ads {
                     stmt.setLong(index++, docHandler.getPublished());
                     stmt.setLong(index++, docHandler.getUpdated());
                     stmt.setString(index++, docHandler.getId());
+                    stmt.addBatch();
                 }
             }
         }
@@ -1274,8 +1684,8 @@ public class JdbcAds implements Ads {
 
             @Override
             public void handle(PreparedStatement stmt) throws SQLException {
-                int index = 1;
                 for (LinkDocHandler docHandler : bulkRequestList) {
+                    int index = 1;
                     stmt.setString(index++, docHandler.getCellId());
                     stmt.setString(index++, docHandler.getBoxId());
                     stmt.setString(index++, docHandler.getNodeId());
@@ -1286,6 +1696,7 @@ public class JdbcAds implements Ads {
                     stmt.setLong(index++, docHandler.getPublished());
                     stmt.setLong(index++, docHandler.getUpdated());
                     stmt.setString(index++, docHandler.getId());
+                    stmt.addBatch();
                 }
             }
         }
@@ -1417,6 +1828,22 @@ public class JdbcAds implements Ads {
             }
         }
 
+        /**
+         * uuidの前方一致検索を扱うためのStatementHandler.
+         */
+        static class StatementHandlerForIdPrefix extends StatementHandler {
+            String idPrefix;
+
+            StatementHandlerForIdPrefix(String idPrefix) {
+                this.idPrefix = idPrefix;
+            }
+
+            @Override
+            public void handle(PreparedStatement stmt) throws SQLException {
+                stmt.setString(1, createLikePrefixPattern(idPrefix));
+            }
+        }
+
         /**
          * PreStatementに.
          */
@@ -1493,6 +1920,20 @@ public class JdbcAds implements Ads {
         static String countCellResourceFromLink =
                 DcCoreUtils.readStringResource("es/ads/count-cellresource-from-link.sql", CharEncoding.UTF_8);
 
+        // Cellデータ掃除用SQL群
+        static String selectCellResourceIdFromEntity = DcCoreUtils.readStringResource(
+                "es/ads/select-cellresource-id-from-entity.sql", CharEncoding.UTF_8);
+        static String selectCellResourceIdFromDavNode = DcCoreUtils.readStringResource(
+                "es/ads/select-cellresource-id-from-davnode.sql", CharEncoding.UTF_8);
+        static String selectCellResourceIdFromLink = DcCoreUtils.readStringResource(
+                "es/ads/select-cellresource-id-from-link.sql", CharEncoding.UTF_8);
+        static String deleteCellResourceByIdFromEntity = DcCoreUtils.readStringResource(
+                "es/ads/delete-cellresource-by-id-from-entity.sql", CharEncoding.UTF_8);
+        static String deleteCellResourceByIdFromDavNode = DcCoreUtils.readStringResource(
+                "es/ads/delete-cellresource-by-id-from-davnode.sql", CharEncoding.UTF_8);
+        static String deleteCellResourceByIdFromLink = DcCoreUtils.readStringResource(
+                "es/ads/delete-cellresource-by-id-from-link.sql", CharEncoding.UTF_8);
+
         static String selectEntity =
                 DcCoreUtils.readStringResource("es/ads/entity-select.sql", CharEncoding.UTF_8);
         static String countEntity =
@@ -1519,9 +1960,27 @@ public class JdbcAds implements Ads {
         static String searchDav =
                 DcCoreUtils.readStringResource("es/ads/dav-search.sql", CharEncoding.UTF_8);
 
+        // 整合性チェック用SQL群
+        static String rangeSummaryEntity =
+                DcCoreUtils.readStringResource("es/ads/entity-range-summary.sql", CharEncoding.UTF_8);
+        static String rangeSummaryLink =
+                DcCoreUtils.readStringResource("es/ads/link-range-summary.sql", CharEncoding.UTF_8);
+        static String rangeSummaryDav =
+                DcCoreUtils.readStringResource("es/ads/dav-range-summary.sql", CharEncoding.UTF_8);
+        static String rangeSelectEntity =
+                DcCoreUtils.readStringResource("es/ads/entity-range-select.sql", CharEncoding.UTF_8);
+        static String rangeSelectLink =
+                DcCoreUtils.readStringResource("es/ads/link-range-select.sql", CharEncoding.UTF_8);
+        static String rangeSelectDav =
+                DcCoreUtils.readStringResource("es/ads/dav-range-select.sql", CharEncoding.UTF_8);
+
         // Cell管理用SQL群
         static String insertCellDelete =
                 DcCoreUtils.readStringResource("es/ads/celldelete-insert.sql", CharEncoding.UTF_8);
+        static String selectCellDelete =
+                DcCoreUtils.readStringResource("es/ads/celldelete-select.sql", CharEncoding.UTF_8);
+        static String deleteCellDelete =
+                DcCoreUtils.readStringResource("es/ads/celldelete-delete.sql", CharEncoding.UTF_8);
 
         // ENTITY 操作 SQLの 項目数
         static final int NUMCOLS_ENTITY = 12;
@@ -0,0 +1,160 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.utils.MemcachedClient;
+import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+
+/**
+ * NTKP(NavigationTargetKeyProperty)の値のキャッシュを扱うクラス.
+ * リンク先エンティティのUUIDとキー値の対応を、Cell/Box/Node/EntityType単位のバージョン番号と組にしてキャッシュする。
+ * リンク先エンティティの登録・更新・削除時にバージョン番号を進めることで、古いキャッシュを参照させないようにする。
+ */
+public class NtkpValueCache {
+    static Logger log = LoggerFactory.getLogger(NtkpValueCache.class);
+    static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+
+    /**
+     * キャッシュ情報のキー：対象EntityTypeの全件を保持しているか否か.
+     */
+    public static final String KEY_COMPLETE = "complete";
+
+    /**
+     * キャッシュ情報のキー：UUIDとキー値の対応Map.
+     */
+    public static final String KEY_VALUES = "values";
+
+    static MemcachedClient getMcdClient() {
+        return mcdClient;
+    }
+
+    private NtkpValueCache() {
+    }
+
+    /**
+     * 現在のバージョン番号を取得する.
+     * @param cellId CellのUUID
+     * @param boxId BoxのUUID
+     * @param nodeId NodeのUUID
+     * @param entityType リンク先のEntityType名
+     * @return バージョン番号。キャッシュが無効またはアクセスに失敗した場合は-1
+     */
+    public static long getVersion(String cellId, String boxId, String nodeId, String entityType) {
+        if (!DcCoreConfig.isNtkpCacheEnabled()) {
+            return -1;
+        }
+        String key = versionKey(cellId, boxId, nodeId, entityType);
+        try {
+            long version = getMcdClient().getLongValue(key);
+            if (version < 0) {
+                // バージョン番号が追い出された場合でも過去の番号と重複しないよう、現在時刻を初期値とする
+                getMcdClient().createLongValue(key, System.currentTimeMillis());
+                version = getMcdClient().getLongValue(key);
+            }
+            return version;
+        } catch (MemcachedClientException e) {
+            log.info("Failed to get NtkpValueCache version.");
+            return -1;
+        }
+    }
+
+    /**
+     * キャッシュ情報を取得する.
+     * @param cellId CellのUUID
+     * @param boxId BoxのUUID
+     * @param nodeId NodeのUUID
+     * @param entityType リンク先のEntityType名
+     * @param field 値を取得するフィールド(ex. s.Name)
+     * @param version バージョン番号
+     * @return キャッシュ情報。キャッシュに存在しない場合はnull
+     */
+    public static Map<String, Object> get(String cellId, String boxId, String nodeId, String entityType,
+            String field, long version) {
+        if (!DcCoreConfig.isNtkpCacheEnabled() || version < 0) {
+            return null;
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> cache = getMcdClient().get(
+                    cacheKey(cellId, boxId, nodeId, entityType, field, version), Map.class);
+            return cache;
+        } catch (MemcachedClientException e) {
+            // キャッシュのアクセスに失敗した場合は、DBからデータを取得させるためnullを返却
+            log.info("Failed to get NtkpValueCache.");
+            return null;
+        }
+    }
+
+    /**
+     * キャッシュ情報を登録する.
+     * @param cellId CellのUUID
+     * @param boxId BoxのUUID
+     * @param nodeId NodeのUUID
+     * @param entityType リンク先のEntityType名
+     * @param field 値を取得するフィールド(ex. s.Name)
+     * @param version バージョン番号
+     * @param values UUIDとキー値の対応Map
+     * @param complete 対象EntityTypeの全件を保持している場合はtrue
+     */
+    public static void cache(String cellId, String boxId, String nodeId, String entityType,
+            String field, long version, Map<String, String> values, boolean complete) {
+        if (!DcCoreConfig.isNtkpCacheEnabled() || version < 0) {
+            return;
+        }
+        Map<String, Object> cache = new HashMap<String, Object>();
+        cache.put(KEY_COMPLETE, complete);
+        cache.put(KEY_VALUES, new HashMap<String, String>(values));
+        try {
+            getMcdClient().put(cacheKey(cellId, boxId, nodeId, entityType, field, version),
+                    DcCoreConfig.getCacheMemcachedExpiresIn(), cache);
+        } catch (MemcachedClientException e) {
+            log.info("Failed to cache NtkpValueCache.");
+        }
+    }
+
+    /**
+     * バージョン番号を進め、指定したEntityTypeのキャッシュ情報を無効化する.
+     * @param cellId CellのUUID
+     * @param boxId BoxのUUID
+     * @param nodeId NodeのUUID
+     * @param entityType リンク先のEntityType名
+     */
+    public static void clear(String cellId, String boxId, String nodeId, String entityType) {
+        if (!DcCoreConfig.isNtkpCacheEnabled()) {
+            return;
+        }
+        String key = versionKey(cellId, boxId, nodeId, entityType);
+        getMcdClient().createLongValue(key, System.currentTimeMillis());
+        getMcdClient().incrementLongValue(key);
+    }
+
+    static String versionKey(String cellId, String boxId, String nodeId, String entityType) {
+        return "ntkpver:" + cellId + ":" + boxId + ":" + nodeId + ":" + entityType;
+    }
+
+    static String cacheKey(String cellId, String boxId, String nodeId, String entityType,
+            String field, long version) {
+        return "ntkp:" + cellId + ":" + boxId + ":" + nodeId + ":" + entityType + ":" + field + ":" + version;
+    }
+}
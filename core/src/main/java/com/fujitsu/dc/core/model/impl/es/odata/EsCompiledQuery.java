@@ -0,0 +1,333 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.odata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.odata4j.edm.EdmProperty;
+import org.odata4j.expression.AndExpression;
+import org.odata4j.expression.BinaryCommonExpression;
+import org.odata4j.expression.BoolParenExpression;
+import org.odata4j.expression.BooleanLiteral;
+import org.odata4j.expression.CommonExpression;
+import org.odata4j.expression.DoubleLiteral;
+import org.odata4j.expression.EntitySimpleProperty;
+import org.odata4j.expression.EqExpression;
+import org.odata4j.expression.GeExpression;
+import org.odata4j.expression.GtExpression;
+import org.odata4j.expression.Int64Literal;
+import org.odata4j.expression.IntegralLiteral;
+import org.odata4j.expression.LeExpression;
+import org.odata4j.expression.LtExpression;
+import org.odata4j.expression.NullLiteral;
+import org.odata4j.expression.OrExpression;
+import org.odata4j.expression.OrderByExpression;
+import org.odata4j.expression.ParenExpression;
+import org.odata4j.expression.StartsWithMethodCallExpression;
+import org.odata4j.expression.StringLiteral;
+import org.odata4j.expression.SubstringOfMethodCallExpression;
+import org.odata4j.producer.QueryInfo;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+
+/**
+ * $filter, $orderby, $select から組み立てたESクエリのテンプレート.
+ * リテラル値の位置をLiteralSlotとして保持しており、同じ形のクエリに対しては
+ * Visitorによる組み立てを行わずにリテラル値を差し込むだけでクエリを生成する。
+ * テンプレートはクエリの形、EntityTypeの名前、参照しているプロパティの型とフィールド名をキーとしてキャッシュする。
+ */
+public class EsCompiledQuery {
+
+    private static final int CACHE_SIZE = DcCoreConfig.getCompiledQueryCacheSize();
+
+    /**
+     * テンプレートのキャッシュ(LRU).
+     */
+    private static Map<String, EsCompiledQuery> cache = Collections.synchronizedMap(
+            new LinkedHashMap<String, EsCompiledQuery>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, EsCompiledQuery> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private Map<String, Object> filter;
+    private List<Map<String, Object>> sort;
+    private Map<String, Object> select;
+
+    /**
+     * コンストラクタ.
+     * @param filter $filterから組み立てたフィルタ($filter未指定の場合はnull)
+     * @param sort $orderbyから組み立てたソート条件($orderby未指定の場合はnull)
+     * @param select $selectから組み立てたクエリ要素
+     */
+    EsCompiledQuery(Map<String, Object> filter, List<Map<String, Object>> sort, Map<String, Object> select) {
+        this.filter = filter;
+        this.sort = sort;
+        this.select = select;
+    }
+
+    /**
+     * リテラル値を差し込んだフィルタを返す.
+     * @param key キャッシュキー
+     * @return フィルタ($filter未指定の場合はnull)
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> getFilter(Key key) {
+        if (this.filter == null) {
+            return null;
+        }
+        return (Map<String, Object>) instantiate(this.filter, key.getLiteralValues());
+    }
+
+    /**
+     * ソート条件を返す.
+     * @return ソート条件($orderby未指定の場合はnull)
+     */
+    @SuppressWarnings("unchecked")
+    List<Map<String, Object>> getSort() {
+        if (this.sort == null) {
+            return null;
+        }
+        return (List<Map<String, Object>>) instantiate(this.sort, null);
+    }
+
+    /**
+     * $selectから組み立てたクエリ要素を返す.
+     * @return クエリ要素
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> getSelect() {
+        return (Map<String, Object>) instantiate(this.select, null);
+    }
+
+    /**
+     * テンプレートをコピーし、LiteralSlotをリテラル値に置き換える.
+     * @param template テンプレート
+     * @param values リテラル値のリスト
+     * @return コピーしたクエリ要素
+     */
+    @SuppressWarnings("unchecked")
+    private static Object instantiate(Object template, List<Object> values) {
+        if (template instanceof LiteralSlot) {
+            return values.get(((LiteralSlot) template).index);
+        } else if (template instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) template;
+            Map<String, Object> copy = new HashMap<String, Object>(map.size() * 2);
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                copy.put(entry.getKey(), instantiate(entry.getValue(), values));
+            }
+            return copy;
+        } else if (template instanceof List) {
+            List<Object> list = (List<Object>) template;
+            List<Object> copy = new ArrayList<Object>(list.size());
+            for (Object element : list) {
+                copy.add(instantiate(element, values));
+            }
+            return copy;
+        }
+        return template;
+    }
+
+    /**
+     * キャッシュからテンプレートを取得する.
+     * @param key キャッシュキー
+     * @return テンプレート。キャッシュに存在しない場合はnull
+     */
+    static EsCompiledQuery get(Key key) {
+        return cache.get(key.cacheKey);
+    }
+
+    /**
+     * テンプレートをキャッシュに登録する.
+     * @param key キャッシュキー
+     * @param compiled テンプレート
+     */
+    static void put(Key key, EsCompiledQuery compiled) {
+        cache.put(key.cacheKey, compiled);
+    }
+
+    /**
+     * クエリのキャッシュキーを作成する.
+     * @param handler クエリハンドラ
+     * @param queryInfo OData4jのQueryInfo
+     * @return キャッシュキー。キャッシュが無効またはテンプレート化できないクエリの場合はnull
+     */
+    static Key createKey(EsQueryHandler handler, QueryInfo queryInfo) {
+        if (CACHE_SIZE <= 0 || handler.entityType == null) {
+            return null;
+        }
+        Key key = new Key();
+        TreeSet<String> properties = new TreeSet<String>();
+        StringBuilder shape = new StringBuilder();
+        shape.append(handler.getClass().getName()).append('|').append(handler.entityType.getName()).append('|');
+        if (queryInfo.filter != null && !appendShape(queryInfo.filter, shape, key.literals, properties)) {
+            return null;
+        }
+        shape.append('|');
+        if (queryInfo.orderBy != null) {
+            for (OrderByExpression order : queryInfo.orderBy) {
+                if (!appendShape(order.getExpression(), shape, key.literals, properties)) {
+                    return null;
+                }
+                shape.append(handler.getOrderOption(order.getDirection())).append(',');
+            }
+        }
+        shape.append('|');
+        if (queryInfo.select != null) {
+            for (EntitySimpleProperty select : queryInfo.select) {
+                if (select == null) {
+                    return null;
+                }
+                appendShape(select, shape, key.literals, properties);
+            }
+        }
+        // 参照しているプロパティの型とフィールド名が変わった場合は別のクエリとして扱う
+        shape.append('|');
+        for (String name : properties) {
+            EdmProperty edmProperty = handler.entityType.findProperty(name);
+            shape.append(name.length()).append(':').append(name).append('=');
+            if (edmProperty != null) {
+                shape.append(edmProperty.getType().getFullyQualifiedTypeName())
+                        .append(':').append(edmProperty.getCollectionKind());
+            }
+            shape.append(':').append(handler.getFieldName(name)).append(',');
+        }
+        key.cacheKey = shape.toString();
+        return key;
+    }
+
+    /**
+     * 式の形をキー文字列に追加する.
+     * @param expr 式
+     * @param shape キー文字列
+     * @param literals リテラルのリスト
+     * @param properties 参照しているプロパティ名
+     * @return テンプレート化できない式を含む場合はfalse
+     */
+    private static boolean appendShape(CommonExpression expr, StringBuilder shape,
+            List<CommonExpression> literals, TreeSet<String> properties) {
+        if (expr instanceof EntitySimpleProperty) {
+            String name = ((EntitySimpleProperty) expr).getPropertyName();
+            properties.add(name);
+            shape.append("p(").append(name.length()).append(':').append(name).append(')');
+            return true;
+        } else if (expr instanceof NullLiteral) {
+            shape.append("null");
+            return true;
+        } else if (expr instanceof StringLiteral
+                || expr instanceof IntegralLiteral
+                || expr instanceof Int64Literal
+                || expr instanceof DoubleLiteral
+                || expr instanceof BooleanLiteral) {
+            literals.add(expr);
+            shape.append('?').append(expr.getClass().getSimpleName());
+            return true;
+        } else if (expr instanceof AndExpression
+                || expr instanceof OrExpression
+                || expr instanceof EqExpression
+                || expr instanceof GeExpression
+                || expr instanceof GtExpression
+                || expr instanceof LeExpression
+                || expr instanceof LtExpression) {
+            BinaryCommonExpression binary = (BinaryCommonExpression) expr;
+            shape.append(expr.getClass().getSimpleName()).append('(');
+            boolean result = appendShape(binary.getLHS(), shape, literals, properties);
+            shape.append(',');
+            result = result && appendShape(binary.getRHS(), shape, literals, properties);
+            shape.append(')');
+            return result;
+        } else if (expr instanceof StartsWithMethodCallExpression) {
+            StartsWithMethodCallExpression method = (StartsWithMethodCallExpression) expr;
+            return appendMethodShape("startswith", method.getTarget(), method.getValue(), shape, literals, properties);
+        } else if (expr instanceof SubstringOfMethodCallExpression) {
+            SubstringOfMethodCallExpression method = (SubstringOfMethodCallExpression) expr;
+            return appendMethodShape("substringof", method.getTarget(), method.getValue(), shape, literals, properties);
+        } else if (expr instanceof BoolParenExpression) {
+            shape.append("bp(");
+            boolean result = appendShape(((BoolParenExpression) expr).getExpression(), shape, literals, properties);
+            shape.append(')');
+            return result;
+        } else if (expr instanceof ParenExpression) {
+            shape.append("p(");
+            boolean result = appendShape(((ParenExpression) expr).getExpression(), shape, literals, properties);
+            shape.append(')');
+            return result;
+        }
+        // 上記以外の式は対象外とし、都度Visitorでクエリを組み立てる
+        return false;
+    }
+
+    private static boolean appendMethodShape(String name, CommonExpression target, CommonExpression value,
+            StringBuilder shape, List<CommonExpression> literals, TreeSet<String> properties) {
+        shape.append(name).append('(');
+        boolean result = appendShape(target, shape, literals, properties);
+        shape.append(',');
+        result = result && appendShape(value, shape, literals, properties);
+        shape.append(')');
+        return result;
+    }
+
+    /**
+     * テンプレート内のリテラル値の位置.
+     */
+    static final class LiteralSlot {
+        private final int index;
+
+        LiteralSlot(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * テンプレートのキャッシュキーと、リクエストで指定されたリテラルの組.
+     */
+    static final class Key {
+        private String cacheKey;
+        private List<CommonExpression> literals = new ArrayList<CommonExpression>();
+
+        /**
+         * テンプレート作成時にリテラルに対応するLiteralSlotを返す.
+         * @param expr リテラル
+         * @return LiteralSlot。対応するリテラルが無い場合はnull
+         */
+        LiteralSlot getSlot(CommonExpression expr) {
+            for (int i = 0; i < this.literals.size(); i++) {
+                if (this.literals.get(i) == expr) {
+                    return new LiteralSlot(i);
+                }
+            }
+            return null;
+        }
+
+        List<Object> getLiteralValues() {
+            List<Object> values = new ArrayList<Object>(this.literals.size());
+            for (CommonExpression literal : this.literals) {
+                values.add(EsQueryHandler.getLiteralValue(literal));
+            }
+            return values;
+        }
+    }
+}
@@ -64,6 +64,7 @@ import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcSearchHit;
 import com.fujitsu.dc.common.es.response.DcSearchHits;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
@@ -84,6 +85,7 @@ import com.fujitsu.dc.core.model.impl.es.QueryMapFactory;
 import com.fujitsu.dc.core.model.impl.es.accessor.DataSourceAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.ODataLinkAccessor;
+import com.fujitsu.dc.core.model.impl.es.cache.NtkpValueCache;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandlerForBulkRequest;
@@ -94,6 +96,7 @@ import com.fujitsu.dc.core.model.lock.LockManager;
 import com.fujitsu.dc.core.odata.DcODataProducer;
 import com.fujitsu.dc.core.odata.OEntityWrapper;
 import com.fujitsu.dc.core.rs.odata.AbstractODataResource;
+import com.fujitsu.dc.core.rs.odata.BulkLinkRequest;
 import com.fujitsu.dc.core.rs.odata.BulkRequest;
 import com.fujitsu.dc.core.rs.odata.ODataBatchResource.NavigationPropertyBulkContext;
 import com.fujitsu.dc.core.rs.odata.ODataBatchResource.NavigationPropertyLinkType;
@@ -351,9 +354,10 @@ public abstract class EsODataProducer implements DcODataProducer {
 
     /**
      * PK, UKで指定されたユニーク性確保のためOData空間のLockを行う.
-     * @param lock
+     * @return 取得したロック
      */
-    Lock lock() {
+    @Override
+    public Lock lock() {
         return LockManager.getLock(Lock.CATEGORY_ODATA, this.getCellId(), null, this.getNodeId());
     }
 
@@ -745,7 +749,7 @@ public abstract class EsODataProducer implements DcODataProducer {
 
             Map<String, String> ntkpProperties = new HashMap<String, String>();
             Map<String, String> ntkpValueMap = new HashMap<String, String>();
-            getNtkpValueMap(eSet, ntkpProperties, ntkpValueMap);
+            getNtkpValueMap(eSet, hits, ntkpProperties, ntkpValueMap);
 
             List<EntitySimpleProperty> selectQuery = null;
             if (queryInfo != null) {
@@ -876,10 +880,20 @@ public abstract class EsODataProducer implements DcODataProducer {
         return null;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * 検索結果に含まれるリンク先のNTKPの値を取得する.
+     * @param eSet EdmEntitySet
+     * @param hits 検索結果
+     * @param ntkpProperties NTKPのプロパティ名とリンク先EntityType名の対応Map
+     * @param ntkpValueMap NTKPマップ
+     */
     private void getNtkpValueMap(EdmEntitySet eSet,
+            DcSearchHit[] hits,
             Map<String, String> ntkpProperties,
             Map<String, String> ntkpValueMap) {
+        // Property/ComplexTypePropertyの一覧では、EntityType/ComplexTypeの名前対応をスキーマ全体で保持する必要があるため全件取得する
+        boolean isFullMapRequired = Property.EDM_TYPE_NAME.equals(eSet.getName())
+                || ComplexTypeProperty.EDM_TYPE_NAME.equals(eSet.getName());
         Enumerable<EdmProperty> eProps = eSet.getType().getProperties();
         for (EdmProperty eProp : eProps) {
             // リンク対象の検索情報を組み立てる
@@ -890,54 +904,198 @@ public abstract class EsODataProducer implements DcODataProducer {
                 String propName = ntkp.get("propName");
                 ntkpProperties.put(propertyName, entityType);
 
-                // 1階層目のNTKPのエンティティ一覧を取得する
-                EntitySetAccessor ntkpAccessor = this.getAccessorForEntitySet(entityType);
-                // Cell、Box,NodeIDの検索条件を追加
-                List<Map<String, Object>> implicitFilters = getImplicitFilters(entityType);
-                Map<String, Object> searchQuery = new HashMap<String, Object>();
-                if (implicitFilters.size() != 0) {
-                    Map<String, Object> query = QueryMapFactory.filteredQuery(null,
-                            QueryMapFactory.mustQuery(implicitFilters));
-
-                    searchQuery.put("query", query);
+                // 検索結果に含まれるリンク先のIDのみを取得対象とする
+                Set<String> linkIds = getManyToOneLinkIds(hits, getLinkskey(entityType));
+                if (linkIds.isEmpty() && !isFullMapRequired) {
+                    continue;
                 }
+                Map<String, String> ntkpValues = getNtkpValues(entityType, propName, linkIds, isFullMapRequired);
 
-                DcSearchHit[] ntkpSearchResults = ntkpAccessor.search(searchQuery).getHits().getHits();
-
-                // 2階層目のNTKPが存在する場合、2階層目のNTKPのエンティティ一覧を取得する
-                DcSearchHit[] nestNtkpSearchResults = null;
-                Map<String, String> nestNtkpValueMap = new HashMap<String, String>();
-                if (propName.startsWith("_")) {
-                    HashMap<String, String> tmpntkp = AbstractODataResource.convertNTKP(propName);
-                    entityType = tmpntkp.get("entityType");
-                    propName = tmpntkp.get("propName");
-                    ntkpAccessor = this.getAccessorForEntitySet(entityType);
-                    nestNtkpSearchResults = ntkpAccessor.search(searchQuery).getHits().getHits();
-                    for (DcSearchHit nestNtkpSearchResult : nestNtkpSearchResults) {
-                        String linkId = nestNtkpSearchResult.getId();
-                        String linkNtkpValue = ((Map<String, Object>) nestNtkpSearchResult.getSource().get(
-                                OEntityDocHandler.KEY_STATIC_FIELDS)).get(propName).toString();
-                        nestNtkpValueMap.put(linkId, linkNtkpValue);
-                    }
+                // LinkIDがKey,NTKPの値がValueのMapを作成する
+                for (Map.Entry<String, String> ntkpValue : ntkpValues.entrySet()) {
+                    ntkpValueMap.put(getLinkskey(propertyName) + ntkpValue.getKey(), ntkpValue.getValue());
                 }
+            }
+        }
+    }
 
-                // LinkIDがKey,NTKPの値がValueのMapを作成する
-                for (DcSearchHit ntkpSearchResult : ntkpSearchResults) {
-                    String linkId = ntkpSearchResult.getId();
-                    Map<String, Object> linkFields = (Map<String, Object>) ntkpSearchResult.getSource().get(
-                            OEntityDocHandler.KEY_LINK);
-                    String linkNtkpValue = null;
-                    if (linkFields.containsKey(entityType)) {
-                        linkNtkpValue = nestNtkpValueMap.get(linkFields.get(entityType));
-                    } else {
-                        Map<String, Object> staticFields = (Map<String, Object>) ntkpSearchResult.getSource().get(
-                                OEntityDocHandler.KEY_STATIC_FIELDS);
-                        linkNtkpValue = staticFields.get(propName).toString();
-                    }
-                    ntkpValueMap.put(getLinkskey(propertyName) + linkId, linkNtkpValue);
+    /**
+     * 検索結果からN:1のリンク先IDの一覧を取得する.
+     * @param hits 検索結果
+     * @param linksKey linksのkey情報
+     * @return リンク先IDの一覧
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> getManyToOneLinkIds(DcSearchHit[] hits, String linksKey) {
+        Set<String> linkIds = new HashSet<String>();
+        for (DcSearchHit hit : hits) {
+            Map<String, Object> linkFields = (Map<String, Object>) hit.getSource().get(OEntityDocHandler.KEY_LINK);
+            if (linkFields != null && linkFields.get(linksKey) != null) {
+                linkIds.add(linkFields.get(linksKey).toString());
+            }
+        }
+        return linkIds;
+    }
+
+    /**
+     * リンク先IDとNTKPの値の対応Mapを取得する.
+     * @param entityType リンク先のEntityType名
+     * @param propName リンク先のプロパティ名(2階層目のNTKPの場合は"_EntityType.Name"形式)
+     * @param linkIds 取得対象のリンク先ID
+     * @param isFullMapRequired 全件取得する場合はtrue
+     * @return リンク先IDとNTKPの値の対応Map
+     */
+    private Map<String, String> getNtkpValues(String entityType,
+            String propName,
+            Set<String> linkIds,
+            boolean isFullMapRequired) {
+        if (!propName.startsWith("_")) {
+            return getNtkpFieldValues(entityType, OEntityDocHandler.KEY_STATIC_FIELDS, propName,
+                    linkIds, isFullMapRequired);
+        }
+
+        // 2階層目のNTKPが存在する場合、1階層目のリンク先に設定された2階層目のリンク先IDを取得する
+        HashMap<String, String> nestNtkp = AbstractODataResource.convertNTKP(propName);
+        String nestEntityType = nestNtkp.get("entityType");
+        String nestPropName = nestNtkp.get("propName");
+        Map<String, String> nestLinkIds = getNtkpFieldValues(entityType, OEntityDocHandler.KEY_LINK, nestEntityType,
+                linkIds, isFullMapRequired);
+        Set<String> nestIds = new HashSet<String>();
+        for (String nestLinkId : nestLinkIds.values()) {
+            if (nestLinkId != null) {
+                nestIds.add(nestLinkId);
+            }
+        }
+        Map<String, String> nestValues = getNtkpFieldValues(nestEntityType, OEntityDocHandler.KEY_STATIC_FIELDS,
+                nestPropName, nestIds, isFullMapRequired);
+
+        Map<String, String> ntkpValues = new HashMap<String, String>();
+        Map<String, String> ownValues = null;
+        for (Map.Entry<String, String> nestLinkId : nestLinkIds.entrySet()) {
+            if (nestLinkId.getValue() != null) {
+                ntkpValues.put(nestLinkId.getKey(), nestValues.get(nestLinkId.getValue()));
+            } else {
+                // 2階層目のリンクを持たない場合は、1階層目のリンク先の値を設定する
+                if (ownValues == null) {
+                    ownValues = getNtkpFieldValues(entityType, OEntityDocHandler.KEY_STATIC_FIELDS, nestPropName,
+                            linkIds, isFullMapRequired);
                 }
+                ntkpValues.put(nestLinkId.getKey(), ownValues.get(nestLinkId.getKey()));
             }
         }
+        return ntkpValues;
+    }
+
+    /**
+     * リンク先IDとリンク先エンティティのフィールド値の対応Mapを取得する.
+     * キャッシュに存在しないIDのみをidsクエリで取得し、取得結果をキャッシュに追加する.
+     * @param entityType リンク先のEntityType名
+     * @param fieldType フィールドの種別(s:静的プロパティ / l:リンク情報)
+     * @param fieldName フィールド名
+     * @param ids 取得対象のリンク先ID
+     * @param isFullMapRequired 全件取得する場合はtrue
+     * @return リンク先IDとフィールド値の対応Map
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> getNtkpFieldValues(String entityType,
+            String fieldType,
+            String fieldName,
+            Set<String> ids,
+            boolean isFullMapRequired) {
+        String cellId = this.getCellId();
+        String boxId = this.getBoxId();
+        String nodeId = this.getNodeId();
+        String field = fieldType + "." + fieldName;
+
+        long version = NtkpValueCache.getVersion(cellId, boxId, nodeId, entityType);
+        Map<String, Object> cache = NtkpValueCache.get(cellId, boxId, nodeId, entityType, field, version);
+        Map<String, String> values = new HashMap<String, String>();
+        boolean isComplete = false;
+        if (cache != null) {
+            values.putAll((Map<String, String>) cache.get(NtkpValueCache.KEY_VALUES));
+            isComplete = Boolean.TRUE.equals(cache.get(NtkpValueCache.KEY_COMPLETE));
+        }
+
+        Set<String> missingIds = new HashSet<String>(ids);
+        missingIds.removeAll(values.keySet());
+        if (isFullMapRequired && (!isComplete || !missingIds.isEmpty())) {
+            // 全件取得が必要な場合は、リンク先のエンティティ一覧を取得し直す
+            values = searchNtkpFieldValues(entityType, fieldType, fieldName, null);
+            NtkpValueCache.cache(cellId, boxId, nodeId, entityType, field, version, values, true);
+            return values;
+        } else if (isFullMapRequired) {
+            return values;
+        }
+
+        if (!missingIds.isEmpty()) {
+            values.putAll(searchNtkpFieldValues(entityType, fieldType, fieldName, missingIds));
+            NtkpValueCache.cache(cellId, boxId, nodeId, entityType, field, version, values, isComplete);
+        }
+        Map<String, String> ret = new HashMap<String, String>();
+        for (String id : ids) {
+            if (values.containsKey(id)) {
+                ret.put(id, values.get(id));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * リンク先エンティティを検索し、IDとフィールド値の対応Mapを返す.
+     * @param entityType リンク先のEntityType名
+     * @param fieldType フィールドの種別(s:静的プロパティ / l:リンク情報)
+     * @param fieldName フィールド名
+     * @param ids 検索対象のID。nullの場合は全件を検索する
+     * @return IDとフィールド値の対応Map
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> searchNtkpFieldValues(String entityType,
+            String fieldType,
+            String fieldName,
+            Set<String> ids) {
+        EntitySetAccessor ntkpAccessor = this.getAccessorForEntitySet(entityType);
+        // Cell、Box,NodeIDの検索条件を追加
+        List<Map<String, Object>> queries = new ArrayList<Map<String, Object>>(getImplicitFilters(entityType));
+        Map<String, Object> searchQuery = new HashMap<String, Object>();
+        if (ids != null) {
+            queries.add(QueryMapFactory.idsQuery(ids));
+            searchQuery.put("size", ids.size());
+        }
+        if (queries.size() != 0) {
+            searchQuery.put("query", QueryMapFactory.filteredQuery(null, QueryMapFactory.mustQuery(queries)));
+        }
+
+        Map<String, String> values = new HashMap<String, String>();
+        DcSearchHit[] ntkpSearchResults = ntkpAccessor.search(searchQuery).getHits().getHits();
+        for (DcSearchHit ntkpSearchResult : ntkpSearchResults) {
+            Map<String, Object> fields = (Map<String, Object>) ntkpSearchResult.getSource().get(fieldType);
+            Object value = null;
+            if (fields != null) {
+                value = fields.get(fieldName);
+            }
+            values.put(ntkpSearchResult.getId(), value == null ? null : value.toString());
+        }
+        return values;
+    }
+
+    /**
+     * 指定したEntitySetをリンク先とするNTKPの値のキャッシュを無効化する.
+     * @param entitySetName エンティティセット名
+     */
+    protected void clearNtkpValueCache(String entitySetName) {
+        NtkpValueCache.clear(this.getCellId(), this.getBoxId(), this.getNodeId(), entitySetName);
+    }
+
+    /**
+     * リンクの登録・削除に伴い、リンク元・リンク先のEntitySetをリンク先とするNTKPの値のキャッシュを無効化する.
+     * @param sourceEntitySetName リンク元のエンティティセット名
+     * @param targetEntitySetName リンク先のエンティティセット名
+     */
+    protected void clearNtkpValueCache(String sourceEntitySetName, String targetEntitySetName) {
+        this.clearNtkpValueCache(sourceEntitySetName);
+        if (!sourceEntitySetName.equals(targetEntitySetName)) {
+            this.clearNtkpValueCache(targetEntitySetName);
+        }
     }
 
     /**
@@ -1016,6 +1174,7 @@ public abstract class EsODataProducer implements DcODataProducer {
 
             // 削除後の処理
             this.afterDelete();
+            this.clearNtkpValueCache(entitySetName);
 
         } finally {
             log.debug("unlock");
@@ -1105,6 +1264,7 @@ public abstract class EsODataProducer implements DcODataProducer {
 
         // 登録後処理
         this.afterCreate(entitySetName, entity, oedh);
+        this.clearNtkpValueCache(entitySetName);
 
         Long version = idxRs.getVersion();
         oedh.setVersion(version);
@@ -1231,12 +1391,273 @@ public abstract class EsODataProducer implements DcODataProducer {
                 throw DcCoreException.OData.REQUEST_FIELD_FORMAT_ERROR.params("uri");
             }
             createLinks(sourceEntity, srcNavProp, assoc, src, tgt);
+            this.clearNtkpValueCache(srcSetName, targetEntity.getEntitySetName());
+        } finally {
+            log.debug("unlock");
+            lock.release();
+        }
+    }
+
+    /**
+     * N:Nの$links一括登録時に、1件のリンクの登録に必要な情報を保持するクラス.
+     */
+    private static class NtoNLinkContext {
+        private BulkLinkRequest request;
+        private EdmNavigationProperty srcNavProp;
+        private EntitySetDocHandler source;
+        private EntitySetDocHandler target;
+        private LinkDocHandler docHandler;
+
+        NtoNLinkContext(BulkLinkRequest request, EdmNavigationProperty srcNavProp) {
+            this.request = request;
+            this.srcNavProp = srcNavProp;
+        }
+    }
+
+    /**
+     * $linksを一括登録する.
+     * <p>
+     * N:Nの関連は、リクエスト全体のリンク元・リンク先のエンティティと登録済みのリンクを一括で取得し、
+     * 一意性と上限値のチェックをメモリ上で行った上で、リンクのドキュメントを1回のバルクリクエストで登録する。
+     * 上限値チェックの登録済み件数は、リンク元(またはリンク先)とリンク相手のEntitySetの組ごとに1回だけ取得する。
+     * N:N以外の関連はリンク元・リンク先のエンティティ自体を更新するため、{@link #createLink}と同様に1件ずつ登録する。
+     * </p>
+     * @param linkRequests $links一括登録のリクエスト情報
+     */
+    @Override
+    public void bulkCreateLinks(List<BulkLinkRequest> linkRequests) {
+        // ユニーク性チェックのためまずロックを行う
+        // OData 空間全体をlockする(将来的に必要があればentitySetNameでロック)
+        Lock lock = this.lock();
+        // NTKPの値のキャッシュを無効化するEntitySet
+        Set<String> linkedEntitySetNames = new HashSet<String>();
+        try {
+            List<NtoNLinkContext> contexts = new ArrayList<NtoNLinkContext>();
+            for (BulkLinkRequest request : linkRequests) {
+                if (request.getError() != null) {
+                    // 登録前に失敗しているリクエストは処理しない
+                    continue;
+                }
+                try {
+                    OEntityId sourceEntity = request.getSourceEntity();
+                    EdmNavigationProperty srcNavProp = getEdmNavigationProperty(sourceEntity.getEntitySetName(),
+                            request.getTargetNavProp());
+                    if (srcNavProp == null) {
+                        throw DcCoreException.OData.NO_SUCH_ASSOCIATION;
+                    }
+                    EdmAssociation assoc = srcNavProp.getRelationship();
+                    if (isAssociationOfNToN(assoc)) {
+                        contexts.add(new NtoNLinkContext(request, srcNavProp));
+                        continue;
+                    }
+                    EntitySetDocHandler src = this.retrieveWithKey(sourceEntity);
+                    // データが存在しない場合は404
+                    if (src == null) {
+                        throw DcCoreException.OData.NOT_FOUND;
+                    }
+                    EntitySetDocHandler tgt = this.retrieveWithKey(request.getTargetEntity());
+                    // ターゲットが存在しない場合は400
+                    if (tgt == null) {
+                        throw DcCoreException.OData.REQUEST_FIELD_FORMAT_ERROR.params("uri");
+                    }
+                    createLinks(sourceEntity, srcNavProp, assoc, src, tgt);
+                    linkedEntitySetNames.add(sourceEntity.getEntitySetName());
+                    linkedEntitySetNames.add(request.getTargetEntity().getEntitySetName());
+                } catch (Exception e) {
+                    request.setError(e);
+                }
+            }
+            if (!contexts.isEmpty()) {
+                bulkCreateNtoNLinks(contexts);
+                for (NtoNLinkContext context : contexts) {
+                    if (context.request.getError() == null) {
+                        linkedEntitySetNames.add(context.request.getSourceEntity().getEntitySetName());
+                        linkedEntitySetNames.add(context.request.getTargetEntity().getEntitySetName());
+                    }
+                }
+            }
         } finally {
+            for (String entitySetName : linkedEntitySetNames) {
+                this.clearNtkpValueCache(entitySetName);
+            }
             log.debug("unlock");
             lock.release();
         }
     }
 
+    /**
+     * N:Nの$linksを一括登録する.
+     * @param contexts 登録するリンクの情報
+     */
+    private void bulkCreateNtoNLinks(List<NtoNLinkContext> contexts) {
+        // 1. リンク元・リンク先のエンティティを一括取得する
+        List<OEntityId> entityIds = new ArrayList<OEntityId>();
+        for (NtoNLinkContext context : contexts) {
+            entityIds.add(context.request.getSourceEntity());
+            entityIds.add(context.request.getTargetEntity());
+        }
+        Map<String, EntitySetDocHandler> entities = retrieveWithKeys(entityIds);
+
+        // 2. リンクのドキュメントを生成し、リクエスト内での重複をチェックする
+        Set<String> linkIds = new HashSet<String>();
+        List<NtoNLinkContext> validContexts = new ArrayList<NtoNLinkContext>();
+        for (NtoNLinkContext context : contexts) {
+            try {
+                context.source = entities.get(getEntityIdKey(context.request.getSourceEntity()));
+                // データが存在しない場合は404
+                if (context.source == null) {
+                    throw DcCoreException.OData.NOT_FOUND;
+                }
+                context.target = entities.get(getEntityIdKey(context.request.getTargetEntity()));
+                // ターゲットが存在しない場合は400
+                if (context.target == null) {
+                    throw DcCoreException.OData.REQUEST_FIELD_FORMAT_ERROR.params("uri");
+                }
+                checkLinkEntities(context.source, context.target);
+                context.docHandler = this.getLinkDocHandler(context.source, context.target);
+                if (!linkIds.add(context.docHandler.createLinkId())) {
+                    throw DcCoreException.OData.CONFLICT_LINKS;
+                }
+                validContexts.add(context);
+            } catch (Exception e) {
+                context.request.setError(e);
+            }
+        }
+        if (validContexts.isEmpty()) {
+            return;
+        }
+
+        // 3. 登録済みのリンクを一括取得し、一意性をチェックする
+        ODataLinkAccessor linkAccessor = this.getAccessorForLink();
+        Set<String> existingLinkIds = new HashSet<String>();
+        DcMultiGetResponse multiGetResponse;
+        try {
+            multiGetResponse = linkAccessor.multiGet(new ArrayList<String>(linkIds));
+        } catch (DcCoreException e) {
+            // 登録済みかどうかを確認できないリンクは登録しない
+            for (NtoNLinkContext context : validContexts) {
+                context.request.setError(e);
+            }
+            return;
+        }
+        if (multiGetResponse != null) {
+            for (DcGetResponse getResponse : multiGetResponse) {
+                existingLinkIds.add(getResponse.getId());
+            }
+        }
+
+        // 4. 上限値をチェックしながら登録対象のリクエストを生成する
+        Map<String, Long> linkCounts = new HashMap<String, Long>();
+        long maxSize = (long) DcCoreConfig.getLinksNtoNMaxSize();
+        List<EsBulkRequest> esBulkRequest = new ArrayList<EsBulkRequest>();
+        List<LinkDocHandler> adsBulkLinkRequest = new ArrayList<LinkDocHandler>();
+        List<NtoNLinkContext> bulkContexts = new ArrayList<NtoNLinkContext>();
+        for (NtoNLinkContext context : validContexts) {
+            try {
+                if (existingLinkIds.contains(context.docHandler.createLinkId())) {
+                    // 既に該当LINKが存在する
+                    throw DcCoreException.OData.CONFLICT_LINKS;
+                }
+                // リンク元
+                String targetEntitySetName = context.srcNavProp.getToRole().getType().getName();
+                String sourceCountKey = context.source.getId() + ":" + targetEntitySetName;
+                long sourceCount = getNtoNLinkCount(linkCounts, sourceCountKey, context.source, targetEntitySetName);
+                // リンク先
+                String sourceEntitySetName = context.srcNavProp.getFromRole().getType().getName();
+                String targetCountKey = context.target.getId() + ":" + sourceEntitySetName;
+                long targetCount = getNtoNLinkCount(linkCounts, targetCountKey, context.target, sourceEntitySetName);
+                if (sourceCount >= maxSize || targetCount >= maxSize) {
+                    throw DcCoreException.OData.LINK_UPPER_LIMIT_RECORD_EXEED;
+                }
+                // リクエスト内で登録するリンクも件数に含める
+                linkCounts.put(sourceCountKey, sourceCount + 1);
+                linkCounts.put(targetCountKey, linkCounts.get(targetCountKey) + 1);
+
+                BulkRequest bulkRequest = new BulkRequest();
+                bulkRequest.setDocHandler(new LinkDocHandlerForBulkRequest(context.docHandler));
+                esBulkRequest.add(bulkRequest);
+                adsBulkLinkRequest.add(context.docHandler);
+                bulkContexts.add(context);
+            } catch (Exception e) {
+                context.request.setError(e);
+            }
+        }
+        if (esBulkRequest.isEmpty()) {
+            return;
+        }
+
+        // 5. 一括登録を実行する
+        DataSourceAccessor accessor = getAccessorForBatch();
+        try {
+            DcBulkResponse bulkResponse = accessor.bulkUpdateLink(esBulkRequest,
+                    new ArrayList<EntitySetDocHandler>(), adsBulkLinkRequest, getCellId());
+            DcBulkItemResponse[] responseItems = bulkResponse.items();
+            for (int i = 0; i < bulkContexts.size(); i++) {
+                if (responseItems[i].isFailed()) {
+                    bulkContexts.get(i).request.setError(new ServerErrorException("failed to store to es"));
+                }
+            }
+        } catch (DcCoreException e) {
+            for (NtoNLinkContext context : bulkContexts) {
+                context.request.setError(e);
+            }
+        }
+    }
+
+    /**
+     * 登録済みのN:Nの$linksの件数を取得する. 取得済みの件数があればそれを返す.
+     * @param linkCounts 取得済みの件数
+     * @param countKey 件数のキー
+     * @param docHandler 件数を取得するエンティティ
+     * @param targetEntitySetName リンク相手のEntitySet名
+     * @return 登録済みの件数
+     */
+    private long getNtoNLinkCount(Map<String, Long> linkCounts, String countKey, EntitySetDocHandler docHandler,
+            String targetEntitySetName) {
+        Long count = linkCounts.get(countKey);
+        if (count == null) {
+            count = countNtoNLinks(docHandler, targetEntitySetName);
+            log.info("Registered links count: key [" + countKey + "] count [" + count + "]");
+            linkCounts.put(countKey, count);
+        }
+        return count;
+    }
+
+    /**
+     * {@link #retrieveWithKeys}の結果を参照するためのキーを返す.
+     * @param entityId エンティティのOEntityId
+     * @return キー
+     */
+    protected String getEntityIdKey(OEntityId entityId) {
+        return entityId.getEntitySetName() + entityId.getEntityKey().toKeyString();
+    }
+
+    /**
+     * 複数のエンティティを取得する.
+     * 同一のエンティティは1回だけ取得する。実装サブクラスは一括検索を行うようにoverrideできる。
+     * @param entityIds 取得するエンティティのOEntityIdのリスト
+     * @return {@link #getEntityIdKey}をキーとした取得結果. 存在しないエンティティは含まない
+     */
+    protected Map<String, EntitySetDocHandler> retrieveWithKeys(List<OEntityId> entityIds) {
+        Map<String, EntitySetDocHandler> ret = new HashMap<String, EntitySetDocHandler>();
+        Set<String> retrieved = new HashSet<String>();
+        for (OEntityId entityId : entityIds) {
+            String key = getEntityIdKey(entityId);
+            if (!retrieved.add(key)) {
+                continue;
+            }
+            EdmEntitySet entitySet = this.getMetadata().findEdmEntitySet(entityId.getEntitySetName());
+            if (entitySet == null) {
+                continue;
+            }
+            EntitySetDocHandler docHandler = this.retrieveWithKey(entitySet, entityId.getEntityKey());
+            if (docHandler != null) {
+                ret.put(key, docHandler);
+            }
+        }
+        return ret;
+    }
+
     /**
      * リンク元・先のデータチェックや、既にリンクが作成済みかなどの、データ登録の前提条件をチェックする.
      * @param navigationPropertyContext NP経由登録用のコンテキスト
@@ -1424,6 +1845,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             // $linksの登録
             entity = createNavigationPropertyLink(sourceOEntity, entity, srcNavProp, sourceDocHandler, retrievedEntity);
             res = Responses.entity(entity);
+            this.clearNtkpValueCache(sourceOEntity.getEntitySetName(), targetEntitySetName);
 
         } finally {
             log.debug("unlock");
@@ -1447,15 +1869,8 @@ public abstract class EsODataProducer implements DcODataProducer {
             return;
         }
 
-        // ユーザデータの$links取得の場合、targetのEntityTypeの_idを取得する
-        String targetEntityTypeId = null;
-        if (sourceDocHandler.getType().equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
-            targetEntityTypeId = getEntityTypeId(targetEntitySetName);
-        }
-
         // 登録済み$links
-        long count = LinkDocHandler.getNtoNCount(this.getAccessorForLink(), sourceDocHandler, targetEntitySetName,
-                targetEntityTypeId);
+        long count = countNtoNLinks(sourceDocHandler, targetEntitySetName);
         log.info("Registered links count: [" + count + "]");
 
         if (count >= (long) DcCoreConfig.getLinksNtoNMaxSize()) {
@@ -1463,6 +1878,22 @@ public abstract class EsODataProducer implements DcODataProducer {
         }
     }
 
+    /**
+     * 登録済みのN:Nの$linksの件数を取得する.
+     * @param sourceDocHandler ソース側のDocHandler
+     * @param targetEntitySetName ターゲット側のEntitySet名
+     * @return 登録済みの件数
+     */
+    private long countNtoNLinks(EntitySetDocHandler sourceDocHandler, String targetEntitySetName) {
+        // ユーザデータの$links取得の場合、targetのEntityTypeの_idを取得する
+        String targetEntityTypeId = null;
+        if (sourceDocHandler.getType().equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
+            targetEntityTypeId = getEntityTypeId(targetEntitySetName);
+        }
+        return LinkDocHandler.getNtoNCount(this.getAccessorForLink(), sourceDocHandler, targetEntitySetName,
+                targetEntityTypeId);
+    }
+
     /**
      * 引数で指定された関連がN:Nかどうかを判定する.
      * @param assoc EdmAssociation
@@ -1669,16 +2100,15 @@ public abstract class EsODataProducer implements DcODataProducer {
         checkUpperLimitRecord(srcNavProp, tgt, sourceEntitySetName);
 
         createLinkForNtoN(linkAccessor, docHandler);
+        this.clearNtkpValueCache(sourceEntitySetName, targetEntitySetName);
     }
 
-    private long createLinks(OEntityId sourceOEntity,
-            EdmNavigationProperty srcNavProp,
-            EdmAssociation assoc,
-            EntitySetDocHandler sourceEntity,
-            EntitySetDocHandler targetEntity) {
-        long version = -1;
-        EdmMultiplicity multiplicity1 = assoc.getEnd1().getMultiplicity();
-        EdmMultiplicity multiplicity2 = assoc.getEnd2().getMultiplicity();
+    /**
+     * リンク元・リンク先のエンティティの組み合わせが$linksとして登録可能かをチェックする.
+     * @param sourceEntity リンク元のEntitySetDocHandler
+     * @param targetEntity リンク先のEntitySetDocHandler
+     */
+    private void checkLinkEntities(EntitySetDocHandler sourceEntity, EntitySetDocHandler targetEntity) {
         String srcMultiplicity = (String) sourceEntity.getStaticFields().get(AssociationEnd.P_MULTIPLICITY.getName());
         String tgtMultiplicity = (String) targetEntity.getStaticFields().get(AssociationEnd.P_MULTIPLICITY.getName());
 
@@ -1688,6 +2118,18 @@ public abstract class EsODataProducer implements DcODataProducer {
         }
 
         checkInvalidLinks(sourceEntity, targetEntity);
+    }
+
+    private long createLinks(OEntityId sourceOEntity,
+            EdmNavigationProperty srcNavProp,
+            EdmAssociation assoc,
+            EntitySetDocHandler sourceEntity,
+            EntitySetDocHandler targetEntity) {
+        long version = -1;
+        EdmMultiplicity multiplicity1 = assoc.getEnd1().getMultiplicity();
+        EdmMultiplicity multiplicity2 = assoc.getEnd2().getMultiplicity();
+
+        checkLinkEntities(sourceEntity, targetEntity);
 
         if (multiplicity1 == EdmMultiplicity.MANY && multiplicity2 == EdmMultiplicity.MANY) {
             // n:nの場合
@@ -1985,6 +2427,7 @@ public abstract class EsODataProducer implements DcODataProducer {
                 // n:1の場合、1のデータのリンク情報から該当する項目を削除する
                 deleteLinks(sourceEntityId, targetEntityKey, tgtSet, oneAssoc);
             }
+            this.clearNtkpValueCache(srcSetName, tgtSet.getName());
         } finally {
             log.debug("unlock");
             lock.release();
@@ -2666,6 +3109,7 @@ public abstract class EsODataProducer implements DcODataProducer {
 
         // 更新後の処理
         this.afterUpdate();
+        this.clearNtkpValueCache(entitySetName);
 
         // Resource層でETag返還ができるよう、レスポンスから得たVersion情報を、引数のOEntityWrapperに破壊的に設定
         oedhNew.setVersion(idxRes.version());
@@ -2995,8 +3439,9 @@ public abstract class EsODataProducer implements DcODataProducer {
      * @param cellId cellId
      * @return EntitiesResponse
      */
+    @Override
     @SuppressWarnings("unchecked")
-    private List<EntityResponse> bulkCreateEntityWithoutLock(EdmDataServices metadata,
+    public List<EntityResponse> bulkCreateEntityWithoutLock(EdmDataServices metadata,
             LinkedHashMap<String, BulkRequest> bulkRequests,
             String cellId) {
         List<EntityResponse> response = new ArrayList<EntityResponse>();
@@ -3165,7 +3610,7 @@ public abstract class EsODataProducer implements DcODataProducer {
      * @param orList orフィルタクエリ
      * @return 検索クエリ
      */
-    private Map<String, Object> composeQueryWithOrFilter(List<Object> orList) {
+    protected Map<String, Object> composeQueryWithOrFilter(List<Object> orList) {
         // 検索条件のためのHash初期化
         Map<String, Object> searchQuery = new HashMap<String, Object>();
         Map<String, Object> filter = new HashMap<String, Object>();
@@ -3334,6 +3779,18 @@ public abstract class EsODataProducer implements DcODataProducer {
                 context.setException(new ServerErrorException("failed to store to es"));
             }
         }
+
+        // 登録したリンクのリンク元・リンク先のNTKPの値のキャッシュを無効化する
+        Set<String> linkedEntitySetNames = new HashSet<String>();
+        for (NavigationPropertyBulkContext context : bulkContexts) {
+            if (!context.isError()) {
+                linkedEntitySetNames.add(context.getSrcEntityId().getEntitySetName());
+                linkedEntitySetNames.add(context.getOEntityWrapper().getEntitySetName());
+            }
+        }
+        for (String entitySetName : linkedEntitySetNames) {
+            this.clearNtkpValueCache(entitySetName);
+        }
     }
 
     /**
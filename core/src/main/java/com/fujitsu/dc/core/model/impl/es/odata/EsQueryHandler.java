@@ -111,6 +111,7 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
     Map<String, Object> current;
     Stack<Map<String, Object>> stack = new Stack<Map<String, Object>>();
     Map<String, Object> orderBy;
+    EsCompiledQuery.Key compilingKey;
     /**
      * SORT_ASC 昇順.
      */
@@ -154,7 +155,20 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
     public void initialize(QueryInfo queryInfo, List<Map<String, Object>> implicitConds) {
         List<Map<String, Object>> filters = new ArrayList<Map<String, Object>>();
         if (queryInfo != null) {
-            if (queryInfo.filter != null) {
+            // 同じ形のクエリはテンプレートにリテラル値を差し込んで組み立てる
+            EsCompiledQuery.Key key = EsCompiledQuery.createKey(this, queryInfo);
+            EsCompiledQuery compiled = null;
+            if (key != null) {
+                compiled = EsCompiledQuery.get(key);
+                if (compiled == null) {
+                    compiled = compile(queryInfo, key);
+                    EsCompiledQuery.put(key, compiled);
+                }
+                Map<String, Object> compiledFilter = compiled.getFilter(key);
+                if (compiledFilter != null) {
+                    filters.add(compiledFilter);
+                }
+            } else if (queryInfo.filter != null) {
                 this.stack.push(this.source);
                 this.current = new HashMap<String, Object>();
                 filters.add(this.current);
@@ -186,8 +200,16 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
 
             this.setTop(queryInfo.top);
             this.setSkip(queryInfo.skip);
-            this.setOrderBy(queryInfo.orderBy);
-            this.setSelect(queryInfo.select);
+            if (compiled != null) {
+                List<Map<String, Object>> sort = compiled.getSort();
+                if (sort != null) {
+                    this.source.put("sort", sort);
+                }
+                this.source.putAll(compiled.getSelect());
+            } else {
+                this.setOrderBy(queryInfo.orderBy);
+                this.setSelect(queryInfo.select);
+            }
         }
         Map<String, Object> filter = new HashMap<String, Object>();
         if (!filters.isEmpty()) {
@@ -207,6 +229,34 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
         this.source.put("version", true);
     }
 
+    /**
+     * $filter, $orderby, $selectからクエリのテンプレートを組み立てる.
+     * @param queryInfo OData4jのQueryInfo.
+     * @param key キャッシュキー
+     * @return クエリのテンプレート
+     */
+    private EsCompiledQuery compile(QueryInfo queryInfo, EsCompiledQuery.Key key) {
+        this.compilingKey = key;
+        try {
+            Map<String, Object> filter = null;
+            if (queryInfo.filter != null) {
+                this.stack.push(this.source);
+                this.current = new HashMap<String, Object>();
+                filter = this.current;
+                queryInfo.filter.visit(this);
+            }
+            List<Map<String, Object>> sort = null;
+            if (queryInfo.orderBy != null) {
+                sort = createSort(queryInfo.orderBy);
+            }
+            Map<String, Object> select = new HashMap<String, Object>();
+            getSelectQuery(select, queryInfo.select);
+            return new EsCompiledQuery(filter, sort, select);
+        } finally {
+            this.compilingKey = null;
+        }
+    }
+
     /**
      * @param top $topの値
      */
@@ -232,17 +282,21 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
      */
     public void setOrderBy(List<OrderByExpression> orderBy) {
         if (orderBy != null) {
-            List<Map<String, Object>> sort = new ArrayList<Map<String, Object>>();
+            this.source.put("sort", createSort(orderBy));
+        }
+    }
 
-            for (OrderByExpression order : orderBy) {
-                this.orderBy = new HashMap<String, Object>();
-                order.visit(this);
-                if (!this.orderBy.isEmpty()) {
-                    sort.add(this.orderBy);
-                }
+    private List<Map<String, Object>> createSort(List<OrderByExpression> orderByList) {
+        List<Map<String, Object>> sort = new ArrayList<Map<String, Object>>();
+
+        for (OrderByExpression order : orderByList) {
+            this.orderBy = new HashMap<String, Object>();
+            order.visit(this);
+            if (!this.orderBy.isEmpty()) {
+                sort.add(this.orderBy);
             }
-            this.source.put("sort", sort);
         }
+        return sort;
     }
 
     /**
@@ -459,6 +513,22 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
      * @return elasticsearchの検索文字列
      */
     private Object getSearchValue(CommonExpression expr) {
+        if (this.compilingKey != null) {
+            // テンプレート作成中はリテラル値の代わりにLiteralSlotを設定する
+            EsCompiledQuery.LiteralSlot slot = this.compilingKey.getSlot(expr);
+            if (slot != null) {
+                return slot;
+            }
+        }
+        return getLiteralValue(expr);
+    }
+
+    /**
+     * リテラルの値を返却する.
+     * @param expr CommonExpression
+     * @return リテラルの値
+     */
+    static Object getLiteralValue(CommonExpression expr) {
         if (expr instanceof IntegralLiteral) {
             return ((IntegralLiteral) expr).getValue();
         } else if (expr instanceof Int64Literal) {
@@ -20,14 +20,18 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import net.spy.memcached.internal.CheckedOperationTimeoutException;
 
 import org.odata4j.core.OEntity;
+import org.odata4j.core.OEntityId;
+import org.odata4j.core.OEntityIds;
 import org.odata4j.core.OEntityKey;
 import org.odata4j.edm.EdmDataServices;
 import org.odata4j.edm.EdmEntitySet;
@@ -48,6 +52,7 @@ import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcSearchHit;
+import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.model.Cell;
@@ -677,6 +682,56 @@ public class UserDataODataProducer extends EsODataProducer {
     protected void checkInvalidLinks(EntitySetDocHandler sourceDocHandler, OEntity entity, String targetEntitySetName) {
     }
 
+    /**
+     * 複数のユーザデータを__idとEntityTypeの組で一括検索する.
+     * @param entityIds 取得するエンティティのOEntityIdのリスト
+     * @return {@link #getEntityIdKey}をキーとした取得結果. 存在しないエンティティは含まない
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Map<String, EntitySetDocHandler> retrieveWithKeys(List<OEntityId> entityIds) {
+        Map<String, EntitySetDocHandler> ret = new HashMap<String, EntitySetDocHandler>();
+        Map<String, String> entityTypeNames = new HashMap<String, String>();
+        List<Object> orList = new ArrayList<Object>();
+        // 重複クエリを排除する
+        Set<String> registered = new HashSet<String>();
+        for (OEntityId entityId : entityIds) {
+            String entityTypeId = getEntityTypeId(entityId.getEntitySetName());
+            if (entityTypeId == null || !registered.add(getEntityIdKey(entityId))) {
+                continue;
+            }
+            entityTypeNames.put(entityTypeId, entityId.getEntitySetName());
+            List<Object> andList = new ArrayList<Object>();
+            Map<String, Object> and = new HashMap<String, Object>();
+            andList.add(QueryMapFactory.termFilter(OEntityDocHandler.KEY_STATIC_FIELDS + ".__id.untouched",
+                    entityId.getEntityKey().asSingleValue().toString(), false));
+            andList.add(QueryMapFactory.termQuery("_type", USER_ODATA_NAMESPACE));
+            andList.add(QueryMapFactory.termQuery(OEntityDocHandler.KEY_ENTITY_ID, entityTypeId));
+            and.put("and", andList);
+            orList.add(and);
+        }
+        if (orList.isEmpty()) {
+            return ret;
+        }
+
+        DcSearchResponse searchResponse = getAccessorForBatch().searchForIndex(getCellId(),
+                composeQueryWithOrFilter(orList));
+        if (searchResponse == null) {
+            return ret;
+        }
+        for (DcSearchHit hit : searchResponse.getHits().getHits()) {
+            Map<String, Object> staticFields = (Map<String, Object>) hit.getSource()
+                    .get(OEntityDocHandler.KEY_STATIC_FIELDS);
+            String entityTypeName = entityTypeNames.get((String) hit.getSource().get(OEntityDocHandler.KEY_ENTITY_ID));
+            if (entityTypeName == null) {
+                continue;
+            }
+            OEntityKey key = OEntityKey.create((String) staticFields.get("__id"));
+            ret.put(getEntityIdKey(OEntityIds.create(entityTypeName, key)), getDocHandler(hit, entityTypeName));
+        }
+        return ret;
+    }
+
     @Override
     public void onChange(String entitySetName) {
     }
@@ -81,9 +81,19 @@ public class AdsAccessor {
     public static List<JSONObject> getIdListOnAds(AdsWriteFailureLogInfo logInfo) throws AdsException {
         List<String> idList = new ArrayList<String>();
         idList.add(logInfo.getUuid());
+        return getIdListOnAds(logInfo.getIndexName(), logInfo.getType(), idList);
+    }
 
-        String indexName = logInfo.getIndexName();
-        String type = logInfo.getType();
+    /**
+     * ADSからリペア対象のデータが存在するか一括で検索をする.
+     * @param indexName リペア対象インデックス名
+     * @param type リペア対象のESのタイプ名
+     * @param idList リペア対象のuuidリスト
+     * @return リペア対象のデータの検索結果
+     * @throws AdsException AdsException
+     */
+    public static List<JSONObject> getIdListOnAds(String indexName, String type, List<String> idList)
+            throws AdsException {
         if (Cell.EDM_TYPE_NAME.equals(type)) {
             return ads.searchCellList(indexName, idList);
         } else if ("link".equals(type)) {
@@ -95,6 +105,45 @@ public class AdsAccessor {
         }
     }
 
+    /**
+     * 整合性チェック用に、ADS上のデータをuuidの先頭文字列で範囲分割し、範囲ごとの件数とハッシュ値を集計する.
+     * @param indexName チェック対象インデックス名
+     * @param type チェック対象のESのタイプ名
+     * @param idPrefix 集計対象とするuuidの先頭文字列
+     * @param prefixLength 範囲分割に用いるuuidの先頭文字数
+     * @return 範囲ごとの集計結果
+     * @throws AdsException AdsException
+     */
+    public static List<JSONObject> getRangeSummaryListOnAds(String indexName, String type, String idPrefix,
+            int prefixLength) throws AdsException {
+        if ("link".equals(type)) {
+            return ads.getLinkRangeSummaryList(indexName, idPrefix, prefixLength);
+        } else if ("dav".equals(type)) {
+            return ads.getDavNodeRangeSummaryList(indexName, idPrefix, prefixLength);
+        } else {
+            return ads.getEntityRangeSummaryList(indexName, idPrefix, prefixLength);
+        }
+    }
+
+    /**
+     * 整合性チェック用に、ADS上のデータのうちuuidが指定した文字列で始まるものを取得する.
+     * @param indexName チェック対象インデックス名
+     * @param type チェック対象のESのタイプ名
+     * @param idPrefix 取得対象とするuuidの先頭文字列
+     * @return 取得結果
+     * @throws AdsException AdsException
+     */
+    public static List<JSONObject> getListByIdPrefixOnAds(String indexName, String type, String idPrefix)
+            throws AdsException {
+        if ("link".equals(type)) {
+            return ads.getLinkListByIdPrefix(indexName, idPrefix);
+        } else if ("dav".equals(type)) {
+            return ads.getDavNodeListByIdPrefix(indexName, idPrefix);
+        } else {
+            return ads.getEntityListByIdPrefix(indexName, idPrefix);
+        }
+    }
+
     /**
      * リペア対象のデータをADSに登録する.
      * @param indexName リペア対象インデックス名
@@ -104,38 +153,69 @@ public class AdsAccessor {
      */
     public static void createAds(String indexName, String type,
             DcSearchResponse esResponse) throws AdsException {
+        createAds(indexName, type, esResponse.getHits().getHits()[0]);
+    }
+
+    /**
+     * リペア対象のデータをADSに登録する.
+     * @param indexName リペア対象インデックス名
+     * @param type リペア対象のESのタイプ名
+     * @param dcSearchHit ESから取得したリペア対象のデータ
+     * @throws AdsException AdsException
+     */
+    public static void createAds(String indexName, String type,
+            DcSearchHit dcSearchHit) throws AdsException {
         // MySQLへデータ登録処理
-        DcSearchHit[] dcSearchHit = esResponse.getHits().getHits();
         try {
             if (Cell.EDM_TYPE_NAME.equals(type)) {
                 // CELLテーブルに登録
-                EntitySetDocHandler oedh = new CellDocHandler(dcSearchHit[0]);
+                EntitySetDocHandler oedh = new CellDocHandler(dcSearchHit);
                 ads.createCell(indexName, oedh);
             } else if ("link".equals(type)) {
                 // LINKテーブルに登録
-                LinkDocHandler ldh = new LinkDocHandler(dcSearchHit[0]);
+                LinkDocHandler ldh = new LinkDocHandler(dcSearchHit);
                 ads.createLink(indexName, ldh);
             } else if ("dav".equals(type)) {
                 // DAV_NODEテーブルに登録
-                DavNode davNode = DavNode.createFromJsonString(dcSearchHit[0].getId(),
-                        dcSearchHit[0].sourceAsString());
+                DavNode davNode = DavNode.createFromJsonString(dcSearchHit.getId(),
+                        dcSearchHit.sourceAsString());
                 ads.createDavNode(indexName, davNode);
             } else {
                 // ENTITYテーブルに登録
-                EntitySetDocHandler oedh;
-                if (type.equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
-                    oedh = new UserDataDocHandler(dcSearchHit[0]);
-                } else {
-                    oedh = new OEntityDocHandler(dcSearchHit[0]);
-                }
+                ads.createEntity(indexName, createEntityDocHandler(type, dcSearchHit));
+            }
+        } catch (DcCoreException e) {
+            throw new AdsException(e);
+        }
+    }
 
-                if (oedh.getDynamicFields() == null) {
-                    // リペア対象のデータのDynamicFieldsが空の場合にAdsのデータがnullになってしまうので空オブジェクトを挿入
-                    // DocHandlerでの修正も検討したが、既存のcore側の処理に影響を与えないようここで修正
-                    oedh.setDynamicFields(new HashMap<String, Object>());
+    /**
+     * リペア対象のデータをADSに一括で登録する.
+     * 一括登録できるのはENTITY/LINKテーブルのみのため、それ以外のタイプは1件ずつ登録する。
+     * @param indexName リペア対象インデックス名
+     * @param type リペア対象のESのタイプ名
+     * @param dcSearchHits ESから取得したリペア対象のデータ
+     * @throws AdsException AdsException
+     */
+    public static void bulkCreateAds(String indexName, String type,
+            List<DcSearchHit> dcSearchHits) throws AdsException {
+        try {
+            if ("link".equals(type)) {
+                List<LinkDocHandler> bulkRequestList = new ArrayList<LinkDocHandler>();
+                for (DcSearchHit dcSearchHit : dcSearchHits) {
+                    bulkRequestList.add(new LinkDocHandler(dcSearchHit));
                 }
-
-                ads.createEntity(indexName, oedh);
+                ads.bulkCreateLink(indexName, bulkRequestList);
+            } else if (Cell.EDM_TYPE_NAME.equals(type) || "dav".equals(type)) {
+                for (DcSearchHit dcSearchHit : dcSearchHits) {
+                    createAds(indexName, type, dcSearchHit);
+                }
+            } else {
+                List<EntitySetDocHandler> bulkRequestList = new ArrayList<EntitySetDocHandler>();
+                for (DcSearchHit dcSearchHit : dcSearchHits) {
+                    bulkRequestList.add(createEntityDocHandler(type, dcSearchHit));
+                }
+                ads.bulkEntity(indexName, bulkRequestList);
             }
         } catch (DcCoreException e) {
             throw new AdsException(e);
@@ -151,43 +231,91 @@ public class AdsAccessor {
      */
     public static void updateAds(String indexName, String type,
             DcSearchResponse esResponse) throws AdsException {
+        updateAds(indexName, type, esResponse.getHits().getHits()[0]);
+    }
+
+    /**
+     * リペア対象のデータをADSに更新する.
+     * @param indexName リペア対象インデックス名
+     * @param type リペア対象タイプ名
+     * @param dcSearchHit ESから取得したリペア対象のデータ
+     * @throws AdsException AdsException
+     */
+    public static void updateAds(String indexName, String type,
+            DcSearchHit dcSearchHit) throws AdsException {
         try {
             // MySQLへデータ更新処理
-            DcSearchHit[] dcSearchHit = esResponse.getHits().getHits();
             if (Cell.EDM_TYPE_NAME.equals(type)) {
                 // CELLテーブルに更新
-                EntitySetDocHandler oedh = new CellDocHandler(dcSearchHit[0]);
+                EntitySetDocHandler oedh = new CellDocHandler(dcSearchHit);
                 ads.updateCell(indexName, oedh);
             } else if ("link".equals(type)) {
                 // LINKテーブルに更新
-                LinkDocHandler ldh = new LinkDocHandler(dcSearchHit[0]);
+                LinkDocHandler ldh = new LinkDocHandler(dcSearchHit);
                 ads.updateLink(indexName, ldh);
             } else if ("dav".equals(type)) {
                 // DAV_NODEテーブルに更新
-                DavNode davNode = DavNode.createFromJsonString(dcSearchHit[0].getId(),
-                        dcSearchHit[0].sourceAsString());
+                DavNode davNode = DavNode.createFromJsonString(dcSearchHit.getId(),
+                        dcSearchHit.sourceAsString());
                 ads.updateDavNode(indexName, davNode);
             } else {
                 // ENTITYテーブルに更新
-                EntitySetDocHandler oedh;
-                if (type.equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
-                    oedh = new UserDataDocHandler(dcSearchHit[0]);
-                } else {
-                    oedh = new OEntityDocHandler(dcSearchHit[0]);
-                }
+                ads.updateEntity(indexName, createEntityDocHandler(type, dcSearchHit));
+            }
+        } catch (DcCoreException e) {
+            throw new AdsException(e);
+        }
 
-                if (oedh.getDynamicFields() == null) {
-                    // リペア対象のデータのDynamicFieldsが空の場合にAdsのデータがnullになってしまうので空オブジェクトを挿入
-                    // DocHandlerでの修正も検討したが、既存のcore側の処理に影響を与えないようここで修正
-                    oedh.setDynamicFields(new HashMap<String, Object>());
-                }
+    }
 
-                ads.updateEntity(indexName, oedh);
+    /**
+     * リペア対象のデータをADSに一括で更新する.
+     * 一括更新できるのはENTITYテーブルのみのため、それ以外のタイプは1件ずつ更新する。
+     * @param indexName リペア対象インデックス名
+     * @param type リペア対象タイプ名
+     * @param dcSearchHits ESから取得したリペア対象のデータ
+     * @throws AdsException AdsException
+     */
+    public static void bulkUpdateAds(String indexName, String type,
+            List<DcSearchHit> dcSearchHits) throws AdsException {
+        try {
+            if (Cell.EDM_TYPE_NAME.equals(type) || "link".equals(type) || "dav".equals(type)) {
+                for (DcSearchHit dcSearchHit : dcSearchHits) {
+                    updateAds(indexName, type, dcSearchHit);
+                }
+            } else {
+                List<EntitySetDocHandler> bulkRequestList = new ArrayList<EntitySetDocHandler>();
+                for (DcSearchHit dcSearchHit : dcSearchHits) {
+                    bulkRequestList.add(createEntityDocHandler(type, dcSearchHit));
+                }
+                // bulkUpdateEntityはリンク情報のみを更新するため、全項目を更新する
+                ads.bulkUpdateEntityAllColumns(indexName, bulkRequestList);
             }
         } catch (DcCoreException e) {
             throw new AdsException(e);
         }
+    }
+
+    /**
+     * ESから取得したデータからENTITYテーブル用のDocHandlerを生成する.
+     * @param type リペア対象タイプ名
+     * @param dcSearchHit ESから取得したリペア対象のデータ
+     * @return DocHandler
+     */
+    private static EntitySetDocHandler createEntityDocHandler(String type, DcSearchHit dcSearchHit) {
+        EntitySetDocHandler oedh;
+        if (type.equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
+            oedh = new UserDataDocHandler(dcSearchHit);
+        } else {
+            oedh = new OEntityDocHandler(dcSearchHit);
+        }
 
+        if (oedh.getDynamicFields() == null) {
+            // リペア対象のデータのDynamicFieldsが空の場合にAdsのデータがnullになってしまうので空オブジェクトを挿入
+            // DocHandlerでの修正も検討したが、既存のcore側の処理に影響を与えないようここで修正
+            oedh.setDynamicFields(new HashMap<String, Object>());
+        }
+        return oedh;
     }
 
     /**
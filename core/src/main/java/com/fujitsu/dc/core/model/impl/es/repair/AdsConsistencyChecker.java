@@ -0,0 +1,539 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.repair;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogException;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogWriter;
+import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.response.DcSearchHit;
+import com.fujitsu.dc.common.es.response.DcSearchResponse;
+import com.fujitsu.dc.common.es.response.EsClientException;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.EsModel;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
+import com.fujitsu.dc.core.model.lock.Lock;
+import com.fujitsu.dc.core.model.lock.LockKeyComposer;
+
+/**
+ * ElasticsearchとADSの整合性をオンラインでチェックするクラス.
+ * <p>
+ * インデックス・テーブルごとに、uuidの先頭文字列でデータを範囲分割し、範囲ごとに件数と「uuid:更新日時」のCRC32の総和を
+ * 両者で比較する。不一致の範囲のみ先頭文字数を増やして絞り込み、最終的にuuid単位で比較して差分をADS書き込み失敗ログに出力する。
+ * 出力したログは{@link RepairAds}によりElasticsearch上のデータを基準として補正される。
+ * ADS側の集計はMySQL上で行うため、ADSから転送されるデータ量は不一致の範囲の数に比例する。
+ * Elasticsearch側はuuidと更新日時のみをスクロールサーチで読み込み、読み込み件数は秒間の上限で抑制する。
+ * 先頭1文字の範囲ごとにチェックポイントファイルへ進捗を記録し、中断した場合は次回その続きから再開する。
+ * </p>
+ */
+public class AdsConsistencyChecker {
+
+    static Logger logger = LoggerFactory.getLogger(AdsConsistencyChecker.class);
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /** uuidに使用される文字. */
+    static final String ID_CHARACTERS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    /** チェック対象：Entity(link/dav以外の全タイプ). */
+    static final String TARGET_ENTITY = "entity";
+    /** チェック対象：Link. */
+    static final String TARGET_LINK = EsModel.TYPE_CTL_LINK;
+    /** チェック対象：DavNode. */
+    static final String TARGET_DAV = "dav";
+    private static final List<String> TARGETS = Arrays.asList(TARGET_ENTITY, TARGET_LINK, TARGET_DAV);
+
+    private static final List<String> ES_FIELDS = Arrays.asList(
+            OEntityDocHandler.KEY_CELL_ID,
+            OEntityDocHandler.KEY_BOX_ID,
+            OEntityDocHandler.KEY_NODE_ID,
+            OEntityDocHandler.KEY_UPDATED);
+    private static final int SCROLL_SIZE = 500;
+    private static final String MYSQL_BAD_TABLE_ERROR = "42S02";
+
+    private static AdsConsistencyChecker singleton = new AdsConsistencyChecker();
+
+    private File checkpointFile;
+    private int maxDepth;
+    private int leafSize;
+    private int scanDocsPerSec;
+    // チェック開始時刻。これ以降に更新されたデータは次回のチェック対象とする
+    private long startTime;
+    private long scanStartTime;
+    private long scannedDocs;
+    private int mismatchedDocs;
+
+    /**
+     * デフォルトコンストラクタ（使用不可）.
+     */
+    private AdsConsistencyChecker() {
+    }
+
+    /**
+     * インスタンスの取得.
+     * @return singletonインスタンス
+     */
+    public static AdsConsistencyChecker getInstance() {
+        return singleton;
+    }
+
+    /**
+     * 範囲ごとの集計結果.
+     */
+    static class RangeSummary {
+        private long count;
+        private long hash;
+
+        void add(long docCount, long docHash) {
+            this.count += docCount;
+            this.hash += docHash;
+        }
+
+        boolean matches(RangeSummary other) {
+            return other != null && this.count == other.count && this.hash == other.hash;
+        }
+    }
+
+    /**
+     * 整合性チェックのメイン処理.
+     * 全インデックスのチェックが完了した場合は、チェックポイントファイルを削除する。
+     */
+    public void check() {
+        logger.info("Ads consistency check started.");
+        this.checkpointFile = new File(DcCoreConfig.getAdsConsistencyCheckpointFile());
+        this.maxDepth = DcCoreConfig.getAdsConsistencyMaxDepth();
+        this.leafSize = DcCoreConfig.getAdsConsistencyLeafSize();
+        this.scanDocsPerSec = DcCoreConfig.getAdsConsistencyScanDocsPerSec();
+        this.startTime = System.currentTimeMillis();
+        this.scanStartTime = this.startTime;
+        this.scannedDocs = 0;
+        this.mismatchedDocs = 0;
+
+        if (!AdsAccessor.initializedAds()) {
+            logger.info("Failed to connect MySQL master. Ads consistency check cancelled.");
+            return;
+        }
+        String[] checkpoint = readCheckpoint();
+        try {
+            for (String indexName : collectIndexNames()) {
+                for (String target : TARGETS) {
+                    if (checkpoint != null && compareCheckpoint(checkpoint, indexName, target) > 0) {
+                        continue;
+                    }
+                    String resumeAfter = null;
+                    if (checkpoint != null && compareCheckpoint(checkpoint, indexName, target) == 0) {
+                        resumeAfter = checkpoint[2];
+                    }
+                    checkTarget(indexName, target, resumeAfter);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Ads consistency check interrupted. It will be resumed from the checkpoint.");
+            return;
+        } catch (EsClientException e) {
+            logger.info("Failed to get response from Elasticsearch. Ads consistency check suspended.", e);
+            return;
+        } catch (AdsException e) {
+            logger.info("Failed to get response from Ads. Ads consistency check suspended.", e);
+            return;
+        }
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            logger.warn("Failed to delete checkpoint file. [" + checkpointFile.getAbsolutePath() + "]");
+        }
+        logger.info(String.format("Ads consistency check completed. scanned: %d, mismatched: %d",
+                scannedDocs, mismatchedDocs));
+    }
+
+    /**
+     * インデックス内の1テーブル分の整合性をチェックする.
+     * @param indexName インデックス名
+     * @param target チェック対象
+     * @param resumeAfter 前回チェックが完了した範囲(先頭1文字)。最初からチェックする場合はnull
+     * @throws InterruptedException 中断された場合
+     * @throws AdsException ADSへの問い合わせに失敗した場合
+     */
+    private void checkTarget(String indexName, String target, String resumeAfter)
+            throws InterruptedException, AdsException {
+        TreeSet<String> partitions = new TreeSet<String>();
+        for (char c : ID_CHARACTERS.toCharArray()) {
+            partitions.add(String.valueOf(c));
+        }
+        List<JSONObject> rootSummary;
+        try {
+            rootSummary = AdsAccessor.getRangeSummaryListOnAds(indexName, target, "", 1);
+        } catch (AdsException e) {
+            if (e.getCause() instanceof SQLException
+                    && MYSQL_BAD_TABLE_ERROR.equals(((SQLException) e.getCause()).getSQLState())) {
+                // ADS側にテーブルが存在しない場合は、RepairAdsによる補正対象外のためスキップする
+                logger.info(String.format("Ads table does not exist. Skipped. [%s/%s]", indexName, target));
+                return;
+            }
+            throw e;
+        }
+        // uuidに想定外の文字が使用されている場合に備え、ADS上に存在する先頭文字も範囲に含める
+        for (JSONObject summary : rootSummary) {
+            partitions.add((String) summary.get("prefix"));
+        }
+        for (String partition : partitions) {
+            if (resumeAfter != null && partition.compareTo(resumeAfter) <= 0) {
+                continue;
+            }
+            try {
+                TreeMap<String, RangeSummary> esLeaves = summarizeEs(indexName, target, partition);
+                compareRange(indexName, target, partition, esLeaves);
+            } catch (EsClientException.EsIndexMissingException e) {
+                logger.info(String.format("Es index does not exist. Skipped. [%s]", indexName));
+                return;
+            }
+            writeCheckpoint(indexName, target, partition);
+        }
+    }
+
+    /**
+     * 範囲内のデータを1文字長い先頭文字列で分割して比較し、不一致の範囲を絞り込む.
+     * @param indexName インデックス名
+     * @param target チェック対象
+     * @param prefix 比較する範囲のuuidの先頭文字列
+     * @param esLeaves Elasticsearch上の範囲ごとの集計結果
+     * @throws InterruptedException 中断された場合
+     * @throws AdsException ADSへの問い合わせに失敗した場合
+     */
+    private void compareRange(String indexName, String target, String prefix,
+            TreeMap<String, RangeSummary> esLeaves) throws InterruptedException, AdsException {
+        int length = prefix.length() + 1;
+        Map<String, RangeSummary> adsChildren = new HashMap<String, RangeSummary>();
+        for (JSONObject json : AdsAccessor.getRangeSummaryListOnAds(indexName, target, prefix, length)) {
+            RangeSummary summary = new RangeSummary();
+            summary.add((Long) json.get("count"), (Long) json.get("hash"));
+            adsChildren.put((String) json.get("prefix"), summary);
+        }
+        Map<String, RangeSummary> esChildren = new HashMap<String, RangeSummary>();
+        for (Map.Entry<String, RangeSummary> leaf : subMap(esLeaves, prefix).entrySet()) {
+            String key = leaf.getKey();
+            String child = key.length() > length ? key.substring(0, length) : key;
+            RangeSummary summary = esChildren.get(child);
+            if (summary == null) {
+                summary = new RangeSummary();
+                esChildren.put(child, summary);
+            }
+            summary.add(leaf.getValue().count, leaf.getValue().hash);
+        }
+
+        TreeSet<String> children = new TreeSet<String>(adsChildren.keySet());
+        children.addAll(esChildren.keySet());
+        for (String child : children) {
+            RangeSummary es = esChildren.get(child);
+            RangeSummary ads = adsChildren.get(child);
+            if (es != null && es.matches(ads)) {
+                continue;
+            }
+            long esCount = es == null ? 0 : es.count;
+            long adsCount = ads == null ? 0 : ads.count;
+            if (child.length() < length || length >= maxDepth
+                    || (esCount <= leafSize && adsCount <= leafSize)) {
+                compareLeaf(indexName, target, child);
+            } else {
+                compareRange(indexName, target, child, esLeaves);
+            }
+        }
+    }
+
+    /**
+     * 範囲内のデータをuuid単位で比較し、不一致のデータをADS書き込み失敗ログに出力する.
+     * @param indexName インデックス名
+     * @param target チェック対象
+     * @param prefix 比較する範囲のuuidの先頭文字列
+     * @throws InterruptedException 中断された場合
+     * @throws AdsException ADSへの問い合わせに失敗した場合
+     */
+    private void compareLeaf(String indexName, String target, String prefix)
+            throws InterruptedException, AdsException {
+        final Map<String, DcSearchHit> esDocs = new HashMap<String, DcSearchHit>();
+        scanEs(indexName, target, prefix, new HitHandler() {
+            @Override
+            public void handle(DcSearchHit hit) {
+                esDocs.put(hit.getId(), hit);
+            }
+        });
+        Map<String, JSONObject> adsDocs = new HashMap<String, JSONObject>();
+        for (JSONObject json : AdsAccessor.getListByIdPrefixOnAds(indexName, target, prefix)) {
+            adsDocs.put((String) json.get("id"), json);
+        }
+
+        TreeSet<String> ids = new TreeSet<String>(esDocs.keySet());
+        ids.addAll(adsDocs.keySet());
+        for (String id : ids) {
+            DcSearchHit hit = esDocs.get(id);
+            JSONObject ads = adsDocs.get(id);
+            Map<String, Object> source;
+            if (hit != null) {
+                source = getEsSource(hit);
+            } else {
+                source = getAdsSource(ads);
+            }
+            long esUpdated = hit == null ? -1 : toLong(getEsSource(hit).get(OEntityDocHandler.KEY_UPDATED));
+            long adsUpdated = ads == null ? -1 : toLong(getAdsSource(ads).get(OEntityDocHandler.KEY_UPDATED));
+            if (esUpdated == adsUpdated) {
+                continue;
+            }
+            long updated = Math.max(esUpdated, adsUpdated);
+            if (updated >= startTime) {
+                // チェック中に更新されたデータは、次回のチェックで比較する
+                continue;
+            }
+            AdsWriteFailureLogInfo.OPERATION_KIND operation;
+            if (hit == null) {
+                operation = AdsWriteFailureLogInfo.OPERATION_KIND.DELETE;
+            } else if (ads == null) {
+                operation = AdsWriteFailureLogInfo.OPERATION_KIND.CREATE;
+            } else {
+                operation = AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE;
+            }
+            String type = hit != null ? hit.getType() : (String) ads.get("type");
+            String cellId = (String) source.get(OEntityDocHandler.KEY_CELL_ID);
+            String lockKey;
+            if (TARGET_DAV.equals(target)) {
+                lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
+                        (String) source.get(OEntityDocHandler.KEY_BOX_ID), null);
+            } else {
+                lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                        cellId, null, (String) source.get(OEntityDocHandler.KEY_NODE_ID));
+            }
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    indexName, type, lockKey, cellId == null ? "" : cellId, id, operation,
+                    hit == null ? 0 : hit.getVersion(), updated);
+            recordAdsWriteFailureLog(loginfo);
+            mismatchedDocs++;
+        }
+    }
+
+    /**
+     * Elasticsearch上の範囲内のデータを読み込み、最も細かい範囲ごとに集計する.
+     * @param indexName インデックス名
+     * @param target チェック対象
+     * @param prefix 読み込む範囲のuuidの先頭文字列
+     * @return 先頭文字列ごとの集計結果
+     * @throws InterruptedException 中断された場合
+     */
+    private TreeMap<String, RangeSummary> summarizeEs(String indexName, String target, String prefix)
+            throws InterruptedException {
+        final TreeMap<String, RangeSummary> leaves = new TreeMap<String, RangeSummary>();
+        scanEs(indexName, target, prefix, new HitHandler() {
+            @Override
+            public void handle(DcSearchHit hit) {
+                String id = hit.getId();
+                String key = id.length() > maxDepth ? id.substring(0, maxDepth) : id;
+                RangeSummary summary = leaves.get(key);
+                if (summary == null) {
+                    summary = new RangeSummary();
+                    leaves.put(key, summary);
+                }
+                summary.add(1, hash(id, toLong(getEsSource(hit).get(OEntityDocHandler.KEY_UPDATED))));
+            }
+        });
+        return leaves;
+    }
+
+    /**
+     * スクロールサーチで読み込んだドキュメントを扱うHandler.
+     */
+    interface HitHandler {
+        void handle(DcSearchHit hit);
+    }
+
+    /**
+     * Elasticsearch上の範囲内のドキュメントをスクロールサーチで読み込む.
+     * 秒間の読み込み件数が上限を超えないよう、待ち合わせながら読み込む。
+     * @param indexName インデックス名
+     * @param target チェック対象
+     * @param prefix 読み込む範囲のuuidの先頭文字列
+     * @param handler 読み込んだドキュメントを扱うHandler
+     * @throws InterruptedException 中断された場合
+     */
+    private void scanEs(String indexName, String target, String prefix, HitHandler handler)
+            throws InterruptedException {
+        String type = null;
+        List<String> excludeTypes = Collections.emptyList();
+        if (TARGET_ENTITY.equals(target)) {
+            excludeTypes = Arrays.asList(TARGET_LINK, TARGET_DAV);
+        } else {
+            type = target;
+        }
+        DcSearchResponse response = EsAccessor.scrollByIdPrefix(indexName, type, excludeTypes, prefix,
+                ES_FIELDS, SCROLL_SIZE);
+        String scrollId = response.getScrollId();
+        while (true) {
+            response = EsAccessor.scroll(scrollId);
+            DcSearchHit[] hits = response.getHits().getHits();
+            if (hits.length == 0) {
+                break;
+            }
+            for (DcSearchHit hit : hits) {
+                handler.handle(hit);
+            }
+            scrollId = response.getScrollId();
+            throttle(hits.length);
+        }
+    }
+
+    private void throttle(int docs) throws InterruptedException {
+        scannedDocs += docs;
+        if (scanDocsPerSec <= 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return;
+        }
+        long expected = scanStartTime + scannedDocs * 1000L / scanDocsPerSec;
+        long wait = expected - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        } else if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * 1件分のハッシュ値を算出する.
+     * ADS側ではcrc32(concat(id, ':', updated))として算出しているため、同じ文字列のCRC32とする。
+     * @param id uuid
+     * @param updated 更新日時
+     * @return ハッシュ値
+     */
+    static long hash(String id, long updated) {
+        CRC32 crc = new CRC32();
+        crc.update((id + ":" + updated).getBytes(CHARSET));
+        return crc.getValue();
+    }
+
+    private static SortedMap<String, RangeSummary> subMap(TreeMap<String, RangeSummary> leaves, String prefix) {
+        return leaves.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private static Map<String, Object> getEsSource(DcSearchHit hit) {
+        Map<String, Object> source = hit.getSource();
+        if (source == null) {
+            return new HashMap<String, Object>();
+        }
+        return source;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getAdsSource(JSONObject json) {
+        return (Map<String, Object>) json.get("source");
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            return Long.parseLong((String) value);
+        }
+        return 0;
+    }
+
+    /**
+     * 補正対象として、ADS書き込み失敗ログに出力する.
+     * @param loginfo 補正対象の情報
+     */
+    private void recordAdsWriteFailureLog(AdsWriteFailureLogInfo loginfo) {
+        logger.info("Inconsistency between Elasticsearch and Ads is detected. : " + loginfo.toString());
+        AdsWriteFailureLogWriter adsWriteFailureLogWriter = AdsWriteFailureLogWriter.getInstance(
+                DcCoreConfig.getAdsWriteFailureLogDir(),
+                DcCoreConfig.getCoreVersion(),
+                DcCoreConfig.getAdsWriteFailureLogPhysicalDelete());
+        try {
+            adsWriteFailureLogWriter.writeActiveFile(loginfo);
+        } catch (AdsWriteFailureLogException e) {
+            logger.error("Failed to write adsWriteFailureLog. : " + loginfo.toString(), e);
+        }
+    }
+
+    /**
+     * チェック対象のインデックス名の一覧を取得する.
+     * CellのデータはユニットユーザごとのADSに格納されるため、管理用インデックス(ad)はチェック対象外とする。
+     * @return インデックス名の一覧(昇順)
+     */
+    private static List<String> collectIndexNames() {
+        String prefix = DcCoreConfig.getEsUnitPrefix() + "_";
+        String adminIndexName = prefix + EsIndex.CATEGORY_AD;
+        List<String> indexNames = new ArrayList<String>();
+        for (String indexName : EsModel.client().indicesStatus().getIndices()) {
+            if (indexName.startsWith(prefix) && !adminIndexName.equals(indexName)) {
+                indexNames.add(indexName);
+            }
+        }
+        Collections.sort(indexNames);
+        return indexNames;
+    }
+
+    private int compareCheckpoint(String[] checkpoint, String indexName, String target) {
+        int ret = checkpoint[0].compareTo(indexName);
+        if (ret == 0) {
+            ret = TARGETS.indexOf(checkpoint[1]) - TARGETS.indexOf(target);
+        }
+        return ret;
+    }
+
+    private String[] readCheckpoint() {
+        if (!checkpointFile.isFile()) {
+            return null;
+        }
+        try {
+            String[] checkpoint = FileUtils.readFileToString(checkpointFile, CHARSET.name()).trim().split("\t");
+            if (checkpoint.length == 3 && TARGETS.contains(checkpoint[1])) {
+                logger.info("Resuming Ads consistency check from checkpoint. " + Arrays.toString(checkpoint));
+                return checkpoint;
+            }
+            logger.info("Invalid checkpoint file is ignored. [" + checkpointFile.getAbsolutePath() + "]");
+        } catch (IOException e) {
+            logger.info("Failed to read checkpoint file. [" + checkpointFile.getAbsolutePath() + "]", e);
+        }
+        return null;
+    }
+
+    private void writeCheckpoint(String indexName, String target, String partition) {
+        try {
+            FileUtils.writeStringToFile(checkpointFile, indexName + "\t" + target + "\t" + partition,
+                    CHARSET.name());
+        } catch (IOException e) {
+            logger.info("Failed to write checkpoint file. [" + checkpointFile.getAbsolutePath() + "]", e);
+        }
+    }
+}
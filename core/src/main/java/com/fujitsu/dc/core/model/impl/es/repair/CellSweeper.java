@@ -0,0 +1,374 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.repair;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.ads.Ads;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsConnectionException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
+
+/**
+ * 削除済みCellのADSデータを掃除するクラス.
+ * <p>
+ * セル削除用管理テーブル(pcs_management.CELL_DELETE)に登録されたDB・テーブル・Cellの組ごとに、Cell配下のレコードの
+ * uuidを一定件数ずつ取得して主キー指定で削除し、全件の削除が完了した組を管理テーブルから削除する。
+ * 複数の組は並行して掃除する。1回の削除にかかった時間が目標値を超えた場合は削除件数を減らし、下回った場合は増やす。
+ * また、削除のたびにかかった時間に比例して休止することで、MySQLへの負荷を一定の割合に抑える。
+ * 処理件数とスループットは{@link #getStatus()}で取得できる。
+ * </p>
+ */
+public class CellSweeper {
+
+    static Logger logger = LoggerFactory.getLogger(CellSweeper.class);
+
+    private static final String MYSQL_BAD_TABLE_ERROR = "42S02";
+    private static final int MYSQL_BAD_DB_ERROR_CODE = 1049;
+    private static final long MILLIS_PER_SEC = 1000L;
+
+    private static CellSweeper singleton = new CellSweeper();
+
+    private final AtomicLong deletedRecords = new AtomicLong();
+    private final AtomicLong sweptTargets = new AtomicLong();
+    private final AtomicLong failedTargets = new AtomicLong();
+    private final AtomicLong runDeletedRecords = new AtomicLong();
+    private final ConcurrentHashMap<String, SweepTarget> activeTargets = new ConcurrentHashMap<String, SweepTarget>();
+
+    private volatile boolean running;
+    private volatile long lastStartedAt;
+    private volatile long lastEndedAt;
+    private volatile AdaptivePacer pacer;
+
+    /**
+     * デフォルトコンストラクタ（使用不可）.
+     */
+    private CellSweeper() {
+    }
+
+    /**
+     * インスタンスの取得.
+     * @return singletonインスタンス
+     */
+    public static CellSweeper getInstance() {
+        return singleton;
+    }
+
+    /**
+     * 掃除対象(DB・テーブル・Cellの組).
+     */
+    static class SweepTarget {
+        private final String dbName;
+        private final String tableName;
+        private final String cellId;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicLong deleted = new AtomicLong();
+        private volatile boolean failed;
+
+        SweepTarget(String dbName, String tableName, String cellId) {
+            this.dbName = dbName;
+            this.tableName = tableName;
+            this.cellId = cellId;
+        }
+
+        String getKey() {
+            return createKey(dbName, tableName, cellId);
+        }
+
+        static String createKey(String dbName, String tableName, String cellId) {
+            return dbName + "/" + tableName + "/" + cellId;
+        }
+
+        @SuppressWarnings("unchecked")
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("db_name", dbName);
+            json.put("table_name", tableName);
+            json.put("cell_id", cellId);
+            json.put("started_at", startedAt);
+            json.put("deleted_records", deleted.get());
+            return json;
+        }
+    }
+
+    /**
+     * 1回の削除にかかった時間から、削除件数と休止時間を決定するクラス.
+     * 並行して動作する全ての掃除処理で共有する。
+     */
+    static class AdaptivePacer {
+        private final int minChunkSize;
+        private final int maxChunkSize;
+        private final long targetLatency;
+        private final double pauseRatio;
+        private int chunkSize;
+        private long lastLatency;
+
+        AdaptivePacer(int minChunkSize, int maxChunkSize, long targetLatency, double pauseRatio) {
+            this.minChunkSize = minChunkSize;
+            this.maxChunkSize = maxChunkSize;
+            this.targetLatency = targetLatency;
+            this.pauseRatio = pauseRatio;
+            // 負荷状況が不明なため、下限から開始する
+            this.chunkSize = minChunkSize;
+        }
+
+        synchronized int getChunkSize() {
+            return chunkSize;
+        }
+
+        synchronized long getLastLatency() {
+            return lastLatency;
+        }
+
+        /**
+         * 削除にかかった時間を記録し、次の削除まで休止する.
+         * @param latency 削除にかかった時間(ミリ秒)
+         * @throws InterruptedException 休止中に割り込まれた場合
+         */
+        void pause(long latency) throws InterruptedException {
+            long pause;
+            synchronized (this) {
+                this.lastLatency = latency;
+                if (latency > targetLatency) {
+                    // 目標を超過した場合は削除件数を半減し、通常より長く休止する
+                    this.chunkSize = Math.max(minChunkSize, chunkSize / 2);
+                    pause = (long) (latency * pauseRatio * 2);
+                } else {
+                    this.chunkSize = Math.min(maxChunkSize, chunkSize + minChunkSize);
+                    pause = (long) (latency * pauseRatio);
+                }
+            }
+            if (pause > 0) {
+                Thread.sleep(pause);
+            }
+        }
+    }
+
+    /**
+     * 掃除処理のメイン処理.
+     * 管理テーブルに登録された全ての組の掃除が完了するか、全ての組で失敗するまで繰り返す。
+     */
+    public void sweep() {
+        int threads = DcCoreConfig.getCellSweepThreads();
+        Ads ads;
+        try {
+            ads = new JdbcAds();
+        } catch (AdsConnectionException e) {
+            logger.info("Failed to connect to Ads. Cell sweep cancelled.", e);
+            return;
+        }
+        logger.info("Sweeping cell data started.");
+        this.pacer = new AdaptivePacer(DcCoreConfig.getCellSweepMinChunkSize(),
+                DcCoreConfig.getCellSweepMaxChunkSize(),
+                DcCoreConfig.getCellSweepTargetLatencyInMillis(),
+                DcCoreConfig.getCellSweepPauseRatio());
+        this.runDeletedRecords.set(0);
+        this.lastStartedAt = System.currentTimeMillis();
+        this.running = true;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<SweepTarget> completionService = new ExecutorCompletionService<SweepTarget>(pool);
+        // 今回の実行で失敗した組は、次回の実行まで再試行しない
+        Set<String> failedKeys = new HashSet<String>();
+        int inFlight = 0;
+        try {
+            while (true) {
+                int free = threads - inFlight;
+                if (free > 0) {
+                    // 実行中・失敗済みの組を読み飛ばしても空きを埋められる件数を取得する
+                    List<JSONObject> records = ads.getCellDeleteRecordList(inFlight + failedKeys.size() + free);
+                    for (JSONObject record : records) {
+                        if (free == 0) {
+                            break;
+                        }
+                        String key = SweepTarget.createKey((String) record.get("db_name"),
+                                (String) record.get("table_name"), (String) record.get("cell_id"));
+                        if (activeTargets.containsKey(key) || failedKeys.contains(key)) {
+                            continue;
+                        }
+                        SweepTarget target = new SweepTarget((String) record.get("db_name"),
+                                (String) record.get("table_name"), (String) record.get("cell_id"));
+                        activeTargets.put(key, target);
+                        completionService.submit(new SweepTask(target));
+                        inFlight++;
+                        free--;
+                    }
+                }
+                if (inFlight == 0) {
+                    break;
+                }
+                Future<SweepTarget> future = completionService.take();
+                inFlight--;
+                try {
+                    SweepTarget target = future.get();
+                    if (target.failed) {
+                        failedKeys.add(target.getKey());
+                    }
+                } catch (ExecutionException e) {
+                    // 例外はSweepTask内で捕捉して失敗済みの組とするため、ここに到達するのはErrorの場合のみ
+                    // 対象の組を特定できず同じ組を繰り返し投入するおそれがあるため、今回の掃除処理を中断する
+                    logger.error("Cell sweep task reported an error. Cell sweep cancelled.", e.getCause());
+                    break;
+                }
+            }
+        } catch (AdsException e) {
+            logger.warn("Failed to get management records for cell sweep.", e);
+        } catch (InterruptedException e) {
+            logger.info("Cell sweep interrupted.");
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+            this.running = false;
+            this.lastEndedAt = System.currentTimeMillis();
+        }
+        logger.info(String.format("Sweeping cell data finished. deleted records: %d, records/sec: %d",
+                runDeletedRecords.get(), getRecordsPerSec()));
+    }
+
+    /**
+     * 1つの組を掃除する処理.
+     */
+    class SweepTask implements Callable<SweepTarget> {
+        private final SweepTarget target;
+
+        SweepTask(SweepTarget target) {
+            this.target = target;
+        }
+
+        @Override
+        public SweepTarget call() {
+            String targetLog = String.format("Cell: %s   Database: %s.%s",
+                    target.cellId, target.dbName, target.tableName);
+            try {
+                // JdbcAdsはスレッドセーフではないため、組ごとに生成する(コネクションプールは共有される)
+                Ads ads = new JdbcAds();
+                try {
+                    sweepRecords(ads);
+                } catch (AdsException e) {
+                    if (!isMissingTable(e)) {
+                        throw e;
+                    }
+                    // Unitユーザ削除等によりDB・テーブルが既に存在しない場合は、削除済みとして扱う
+                    logger.info("Ads table does not exist. " + targetLog);
+                }
+                ads.deleteCellDeleteRecord(target.dbName, target.tableName, target.cellId);
+                sweptTargets.incrementAndGet();
+                logger.info(String.format("Cell data is deleted: %s   Records: %d", targetLog, target.deleted.get()));
+            } catch (AdsException e) {
+                logger.warn("Failed to sweep cell data: " + targetLog, e);
+                target.failed = true;
+                failedTargets.incrementAndGet();
+            } catch (InterruptedException e) {
+                logger.info("Cell sweep interrupted: " + targetLog);
+                target.failed = true;
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // 想定外の例外も失敗済みの組とし、今回の実行では再試行しない
+                logger.warn("Unexpected error on sweeping cell data: " + targetLog, e);
+                target.failed = true;
+                failedTargets.incrementAndGet();
+            } finally {
+                activeTargets.remove(target.getKey());
+            }
+            return target;
+        }
+
+        private void sweepRecords(Ads ads) throws AdsException, InterruptedException {
+            AdaptivePacer currentPacer = pacer;
+            while (true) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                long start = System.nanoTime();
+                List<String> idList = ads.getCellResourceIdList(target.dbName, target.tableName, target.cellId,
+                        currentPacer.getChunkSize());
+                if (idList.isEmpty()) {
+                    return;
+                }
+                int deleted = ads.deleteCellResourceById(target.dbName, target.tableName, target.cellId, idList);
+                long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                target.deleted.addAndGet(deleted);
+                deletedRecords.addAndGet(deleted);
+                runDeletedRecords.addAndGet(deleted);
+                currentPacer.pause(latency);
+            }
+        }
+    }
+
+    static boolean isMissingTable(AdsException e) {
+        if (!(e.getCause() instanceof SQLException)) {
+            return false;
+        }
+        SQLException cause = (SQLException) e.getCause();
+        return MYSQL_BAD_TABLE_ERROR.equals(cause.getSQLState()) || MYSQL_BAD_DB_ERROR_CODE == cause.getErrorCode();
+    }
+
+    private long getRecordsPerSec() {
+        long end = running ? System.currentTimeMillis() : lastEndedAt;
+        long elapsed = end - lastStartedAt;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return runDeletedRecords.get() * MILLIS_PER_SEC / elapsed;
+    }
+
+    /**
+     * 掃除処理の状況を取得する.
+     * @return 処理状況
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject getStatus() {
+        JSONObject json = new JSONObject();
+        json.put("running", running);
+        json.put("last_started_at", lastStartedAt);
+        json.put("last_ended_at", lastEndedAt);
+        json.put("deleted_records", deletedRecords.get());
+        json.put("swept_targets", sweptTargets.get());
+        json.put("failed_targets", failedTargets.get());
+        json.put("records_per_sec", getRecordsPerSec());
+        AdaptivePacer currentPacer = pacer;
+        if (currentPacer != null) {
+            json.put("chunk_size", currentPacer.getChunkSize());
+            json.put("last_latency_millis", currentPacer.getLastLatency());
+        }
+        JSONArray targets = new JSONArray();
+        for (SweepTarget target : activeTargets.values()) {
+            targets.add(target.toJson());
+        }
+        json.put("active_targets", targets);
+        return json;
+    }
+}
@@ -88,6 +88,63 @@ public class EsAccessor {
         return index.search(routingId, query);
     }
 
+    /**
+     * uuidの先頭文字列を指定してドキュメントのスクロールサーチを開始する.
+     * スキャン検索のため、最初の応答にはドキュメントは含まれない。続きは{@link #scroll(String)}で取得すること。
+     * @param indexName 検索対象のインデックス名
+     * @param type タイプ名(nullの場合は全タイプ)
+     * @param excludeTypes 検索対象から除外するタイプ名のリスト
+     * @param idPrefix uuidの先頭文字列
+     * @param fields 取得するフィールド名のリスト
+     * @param size 1回のスクロールで各シャードから取得する件数
+     * @return 検索結果
+     * @throws EsClientException ESへの検索に失敗した場合
+     */
+    public static DcSearchResponse scrollByIdPrefix(final String indexName,
+            final String type,
+            final List<String> excludeTypes,
+            final String idPrefix,
+            final List<String> fields,
+            final int size)
+            throws EsClientException {
+        List<Map<String, Object>> filters = new ArrayList<Map<String, Object>>();
+        // uuidの前方一致
+        Map<String, Object> prefix = new HashMap<String, Object>();
+        Map<String, Object> prefixValue = new HashMap<String, Object>();
+        filters.add(prefix);
+        prefix.put("prefix", prefixValue);
+        prefixValue.put("_id", idPrefix);
+        // 除外するタイプ
+        for (String excludeType : excludeTypes) {
+            Map<String, Object> not = new HashMap<String, Object>();
+            Map<String, Object> notFilter = new HashMap<String, Object>();
+            Map<String, Object> typeFilter = new HashMap<String, Object>();
+            Map<String, Object> typeValue = new HashMap<String, Object>();
+            filters.add(not);
+            not.put("not", notFilter);
+            notFilter.put("filter", typeFilter);
+            typeFilter.put("type", typeValue);
+            typeValue.put("value", excludeType);
+        }
+
+        Map<String, Object> query = new HashMap<String, Object>();
+        query.put("query", QueryMapFactory.filteredQuery(null, QueryMapFactory.andFilter(filters)));
+        query.put("_source", fields);
+        query.put("version", true);
+        query.put("size", size);
+        return EsModel.client().scrollSearch(indexName, type, query);
+    }
+
+    /**
+     * スクロールサーチを継続する.
+     * @param scrollId スクロールID
+     * @return 検索結果
+     * @throws EsClientException ESへの検索に失敗した場合
+     */
+    public static DcSearchResponse scroll(final String scrollId) throws EsClientException {
+        return EsModel.client().scrollSearch(scrollId);
+    }
+
     /**
      * インデックス名に応じたEsIndex インスタンスを取得する.
      * @param indexName インデックス名(unit prefix付き)
@@ -18,11 +18,19 @@ package com.fujitsu.dc.core.model.impl.es.repair;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,6 +45,7 @@ import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
 import com.fujitsu.dc.common.ads.AdsWriteFailureLogWriter;
 import com.fujitsu.dc.common.ads.RollingAdsWriteFailureLog;
 import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.response.DcSearchHit;
 import com.fujitsu.dc.common.es.response.DcSearchHits;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.common.es.response.EsClientException;
@@ -67,6 +76,8 @@ public class RepairAds {
     private File adsLogBaseDir;
     private boolean physicalDelete;
     private int logCountPerIteration;
+    private int batchSize;
+    private ExecutorService executor;
     // 処理中のADS書き込み失敗ログのファイル名に付加されているタイムスタンプ
     // TODO AdsWriteFailureLogWriterクラスから取得するように見直す。
     private long createTime;
@@ -108,6 +119,12 @@ public class RepairAds {
                 throw new RepairAdsException("Failed to connect MySQL master.");
             }
 
+            // OData空間ごとのリペアを並行して実行するスレッドプールの生成
+            int parallelism = DcCoreConfig.getAdsRepairParallelism();
+            if (parallelism > 1) {
+                executor = Executors.newFixedThreadPool(parallelism);
+            }
+
             // ADS書き込み失敗ログファイルの一覧取得とファイルのソート（created timestamp）
             Map<Long, File> logFilesMap = collectAdsWriteFailureLogFiles();
             if (logFilesMap.isEmpty()) {
@@ -139,6 +156,10 @@ public class RepairAds {
             // - 前回からのエラーも検出したいので、static変数でログ出力可否を判定する？
             logger.error("An error is detected in ads repair process.", e);
         } finally {
+            if (null != executor) {
+                executor.shutdownNow();
+                executor = null;
+            }
             rotateRetryAndErrorLog();
         }
     }
@@ -178,6 +199,7 @@ public class RepairAds {
         adsLogBaseDir = new File(adsLogBaseDirPath);
         physicalDelete = DcCoreConfig.getAdsWriteFailureLogPhysicalDelete();
         logCountPerIteration = DcCoreConfig.getAdsWriteFailureLogCountPerIteration();
+        batchSize = DcCoreConfig.getAdsRepairBatchSize();
     }
 
     /**
@@ -298,9 +320,7 @@ public class RepairAds {
                     String key = logInfo.getIndexName() + "_" + logInfo.getLockKey();
                     updateAdsWriteFailureLogMap(mapOfOdataLock, logInfo, key);
                 }
-                for (Entry<String, List<AdsWriteFailureLogInfo>> sourceLogInfo : mapOfOdataLock.entrySet()) {
-                    executeRepairAds(sourceLogInfo.getValue());
-                }
+                executeRepairAdsInParallel(mapOfOdataLock.values());
             }
         } catch (AdsWriteFailureLogException e) {
             // ここでエラーとなった場合は、呼び出し元に戻り、次のADS書き込み失敗ログの処理に移行する。
@@ -351,74 +371,154 @@ public class RepairAds {
         }
     }
 
+    /**
+     * OData空間ごとにまとめたADS書き込み失敗情報を並行してリペアする.
+     * OData空間が異なるデータは互いに独立しているため、設定された並列度で同時に処理する。
+     * @param logInfoGroups OData空間ごとにまとめたADS書き込み失敗情報
+     * @throws RepairAdsException ツール全体を異常終了させるエラーが発生した場合
+     */
+    private void executeRepairAdsInParallel(Collection<List<AdsWriteFailureLogInfo>> logInfoGroups)
+            throws RepairAdsException {
+        if (null == executor || logInfoGroups.size() <= 1) {
+            for (List<AdsWriteFailureLogInfo> logInfos : logInfoGroups) {
+                executeRepairAds(logInfos);
+            }
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (final List<AdsWriteFailureLogInfo> logInfos : logInfoGroups) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws RepairAdsException {
+                    executeRepairAds(logInfos);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepairAdsException("Interrupted while repairing ads.", e);
+        } catch (ExecutionException e) {
+            // いずれかのOData空間でツール全体を異常終了させるエラーが発生した場合は、残りの処理を取り消す
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RepairAdsException) {
+                throw (RepairAdsException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RepairAdsException("Failed to repair ads.", cause);
+        }
+    }
+
+    /**
+     * 同一OData空間のADS書き込み失敗情報をリペアする.
+     * タイプ・routingIdごとにまとめ、一定件数ごとにElasticsearch/ADSへ一括で問い合わせてリペアする。
+     * @param logInfos 同一OData空間のADS書き込み失敗情報
+     * @throws RepairAdsException ツール全体を異常終了させるエラーが発生した場合
+     */
     private void executeRepairAds(List<AdsWriteFailureLogInfo> logInfos) throws RepairAdsException {
-        // 1件ごとに処理を行う。
-        // TODO 性能的な問題が発生した場合は、ｎ件ごとに処理を行うように修正すること。
+        Map<String, List<AdsWriteFailureLogInfo>> groups = new LinkedHashMap<String, List<AdsWriteFailureLogInfo>>();
         for (AdsWriteFailureLogInfo logInfo : logInfos) {
-            logger.info("Starting repair. Repair record: " + logInfo.toString());
-            String indexName = logInfo.getIndexName();
-            String routingId = logInfo.getRoutingId();
-            if ("".equals(routingId)) {
-                routingId = EsIndex.CELL_ROUTING_KEY_NAME;
+            String key = logInfo.getType() + "\t" + logInfo.getRoutingId();
+            List<AdsWriteFailureLogInfo> group = groups.get(key);
+            if (null == group) {
+                group = new ArrayList<AdsWriteFailureLogInfo>();
+                groups.put(key, group);
+            }
+            group.add(logInfo);
+        }
+        for (List<AdsWriteFailureLogInfo> group : groups.values()) {
+            for (int from = 0; from < group.size(); from += batchSize) {
+                executeRepairAdsBatch(group.subList(from, Math.min(from + batchSize, group.size())));
             }
+        }
+    }
 
-            Lock lock = null;
-            String lockKey = logInfo.getLockKey();
-            try {
-                // lockKeyが空(Cell再帰的削除の場合)であれば、ロックしない
-                if (null != lockKey && !lockKey.isEmpty()) {
-                    try {
-                        lock = lock(lockKey);
-                    } catch (DcCoreException e) {
-                        if (e.getCode().equals(DcCoreException.Server.GET_LOCK_STATE_ERROR.getCode())
-                                || e.getCode().equals(DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.getCode())) {
-                            // 全体を異常終了させる
-                            throw e;
-                        } else {
-                            // lockが他のプロセスに取得されており、取得できなかったため、異常終了にはせず、次の行に移行する
+    /**
+     * ロックキー・タイプ・routingIdが同一のADS書き込み失敗情報を一括でリペアする.
+     * @param logInfos ロックキー・タイプ・routingIdが同一のADS書き込み失敗情報
+     * @throws RepairAdsException ツール全体を異常終了させるエラーが発生した場合
+     */
+    private void executeRepairAdsBatch(List<AdsWriteFailureLogInfo> logInfos) throws RepairAdsException {
+        AdsWriteFailureLogInfo first = logInfos.get(0);
+        logger.info(String.format("Starting repair. Repair records: %d, first record: %s",
+                logInfos.size(), first.toString()));
+        String indexName = first.getIndexName();
+        String routingId = first.getRoutingId();
+        if ("".equals(routingId)) {
+            routingId = EsIndex.CELL_ROUTING_KEY_NAME;
+        }
+
+        Lock lock = null;
+        String lockKey = first.getLockKey();
+        try {
+            // lockKeyが空(Cell再帰的削除の場合)であれば、ロックしない
+            if (null != lockKey && !lockKey.isEmpty()) {
+                try {
+                    lock = lock(lockKey);
+                } catch (DcCoreException e) {
+                    if (e.getCode().equals(DcCoreException.Server.GET_LOCK_STATE_ERROR.getCode())
+                            || e.getCode().equals(DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.getCode())) {
+                        // 全体を異常終了させる
+                        throw e;
+                    } else {
+                        // lockが他のプロセスに取得されており、取得できなかったため、異常終了にはせず、次のデータに移行する
+                        for (AdsWriteFailureLogInfo logInfo : logInfos) {
                             writeAdsRetryLog(logInfo.toString());
-                            logger.info("Other process has a lockObject.");
-                            continue;
                         }
+                        logger.info("Other process has a lockObject.");
+                        return;
                     }
-                    if (null == lock) {
-                        // 該当行を不正ログファイルに退避する
+                }
+                if (null == lock) {
+                    // 該当行を不正ログファイルに退避する
+                    for (AdsWriteFailureLogInfo logInfo : logInfos) {
                         writeAdsErrorLog(logInfo.toString());
-                        String message = String.format("Faild to get lock. lockKey= [%s]", lockKey);
-                        logger.error(message);
-                        continue;
                     }
+                    String message = String.format("Faild to get lock. lockKey= [%s]", lockKey);
+                    logger.error(message);
+                    return;
                 }
+            }
 
-                List<String> idList = new ArrayList<String>();
+            List<String> idList = new ArrayList<String>();
+            for (AdsWriteFailureLogInfo logInfo : logInfos) {
                 idList.add(logInfo.getUuid());
-                try {
-                    // TypeがCellである場合は、Elasticsearchのインデックス名を「{UnitPrefix}_ad」に変更する
-                    if (Cell.EDM_TYPE_NAME.equals(logInfo.getType())) {
-                        indexName = DcCoreConfig.getEsUnitPrefix() + "_" + EsIndex.CATEGORY_AD;
-                    }
-                    // ES/ADSへの検索は、一括検索ができるようなAPIを使用しているが、今のところは1件ずつ処理することを前提としている。
-                    DcSearchResponse esResponse = EsAccessor.search(indexName, routingId, idList, logInfo.getType());
-                    List<JSONObject> adsResponse = AdsAccessor.getIdListOnAds(logInfo);
-                    repairToAds(logInfo, esResponse, adsResponse);
-                } catch (EsClientException e) {
-                    String message = String.format("Failed to get response from Elasticsearch. [%s]",
-                            logInfo.toString());
-                    // Elasticsearchへの検索に失敗したため、ツール全体を異常終了させる
-                    throw new RepairAdsException(message, e);
-                } catch (AdsException e) {
-                    String message = String.format("Failed to get response from Ads. [%s]", logInfo.toString());
-                    // MySQLへの検索に失敗したため、ツール全体を異常終了させる
-                    throw new RepairAdsException(message, e);
-                }
-            } finally {
-                if (null != lock) {
-                    logger.debug("unlock");
-                    lock.release();
+            }
+            try {
+                // TypeがCellである場合は、Elasticsearchのインデックス名を「{UnitPrefix}_ad」に変更する
+                if (Cell.EDM_TYPE_NAME.equals(first.getType())) {
+                    indexName = DcCoreConfig.getEsUnitPrefix() + "_" + EsIndex.CATEGORY_AD;
                 }
+                DcSearchResponse esResponse = EsAccessor.search(indexName, routingId, idList, first.getType());
+                List<JSONObject> adsResponse = AdsAccessor.getIdListOnAds(first.getIndexName(), first.getType(),
+                        idList);
+                repairToAds(logInfos, esResponse, adsResponse);
+            } catch (EsClientException e) {
+                String message = String.format("Failed to get response from Elasticsearch. [%s]",
+                        first.toString());
+                // Elasticsearchへの検索に失敗したため、ツール全体を異常終了させる
+                throw new RepairAdsException(message, e);
+            } catch (AdsException e) {
+                String message = String.format("Failed to get response from Ads. [%s]", first.toString());
+                // MySQLへの検索に失敗したため、ツール全体を異常終了させる
+                throw new RepairAdsException(message, e);
+            }
+        } finally {
+            if (null != lock) {
+                logger.debug("unlock");
+                lock.release();
             }
         }
-
     }
 
     /**
@@ -455,49 +555,135 @@ public class RepairAds {
             AdsWriteFailureLogInfo logInfo,
             DcSearchResponse esResponse,
             List<JSONObject> adsResponse) throws RepairAdsException {
+        List<AdsWriteFailureLogInfo> logInfos = new ArrayList<AdsWriteFailureLogInfo>();
+        logInfos.add(logInfo);
+        repairToAds(logInfos, esResponse, adsResponse);
+    }
+
+    /**
+     * リペア対象のデータを一括でADSにリクエストする.
+     * @param logInfos ログから読み込んだADS書き込み失敗情報(インデックス・タイプが同一のもの)
+     * @param esResponse Elasticsearchにリペア対象のデータを検索した結果
+     * @param adsResponse ADSにリペア対象のデータを検索した結果
+     * @throws RepairAdsException DcRepairAdsException
+     */
+    public void repairToAds(
+            List<AdsWriteFailureLogInfo> logInfos,
+            DcSearchResponse esResponse,
+            List<JSONObject> adsResponse) throws RepairAdsException {
 
-        // 検索結果として、２件以上がヒットした場合は異常事態とみなし、エラーとする。
-        // （現状は、１件ずつ処理しているため、このチェックがある。ｎ件ずつ処理する場合は、ｎ件ヒットで確認する）
-        // TODO 件数の数値は、フィールドに追い出す。
+        // 検索結果として、リペア対象の件数を超えてヒットした場合は異常事態とみなし、エラーとする。
         DcSearchHits hits = esResponse.getHits();
-        if (hits.getAllPages() > 1) {
+        if (hits.getAllPages() > logInfos.size()) {
             String message =
                     String.format("Unexpected number of data returned from Elasticsearch. [%d]", hits.getAllPages());
-            // 2件以上帰ってきた場合は、ツール全体を異常終了させる
+            // 想定以上の件数が帰ってきた場合は、ツール全体を異常終了させる
             throw new RepairAdsException(message);
-        } else if (adsResponse.size() > 1) {
+        } else if (adsResponse.size() > logInfos.size()) {
             String message = String.format("Unexpected number of data returned from ads. [id=%s, hits=%d]",
-                    logInfo.getUuid(), adsResponse.size());
-            // 2件以上帰ってきた場合は、ツール全体を異常終了させる
+                    logInfos.get(0).getUuid(), adsResponse.size());
+            // 想定以上の件数が帰ってきた場合は、ツール全体を異常終了させる
             throw new RepairAdsException(message);
         }
 
-        try {
-            // リペアの判断
-            String repairId = logInfo.getUuid();
-            String indexName = logInfo.getIndexName();
-            String type = logInfo.getType();
+        Map<String, DcSearchHit> esHits = new HashMap<String, DcSearchHit>();
+        for (DcSearchHit hit : hits.getHits()) {
+            esHits.put(hit.getId(), hit);
+        }
+        Set<String> adsIds = new HashSet<String>();
+        for (JSONObject row : adsResponse) {
+            adsIds.add((String) row.get("id"));
+        }
 
-            if (hits.getCount() == 1 && adsResponse.size() == 0) {
+        // リペアの判断
+        List<AdsWriteFailureLogInfo> createLogInfos = new ArrayList<AdsWriteFailureLogInfo>();
+        List<DcSearchHit> createHits = new ArrayList<DcSearchHit>();
+        List<AdsWriteFailureLogInfo> updateLogInfos = new ArrayList<AdsWriteFailureLogInfo>();
+        List<DcSearchHit> updateHits = new ArrayList<DcSearchHit>();
+        for (AdsWriteFailureLogInfo logInfo : logInfos) {
+            String repairId = logInfo.getUuid();
+            DcSearchHit hit = esHits.get(repairId);
+            boolean existsOnAds = adsIds.contains(repairId);
+            if (null != hit && !existsOnAds) {
                 // Elasticsearchに存在し、MySQLにデータが存在しない場合
                 // MySQLにデータを登録する(Create)
-                AdsAccessor.createAds(indexName, type, esResponse);
-                logger.info("New recored is inserted into ads. : " + hits.getAt(0).getSource());
-            } else if (hits.getCount() == 1 && adsResponse.size() == 1
-                    && logInfo.getEsVersion() == hits.getAt(0).getVersion()) {
+                createLogInfos.add(logInfo);
+                createHits.add(hit);
+            } else if (null != hit && logInfo.getEsVersion() == hit.getVersion()) {
                 // Elasticsearchにデータが存在し、データのバージョンがJournalログのバージョンと同じである場合
                 // MySQLにデータを更新する(Update)
-                AdsAccessor.updateAds(indexName, type, esResponse);
-                logger.info("Ads record is updated : " + hits.getAt(0).getSource());
-            } else if (hits.getCount() == 0 && adsResponse.size() == 1) {
+                updateLogInfos.add(logInfo);
+                updateHits.add(hit);
+            } else if (null == hit && existsOnAds) {
                 // ES上にデータが存在せず、MySQLにデータが存在する場合
                 // MySQLにデータを削除する(Delete)
-                AdsAccessor.deleteAds(indexName, type, repairId);
-                logger.info("Ads record is deleted from ads. : " + repairId);
+                repairRecordToAds(logInfo, null, true);
             } else {
                 // ここに来た場合は、MySQLのデータ更新は無視されたことになる。
                 logger.info("No operation performed for repair log recordID : " + repairId);
             }
+        }
+        bulkRepairToAds(createLogInfos, createHits, false);
+        bulkRepairToAds(updateLogInfos, updateHits, true);
+    }
+
+    /**
+     * リペア対象のデータをADSに一括で登録/更新する.
+     * 一括での登録/更新に失敗した場合は、失敗したデータを特定するために1件ずつ登録/更新する。
+     * @param logInfos ログから読み込んだADS書き込み失敗情報
+     * @param hits Elasticsearchから取得したリペア対象のデータ
+     * @param existsOnAds ADSにデータが存在する(更新する)場合はtrue
+     */
+    private void bulkRepairToAds(List<AdsWriteFailureLogInfo> logInfos, List<DcSearchHit> hits,
+            boolean existsOnAds) {
+        if (logInfos.isEmpty()) {
+            return;
+        }
+        String indexName = logInfos.get(0).getIndexName();
+        String type = logInfos.get(0).getType();
+        // 途中まで反映された状態で失敗しないよう、1文で一括登録/更新できるタイプのみ一括で処理する
+        boolean bulkSupported = !Cell.EDM_TYPE_NAME.equals(type) && !"dav".equals(type)
+                && (!"link".equals(type) || !existsOnAds);
+        if (logInfos.size() > 1 && bulkSupported) {
+            try {
+                if (existsOnAds) {
+                    AdsAccessor.bulkUpdateAds(indexName, type, hits);
+                    logger.info(String.format("Ads records are updated in bulk : %d", hits.size()));
+                } else {
+                    AdsAccessor.bulkCreateAds(indexName, type, hits);
+                    logger.info(String.format("New records are inserted into ads in bulk : %d", hits.size()));
+                }
+                return;
+            } catch (AdsException e) {
+                logger.info("Failed to repair records to MySQL in bulk. Retrying one by one.", e);
+            }
+        }
+        for (int i = 0; i < logInfos.size(); i++) {
+            repairRecordToAds(logInfos.get(i), hits.get(i), existsOnAds);
+        }
+    }
+
+    /**
+     * リペア対象のデータを1件ADSに登録/更新/削除する.
+     * @param logInfo ログから読み込んだADS書き込み失敗情報
+     * @param hit Elasticsearchから取得したリペア対象のデータ(nullの場合は削除する)
+     * @param existsOnAds ADSにデータが存在する場合はtrue
+     */
+    private void repairRecordToAds(AdsWriteFailureLogInfo logInfo, DcSearchHit hit, boolean existsOnAds) {
+        String repairId = logInfo.getUuid();
+        String indexName = logInfo.getIndexName();
+        String type = logInfo.getType();
+        try {
+            if (null == hit) {
+                AdsAccessor.deleteAds(indexName, type, repairId);
+                logger.info("Ads record is deleted from ads. : " + repairId);
+            } else if (existsOnAds) {
+                AdsAccessor.updateAds(indexName, type, hit);
+                logger.info("Ads record is updated : " + hit.getSource());
+            } else {
+                AdsAccessor.createAds(indexName, type, hit);
+                logger.info("New recored is inserted into ads. : " + hit.getSource());
+            }
         } catch (AdsException e) {
             if (e.getCause() instanceof DcCoreException) {
                 // 該当行を不正ログファイルに退避する
@@ -535,7 +721,7 @@ public class RepairAds {
      * リトライログにログを出力する.
      * @param logInfo ログ情報
      */
-    private void writeAdsRetryLog(String logInfo) {
+    private synchronized void writeAdsRetryLog(String logInfo) {
         AdsWriteFailureLogWriter retryLog = AdsWriteFailureLogWriter.getInstanceforRetry(
                 adsLogBaseDir.getPath(), pcsVersion,
                 DcCoreConfig.getAdsWriteFailureLogPhysicalDelete());
@@ -551,7 +737,7 @@ public class RepairAds {
      * 退避ログにログを出力する.
      * @param logInfo ログ情報
      */
-    private void writeAdsErrorLog(String logInfo) {
+    private synchronized void writeAdsErrorLog(String logInfo) {
         AdsWriteFailureLogWriter errorLog = AdsWriteFailureLogWriter.getInstanceforError(
                 adsLogBaseDir.getPath(), pcsVersion,
                 DcCoreConfig.getAdsWriteFailureLogPhysicalDelete());
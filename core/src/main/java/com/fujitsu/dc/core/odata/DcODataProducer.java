@@ -48,6 +48,8 @@ import org.odata4j.producer.EntityResponse;
 import org.odata4j.producer.ODataProducer;
 
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+import com.fujitsu.dc.core.model.lock.Lock;
+import com.fujitsu.dc.core.rs.odata.BulkLinkRequest;
 import com.fujitsu.dc.core.rs.odata.BulkRequest;
 import com.fujitsu.dc.core.rs.odata.ODataBatchResource.NavigationPropertyBulkContext;
 
@@ -119,6 +121,23 @@ public interface DcODataProducer extends ODataProducer {
     List<EntityResponse> bulkCreateEntity(EdmDataServices metadata,
             LinkedHashMap<String, BulkRequest> bulkRequests, String cellId);
 
+    /**
+     * ロックを取得せずにバルク登録を実行する.
+     * 呼び出し元で{@link #lock()}によりロックを取得・解放すること.
+     * @param metadata スキーマ情報
+     * @param bulkRequests 登録するEntitySetDocHandlerのリスト
+     * @param cellId セルID
+     * @return EntitiesResponse
+     */
+    List<EntityResponse> bulkCreateEntityWithoutLock(EdmDataServices metadata,
+            LinkedHashMap<String, BulkRequest> bulkRequests, String cellId);
+
+    /**
+     * PK, UKで指定されたユニーク性確保のためOData空間のLockを行う.
+     * @return 取得したロック
+     */
+    Lock lock();
+
     /**
      * NP経由でエンティティを登録後リンクを登録する.
      * @param sourceEntity sourceEntity
@@ -146,4 +165,11 @@ public interface DcODataProducer extends ODataProducer {
     void checkLinksUpperLimitRecord(List<NavigationPropertyBulkContext> npBulkContexts,
             LinkedHashMap<String, BulkRequest> npBulkRequests);
 
+    /**
+     * $linksを一括登録する.
+     * 登録に失敗したリクエストには、失敗の原因となった例外が設定される。既に例外が設定されているリクエストは登録しない。
+     * @param linkRequests $links一括登録のリクエスト情報
+     */
+    void bulkCreateLinks(List<BulkLinkRequest> linkRequests);
+
 }
@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import com.fujitsu.dc.common.es.EsClient;
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
+import com.fujitsu.dc.core.model.impl.es.repair.CellSweeper;
 
 /**
  * StatusResourceに対応するJAX-RS Resource クラス.
@@ -68,10 +69,14 @@ public class StatusResource {
         // Adsの死活チェック
         responseJson.put("ads", checkAds());
 
+        // 削除済みCellのADSデータ掃除の処理状況
+        responseJson.put("cellSweep", CellSweeper.getInstance().getStatus());
+
         // ElasticSearch Health
         EsClient client = EsModel.client();
         JSONObject esJson = new JSONObject();
         esJson.put("health", client.checkHealth());
+        esJson.put("nodes", client.getNodeStats());
         responseJson.put("ElasticSearch", esJson);
 
         sb.append(responseJson.toJSONString());
@@ -49,6 +49,8 @@ import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.annotations.ACL;
 import com.fujitsu.dc.core.auth.AccessContext;
 import com.fujitsu.dc.core.auth.BoxPrivilege;
+import com.fujitsu.dc.core.auth.CellPrivilege;
+import com.fujitsu.dc.core.bar.BarFileExporter;
 import com.fujitsu.dc.core.bar.BarFileInstaller;
 import com.fujitsu.dc.core.eventbus.DcEventBus;
 import com.fujitsu.dc.core.eventbus.JSONEvent;
@@ -73,6 +75,7 @@ import com.fujitsu.dc.core.rs.odata.ODataEntityResource;
  */
 public final class BoxResource {
     static Logger log = LoggerFactory.getLogger(BoxResource.class);
+    private static final String BAR_CONTENT_TYPE = "application/zip";
     String boxName;
 
     Cell cell;
@@ -183,10 +186,18 @@ public final class BoxResource {
 
     /**
      * GET リクエストの処理 .
+     * Acceptヘッダにapplication/zipが指定された場合は、Boxの内容をbarファイルとして返却する。
+     * @param accept Acceptヘッダ
      * @return JAX-RS Response
      */
     @GET
-    public Response get() {
+    public Response get(@HeaderParam(HttpHeaders.ACCEPT) final String accept) {
+
+        if (accept != null && accept.contains(BAR_CONTENT_TYPE)) {
+            // barファイルの出力はbarインストールと同じ権限を必要とする
+            this.cellRsCmp.checkAccessContext(this.accessContext, CellPrivilege.BOX_BAR_INSTALL);
+            return Response.ok(new BarFileExporter(this.cell, this.box)).type(BAR_CONTENT_TYPE).build();
+        }
 
         // アクセス制御
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.READ);
@@ -182,9 +182,9 @@ public final class CellResource {
 
         // 非同期でWebDavファイル、EventLogファイル、ESのCell配下のエンティティを削除する
         // MySQLのCell配下のエンティティはバッチにて削除する
+        // 削除処理はキューに登録し、バックグラウンドで順に実行する
         CellBulkDeletionRunner runner = new CellBulkDeletionRunner(cell);
-        Thread thread = new Thread(runner);
-        thread.start();
+        runner.submit();
 
         // 204を返却する
         return Response.noContent().build();
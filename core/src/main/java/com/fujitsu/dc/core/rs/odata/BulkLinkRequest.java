@@ -0,0 +1,120 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import org.odata4j.core.OEntityId;
+
+/**
+ * $links一括登録のリクエスト情報クラス.
+ */
+public class BulkLinkRequest {
+
+    private BatchBodyPart bodyPart;
+    private OEntityId sourceEntity;
+    private String targetNavProp;
+    private OEntityId targetEntity;
+    private Exception error;
+
+    /**
+     * コンストラクタ.
+     * @param bodyPart BatchBodyPart
+     */
+    public BulkLinkRequest(BatchBodyPart bodyPart) {
+        this.bodyPart = bodyPart;
+    }
+
+    /**
+     * コンストラクタ.
+     * @param sourceEntity リンク元のエンティティ
+     * @param targetNavProp リンク先のNavigationProperty名
+     * @param targetEntity リンク先のエンティティ
+     */
+    public BulkLinkRequest(OEntityId sourceEntity, String targetNavProp, OEntityId targetEntity) {
+        this.sourceEntity = sourceEntity;
+        this.targetNavProp = targetNavProp;
+        this.targetEntity = targetEntity;
+    }
+
+    /**
+     * BodyPartのゲッター.
+     * @return BatchBodyPart
+     */
+    public BatchBodyPart getBodyPart() {
+        return bodyPart;
+    }
+
+    /**
+     * bodyPartのセッター.
+     * @param bodyPart BatchBodyPart
+     */
+    public void setBodyPart(BatchBodyPart bodyPart) {
+        this.bodyPart = bodyPart;
+    }
+
+    /**
+     * リンク元のエンティティのゲッター.
+     * @return OEntityId
+     */
+    public OEntityId getSourceEntity() {
+        return sourceEntity;
+    }
+
+    /**
+     * 登録するリンクを設定する.
+     * @param source リンク元のエンティティ
+     * @param navProp リンク先のNavigationProperty名
+     * @param target リンク先のエンティティ
+     */
+    public void setLink(OEntityId source, String navProp, OEntityId target) {
+        this.sourceEntity = source;
+        this.targetNavProp = navProp;
+        this.targetEntity = target;
+    }
+
+    /**
+     * リンク先のNavigationProperty名のゲッター.
+     * @return NavigationProperty名
+     */
+    public String getTargetNavProp() {
+        return targetNavProp;
+    }
+
+    /**
+     * リンク先のエンティティのゲッター.
+     * @return OEntityId
+     */
+    public OEntityId getTargetEntity() {
+        return targetEntity;
+    }
+
+    /**
+     * Errorのゲッター.
+     * @return Exception
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Errorのセッター.
+     * @param error Exception
+     */
+    public void setError(Exception error) {
+        this.error = error;
+    }
+
+}
@@ -111,6 +111,8 @@ public class ODataBatchResource extends AbstractODataResource {
 
     ODataResource odataResource;
     LinkedHashMap<String, BulkRequest> bulkRequests = new LinkedHashMap<String, BulkRequest>();
+    // 連続する$links登録のリクエスト(まとめて一括登録する)
+    List<BulkLinkRequest> linkRequests = new ArrayList<BulkLinkRequest>();
 
     // Batchリクエスト中にToo Many Concurrentが発生後の実行/スキップを制御するクラス
     BatchRequestShutter shutter;
@@ -189,6 +191,7 @@ public class ODataBatchResource extends AbstractODataResource {
         }
 
         // POSTのbulk実行
+        checkAndExecBulkLinks(responseBody, boundary);
         checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
 
         // バウンダリ終端文字列
@@ -252,6 +255,15 @@ public class ODataBatchResource extends AbstractODataResource {
             String boundary,
             List<NavigationPropertyBulkContext> npBulkContexts,
             BatchBodyPart bodyPart) {
+        if (bodyPart.isLinksRequest() && bodyPart.getHttpMethod().equals(HttpMethod.POST)) {
+            // $links登録は連続する間はまとめて一括登録する
+            checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
+            addBulkLinkRequest(uriInfo, bodyPart);
+            return;
+        }
+        // $links登録のbulk実行
+        checkAndExecBulkLinks(responseBody, boundary);
+
         // ReadDeleteOnlyMode中はGETとDELETEメソッド以外は許可しないため、エラーレスポンスを設定する
         if (!DcReadDeleteModeManager.isAllowedMethod(bodyPart.getHttpMethod())) {
             BatchResponse res = new BatchResponse();
@@ -278,18 +290,7 @@ public class ODataBatchResource extends AbstractODataResource {
         if (bodyPart.isLinksRequest()) {
             checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
             BatchResponse res = new BatchResponse();
-            if (bodyPart.getHttpMethod().equals(HttpMethod.POST)) {
-                if (!isTimedOut(BatchElapsedTimer.Lock.YIELD)) {
-                    if (!shutter.isShuttered()) {
-                        res = createLinks(uriInfo, bodyPart);
-                        responseBody.append(getChangesetResponseBody(boundary, bodyPart, res));
-                    } else {
-                        setChangesetTooManyConcurrentResponse(responseBody, boundary, bodyPart);
-                    }
-                } else {
-                    setChangesetTimeoutResponse(responseBody, boundary, bodyPart);
-                }
-            } else if (bodyPart.getHttpMethod().equals(HttpMethod.GET)) {
+            if (bodyPart.getHttpMethod().equals(HttpMethod.GET)) {
                 res.setErrorResponse(DcCoreException.Misc.METHOD_NOT_IMPLEMENTED);
                 responseBody.append(getRetrieveResponseBody(boundary, res));
             } else {
@@ -1295,13 +1296,32 @@ public class ODataBatchResource extends AbstractODataResource {
     }
 
     /**
-     * バッチリクエストの$links登録処理.
+     * バッチリクエストの$links登録リクエストを一括登録の対象に追加する.
+     * 登録前のチェックでエラーとなった場合は、エラーを設定したリクエストを追加する。
      * @param uriInfo uriInfo
      * @param bodyPart BatchBodyPart
-     * @return BatchResponse
      */
-    private BatchResponse createLinks(UriInfo uriInfo, BatchBodyPart bodyPart) {
-        BatchResponse res = new BatchResponse();
+    private void addBulkLinkRequest(UriInfo uriInfo, BatchBodyPart bodyPart) {
+        BulkLinkRequest linkRequest = new BulkLinkRequest(bodyPart);
+        linkRequests.add(linkRequest);
+        // ReadDeleteOnlyMode中はGETとDELETEメソッド以外は許可しない
+        if (!DcReadDeleteModeManager.isAllowedMethod(bodyPart.getHttpMethod())) {
+            linkRequest.setError(DcCoreException.Server.READ_DELETE_ONLY);
+            return;
+        }
+        // Batchリクエスト中にToo Many Concurrentが発生した以降の更新系リクエスト
+        if (!shutter.accept(bodyPart.getHttpMethod()) || shutter.isShuttered()) {
+            linkRequest.setError(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS);
+            return;
+        }
+        if (!isValidNavigationProperty(bodyPart)) {
+            linkRequest.setError(DcCoreException.OData.KEY_FOR_NAVPROP_SHOULD_NOT_BE_SPECIFIED);
+            return;
+        }
+        if (isTimedOut(BatchElapsedTimer.Lock.YIELD)) {
+            linkRequest.setError(DcCoreException.Misc.SERVER_REQUEST_TIMEOUT);
+            return;
+        }
         try {
             // 存在しないエンティティセットを指定されたときは即刻エラー
             EdmEntitySet eSet = this.odataResource.metadata.findEdmEntitySet(bodyPart.getEntitySetName());
@@ -1324,18 +1344,54 @@ public class ODataBatchResource extends AbstractODataResource {
             OEntityId targetEntityId = ODataLinksResource.parseRequestUri(DcCoreUtils.createUriInfo(uriInfo, 1),
                     requestReader, bodyPart.getEntitySetName(), this.odataResource.metadata);
 
-             this.odataResource.getODataProducer().createLink(sourceEntityId, bodyPart.getTargetEntitySetName(),
-                    targetEntityId);
-             // レスポンス作成
-            res.setResponseCode(HttpStatus.SC_NO_CONTENT);
-            res.setHeader(ODataConstants.Headers.DATA_SERVICE_VERSION, ODataVersion.V2.asString);
-
+            linkRequest.setLink(sourceEntityId, bodyPart.getTargetEntitySetName(), targetEntityId);
         } catch (Exception e) {
-            res.setErrorResponse(e);
+            linkRequest.setError(e);
             shutter.updateStatus(e);
         }
+    }
 
-        return res;
+    /**
+     * 追加済みの$links登録リクエストを一括登録し、レスポンスを設定する.
+     * @param responseBody レスポンスボディ
+     * @param boundary バウンダリ文字列
+     */
+    private void checkAndExecBulkLinks(StringBuilder responseBody, String boundary) {
+        if (linkRequests.isEmpty()) {
+            return;
+        }
+        List<BulkLinkRequest> targets = new ArrayList<BulkLinkRequest>();
+        for (BulkLinkRequest linkRequest : linkRequests) {
+            if (linkRequest.getError() == null) {
+                targets.add(linkRequest);
+            }
+        }
+        if (!targets.isEmpty()) {
+            try {
+                this.odataResource.getODataProducer().bulkCreateLinks(targets);
+            } catch (Exception e) {
+                for (BulkLinkRequest linkRequest : targets) {
+                    linkRequest.setError(e);
+                }
+            }
+            for (BulkLinkRequest linkRequest : targets) {
+                if (linkRequest.getError() != null) {
+                    shutter.updateStatus(linkRequest.getError());
+                }
+            }
+        }
+        for (BulkLinkRequest linkRequest : linkRequests) {
+            BatchResponse res = new BatchResponse();
+            if (linkRequest.getError() != null) {
+                res.setErrorResponse(linkRequest.getError());
+            } else {
+                // レスポンス作成
+                res.setResponseCode(HttpStatus.SC_NO_CONTENT);
+                res.setHeader(ODataConstants.Headers.DATA_SERVICE_VERSION, ODataVersion.V2.asString);
+            }
+            responseBody.append(getChangesetResponseBody(boundary, linkRequest.getBodyPart(), res));
+        }
+        linkRequests.clear();
     }
 
     /**
@@ -26,6 +26,8 @@ import org.slf4j.LoggerFactory;
 import com.fujitsu.dc.common.ads.AdsWriteFailureLogException;
 import com.fujitsu.dc.common.ads.AdsWriteFailureLogWriter;
 import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.repair.AdsConsistencyChecker;
+import com.fujitsu.dc.core.model.impl.es.repair.CellSweeper;
 import com.fujitsu.dc.core.model.impl.es.repair.RepairAds;
 
 /**
@@ -87,7 +89,39 @@ public class RepairServiceLauncher {
         }
     }
 
+    /**
+     * ElasticsearchとAdsの整合性チェックを行うクラス.
+     */
+    public static class AdsConsistencyCheckService implements Runnable {
+        @Override
+        public void run() {
+            try {
+                AdsConsistencyChecker.getInstance().check();
+            } catch (Throwable t) {
+                // 例外を飛ばすとそれ以降のスケジュールが無効になるため、外部には飛ばさない。
+                logger.info("Ads consistency check reported an error.", t);
+            }
+        }
+    }
+
+    /**
+     * 削除済みCellのADSデータ掃除を行うクラス.
+     */
+    public static class CellSweepService implements Runnable {
+        @Override
+        public void run() {
+            try {
+                CellSweeper.getInstance().sweep();
+            } catch (Throwable t) {
+                // 例外を飛ばすとそれ以降のスケジュールが無効になるため、外部には飛ばさない。
+                logger.info("Cell sweep process reported an error.", t);
+            }
+        }
+    }
+
     ScheduledThreadPoolExecutor executor;
+    ScheduledThreadPoolExecutor consistencyCheckExecutor;
+    ScheduledThreadPoolExecutor cellSweepExecutor;
 
     /**
      * コンストラクタ. Webコンテナ起動時に呼ばれる。
@@ -104,12 +138,46 @@ public class RepairServiceLauncher {
                 TimeUnit.SECONDS);
         logger.info(String.format("RepairAds scheduled with delay interval %d sec.",
                 DcCoreConfig.getAdsRepairIntervalInSec()));
+
+        // 整合性チェックはリペアと並行して実行できるよう、別スレッドでスケジュールする.
+        if (DcCoreConfig.isAdsConsistencyCheckEnabled()) {
+            consistencyCheckExecutor = new ScheduledThreadPoolExecutor(1);
+            consistencyCheckExecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+            consistencyCheckExecutor.scheduleWithFixedDelay(new AdsConsistencyCheckService(),
+                    DcCoreConfig.getAdsConsistencyInitialDelayInSec(),
+                    DcCoreConfig.getAdsConsistencyIntervalInSec(),
+                    TimeUnit.SECONDS);
+            logger.info(String.format("Ads consistency check scheduled with delay interval %d sec.",
+                    DcCoreConfig.getAdsConsistencyIntervalInSec()));
+        }
+
+        // Cellデータの掃除もリペアと独立して実行する.
+        if (DcCoreConfig.isCellSweepEnabled()) {
+            cellSweepExecutor = new ScheduledThreadPoolExecutor(1);
+            cellSweepExecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+            cellSweepExecutor.scheduleWithFixedDelay(new CellSweepService(),
+                    DcCoreConfig.getCellSweepInitialDelayInSec(),
+                    DcCoreConfig.getCellSweepIntervalInSec(),
+                    TimeUnit.SECONDS);
+            logger.info(String.format("Cell sweep scheduled with delay interval %d sec.",
+                    DcCoreConfig.getCellSweepIntervalInSec()));
+        }
     }
 
     /**
      * Webコンテナ終了時に呼ばれるメソッド.
      */
     public void shutdown() {
+        if (null != consistencyCheckExecutor) {
+            // 整合性チェックは次回チェックポイントから再開できるため、完了を待たずに中断する.
+            logger.info("Shutting down Ads consistency check scheduler.");
+            consistencyCheckExecutor.shutdownNow();
+        }
+        if (null != cellSweepExecutor) {
+            // 掃除処理は管理テーブルの残りから再開できるため、完了を待たずに中断する.
+            logger.info("Shutting down cell sweep scheduler.");
+            cellSweepExecutor.shutdownNow();
+        }
         if (null != executor && !executor.isTerminated()) {
             logger.info("Shutting down RepairAds scheduler.");
             executor.shutdown();
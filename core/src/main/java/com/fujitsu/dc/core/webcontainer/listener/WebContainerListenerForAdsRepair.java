@@ -19,6 +19,9 @@ package com.fujitsu.dc.core.webcontainer.listener;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import com.fujitsu.dc.core.bar.BarInstallQueue;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteBehindQueue;
+
 
 /**
  * Webコンテナ起動/終了時に呼び出されるListenerクラス.
@@ -34,6 +37,10 @@ public class WebContainerListenerForAdsRepair implements ServletContextListener
 
     @Override
     public void contextDestroyed(ServletContextEvent arg0) {
+        // 実行待ちのbarインストールの処理状況を記録し、実行中のインストールを停止する
+        BarInstallQueue.shutdown();
+        // Adsへの非同期書き込みキューを停止する
+        AdsWriteBehindQueue.shutdown();
         if (null != launcher) {
             launcher.shutdown();
         }
@@ -0,0 +1 @@
+delete from `##schema##`.CELL_DELETE where db_name = ? and table_name = ? and cell_id = ?
\ No newline at end of file
@@ -0,0 +1 @@
+select db_name, table_name, cell_id from `##schema##`.CELL_DELETE order by create_date limit ?
\ No newline at end of file
@@ -0,0 +1 @@
+delete from `##schema##`.DAV_NODE where cell_id = ? and id in 
\ No newline at end of file
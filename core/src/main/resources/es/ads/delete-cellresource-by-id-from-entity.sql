@@ -0,0 +1 @@
+delete from `##schema##`.ENTITY where cell_id = ? and id in 
\ No newline at end of file
@@ -0,0 +1,5 @@
+select 
+    substring(id, 1, ?) as prefix,
+    count(*),
+    sum(crc32(concat(id, ':', ifnull(updated, 0)))) 
+from `##schema##`.LINK where id like ? group by prefix
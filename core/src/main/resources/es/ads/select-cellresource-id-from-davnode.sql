@@ -0,0 +1 @@
+select id from `##schema##`.DAV_NODE where cell_id = ? limit ?
\ No newline at end of file
@@ -0,0 +1 @@
+select id from `##schema##`.ENTITY where cell_id = ? limit ?
\ No newline at end of file
@@ -0,0 +1 @@
+select id from `##schema##`.LINK where cell_id = ? limit ?
\ No newline at end of file
@@ -0,0 +1,171 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * Cellごとのユーザースクリプトの同時実行数を制限するクラス.
+ * <p>
+ * Cellごとに同時実行数の上限を設け、上限に達している場合は実行待ちとする。
+ * 実行待ちのリクエスト数が上限に達している場合、または一定時間待っても実行できない場合は503を返却する。
+ * これにより、特定のCellのスクリプトがリクエストスレッドを占有し、他のCellのリクエストが処理できなくなることを防ぐ。
+ * </p>
+ */
+public final class CellExecutionLimiter {
+    /** ログオブジェクト. */
+    private static Logger log = LoggerFactory.getLogger(CellExecutionLimiter.class);
+
+    /** Cellごとの実行枠. */
+    private static ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<String, Slot>();
+
+    /** 解放されない実行枠を強制的に解放するタイマー. */
+    private static ScheduledExecutorService releaseTimer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "dc-engine-cell-release");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private CellExecutionLimiter() {
+    }
+
+    /**
+     * Cellの実行枠.
+     */
+    static class Slot {
+        private final Semaphore running;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final int maxQueue;
+
+        Slot(int maxConcurrency, int maxQueue) {
+            this.running = new Semaphore(maxConcurrency, true);
+            this.maxQueue = maxQueue;
+        }
+    }
+
+    /**
+     * Cellの実行枠を獲得する. 実行枠が空いていない場合は空くまで待つ.
+     * 獲得した実行枠は、実行終了時に{@link #release(String)}で解放すること。
+     * @param cell Cell名
+     * @throws DcEngineException 実行待ちのリクエストが多すぎる場合、実行待ちがタイムアウトした場合
+     */
+    public static void acquire(String cell) throws DcEngineException {
+        Slot slot = getSlot(cell);
+        try {
+            // 実行待ちのリクエストを追い越さないよう、待ち時間0の場合も公平性を守る方法で獲得する
+            if (slot.running.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DcEngineException("Service Unavailable", HttpStatus.SC_SERVICE_UNAVAILABLE, e);
+        }
+        if (slot.waiting.incrementAndGet() > slot.maxQueue) {
+            slot.waiting.decrementAndGet();
+            log.info("Too many requests waiting for cell (" + cell + ")");
+            throw new DcEngineException("Service Unavailable", HttpStatus.SC_SERVICE_UNAVAILABLE);
+        }
+        try {
+            long queueTimeout = DcEngineConfig.getLimit(DcEngineConfig.CellExecution.QUEUE_TIMEOUT, cell, null);
+            if (!slot.running.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS)) {
+                log.info("Waiting for cell (" + cell + ") timed out");
+                throw new DcEngineException("Service Unavailable", HttpStatus.SC_SERVICE_UNAVAILABLE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DcEngineException("Service Unavailable", HttpStatus.SC_SERVICE_UNAVAILABLE, e);
+        } finally {
+            slot.waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Cellの実行枠を解放する.
+     * @param cell Cell名
+     */
+    public static void release(String cell) {
+        getSlot(cell).running.release();
+    }
+
+    /**
+     * 獲得済みの実行枠を、レスポンスボディの書き込み終了時など後から解放するための処理を返す.
+     * 返却した処理は何度実行しても実行枠を1回だけ解放する。
+     * 一定時間内に実行されない場合(レスポンスボディが書き込まれなかった場合等)は、実行枠を強制的に解放する。
+     * @param cell Cell名
+     * @return 実行枠を解放する処理
+     */
+    public static Runnable deferRelease(final String cell) {
+        final AtomicBoolean released = new AtomicBoolean(false);
+        long timeout = DcEngineConfig.getLimit(DcEngineConfig.CellExecution.DEFERRED_RELEASE_TIMEOUT, cell, null);
+        final ScheduledFuture<?> backstop = releaseTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (released.compareAndSet(false, true)) {
+                    log.info("Releasing execution slot of cell (" + cell + ") on timeout");
+                    release(cell);
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        return new Runnable() {
+            @Override
+            public void run() {
+                backstop.cancel(false);
+                if (released.compareAndSet(false, true)) {
+                    release(cell);
+                }
+            }
+        };
+    }
+
+    private static Slot getSlot(String cell) {
+        String key = cell;
+        if (key == null) {
+            key = "";
+        }
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            int maxConcurrency = (int) DcEngineConfig.getLimit(DcEngineConfig.CellExecution.MAX_CONCURRENCY,
+                    cell, null);
+            int maxQueue = (int) DcEngineConfig.getLimit(DcEngineConfig.CellExecution.MAX_QUEUE, cell, null);
+            Slot newSlot = new Slot(maxConcurrency, maxQueue);
+            slot = slots.putIfAbsent(key, newSlot);
+            if (slot == null) {
+                slot = newSlot;
+            }
+        }
+        return slot;
+    }
+}
@@ -44,6 +44,8 @@ public class DcEngineApplication extends Application {
         TransCellAccessToken.configureX509(DcEngineConfig.getX509PrivateKey(), DcEngineConfig.getX509Certificate(),
                 DcEngineConfig.getX509RootCertificate());
         LocalToken.setKeyString(DcEngineConfig.getTokenSecretKey());
+        // Extension、Engineライブラリ、ユーザースクリプトのウォームアップを開始する
+        EngineWarmUp.start();
         } catch (Exception e) {
             log.warn("Failed to start server.", e);
             throw new RuntimeException(e);
@@ -32,9 +32,13 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import org.apache.http.HttpStatus;
+import org.mozilla.javascript.BaseFunction;
 import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
 import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeJavaTopPackage;
 import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.RhinoException;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
@@ -67,6 +71,12 @@ public class DcEngineContext implements Closeable {
     private static final String DC_SCOPE = "dc";
     private static final String DC_EXTENSION_SCOPE = "extension";
     private static Map<String, Script> engineLibCache = new ConcurrentHashMap<String, Script>();
+    /** コンパイル済みスクリプトのキャッシュ上でrequire対象のモジュールを区別する接頭辞. */
+    private static final String MODULE_CACHE_PREFIX = "require:";
+    /** ナノ秒をマイクロ秒に変換する際の除数. */
+    private static final long NANOS_PER_MICRO = 1000L;
+    /** 全リクエストで共有する標準オブジェクトのスコープ(seal済み). */
+    private static ScriptableObject sharedScope;
 
 
     /** Cell名. */
@@ -89,6 +99,9 @@ public class DcEngineContext implements Closeable {
     /** ソース情報管理. */
     private ISourceManager sourceManager;
 
+    /** ユーザースクリプトのコンパイルに要した時間(ナノ秒). */
+    private long compileTime = 0;
+
     static {
         ContextFactory.initGlobal(new DcJsContextFactory());
     }
@@ -102,8 +115,41 @@ public class DcEngineContext implements Closeable {
         this.factory = new DcJsContextFactory();
         this.cx = factory.enterContext();
 
-        this.scope = cx.initStandardObjects();
+        this.scope = createScope(this.cx);
+    }
 
+    /**
+     * リクエスト用のスコープを作成する.
+     * 標準オブジェクトはseal済みの共有スコープをプロトタイプとして参照し、リクエスト内で定義される変数は
+     * リクエスト用のスコープに保持する。共有スコープのオブジェクトは変更できないため、他のリクエストや他のCellに影響しない。
+     * @param context RhinoのContext
+     * @return リクエスト用のスコープ
+     */
+    private static Scriptable createScope(final org.mozilla.javascript.Context context) {
+        if (!DcEngineConfig.isRhinoSharedScope()) {
+            return context.initStandardObjects();
+        }
+        ScriptableObject shared = getSharedScope(context);
+        Scriptable requestScope = context.newObject(shared);
+        requestScope.setPrototype(shared);
+        requestScope.setParentScope(null);
+        // Javaパッケージは参照時に子パッケージを自身に追加するため、sealせずにリクエストごとに定義する
+        NativeJavaTopPackage.init(context, requestScope, false);
+        return requestScope;
+    }
+
+    /**
+     * 全リクエストで共有する標準オブジェクトのスコープを取得する. 初回のみ作成する.
+     * @param context RhinoのContext
+     * @return 共有スコープ
+     */
+    private static synchronized ScriptableObject getSharedScope(final org.mozilla.javascript.Context context) {
+        if (sharedScope == null) {
+            ScriptableObject shared = context.initStandardObjects(null, true);
+            shared.sealObject();
+            sharedScope = shared;
+        }
+        return sharedScope;
     }
 
     /**
@@ -196,11 +242,101 @@ public class DcEngineContext implements Closeable {
         this.currentCellName = cell;
         this.currentBoxName = box;
         this.currentSchemeUri = scheme;
+        // Cell、サービスごとの実行制限を設定する
+        ((DcJsContext) this.cx).setLimits(cell, service);
+    }
+
+    /**
+     * コンパイル済みのユーザースクリプトを取得.
+     * ソースが更新されていなければキャッシュしたスクリプトを返却し、ソースの取得及びコンパイルは行わない。
+     * @param sourceName ユーザースクリプトのソースファイル名
+     * @return コンパイル済みのユーザースクリプト
+     * @throws DcEngineException DcEngine例外
+     */
+    public final Script getUserScript(final String sourceName) throws DcEngineException {
+        try {
+            return getCompiledScript(sourceName, "", "fn_jsgi = ", "");
+        } catch (RhinoException e) {
+            // ユーザースクリプト内でのエラーはINFOレベルでログ出力
+            log.info("User Script Compile Error : " + e.getMessage(), e);
+            throw new DcEngineException("Server Error : " + e.getMessage(), DcEngineException.STATUSCODE_SERVER_ERROR,
+                    e);
+        }
+    }
+
+    /**
+     * require対象のモジュールをコンパイル済みのスクリプトとして取得.
+     * スクリプトを実行すると、exportsを引数に取りモジュールのソースを実行する関数を返却する。
+     * @param sourceName モジュールのソースファイル名
+     * @return コンパイル済みのモジュール
+     * @throws DcEngineException DcEngine例外
+     */
+    public final Script getModuleScript(final String sourceName) throws DcEngineException {
+        return getCompiledScript(sourceName, MODULE_CACHE_PREFIX, "(function(exports) {", "\n})");
+    }
+
+    /**
+     * ソースをコンパイルしたスクリプトを取得. ソースが更新されていなければキャッシュしたスクリプトを返却する.
+     * @param sourceName ソースファイル名
+     * @param cachePrefix キャッシュ上でソースのIDに付与する接頭辞
+     * @param head ソースの前に付与する文字列
+     * @param tail ソースの後に付与する文字列
+     * @return コンパイル済みのスクリプト
+     * @throws DcEngineException DcEngine例外
+     */
+    private Script getCompiledScript(final String sourceName, final String cachePrefix,
+            final String head, final String tail) throws DcEngineException {
+        String sourceId = this.sourceManager.getSourceId(sourceName);
+        if (sourceId != null) {
+            sourceId = cachePrefix + sourceId;
+        }
+        String version = this.sourceManager.getSourceVersion(sourceName);
+        // 最適化レベルが変更された場合にコンパイルし直すよう、バージョンに最適化レベルを含める
+        if (version != null) {
+            version = version + ":" + cx.getOptimizationLevel();
+        }
+        Script script = UserScriptCache.get(this.currentCellName, sourceId, version);
+        if (script != null) {
+            log.debug("compiled script found in cache : " + sourceName);
+            return script;
+        }
+        String source = this.sourceManager.getSource(sourceName);
+        log.info("compile user script : " + sourceName + " script size = " + source.length());
+        long start = System.nanoTime();
+        script = compileString(head + source + tail, sourceName);
+        this.compileTime += System.nanoTime() - start;
+        UserScriptCache.put(this.currentCellName, sourceId, version, script, source.length());
+        return script;
+    }
+
+    /**
+     * ソースをコンパイルする.
+     * バイトコードを生成できない場合(メソッドが大きすぎる場合など)は、インタプリタで実行するようコンパイルし直す。
+     * @param source ソース
+     * @param sourceName ソースファイル名
+     * @return コンパイル済みのスクリプト
+     */
+    private Script compileString(final String source, final String sourceName) {
+        int optimizationLevel = cx.getOptimizationLevel();
+        try {
+            return cx.compileString(source, sourceName, 1, null);
+        } catch (EvaluatorException e) {
+            if (optimizationLevel < 0) {
+                throw e;
+            }
+            log.info("compile user script in interpreted mode : " + sourceName + " " + e.getMessage());
+            cx.setOptimizationLevel(-1);
+            try {
+                return cx.compileString(source, sourceName, 1, null);
+            } finally {
+                cx.setOptimizationLevel(optimizationLevel);
+            }
+        }
     }
 
     /**
      * JSGIを実行.
-     * @param source 実行するユーザースクリプト
+     * @param script 実行するユーザースクリプト
      * @param req Requestオブジェクト
      * @param res Responseオブジェクト
      * @param is リクエストストリームオブジェクト
@@ -208,11 +344,12 @@ public class DcEngineContext implements Closeable {
      * @return Response
      * @throws DcEngineException DcEngine例外
      */
-    public final Response runJsgi(final String source,
+    public final Response runJsgi(final Script script,
             final HttpServletRequest req,
             final HttpServletResponse res,
             final InputStream is,
             final String serviceSubject) throws DcEngineException {
+        long setupStart = System.currentTimeMillis();
         // JSGI実行準備
         // DAOオブジェクトを生成
         DcEngineDao dc = createDao(req, serviceSubject);
@@ -249,6 +386,7 @@ public class DcEngineContext implements Closeable {
 
         // dc名前空間に、Extensionのクラス群を定義する。
         prepareExtensionClass();
+        log.debug("JSGI setup time : " + (System.currentTimeMillis() - setupStart) + "ms");
 
         // RequestオブジェクトをJavaScriptプロパティへ設定
         JSGIRequest dcReq = new JSGIRequest(req, new DcRequestBodyStream(is));
@@ -257,8 +395,7 @@ public class DcEngineContext implements Closeable {
         // ユーザースクリプトを実行(eval)する
         try {
             Object ret;
-            log.info("eval user script : script size = " + source.length());
-            ret = evalUserScript(source, dcReq);
+            ret = evalUserScript(script, dcReq);
             log.info("[" + DcEngineConfig.getVersion() + "] " + "<<< Request Ended ");
 
             DcResponse dcRes = DcResponse.parseJsgiResponse(ret);
@@ -266,7 +403,7 @@ public class DcEngineContext implements Closeable {
             return dcRes.build();
         } catch (Error e) {
             // ユーザースクリプトのタイムアウトはINFOレベルでログ出力
-            log.info("UserScript TimeOut", e);
+            log.info("UserScript TimeOut : " + e.getMessage(), e);
             throw new DcEngineException("Script TimeOut", HttpStatus.SC_SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             if (e instanceof WrappedException) {
@@ -282,12 +419,12 @@ public class DcEngineContext implements Closeable {
 
     /**
      * UserScript実行.
-     * @param source ユーザースクリプトソース
+     * @param script コンパイル済みのユーザースクリプト
      * @throws IOException IO例外
      * @throws DcEngineException DcEngineException
      */
-    private Object evalUserScript(final String source, JSGIRequest dcReq) throws DcEngineException {
-        cx.evaluateString(scope, "fn_jsgi = " + source, null, 1, null);
+    private Object evalUserScript(final Script script, JSGIRequest dcReq) throws DcEngineException {
+        script.exec(cx, scope);
 
         Object fObj = scope.get("fn_jsgi", scope);
         Object result = null;
@@ -346,23 +483,62 @@ public class DcEngineContext implements Closeable {
      * @throws IOException IO例外
      */
     private Object loadJs(final String name) throws IOException {
+        Script jsBuildObject = getEngineLib(name);
+        if (jsBuildObject == null) {
+            return null;
+        }
+        Object ret = jsBuildObject.exec(cx, scope);
+        log.debug("Load JavaScript from Local Resource : " + name);
+        return ret;
+    }
+
+    /**
+     * Engineライブラリのコンパイル済みスクリプトを取得. 初回のみコンパイルする.
+     * @param name JavaScriptソース名
+     * @return コンパイル済みのスクリプト
+     * @throws IOException IO例外
+     */
+    private Script getEngineLib(final String name) throws IOException {
         URL path = getClass().getResource("/js-lib/" + name + ".js");
+        int libOptimizationLevel = DcEngineConfig.getRhinoLibOptimizationLevel();
+        if (!org.mozilla.javascript.Context.isValidOptimizationLevel(libOptimizationLevel)) {
+            libOptimizationLevel = cx.getOptimizationLevel();
+        }
+        // 最適化レベルごとにキャッシュする
+        String cacheKey = path.toString() + ":" + libOptimizationLevel;
 
         Script jsBuildObject = null;
-        if (engineLibCache.containsKey(path.toString())) {
-            jsBuildObject = engineLibCache.get(path.toString());
+        if (engineLibCache.containsKey(cacheKey)) {
+            jsBuildObject = engineLibCache.get(cacheKey);
         } else {
             FileInputStream fis = new FileInputStream(path.getFile());
             InputStreamReader isr = new InputStreamReader(fis, "UTF-8");
-            jsBuildObject = cx.compileReader(isr, path.getPath(), 1, null);
-            engineLibCache.put(path.toString(), jsBuildObject);
+            int optimizationLevel = cx.getOptimizationLevel();
+            cx.setOptimizationLevel(libOptimizationLevel);
+            try {
+                jsBuildObject = cx.compileReader(isr, path.getPath(), 1, null);
+            } finally {
+                cx.setOptimizationLevel(optimizationLevel);
+                isr.close();
+            }
+            engineLibCache.put(cacheKey, jsBuildObject);
         }
-        if (jsBuildObject == null) {
-            return null;
+        return jsBuildObject;
+    }
+
+    /**
+     * ウォームアップのため、Extensionの読み込み及びEngineライブラリのコンパイルを行う.
+     * @throws DcEngineException DcEngine例外
+     */
+    public void preload() throws DcEngineException {
+        try {
+            ExtensionJarLoader.getInstance(this.cx.getApplicationClassLoader(), new JavaClassRevealFilter());
+            getEngineLib("dc-dao");
+            getEngineLib("dc-lib");
+            getEngineLib("jsgi-lib");
+        } catch (IOException e) {
+            throw new DcEngineException("Server Error", DcEngineException.STATUSCODE_SERVER_ERROR, e);
         }
-        Object ret = jsBuildObject.exec(cx, scope);
-        log.debug("Load JavaScript from Local Resource : " + path);
-        return ret;
     }
 
     /**
@@ -377,15 +553,48 @@ public class DcEngineContext implements Closeable {
     }
 
     /**
-     * JavaScriptファイルを解析し、オブジェクトに登録.
-     * @param source JavaScriptソースの中身
+     * モジュールのexportsとなるオブジェクトを作成.
+     * @return exports
+     */
+    public Scriptable newModuleExports() {
+        // 従来どおり、exportsは関数オブジェクトとする
+        return new BaseFunction(scope, ScriptableObject.getFunctionPrototype(scope));
+    }
+
+    /**
+     * コンパイル済みのモジュールを実行し、exportsに登録.
+     * @param moduleScript コンパイル済みのモジュール
+     * @param exports exports
      * @param path JavaScriptソース名
-     * @return オブジェクト
      */
-    public Object requireJs(final String source, final String path) {
-        Object ret = cx.evaluateString(scope, source, path, 1, null);
+    public void execModule(final Script moduleScript, final Scriptable exports, final String path) {
+        Function module = (Function) moduleScript.exec(cx, scope);
+        module.call(cx, scope, scope, new Object[] {exports});
         log.debug("Load JavaScript from Require Resource : " + path);
-        return ret;
+    }
+
+    /**
+     * 実行した命令数を取得する.
+     * @return 実行した命令数
+     */
+    public long getInstructionCount() {
+        return ((DcJsContext) this.cx).getInstructionCount();
+    }
+
+    /**
+     * ユーザースクリプトのコンパイルに要した時間を取得する.
+     * @return コンパイルに要した時間(マイクロ秒)
+     */
+    public long getCompileTimeMicros() {
+        return this.compileTime / NANOS_PER_MICRO;
+    }
+
+    /**
+     * DAO呼び出しに要した時間を取得する.
+     * @return DAO呼び出しに要した時間(マイクロ秒)
+     */
+    public long getDaoTimeMicros() {
+        return ((DcJsContext) this.cx).getDaoTime() / NANOS_PER_MICRO;
     }
 
     @Override
@@ -16,15 +16,34 @@
  */
 package com.fujitsu.dc.engine;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import org.apache.http.HttpStatus;
 import org.mozilla.javascript.Context;
 
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
 /**
  * javascript.Contextの派生クラス.
  */
 public class DcJsContext extends Context {
+    /** ナノ秒をミリ秒に変換する際の除数. */
+    private static final long NANOS_PER_MILLI = 1000000L;
     /** タイムアウト値. */
     private long timeout;
+    /** トップレベルの呼び出しごとの実行時間の上限(ミリ秒). */
+    private long timeoutValue = Long.parseLong(DcEngineConfig.get(DcEngineConfig.Script.TIMEOUT));
+    /** 命令数の上限. 0の場合は制限しない. */
+    private long maxInstructions = 0;
+    /** 実行した命令数. */
+    private long instructionCount = 0;
+    /** CPU時間の上限(ミリ秒). 0の場合は制限しない. */
+    private long maxCpuTime = 0;
+    /** 実行制限の開始時点のスレッドのCPU時間(ナノ秒). */
+    private long cpuTimeStart;
+    /** DAO呼び出しに要した時間(ナノ秒). */
+    private long daoTime = 0;
 
     /**
      * コンストラクタ.
@@ -41,6 +60,77 @@ public class DcJsContext extends Context {
         this.timeout = value;
     }
 
+    /**
+     * 実行するCell、サービスに応じて実行制限を設定する.
+     * @param cell Cell名
+     * @param service サービス名
+     */
+    public final void setLimits(final String cell, final String service) {
+        this.timeoutValue = DcEngineConfig.getLimit(DcEngineConfig.Script.TIMEOUT, cell, service);
+        this.maxInstructions = DcEngineConfig.getLimit(DcEngineConfig.Script.MAX_INSTRUCTIONS, cell, service);
+        this.maxCpuTime = DcEngineConfig.getLimit(DcEngineConfig.Script.MAX_CPU_TIME, cell, service);
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (this.maxCpuTime > 0 && !threadBean.isCurrentThreadCpuTimeSupported()) {
+            this.maxCpuTime = 0;
+        }
+        if (this.maxCpuTime > 0) {
+            this.cpuTimeStart = threadBean.getCurrentThreadCpuTime();
+        }
+        this.instructionCount = 0;
+        this.daoTime = 0;
+    }
+
+    /**
+     * 実行した命令数を取得する. 命令数は命令数監視の閾値ごとに加算される.
+     * @return 実行した命令数
+     */
+    public final long getInstructionCount() {
+        return this.instructionCount;
+    }
+
+    /**
+     * DAO呼び出しに要した時間を加算する.
+     * @param nanos DAO呼び出しに要した時間(ナノ秒)
+     */
+    public final void addDaoTime(final long nanos) {
+        this.daoTime += nanos;
+    }
+
+    /**
+     * DAO呼び出しに要した時間を取得する.
+     * @return DAO呼び出しに要した時間(ナノ秒)
+     */
+    public final long getDaoTime() {
+        return this.daoTime;
+    }
+
+    /**
+     * トップレベルの呼び出しの開始時にタイムアウト値を設定する.
+     * @param now 現在時刻
+     */
+    public final void startTopCall(final long now) {
+        setTimeout(now + this.timeoutValue);
+    }
+
+    /**
+     * 実行制限のチェック.
+     * @param count 前回のチェックからの命令数
+     * @throws DcEngineException DcEngine例外
+     */
+    public final void checkLimits(final int count) throws DcEngineException {
+        checkTimeout();
+        this.instructionCount += count;
+        if (this.maxInstructions > 0 && this.instructionCount > this.maxInstructions) {
+            throw new DcEngineException("JavaScript Instruction Limit Exceeded", HttpStatus.SC_SERVICE_UNAVAILABLE);
+        }
+        if (this.maxCpuTime > 0) {
+            long cpuTime = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() - this.cpuTimeStart;
+            if (cpuTime / NANOS_PER_MILLI > this.maxCpuTime) {
+                throw new DcEngineException("JavaScript CPU Time Limit Exceeded", HttpStatus.SC_SERVICE_UNAVAILABLE);
+            }
+        }
+    }
+
     /**
      * タイムアウト値のチェック.
      * @throws DcEngineException DcEngine例外
@@ -23,6 +23,7 @@ import org.mozilla.javascript.Scriptable;
 
 import com.fujitsu.dc.engine.accesscontrol.DcClassShutterImpl;
 import com.fujitsu.dc.engine.accesscontrol.PrimitiveWrapFactory;
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 
 
@@ -30,21 +31,23 @@ import com.fujitsu.dc.engine.accesscontrol.PrimitiveWrapFactory;
  * javascript.ContextFactoryの派生クラス.
   */
 public class DcJsContextFactory extends ContextFactory {
-    /** タイムアウト値. */
-    private static final int TIMEOUTVALUE = 50 * 1000;
-    /** setInstructionObserverThreshold で使用されていたマジックナンバー. */
-    private static final int MVALUE = 10;
-
     @Override
     protected final Context makeContext() {
         DcJsContext cx = new DcJsContext();
-        cx.setInstructionObserverThreshold(TIMEOUTVALUE / MVALUE);
+        cx.setInstructionObserverThreshold(
+                Integer.parseInt(DcEngineConfig.get(DcEngineConfig.Script.OBSERVER_THRESHOLD)));
 
         // ClassShutterの登録(Javaパッケージ呼び出し制御)
         cx.setClassShutter(new DcClassShutterImpl());
 
         cx.setWrapFactory(new PrimitiveWrapFactory());
 
+        // ユーザースクリプトの最適化レベル(不正な値の場合はRhinoの既定値のまま)
+        int optimizationLevel = DcEngineConfig.getRhinoOptimizationLevel();
+        if (Context.isValidOptimizationLevel(optimizationLevel)) {
+            cx.setOptimizationLevel(optimizationLevel);
+        }
+
         return cx;
     }
 
@@ -56,7 +59,7 @@ public class DcJsContextFactory extends ContextFactory {
             final Scriptable thisObj,
             final Object[] args) {
         long curTime = System.currentTimeMillis();
-        ((DcJsContext) cx).setTimeout(curTime + TIMEOUTVALUE);
+        ((DcJsContext) cx).startTopCall(curTime);
         return super.doTopCall(callable, cx, scope, thisObj, args);
     }
 
@@ -65,9 +68,9 @@ public class DcJsContextFactory extends ContextFactory {
             final Context cx,
             final int instructionCount) {
         try {
-            ((DcJsContext) cx).checkTimeout();
+            ((DcJsContext) cx).checkLimits(instructionCount);
         } catch (DcEngineException e) {
-            throw new Error();
+            throw new Error(e.getMessage());
         }
     }
 }
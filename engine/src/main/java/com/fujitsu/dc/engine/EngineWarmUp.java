@@ -0,0 +1,262 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.engine.source.ServiceResourceSourceManager;
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * Engineのウォームアップ.
+ * <p>
+ * 起動時に、Extensionの読み込み、Engineライブラリのコンパイル、及び最近呼び出されたサービスのユーザースクリプトの
+ * コンパイルをバックグラウンドで行い、最初のリクエストでこれらの処理が集中して応答が遅くなることを防ぐ。
+ * 最近呼び出されたサービスは設定したファイルに保存し、再起動後のウォームアップの対象とする。
+ * 起動時のウォームアップが終わるまでは、ステータスで準備中であることを返却する。
+ * </p>
+ */
+public final class EngineWarmUp {
+    /** ログオブジェクト. */
+    private static Logger log = LoggerFactory.getLogger(EngineWarmUp.class);
+
+    /** ファイルに保存する際の項目の区切り文字. */
+    private static final String SEPARATOR = "\t";
+
+    /** 最近呼び出されたサービス(アクセス順). */
+    private static LinkedHashMap<String, Target> targets = new LinkedHashMap<String, Target>(16, 0.75f, true);
+    /** 起動時のウォームアップが完了したか否か. */
+    private static volatile boolean ready = false;
+    /** ウォームアップを実行中か否か. */
+    private static boolean running = false;
+
+    private EngineWarmUp() {
+    }
+
+    /**
+     * ウォームアップ対象のサービス.
+     */
+    public static class Target {
+        private final String cell;
+        private final String box;
+        private final String service;
+        private final String index;
+        private final String type;
+        private final String id;
+        private final String routingId;
+
+        /**
+         * コンストラクタ.
+         * @param cell Cell名
+         * @param box Box名
+         * @param service サービス名
+         * @param index サービスコレクションのインデックス
+         * @param type サービスコレクションのタイプ
+         * @param id サービスコレクションのID
+         * @param routingId サービスコレクションのルーティングID
+         */
+        public Target(String cell, String box, String service, String index, String type, String id,
+                String routingId) {
+            this.cell = cell;
+            this.box = box;
+            this.service = service;
+            this.index = index;
+            this.type = type;
+            this.id = id;
+            this.routingId = routingId;
+        }
+
+        String key() {
+            return cell + "/" + box + "/" + service;
+        }
+
+        String toLine() {
+            return cell + SEPARATOR + box + SEPARATOR + service + SEPARATOR + index + SEPARATOR + type
+                    + SEPARATOR + id + SEPARATOR + routingId;
+        }
+
+        static Target fromLine(String line) {
+            String[] items = line.split(SEPARATOR);
+            final int itemCount = 7;
+            if (items.length != itemCount) {
+                return null;
+            }
+            int i = 0;
+            return new Target(items[i++], items[i++], items[i++], items[i++], items[i++], items[i++], items[i]);
+        }
+    }
+
+    /**
+     * 起動時のウォームアップが完了しているか否か.
+     * @return 完了している場合、ウォームアップが無効の場合はtrue
+     */
+    public static boolean isReady() {
+        return ready || !DcEngineConfig.isWarmUpEnabled();
+    }
+
+    /**
+     * ウォームアップをバックグラウンドで開始する. 既に実行中の場合は何もしない.
+     */
+    public static void start() {
+        if (!DcEngineConfig.isWarmUpEnabled()) {
+            ready = true;
+            return;
+        }
+        synchronized (EngineWarmUp.class) {
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    warmUp();
+                } finally {
+                    synchronized (EngineWarmUp.class) {
+                        running = false;
+                    }
+                    ready = true;
+                }
+            }
+        }, "dc-engine-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 呼び出されたサービスをウォームアップの対象として記録する.
+     * @param target 呼び出されたサービス
+     */
+    public static void addRecentService(Target target) {
+        if (!DcEngineConfig.isWarmUpEnabled()) {
+            return;
+        }
+        List<Target> saveTargets = null;
+        synchronized (EngineWarmUp.class) {
+            // 新たに記録された場合のみファイルに保存する
+            if (targets.put(target.key(), target) == null) {
+                Iterator<Target> it = targets.values().iterator();
+                while (targets.size() > DcEngineConfig.getWarmUpMaxServices() && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+                saveTargets = new ArrayList<Target>(targets.values());
+            }
+        }
+        if (saveTargets != null) {
+            save(saveTargets);
+        }
+    }
+
+    private static void warmUp() {
+        long start = System.currentTimeMillis();
+        // Extension、Engineライブラリの読み込み
+        DcEngineContext dcContext = null;
+        try {
+            dcContext = new DcEngineContext();
+            dcContext.preload();
+        } catch (Exception e) {
+            log.warn("Failed to preload engine libraries.", e);
+        } finally {
+            IOUtils.closeQuietly(dcContext);
+        }
+
+        // 最近呼び出されたサービスのユーザースクリプトのコンパイル
+        List<Target> warmUpTargets;
+        synchronized (EngineWarmUp.class) {
+            if (targets.isEmpty()) {
+                for (Target target : load()) {
+                    targets.put(target.key(), target);
+                }
+            }
+            warmUpTargets = new ArrayList<Target>(targets.values());
+        }
+        int compiled = 0;
+        for (Target target : warmUpTargets) {
+            if (compile(target)) {
+                compiled++;
+            }
+        }
+        log.info("Engine warm-up finished. services: " + compiled + "/" + warmUpTargets.size()
+                + " time: " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private static boolean compile(Target target) {
+        DcEngineContext dcContext = null;
+        try {
+            dcContext = new DcEngineContext();
+            ServiceResourceSourceManager sourceManager = new ServiceResourceSourceManager(
+                    target.index, target.type, target.id, target.routingId);
+            dcContext.setSourceManager(sourceManager);
+            dcContext.loadGlobalObject(null, target.cell, target.box, target.box, target.service);
+            dcContext.getUserScript(sourceManager.getScriptNameForServicePath(target.service));
+            return true;
+        } catch (Exception e) {
+            log.info("Failed to compile user script on warm-up. service: " + target.key() + " " + e.getMessage());
+            return false;
+        } finally {
+            IOUtils.closeQuietly(dcContext);
+        }
+    }
+
+    private static List<Target> load() {
+        List<Target> loaded = new ArrayList<Target>();
+        String fileName = DcEngineConfig.getWarmUpServicesFile();
+        if (fileName == null || fileName.isEmpty() || !new File(fileName).exists()) {
+            return loaded;
+        }
+        try {
+            for (String line : FileUtils.readLines(new File(fileName), "UTF-8")) {
+                Target target = Target.fromLine(line);
+                if (target != null) {
+                    loaded.add(target);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read warm-up services file: " + fileName, e);
+        }
+        return loaded;
+    }
+
+    private static synchronized void save(List<Target> saveTargets) {
+        String fileName = DcEngineConfig.getWarmUpServicesFile();
+        if (fileName == null || fileName.isEmpty()) {
+            return;
+        }
+        List<String> lines = new ArrayList<String>();
+        for (Target target : saveTargets) {
+            lines.add(target.toLine());
+        }
+        try {
+            FileUtils.writeLines(new File(fileName), "UTF-8", lines);
+        } catch (IOException e) {
+            log.warn("Failed to write warm-up services file: " + fileName, e);
+        }
+    }
+}
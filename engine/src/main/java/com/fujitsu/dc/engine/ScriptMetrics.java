@@ -0,0 +1,212 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.json.simple.JSONObject;
+
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * ユーザースクリプトの実行メトリクスを集計するクラス.
+ * <p>
+ * Cell/Box/サービスごとに、命令数、実行時間、コンパイル時間、DAO呼び出し時間、リクエスト及びレスポンスのバイト数を
+ * 2のべき乗を境界とするヒストグラムで集計する。集計はロックを使わずに行うため、本番環境で常時有効にできる。
+ * </p>
+ */
+public final class ScriptMetrics {
+    /** ヒストグラムのバケット数. */
+    private static final int BUCKETS = 64;
+    /** 集計対象の上限数を超えた場合に集計するキー. */
+    private static final String OTHER_KEY = "_other";
+
+    /** Cell/Box/サービスごとのメトリクス. */
+    private static ConcurrentMap<String, Metrics> metrics = new ConcurrentHashMap<String, Metrics>();
+
+    private ScriptMetrics() {
+    }
+
+    /**
+     * 2のべき乗を境界とするヒストグラム.
+     */
+    static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            long v = Math.max(value, 0);
+            buckets.incrementAndGet(Math.min(BUCKETS - Long.numberOfLeadingZeros(v), BUCKETS - 1));
+            count.incrementAndGet();
+            sum.addAndGet(v);
+            long current = max.get();
+            while (v > current && !max.compareAndSet(current, v)) {
+                current = max.get();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("count", count.get());
+            json.put("sum", sum.get());
+            json.put("max", max.get());
+            // 値が0のバケット以外を「上限値: 件数」の形式で出力する
+            JSONObject bucketsJson = new JSONObject();
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = buckets.get(i);
+                if (n > 0) {
+                    long upper = (1L << i) - 1;
+                    if (i == BUCKETS - 1) {
+                        upper = Long.MAX_VALUE;
+                    }
+                    bucketsJson.put(Long.toString(upper), n);
+                }
+            }
+            json.put("buckets", bucketsJson);
+            return json;
+        }
+    }
+
+    /**
+     * Cell/Box/サービスごとのメトリクス.
+     */
+    static class Metrics {
+        private final Histogram instructions = new Histogram();
+        private final Histogram wallTime = new Histogram();
+        private final Histogram compileTime = new Histogram();
+        private final Histogram daoTime = new Histogram();
+        private final Histogram bytesIn = new Histogram();
+        private final Histogram bytesOut = new Histogram();
+
+        @SuppressWarnings("unchecked")
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("instructions", instructions.toJson());
+            json.put("wallTimeMicros", wallTime.toJson());
+            json.put("compileTimeMicros", compileTime.toJson());
+            json.put("daoTimeMicros", daoTime.toJson());
+            json.put("bytesIn", bytesIn.toJson());
+            json.put("bytesOut", bytesOut.toJson());
+            return json;
+        }
+    }
+
+    /**
+     * メトリクスの集計が有効か否か.
+     * @return 有効な場合はtrue
+     */
+    public static boolean isEnabled() {
+        return DcEngineConfig.isMetricsEnabled();
+    }
+
+    /**
+     * 1リクエスト分のメトリクスを集計する.
+     * @param cell Cell名
+     * @param box Box名
+     * @param service サービス名
+     * @param context 実行したDcEngineContext
+     * @param wallTimeMicros リクエストの処理時間(マイクロ秒)
+     * @param bytesIn リクエストボディのバイト数
+     */
+    public static void record(String cell, String box, String service, DcEngineContext context,
+            long wallTimeMicros, long bytesIn) {
+        if (!isEnabled()) {
+            return;
+        }
+        Metrics m = getMetrics(cell, box, service);
+        m.wallTime.record(wallTimeMicros);
+        m.bytesIn.record(bytesIn);
+        if (context != null) {
+            m.instructions.record(context.getInstructionCount());
+            m.compileTime.record(context.getCompileTimeMicros());
+            m.daoTime.record(context.getDaoTimeMicros());
+        }
+    }
+
+    /**
+     * レスポンスボディのバイト数を集計するようにレスポンスを置き換える.
+     * @param cell Cell名
+     * @param box Box名
+     * @param service サービス名
+     * @param response レスポンス
+     * @return バイト数を集計するレスポンス
+     */
+    public static Response countBytesOut(String cell, String box, String service, Response response) {
+        if (!isEnabled() || response == null || !(response.getEntity() instanceof StreamingOutput)) {
+            return response;
+        }
+        final StreamingOutput entity = (StreamingOutput) response.getEntity();
+        final Metrics m = getMetrics(cell, box, service);
+        StreamingOutput counting = new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                CountingOutputStream cos = new CountingOutputStream(output);
+                try {
+                    entity.write(cos);
+                } finally {
+                    m.bytesOut.record(cos.getByteCount());
+                }
+            }
+        };
+        return Response.fromResponse(response).entity(counting).build();
+    }
+
+    /**
+     * 集計したメトリクスをJSONで取得する.
+     * @return Cell/Box/サービスごとのメトリクス
+     */
+    @SuppressWarnings("unchecked")
+    public static JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Metrics> entry : metrics.entrySet()) {
+            json.put(entry.getKey(), entry.getValue().toJson());
+        }
+        return json;
+    }
+
+    private static Metrics getMetrics(String cell, String box, String service) {
+        String key = cell + "/" + box + "/" + service;
+        Metrics m = metrics.get(key);
+        if (m != null) {
+            return m;
+        }
+        // 集計対象が際限なく増えないように、上限を超えた分はまとめて集計する
+        if (metrics.size() >= DcEngineConfig.getMetricsMaxKeys()) {
+            key = OTHER_KEY;
+        }
+        Metrics newMetrics = new Metrics();
+        m = metrics.putIfAbsent(key, newMetrics);
+        if (m == null) {
+            m = newMetrics;
+        }
+        return m;
+    }
+}
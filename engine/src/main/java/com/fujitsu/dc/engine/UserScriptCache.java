@@ -0,0 +1,150 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.javascript.Script;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.engine.source.ISourceManager;
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * コンパイル済みユーザースクリプトのキャッシュ.
+ * <p>
+ * ソース管理クラスが返却するソースのID({@link ISourceManager#getSourceId(String)})ごとにコンパイル済みの
+ * スクリプトをソースのバージョン({@link ISourceManager#getSourceVersion(String)})とともに保持する。
+ * ソースが更新されてバージョンが変わった場合はキャッシュを利用せず、コンパイルし直したスクリプトで置き換える。
+ * キャッシュの大きさはソースの文字数の合計で制限し、上限を超えた場合は最も長く利用されていないものから削除する。
+ * また、特定のCellがキャッシュを占有しないように、Cellごとの上限を超えた場合はそのCellのスクリプトから削除する。
+ * </p>
+ */
+public final class UserScriptCache {
+    /** ログオブジェクト. */
+    private static Logger log = LoggerFactory.getLogger(UserScriptCache.class);
+
+    /** キャッシュ(アクセス順). */
+    private static LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    /** Cellごとのキャッシュサイズ. */
+    private static Map<String, Long> cellSizes = new HashMap<String, Long>();
+    /** キャッシュサイズの合計. */
+    private static long totalSize = 0;
+
+    private UserScriptCache() {
+    }
+
+    /**
+     * キャッシュエントリ.
+     */
+    static class Entry {
+        private final String cell;
+        private final String version;
+        private final Script script;
+        private final long size;
+
+        Entry(String cell, String version, Script script, long size) {
+            this.cell = cell;
+            this.version = version;
+            this.script = script;
+            this.size = size;
+        }
+    }
+
+    /**
+     * コンパイル済みのスクリプトを取得する.
+     * @param cell Cell名
+     * @param sourceId ソースのID
+     * @param version ソースのバージョン
+     * @return コンパイル済みのスクリプト. キャッシュされていない場合、バージョンが異なる場合はnull
+     */
+    public static synchronized Script get(String cell, String sourceId, String version) {
+        if (sourceId == null || version == null) {
+            return null;
+        }
+        Entry entry = entries.get(cacheKey(cell, sourceId));
+        if (entry == null || !entry.version.equals(version)) {
+            return null;
+        }
+        return entry.script;
+    }
+
+    /**
+     * コンパイル済みのスクリプトをキャッシュする.
+     * @param cell Cell名
+     * @param sourceId ソースのID
+     * @param version ソースのバージョン
+     * @param script コンパイル済みのスクリプト
+     * @param size スクリプトのソースの文字数
+     */
+    public static synchronized void put(String cell, String sourceId, String version, Script script, long size) {
+        if (sourceId == null || version == null) {
+            return;
+        }
+        long maxSize = DcEngineConfig.getUserScriptCacheMaxSize();
+        long maxSizePerCell = Math.min(maxSize, DcEngineConfig.getUserScriptCacheMaxSizePerCell());
+        if (size > maxSizePerCell) {
+            log.debug("UserScript is too large to cache. size: " + size);
+            return;
+        }
+        // 同じソースの古いバージョンは置き換える
+        Entry newEntry = new Entry(cell, version, script, size);
+        Entry oldEntry = entries.put(cacheKey(cell, sourceId), newEntry);
+        if (oldEntry != null) {
+            release(oldEntry);
+        }
+        totalSize += size;
+        Long cellSize = cellSizes.get(cell);
+        cellSizes.put(cell, size + (cellSize == null ? 0 : cellSize));
+
+        // Cellの上限、全体の上限の順に、最も長く利用されていないものから削除する
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext() && cellSizes.get(cell) > maxSizePerCell) {
+            Entry entry = it.next();
+            if (entry.cell.equals(cell) && entry != newEntry) {
+                it.remove();
+                release(entry);
+            }
+        }
+        it = entries.values().iterator();
+        while (it.hasNext() && totalSize > maxSize) {
+            Entry entry = it.next();
+            if (entry != newEntry) {
+                it.remove();
+                release(entry);
+            }
+        }
+    }
+
+    private static void release(Entry entry) {
+        totalSize -= entry.size;
+        long cellSize = cellSizes.get(entry.cell) - entry.size;
+        if (cellSize <= 0) {
+            cellSizes.remove(entry.cell);
+        } else {
+            cellSizes.put(entry.cell, cellSize);
+        }
+    }
+
+    private static String cacheKey(String cell, String sourceId) {
+        return cell + "/" + sourceId;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine.accesscontrol;
+
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeJavaMethod;
+import org.mozilla.javascript.NativeJavaObject;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import com.fujitsu.dc.engine.DcJsContext;
+
+/**
+ * DAO(クライアントライブラリ)のJavaオブジェクトのラッパー.
+ * <p>
+ * JavaScriptから呼び出されたメソッドの実行時間を、実行中のDcJsContextにDAO呼び出し時間として加算する。
+ * </p>
+ */
+public class DaoTimingJavaObject extends NativeJavaObject {
+
+    /**
+     * コンストラクタ.
+     * @param scope スコープ
+     * @param javaObject DAOのJavaオブジェクト
+     * @param staticType 静的な型
+     */
+    public DaoTimingJavaObject(Scriptable scope, Object javaObject, Class<?> staticType) {
+        super(scope, javaObject, staticType);
+    }
+
+    @Override
+    public Object get(String name, Scriptable start) {
+        Object value = super.get(name, start);
+        if (value instanceof NativeJavaMethod) {
+            return new TimingFunction(getParentScope(), (Function) value);
+        }
+        return value;
+    }
+
+    /**
+     * 実行時間を計測するメソッドのラッパー.
+     */
+    static class TimingFunction extends BaseFunction {
+        private final Function method;
+
+        TimingFunction(Scriptable scope, Function method) {
+            super(scope, ScriptableObject.getFunctionPrototype(scope));
+            this.method = method;
+        }
+
+        @Override
+        public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+            long start = System.nanoTime();
+            try {
+                return this.method.call(cx, scope, thisObj, args);
+            } finally {
+                if (cx instanceof DcJsContext) {
+                    ((DcJsContext) cx).addDaoTime(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+}
@@ -26,6 +26,8 @@ import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.WrapFactory;
 
+import com.fujitsu.dc.client.DcContext;
+import com.fujitsu.dc.engine.ScriptMetrics;
 import com.fujitsu.dc.engine.adapter.DcRequestBodyStream;
 import com.fujitsu.dc.engine.wrapper.DcInputStream;
 import com.fujitsu.dc.engine.wrapper.DcJSONObject;
@@ -34,6 +36,8 @@ import com.fujitsu.dc.engine.wrapper.DcJSONObject;
  * JavaScriptからJavaメソッド呼び出し時の返却値ラップ動作制御.
  */
 public class PrimitiveWrapFactory extends WrapFactory {
+    /** DAO(クライアントライブラリ)のパッケージ. */
+    private static final String DAO_PACKAGE_PREFIX = "com.fujitsu.dc.client.";
 
     /*
      * 以下の変換処理を実施.
@@ -74,6 +78,22 @@ public class PrimitiveWrapFactory extends WrapFactory {
         return super.wrap(cx, scope, obj, staticType);
     }
 
+    /*
+     * メトリクスの集計が有効な場合、DAO(クライアントライブラリ)のオブジェクトは
+     * メソッドの実行時間を計測するラッパーに置き換える。
+     */
+    @Override
+    public Scriptable wrapAsJavaObject(Context cx, Scriptable scope, Object javaObject, Class<?> staticType) {
+        if (ScriptMetrics.isEnabled() && isDaoObject(javaObject)) {
+            return new DaoTimingJavaObject(scope, javaObject, staticType);
+        }
+        return super.wrapAsJavaObject(cx, scope, javaObject, staticType);
+    }
+
+    private static boolean isDaoObject(Object obj) {
+        return obj instanceof DcContext || obj.getClass().getName().startsWith(DAO_PACKAGE_PREFIX);
+    }
+
     @Override
     public Scriptable wrapNewObject(Context cx, Scriptable scope, Object obj) {
         // JavaScriptから呼び出しを許してるクラスもコンストラクタは呼び出し不可にする
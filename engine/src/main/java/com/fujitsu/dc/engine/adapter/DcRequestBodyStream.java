@@ -26,10 +26,19 @@ import com.fujitsu.dc.engine.wrapper.DcInputStream;
 
 /**
  * RequestボディのInputStreamをラップして提供する.
+ * <p>
+ * 大きなリクエストボディを扱う場合は、readAllで全体を文字列にせず、read/readLineで少しずつ読み込むか、
+ * streamで取得したストリームをDAVのPUT等にそのまま渡すこと。
+ * 文字列での読み込みとストリームでの読み込みは、読み込み済みのデータがずれるため混在させないこと。
+ * </p>
  */
 public final class DcRequestBodyStream {
+    /** 読み込み時のバッファサイズ(文字数). */
+    private static final int BUFFER_SIZE = 8192;
+
     InputStream input;
     BufferedReader bufferReader;
+    DcInputStream inputStream;
 
     /**
      * コンストラクタ.
@@ -45,7 +54,55 @@ public final class DcRequestBodyStream {
      * @throws Exception Exception
      */
     public DcInputStream stream() throws Exception  {
-        return new DcInputStream(this.input);
+        // 複数回呼び出された場合に、バッファ済みのデータが失われないよう同じストリームを返却する
+        if (this.inputStream == null) {
+            this.inputStream = new DcInputStream(this.input);
+        }
+        return this.inputStream;
+    }
+
+    /**
+     * 文字列として読み込むためのReaderを取得する.
+     * @param encoding 読み込み文字エンコーディング
+     * @return Reader
+     * @throws IOException IOException
+     */
+    private BufferedReader getReader(String encoding) throws IOException {
+        if (this.bufferReader == null) {
+            this.bufferReader = new BufferedReader(new InputStreamReader(this.input, encoding), BUFFER_SIZE);
+        }
+        return this.bufferReader;
+    }
+
+    /**
+     * 指定した文字数まで読み込む.
+     * 大きなリクエストボディを一定の大きさごとに処理する場合に利用する。
+     * @param size 読み込む最大文字数. 0以下の場合は既定のバッファサイズ
+     * @param encoding 読み込み文字エンコーディング
+     * @return String 読み込んだ文字列. 終端に達している場合はnull
+     * @throws IOException IOException
+     */
+    public String read(int size, String encoding) throws IOException {
+        int length = size;
+        if (length <= 0) {
+            length = BUFFER_SIZE;
+        }
+        char[] buf = new char[length];
+        int count = getReader(encoding).read(buf, 0, length);
+        if (count < 0) {
+            return null;
+        }
+        return new String(buf, 0, count);
+    }
+
+    /**
+     * 指定した文字数まで読み込む.
+     * @param size 読み込む最大文字数. 0以下の場合は既定のバッファサイズ
+     * @return String 読み込んだ文字列. 終端に達している場合はnull
+     * @throws IOException IOException
+     */
+    public String read(int size) throws IOException {
+        return this.read(size, "utf-8");
     }
 
     /**
@@ -56,10 +113,7 @@ public final class DcRequestBodyStream {
      * @throws IOException IOException
      */
     public String readLine(String encoding) throws IOException {
-        if (this.bufferReader == null) {
-            this.bufferReader = new BufferedReader(new InputStreamReader(this.input, encoding));
-        }
-        return bufferReader.readLine();
+        return getReader(encoding).readLine();
     }
 
     /**
@@ -80,13 +134,12 @@ public final class DcRequestBodyStream {
      * @throws IOException IOException
      */
     public String readAll(String encoding) throws IOException {
-        if (this.bufferReader == null) {
-            this.bufferReader = new BufferedReader(new InputStreamReader(this.input, encoding));
-        }
+        BufferedReader reader = getReader(encoding);
         StringBuilder sb = new StringBuilder();
-        int chr;
-        while ((chr = this.bufferReader.read()) != -1) {
-            sb.append((char) chr);
+        char[] buf = new char[BUFFER_SIZE];
+        int count;
+        while ((count = reader.read(buf)) != -1) {
+            sb.append(buf, 0, count);
         }
         return sb.toString();
     }
@@ -16,10 +16,13 @@
  */
 package com.fujitsu.dc.engine.adapter;
 
-import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
 
 import com.fujitsu.dc.engine.DcEngineContext;
 import com.fujitsu.dc.engine.DcEngineException;
@@ -35,6 +38,9 @@ public class Require {
     /** ソース情報管理. */
     private ISourceManager sourceManager;
 
+    /** リクエスト内で読み込んだモジュールのexports(モジュール名ごと). */
+    private Map<String, Scriptable> modules = new HashMap<String, Scriptable>();
+
     /** ログオブジェクト. */
     private static Log log = LogFactory.getLog(Require.class);
 
@@ -51,21 +57,28 @@ public class Require {
 
     /**
      * Require実行.
+     * 同一リクエスト内で同じモジュールを再度requireした場合は、同じexportsを返却する。
+     * 循環してrequireした場合は、読み込み途中のexportsを返却する。
      * @param moduleName require対象モジュール名
      * @return Require結果
      * @throws DcEngineException DcEngineException
      */
     public Object doRequire(String moduleName) throws DcEngineException {
-        String source = this.sourceManager.getSource(moduleName + ".js");
-        Date date = new Date();
-        Long time = date.getTime();
-        String key = moduleName + time.toString();
-        source = key + " = function() {};(function(exports) {" + source + "})(" + key + ")";
-
-        Object require;
-        this.context.requireJs(source, moduleName);
-        require = this.context.requireJs(key, moduleName);
-        return require;
+        Scriptable exports = this.modules.get(moduleName);
+        if (exports != null) {
+            return exports;
+        }
+        Script moduleScript = this.context.getModuleScript(moduleName + ".js");
+        exports = this.context.newModuleExports();
+        this.modules.put(moduleName, exports);
+        try {
+            this.context.execModule(moduleScript, exports, moduleName);
+        } catch (RuntimeException e) {
+            // 読み込みに失敗したモジュールは、再度requireした際に読み込み直す
+            this.modules.remove(moduleName);
+            throw e;
+        }
+        return exports;
     }
 
     /**
@@ -18,6 +18,8 @@ package com.fujitsu.dc.engine.jsgi;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.util.HashMap;
@@ -32,14 +34,18 @@ import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.http.HttpStatus;
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Function;
 import org.mozilla.javascript.FunctionObject;
 import org.mozilla.javascript.JavaScriptException;
 import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.engine.DcJsContext;
 import com.fujitsu.dc.engine.wrapper.DcInputStream;
 
 
@@ -59,6 +65,7 @@ public final class DcResponse extends ScriptableObject {
     String body = null;
     StreamingOutput streaming;
     OutputStream output;
+    Writer writer;
 
     /**
      * ユーザスクリプトから返却されたJSGIのレスポンスをチェックし、Javaオブジェクトに変換する.
@@ -129,12 +136,23 @@ public final class DcResponse extends ScriptableObject {
             throw new Exception(msg);
         }
         final ScriptableObject scriptableBody = (ScriptableObject) oBody;
+        // 配列以外でnextが実装されている場合は、レスポンスの書き込み時に要素を1件ずつ取り出すイテレータとして扱う
+        if (!(scriptableBody instanceof NativeArray)
+                && ScriptableObject.getProperty(scriptableBody, "next") instanceof Function) {
+            dcResponse.setBody(dcResponse.createLazyOutput(scriptableBody, true));
+            return dcResponse;
+        }
         // forEachが実装されているかチェック
         if (!ScriptableObject.hasProperty(scriptableBody, "forEach")) {
             String msg = "response body undefined forEach.";
             log.info(msg);
             throw new Exception(msg);
         }
+        // 配列以外のforEachは、要素のチェックのために事前に全要素を生成させず、レスポンスの書き込み時に1件ずつチェックする
+        if (!(scriptableBody instanceof NativeArray)) {
+            dcResponse.setBody(dcResponse.createLazyOutput(scriptableBody, false));
+            return dcResponse;
+        }
         Method checkMethod = dcResponse.getForEach("bodyCheckFunction");
         final Method responseMethod = dcResponse.getForEach("bodyResponseFunction");
 
@@ -162,6 +180,7 @@ public final class DcResponse extends ScriptableObject {
                 // forEach呼び出し
                 Object[] args = {callback};
                 ScriptableObject.callMethod(scriptableBody, "forEach", args);
+                dcResponse.flushWriter();
                 resStream.close();
             }
         };
@@ -171,6 +190,108 @@ public final class DcResponse extends ScriptableObject {
         return dcResponse;
     }
 
+    /**
+     * レスポンスの書き込み時に要素を1件ずつ取り出して出力するStreamingOutputを作成する.
+     * 要素を取り出すたびに出力をフラッシュするため、クライアントの受信が遅い場合は次の要素の取り出しも待たされる。
+     * @param scriptableBody JSGIレスポンスのbody
+     * @param iterator bodyがイテレータ(nextが{value, done}を返却する)の場合はtrue、forEachを実装している場合はfalse
+     * @return StreamingOutput
+     */
+    private StreamingOutput createLazyOutput(final ScriptableObject scriptableBody, final boolean iterator) {
+        return new LazyStreamingOutput(this, scriptableBody, iterator);
+    }
+
+    /**
+     * レスポンスの書き込み時にユーザスクリプトを実行して要素を取り出すStreamingOutput.
+     * <p>
+     * ユーザスクリプトの実行はレスポンスの書き込み中も続くため、Cell、サービスごとの実行制限を書き込み時のContextにも設定し、
+     * Cellの実行枠は書き込みの終了時に解放する。
+     * </p>
+     */
+    public static final class LazyStreamingOutput implements StreamingOutput {
+        private final DcResponse dcResponse;
+        private final ScriptableObject scriptableBody;
+        private final boolean iterator;
+        private String cell;
+        private String service;
+        private Runnable completion;
+
+        LazyStreamingOutput(DcResponse dcResponse, ScriptableObject scriptableBody, boolean iterator) {
+            this.dcResponse = dcResponse;
+            this.scriptableBody = scriptableBody;
+            this.iterator = iterator;
+        }
+
+        /**
+         * 要素の取り出し時に適用する実行制限の対象を設定する.
+         * @param cellName Cell名
+         * @param serviceName サービス名
+         */
+        public void setLimits(String cellName, String serviceName) {
+            this.cell = cellName;
+            this.service = serviceName;
+        }
+
+        /**
+         * 書き込みの終了時(失敗時を含む)に実行する処理を設定する.
+         * @param value 書き込みの終了時に実行する処理
+         */
+        public void setCompletion(Runnable value) {
+            this.completion = value;
+        }
+
+        @Override
+        public void write(OutputStream resStream) throws IOException {
+            try {
+                dcResponse.setOutput(resStream);
+                // ユーザスクリプトの実行は終了しているため、全要素の取り出しを1つのContextで行う
+                Context cx = ContextFactory.getGlobal().enterContext();
+                try {
+                    if (cx instanceof DcJsContext) {
+                        ((DcJsContext) cx).setLimits(this.cell, this.service);
+                    }
+                    if (this.iterator) {
+                        dcResponse.writeIterator(cx, this.scriptableBody);
+                    } else {
+                        Method streamMethod = dcResponse.getStreamMethod();
+                        ScriptableObject callback = new FunctionObject("bodyStreamFunction", streamMethod, dcResponse);
+                        ScriptableObject.callMethod(cx, this.scriptableBody, "forEach", new Object[] {callback});
+                    }
+                    dcResponse.flushWriter();
+                } finally {
+                    Context.exit();
+                }
+                resStream.close();
+            } finally {
+                if (this.completion != null) {
+                    this.completion.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * イテレータから要素を1件ずつ取り出して出力する.
+     * @param cx Context
+     * @param iterator イテレータ
+     * @throws IOException IOException
+     */
+    private void writeIterator(Context cx, Scriptable iterator) throws IOException {
+        while (true) {
+            Object result = ScriptableObject.callMethod(cx, iterator, "next", new Object[0]);
+            if (!(result instanceof Scriptable)) {
+                String msg = "response body iterator result illegal type.";
+                log.info(msg);
+                throw new IOException(msg);
+            }
+            Scriptable next = (Scriptable) result;
+            if (Context.toBoolean(ScriptableObject.getProperty(next, "done"))) {
+                return;
+            }
+            bodyStreamFunction(ScriptableObject.getProperty(next, "value"));
+        }
+    }
+
     /**
      * Engineとして許容しないレスポンスコードかどうかを判定する.
      * @param oStatus レスポンスコード(Number型)
@@ -294,7 +415,35 @@ public final class DcResponse extends ScriptableObject {
      * @throws IOException IOException
      */
     public void bodyResponseFunction(Object element, double number, NativeArray object) throws IOException {
+        writeElement(element);
+    }
+
+    /**
+     * 要素を1件ずつ取り出して出力する場合に、要素をチェックして出力するメソッド.
+     * 出力した要素がクライアントに送信されるよう、要素ごとにフラッシュする。
+     * @param element 出力する要素
+     * @throws IOException IOException
+     */
+    public void bodyStreamFunction(Object element) throws IOException {
+        if (!(element instanceof DcInputStream) && !(element instanceof String)) {
+            String msg = "response body illegal type.";
+            log.info(msg);
+            throw new IOException(msg);
+        }
+        writeElement(element);
+        flushWriter();
+        this.output.flush();
+    }
+
+    /**
+     * 要素を出力する.
+     * @param element 出力する要素
+     * @throws IOException IOException
+     */
+    private void writeElement(Object element) throws IOException {
         if (element instanceof DcInputStream) {
+            // 文字列として出力済みのデータを先に書き出す
+            flushWriter();
             // 現状はEngine上のJavaScriptでバイナリを直接扱わず
             // JavaのストリームをそのままJavaScript内で扱うことで対応
             DcInputStream io = (DcInputStream) element;
@@ -305,7 +454,21 @@ public final class DcResponse extends ScriptableObject {
             }
         } else {
             // 文字列はユーザスクリプトがContent-typeのcharsetで指定した文字エンコーディングで出力。
-            this.output.write(((String) element).getBytes(charset));
+            // 文字列全体のバイト配列を作らずに、Writerで少しずつエンコードして出力する
+            if (this.writer == null) {
+                this.writer = new OutputStreamWriter(this.output, charset);
+            }
+            this.writer.write((String) element);
+        }
+    }
+
+    /**
+     * Writerにバッファされている文字列を出力する.
+     * @throws IOException IOException
+     */
+    private void flushWriter() throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
         }
     }
 
@@ -324,6 +487,19 @@ public final class DcResponse extends ScriptableObject {
         }
     }
 
+    /**
+     * 要素を1件ずつ取り出して出力するためのメソッド（function）を取得.
+     * @return function
+     * @throws IOException IOException
+     */
+    private Method getStreamMethod() throws IOException {
+        try {
+            return this.getClass().getMethod("bodyStreamFunction", new Class[] {Object.class});
+        } catch (NoSuchMethodException e) {
+            throw new IOException("forEach function not found.", e);
+        }
+    }
+
     /**
      * JavaScriptのforEach処理をJavaで行うためのメソッド（function）を取得.
      * @param methodName メソッド名
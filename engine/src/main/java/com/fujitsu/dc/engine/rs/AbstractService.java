@@ -37,11 +37,17 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mozilla.javascript.Script;
 
+import com.fujitsu.dc.engine.CellExecutionLimiter;
 import com.fujitsu.dc.engine.DcEngineContext;
 import com.fujitsu.dc.engine.DcEngineException;
+import com.fujitsu.dc.engine.EngineWarmUp;
+import com.fujitsu.dc.engine.ScriptMetrics;
+import com.fujitsu.dc.engine.jsgi.DcResponse;
 import com.fujitsu.dc.engine.source.ISourceManager;
 import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
@@ -68,6 +74,8 @@ public abstract class AbstractService {
     private static final int PORT_HTTP = 80;
     /** HTTPSポート. */
     private static final int PORT_HTTPS = 443;
+    /** ナノ秒をマイクロ秒に変換する際の除数. */
+    private static final long NANOS_PER_MICRO = 1000L;
 
     /** リクエストヘッダから取得する インデックス. */
     @HeaderParam("X-Dc-Es-Index")
@@ -307,8 +315,24 @@ public abstract class AbstractService {
             return makeErrorResponse("Server Error", DcEngineException.STATUSCODE_SERVER_ERROR);
         }
 
+        // Cellごとの同時実行数を制限する
+        try {
+            CellExecutionLimiter.acquire(targetCell);
+        } catch (DcEngineException e) {
+            return errorResponse(e);
+        }
+
         Response response = null;
         DcEngineContext dcContext = null;
+        // メトリクス集計用の計測
+        long startTime = System.nanoTime();
+        CountingInputStream countingIs = null;
+        if (is != null) {
+            countingIs = new CountingInputStream(is);
+        }
+        boolean executed = false;
+        boolean releaseOnReturn = true;
+        Runnable deferredRelease = null;
         try {
             try {
                 dcContext = new DcEngineContext();
@@ -326,11 +350,16 @@ public abstract class AbstractService {
             }
             // グローバルオブジェクトのロード
             dcContext.loadGlobalObject(baseUrl, targetCell, targetScheme, targetScheme, targetServiceName);
-            // ユーザスクリプトを取得（設定及びソース）
-            String source = "";
+            // ユーザスクリプトを取得（設定及びコンパイル済みのスクリプト）
+            Script script = null;
             try {
                 String sourceName = this.sourceManager.getScriptNameForServicePath(targetServiceName);
-                source = this.sourceManager.getSource(sourceName);
+                script = dcContext.getUserScript(sourceName);
+                // 再起動時、デプロイ時にウォームアップできるよう、呼び出されたサービスを記録する
+                if (getIndex() != null && getType() != null && getId() != null && getRoutingId() != null) {
+                    EngineWarmUp.addRecentService(new EngineWarmUp.Target(targetCell, targetScheme,
+                            targetServiceName, getIndex(), getType(), getId(), getRoutingId()));
+                }
             } catch (DcEngineException e) {
                 return errorResponse(e);
             } catch (Exception e) {
@@ -342,7 +371,23 @@ public abstract class AbstractService {
             }
             // JSGI実行
             try {
-                response = dcContext.runJsgi(source, req, res, is, this.serviceSubject);
+                executed = true;
+                response = dcContext.runJsgi(script, req, res, countingIs, this.serviceSubject);
+                if (response.getEntity() instanceof DcResponse.LazyStreamingOutput) {
+                    // レスポンスの書き込み中もユーザスクリプトが実行されるため、同じ実行制限を適用し、
+                    // Cellの実行枠は書き込みの終了時に解放する
+                    // HEADや204/304ではレスポンスボディが書き込まれないため、実行枠はこのメソッドの終了時に解放する
+                    DcResponse.LazyStreamingOutput lazyOutput = (DcResponse.LazyStreamingOutput) response.getEntity();
+                    lazyOutput.setLimits(targetCell, targetServiceName);
+                    if (isBodyWritten(req, response)) {
+                        deferredRelease = CellExecutionLimiter.deferRelease(targetCell);
+                        lazyOutput.setCompletion(deferredRelease);
+                    }
+                }
+                response = ScriptMetrics.countBytesOut(targetCell, targetScheme, targetServiceName, response);
+                if (deferredRelease != null) {
+                    releaseOnReturn = false;
+                }
             } catch (DcEngineException e) {
                 return errorResponse(e);
             } catch (Exception e) {
@@ -351,7 +396,23 @@ public abstract class AbstractService {
                         DcEngineException.STATUSCODE_NOTFOUND));
             }
         } finally {
+            if (executed) {
+                long bytesIn = 0;
+                if (countingIs != null) {
+                    bytesIn = countingIs.getByteCount();
+                }
+                ScriptMetrics.record(targetCell, targetScheme, targetServiceName, dcContext,
+                        (System.nanoTime() - startTime) / NANOS_PER_MICRO, bytesIn);
+            }
             IOUtils.closeQuietly(dcContext);
+            if (releaseOnReturn) {
+                if (deferredRelease != null) {
+                    // レスポンスボディを返却しない場合は、書き込み終了時の解放処理を使って1回だけ解放する
+                    deferredRelease.run();
+                } else {
+                    CellExecutionLimiter.release(targetCell);
+                }
+            }
         }
         return response;
     }
@@ -378,6 +439,20 @@ public abstract class AbstractService {
                 .entity(msg).build();
     }
 
+    /**
+     * レスポンスボディが書き込まれるか否かを返す.
+     * HEADリクエスト、及び204、304のレスポンスではボディは書き込まれない。
+     * @param req リクエスト
+     * @param response レスポンス
+     * @return 書き込まれる場合はtrue
+     */
+    private static boolean isBodyWritten(HttpServletRequest req, Response response) {
+        int status = response.getStatus();
+        return !"HEAD".equalsIgnoreCase(req.getMethod())
+                && status != Response.Status.NO_CONTENT.getStatusCode()
+                && status != Response.Status.NOT_MODIFIED.getStatusCode();
+    }
+
     /**
      * Cell名取得.
      * @return Cell名
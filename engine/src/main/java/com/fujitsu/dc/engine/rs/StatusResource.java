@@ -37,6 +37,8 @@ import org.apache.http.HttpStatus;
 import org.json.simple.JSONObject;
 
 import com.fujitsu.dc.engine.DcEngineException;
+import com.fujitsu.dc.engine.EngineWarmUp;
+import com.fujitsu.dc.engine.ScriptMetrics;
 import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 /**
@@ -67,8 +69,21 @@ public class StatusResource {
         }
         responseJson.put("properties", propertiesJson);
 
+        // ユーザースクリプトの実行メトリクス
+        if (ScriptMetrics.isEnabled()) {
+            responseJson.put("metrics", ScriptMetrics.toJson());
+        }
+
+        // 起動時のウォームアップが終わるまでは、ロードバランサから振り分けられないよう503を返却する
+        boolean ready = EngineWarmUp.isReady();
+        responseJson.put("ready", ready);
+        int status = HttpStatus.SC_OK;
+        if (!ready) {
+            status = HttpStatus.SC_SERVICE_UNAVAILABLE;
+        }
+
         sb.append(responseJson.toJSONString());
-        return Response.status(HttpStatus.SC_OK).entity(sb.toString()).build();
+        return Response.status(status).entity(sb.toString()).build();
     }
 
     /**
@@ -118,6 +133,8 @@ public class StatusResource {
         }
         try {
             DcEngineConfig.reload();
+            // デプロイ後などに最近呼び出されたサービスのユーザースクリプトを改めてコンパイルする
+            EngineWarmUp.start();
         } catch (Exception e) {
             log.warn(" unknown Exception(" + e.getMessage() + ")");
             return errorResponse(new DcEngineException("500 Internal Server Error (Unknown Error)",
@@ -44,4 +44,22 @@ public interface ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     String getSource(String scriptFileName) throws DcEngineException;
+
+    /**
+     * スクリプトファイルを一意に識別するIDを返却.
+     * コンパイル済みスクリプトのキャッシュに利用する。キャッシュしない場合はnullを返却する。
+     * @param scriptFileName スクリプトファイル名
+     * @return スクリプトファイルのID
+     * @throws DcEngineException DcEngineException
+     */
+    String getSourceId(String scriptFileName) throws DcEngineException;
+
+    /**
+     * スクリプトファイルのバージョンを返却.
+     * スクリプトファイルが更新された場合は異なる値を返却する。キャッシュしない場合はnullを返却する。
+     * @param scriptFileName スクリプトファイル名
+     * @return スクリプトファイルのバージョン
+     * @throws DcEngineException DcEngineException
+     */
+    String getSourceVersion(String scriptFileName) throws DcEngineException;
 }
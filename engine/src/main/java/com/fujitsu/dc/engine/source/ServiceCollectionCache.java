@@ -0,0 +1,224 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine.source;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * サービスコレクションの情報及びソースのキャッシュ.
+ * <p>
+ * サービスコレクションの情報(サービス設定、__src配下のソース一覧)と、ソースのノードの更新日時及びソースの中身を保持する。
+ * 有効期間(TTL)内はESやファイルを参照せずにキャッシュの値を返却する。
+ * 有効期間を過ぎたソースはノードの更新日時だけをESから取得して検証し、更新されていなければソースの中身を読み直さない。
+ * </p>
+ */
+final class ServiceCollectionCache {
+
+    /** サービスコレクションの情報(アクセス順). */
+    private static LinkedHashMap<String, Collection> collections =
+            new LinkedHashMap<String, Collection>(16, 0.75f, true);
+    /** ソースの情報(アクセス順). */
+    private static LinkedHashMap<String, Source> sources = new LinkedHashMap<String, Source>(16, 0.75f, true);
+    /** キャッシュしているソースの中身の文字数の合計. */
+    private static long totalSourceSize = 0;
+
+    private ServiceCollectionCache() {
+    }
+
+    /**
+     * サービスコレクションの情報.
+     */
+    static class Collection {
+        private final String serviceSubject;
+        private final Map<String, String> scriptNames;
+        private final Map<?, ?> sourceInfo;
+        private final long loadedAt;
+
+        /**
+         * コンストラクタ.
+         * @param serviceSubject サービスサブジェクト
+         * @param scriptNames サービス名とスクリプトファイル名の対応
+         * @param sourceInfo __src配下のソースファイル名とノードIDの対応
+         */
+        Collection(String serviceSubject, Map<String, String> scriptNames, Map<?, ?> sourceInfo) {
+            this.serviceSubject = serviceSubject;
+            this.scriptNames = scriptNames;
+            this.sourceInfo = sourceInfo;
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        String getServiceSubject() {
+            return serviceSubject;
+        }
+
+        Map<String, String> getScriptNames() {
+            return scriptNames;
+        }
+
+        Map<?, ?> getSourceInfo() {
+            return sourceInfo;
+        }
+    }
+
+    /**
+     * ソースの情報.
+     */
+    static class Source {
+        private final String version;
+        private String body;
+        private long checkedAt;
+
+        Source(String version) {
+            this.version = version;
+            this.checkedAt = System.currentTimeMillis();
+        }
+
+        String getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * 有効期間内のサービスコレクションの情報を取得する.
+     * @param key サービスコレクションのキー
+     * @return サービスコレクションの情報. キャッシュされていない場合、有効期間を過ぎている場合はnull
+     */
+    static synchronized Collection getCollection(String key) {
+        Collection collection = collections.get(key);
+        if (collection == null || isExpired(collection.loadedAt)) {
+            return null;
+        }
+        return collection;
+    }
+
+    /**
+     * サービスコレクションの情報をキャッシュする.
+     * @param key サービスコレクションのキー
+     * @param collection サービスコレクションの情報
+     */
+    static synchronized void putCollection(String key, Collection collection) {
+        if (DcEngineConfig.getServiceCacheTtl() <= 0) {
+            return;
+        }
+        collections.put(key, collection);
+        Iterator<Collection> it = collections.values().iterator();
+        while (collections.size() > DcEngineConfig.getServiceCacheMaxEntries() && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * 有効期間内のソースの情報を取得する.
+     * @param key ソースのキー
+     * @return ソースの情報. キャッシュされていない場合、有効期間を過ぎている場合はnull
+     */
+    static synchronized Source getSource(String key) {
+        Source source = sources.get(key);
+        if (source == null || isExpired(source.checkedAt)) {
+            return null;
+        }
+        return source;
+    }
+
+    /**
+     * ESから取得したソースのノードの更新日時をキャッシュする.
+     * 更新日時が変わっていなければ、キャッシュしているソースの中身はそのまま有効とする。
+     * @param key ソースのキー
+     * @param version ソースのノードの更新日時
+     * @return ソースの情報
+     */
+    static synchronized Source putSourceVersion(String key, String version) {
+        Source source = sources.get(key);
+        if (source != null && source.version.equals(version)) {
+            source.checkedAt = System.currentTimeMillis();
+            return source;
+        }
+        source = new Source(version);
+        if (version == null || DcEngineConfig.getServiceCacheTtl() <= 0) {
+            return source;
+        }
+        remove(key);
+        sources.put(key, source);
+        Iterator<Source> it = sources.values().iterator();
+        while (sources.size() > DcEngineConfig.getServiceCacheMaxEntries() && it.hasNext()) {
+            Source eldest = it.next();
+            if (eldest != source) {
+                it.remove();
+                if (eldest.body != null) {
+                    totalSourceSize -= eldest.body.length();
+                }
+            }
+        }
+        return source;
+    }
+
+    /**
+     * キャッシュしているソースの中身を取得する.
+     * @param key ソースのキー
+     * @param version ソースのノードの更新日時
+     * @return ソースの中身. キャッシュされていない場合、更新日時が異なる場合はnull
+     */
+    static synchronized String getSourceBody(String key, String version) {
+        Source source = sources.get(key);
+        if (source == null || !source.version.equals(version)) {
+            return null;
+        }
+        return source.body;
+    }
+
+    /**
+     * ソースの中身をキャッシュする.
+     * 中身の文字数の合計が上限を超えた場合は、最も長く利用されていないソースの中身から削除する。
+     * @param key ソースのキー
+     * @param version ソースのノードの更新日時
+     * @param body ソースの中身
+     */
+    static synchronized void putSourceBody(String key, String version, String body) {
+        Source source = sources.get(key);
+        long maxSourceSize = DcEngineConfig.getServiceCacheMaxSourceSize();
+        if (source == null || !source.version.equals(version) || source.body != null
+                || body.length() > maxSourceSize) {
+            return;
+        }
+        source.body = body;
+        totalSourceSize += body.length();
+        Iterator<Source> it = sources.values().iterator();
+        while (totalSourceSize > maxSourceSize && it.hasNext()) {
+            Source eldest = it.next();
+            if (eldest != source && eldest.body != null) {
+                totalSourceSize -= eldest.body.length();
+                eldest.body = null;
+            }
+        }
+    }
+
+    private static void remove(String key) {
+        Source source = sources.remove(key);
+        if (source != null && source.body != null) {
+            totalSourceSize -= source.body.length();
+        }
+    }
+
+    private static boolean isExpired(long time) {
+        return System.currentTimeMillis() - time >= DcEngineConfig.getServiceCacheTtl();
+    }
+}
@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -65,11 +66,11 @@ public class ServiceResourceSourceManager implements ISourceManager {
     /** ESアクセッサtype. */
     private EsType typ;
 
-    /** ODataコレクションのPROPPATCH情報. */
-    private String serviceCollectionInfo;
+    /** サービスコレクションの情報(サービス設定及び配下のソース情報). */
+    private ServiceCollectionCache.Collection collection;
 
-    /** ESから取得したODataコレクションの配下のソース情報. */
-    private Map<?, ?> sourceInfo;
+    /** ソースの情報(ソースファイル名ごと). */
+    private Map<String, ServiceCollectionCache.Source> sources = new HashMap<String, ServiceCollectionCache.Source>();
 
     /**
      * コンストラクタ.
@@ -93,7 +94,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     private void loadServiceCollectionInfo() throws DcEngineException {
-        if (this.sourceInfo != null) {
+        if (this.collection != null) {
             return;
         }
         // elasticsearchからPROPを取得する
@@ -104,6 +105,13 @@ public class ServiceResourceSourceManager implements ISourceManager {
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
+        // 有効期間内であればキャッシュしたサービスコレクションの情報を利用する
+        String collectionKey = this.index + "/" + this.id;
+        this.collection = ServiceCollectionCache.getCollection(collectionKey);
+        if (this.collection != null) {
+            return;
+        }
+
         // サービスコレクションを取得
         DcGetResponse getResp = this.typ.get(this.id);
         if (!getResp.isExists()) {
@@ -113,14 +121,15 @@ public class ServiceResourceSourceManager implements ISourceManager {
         }
 
         // スクリプトの情報を取得する
-        this.serviceCollectionInfo = (String) ((Map<?, ?>) getResp.getSource().get("d")).get("service@urn:x-dc1:xmlns");
-        if (null == this.serviceCollectionInfo) {
+        String serviceCollectionInfo =
+                (String) ((Map<?, ?>) getResp.getSource().get("d")).get("service@urn:x-dc1:xmlns");
+        if (null == serviceCollectionInfo) {
             log.info("Service property Invalid ");
             throw new DcEngineException("404 Not Found (Service property invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
-        log.debug("scriptPath: [" + this.serviceCollectionInfo + "] ");
+        log.debug("scriptPath: [" + serviceCollectionInfo + "] ");
         // childrenを取る （__src）
         String children = (String) ((Map<?, ?>) getResp.getSource().get("o")).get("__src");
         // __src の情報を取得
@@ -130,7 +139,10 @@ public class ServiceResourceSourceManager implements ISourceManager {
             throw new DcEngineException("404 Not Found (Service Source Collection invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
-        this.sourceInfo = (Map<?, ?>) getResp.getSource().get("o");
+        Map<?, ?> sourceInfo = (Map<?, ?>) getResp.getSource().get("o");
+        this.collection = new ServiceCollectionCache.Collection(getServiceSubject(serviceCollectionInfo),
+                getScriptNames(serviceCollectionInfo), sourceInfo);
+        ServiceCollectionCache.putCollection(collectionKey, this.collection);
     }
 
     /**
@@ -141,7 +153,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
     public String getServiceSubject() throws DcEngineException {
         this.loadServiceCollectionInfo();
         // サービスサブジェクトの取得
-        return getServiceSubject(this.serviceCollectionInfo);
+        return this.collection.getServiceSubject();
     }
 
     /**
@@ -152,7 +164,11 @@ public class ServiceResourceSourceManager implements ISourceManager {
      */
     public String getScriptNameForServicePath(String servicePath) throws DcEngineException {
         this.loadServiceCollectionInfo();
-        return getScriptName(this.serviceCollectionInfo, servicePath);
+        String scriptName = this.collection.getScriptNames().get(servicePath);
+        if (scriptName == null) {
+            return "";
+        }
+        return scriptName;
     }
 
     /**
@@ -162,17 +178,13 @@ public class ServiceResourceSourceManager implements ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     public String getSource(String sourceName) throws DcEngineException {
-        this.loadServiceCollectionInfo();
-        // 対象のスクリプトの情報を取得する
-        String sourceNodeId = (String) this.sourceInfo.get(sourceName);
-        if (sourceNodeId == null) {
-            log.info("Service Source not found (" + sourceName + ")");
-            throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
-        }
-        DcGetResponse getResp = this.typ.get(sourceNodeId);
-        if (!getResp.isExists()) {
-            log.info("Service Source not found (" + sourceName + ")");
-            throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
+        String sourceNodeId = this.getSourceId(sourceName);
+        String version = this.getSourceInfo(sourceName).getVersion();
+        // ノードが更新されていなければキャッシュしたソースの中身を利用する
+        String sourceKey = this.index + "/" + sourceNodeId;
+        String source = ServiceCollectionCache.getSourceBody(sourceKey, version);
+        if (source != null) {
+            return source;
         }
 
         BinaryDataAccessor binaryAccessor = new BinaryDataAccessor(DcEngineConfig.getBlobStoreRoot(), this.index
@@ -180,7 +192,9 @@ public class ServiceResourceSourceManager implements ISourceManager {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         try {
             binaryAccessor.copy(sourceNodeId, baos);
-            return baos.toString("UTF-8");
+            source = baos.toString("UTF-8");
+            ServiceCollectionCache.putSourceBody(sourceKey, version, source);
+            return source;
         } catch (BinaryDataAccessException e) {
             log.info("UserScript Encoding error(UnsupportedEncodingException) ", e);
             throw new DcEngineException("404 UserScript Encoding error", DcEngineException.STATUSCODE_NOTFOUND, e);
@@ -193,13 +207,71 @@ public class ServiceResourceSourceManager implements ISourceManager {
     }
 
     /**
-     * サービス名からスクリプトファイルのパスを取得する.
+     * ソースファイルのIDを取得. ソースファイルのDAVノードのIDを返却する.
+     * @param sourceName ソースファイル名
+     * @return ソースファイルのID
+     * @throws DcEngineException DcEngineException
+     */
+    public String getSourceId(String sourceName) throws DcEngineException {
+        this.loadServiceCollectionInfo();
+        // 対象のスクリプトの情報を取得する
+        String sourceNodeId = (String) this.collection.getSourceInfo().get(sourceName);
+        if (sourceNodeId == null) {
+            log.info("Service Source not found (" + sourceName + ")");
+            throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
+        }
+        return sourceNodeId;
+    }
+
+    /**
+     * ソースファイルのバージョンを取得. ソースファイルのDAVノードの更新日時を返却する.
+     * @param sourceName ソースファイル名
+     * @return ソースファイルのバージョン
+     * @throws DcEngineException DcEngineException
+     */
+    public String getSourceVersion(String sourceName) throws DcEngineException {
+        return this.getSourceInfo(sourceName).getVersion();
+    }
+
+    /**
+     * ソースファイルの情報を取得する.
+     * 有効期間内であればキャッシュした情報を返却し、有効期間を過ぎている場合はDAVノードの更新日時をESから取得する。
+     * @param sourceName ソースファイル名
+     * @return ソースファイルの情報
+     * @throws DcEngineException DcEngineException
+     */
+    private ServiceCollectionCache.Source getSourceInfo(String sourceName) throws DcEngineException {
+        ServiceCollectionCache.Source source = this.sources.get(sourceName);
+        if (source != null) {
+            return source;
+        }
+        String sourceNodeId = this.getSourceId(sourceName);
+        String sourceKey = this.index + "/" + sourceNodeId;
+        source = ServiceCollectionCache.getSource(sourceKey);
+        if (source == null) {
+            DcGetResponse getResp = this.typ.get(sourceNodeId);
+            if (!getResp.isExists()) {
+                log.info("Service Source not found (" + sourceName + ")");
+                throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
+            }
+            Object updated = getResp.getSource().get("u");
+            String version = null;
+            if (updated != null) {
+                version = updated.toString();
+            }
+            source = ServiceCollectionCache.putSourceVersion(sourceKey, version);
+        }
+        this.sources.put(sourceName, source);
+        return source;
+    }
+
+    /**
+     * サービス設定からサービス名とスクリプトファイルのパスの対応を取得する.
      * @param xml XML文字列
-     * @param svcName サービス名
-     * @return スクリプトファイルパス
+     * @return サービス名とスクリプトファイルパスの対応
      */
-    private String getScriptName(final String xml, final String svcName) {
-        String scriptName = "";
+    private Map<String, String> getScriptNames(final String xml) {
+        Map<String, String> scriptNames = new HashMap<String, String>();
         DocumentBuilder builder = null;
         try {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -216,9 +288,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
             NodeList nl = doc.getElementsByTagNameNS("*", "path");
             for (int i = 0; i < nl.getLength(); i++) {
                 NamedNodeMap nnm = nl.item(i).getAttributes();
-                if (nnm.getNamedItem("name").getNodeValue().equals(svcName)) {
-                    scriptName = nnm.getNamedItem("src").getNodeValue();
-                }
+                scriptNames.put(nnm.getNamedItem("name").getNodeValue(), nnm.getNamedItem("src").getNodeValue());
             }
         } catch (SAXException e) {
             throw new RuntimeException(e);
@@ -226,7 +296,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
             throw new RuntimeException(e);
         }
 
-        return scriptName;
+        return scriptNames;
     }
 
     /**
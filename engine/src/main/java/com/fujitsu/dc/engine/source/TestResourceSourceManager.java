@@ -74,5 +74,23 @@ public class TestResourceSourceManager implements ISourceManager {
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND, e);
         }
     }
+
+    /**
+     * ソースファイルのIDを取得. ローカルのソースファイルはキャッシュしないためnullを返却する.
+     * @param sourceName ソースファイル名
+     * @return null
+     */
+    public String getSourceId(String sourceName) {
+        return null;
+    }
+
+    /**
+     * ソースファイルのバージョンを取得. ローカルのソースファイルはキャッシュしないためnullを返却する.
+     * @param sourceName ソースファイル名
+     * @return null
+     */
+    public String getSourceVersion(String sourceName) {
+        return null;
+    }
 }
 
@@ -118,6 +118,135 @@ public class DcEngineConfig {
 
     }
 
+    /**
+     * ユーザースクリプトのキャッシュ設定.
+     */
+    public static final class UserScript {
+        /**
+         * コンパイル済みユーザースクリプトのキャッシュの上限サイズ(ソースの文字数の合計). 0の場合はキャッシュしない.
+         */
+        public static final String CACHE_MAX_SIZE = KEY_ROOT + "userScript.cache.maxSize";
+        /**
+         * コンパイル済みユーザースクリプトのキャッシュのCellあたりの上限サイズ(ソースの文字数の合計).
+         */
+        public static final String CACHE_MAX_SIZE_PER_CELL = KEY_ROOT + "userScript.cache.maxSizePerCell";
+    }
+
+    /**
+     * ユーザースクリプトの実行制限の設定.
+     * 設定キーの末尾に「.Cell名」または「.Cell名.サービス名」を付与した設定でCell、サービスごとに上書きできる。
+     */
+    public static final class Script {
+        /**
+         * トップレベルの呼び出しごとの実行時間の上限(ミリ秒).
+         */
+        public static final String TIMEOUT = KEY_ROOT + "script.timeout";
+        /**
+         * 実行制限をチェックする間隔(命令数).
+         */
+        public static final String OBSERVER_THRESHOLD = KEY_ROOT + "script.instructionObserverThreshold";
+        /**
+         * リクエストごとの命令数の上限. 0の場合は制限しない.
+         */
+        public static final String MAX_INSTRUCTIONS = KEY_ROOT + "script.maxInstructions";
+        /**
+         * リクエストごとのCPU時間の上限(ミリ秒). 0の場合は制限しない.
+         */
+        public static final String MAX_CPU_TIME = KEY_ROOT + "script.maxCpuTime";
+    }
+
+    /**
+     * Cellごとのユーザースクリプトの同時実行数の設定.
+     * 設定キーの末尾に「.Cell名」を付与した設定でCellごとに上書きできる。
+     */
+    public static final class CellExecution {
+        /**
+         * Cellごとの同時実行数の上限.
+         */
+        public static final String MAX_CONCURRENCY = KEY_ROOT + "cell.maxConcurrency";
+        /**
+         * Cellごとの実行待ちリクエスト数の上限. 超えた場合は待ち合わせずに503を返却する.
+         */
+        public static final String MAX_QUEUE = KEY_ROOT + "cell.maxQueue";
+        /**
+         * 実行待ちの最大時間(ミリ秒). 超えた場合は503を返却する.
+         */
+        public static final String QUEUE_TIMEOUT = KEY_ROOT + "cell.queueTimeout";
+        /**
+         * レスポンスボディの書き込み終了時に解放する実行枠を、書き込まれない場合に強制的に解放するまでの時間(ミリ秒).
+         */
+        public static final String DEFERRED_RELEASE_TIMEOUT = KEY_ROOT + "cell.deferredReleaseTimeout";
+    }
+
+    /**
+     * サービスコレクションの情報及びソースのキャッシュ設定.
+     */
+    public static final class ServiceCache {
+        /**
+         * キャッシュの有効期間(ミリ秒). 0の場合はキャッシュしない.
+         */
+        public static final String TTL = KEY_ROOT + "serviceCache.ttl";
+        /**
+         * キャッシュするサービスコレクション及びソースの上限件数.
+         */
+        public static final String MAX_ENTRIES = KEY_ROOT + "serviceCache.maxEntries";
+        /**
+         * キャッシュするソースの中身の上限サイズ(文字数の合計).
+         */
+        public static final String MAX_SOURCE_SIZE = KEY_ROOT + "serviceCache.maxSourceSize";
+    }
+
+    /**
+     * Rhinoの実行環境の設定.
+     */
+    public static final class Rhino {
+        /**
+         * 標準オブジェクトを保持するsealしたスコープを全リクエストで共有するか否か.
+         * 有効にした場合、ユーザースクリプトから標準オブジェクトやそのプロトタイプを変更できなくなるため、既定では無効とする.
+         */
+        public static final String SHARED_SCOPE = KEY_ROOT + "rhino.sharedScope";
+        /**
+         * ユーザースクリプトの最適化レベル(-1:インタプリタ、0～9:バイトコード生成).
+         */
+        public static final String OPTIMIZATION_LEVEL = KEY_ROOT + "rhino.optimizationLevel";
+        /**
+         * Engineライブラリの最適化レベル(-1:インタプリタ、0～9:バイトコード生成).
+         */
+        public static final String LIB_OPTIMIZATION_LEVEL = KEY_ROOT + "rhino.libOptimizationLevel";
+    }
+
+    /**
+     * ユーザースクリプトの実行メトリクスの設定.
+     */
+    public static final class Metrics {
+        /**
+         * 実行メトリクスを集計するか否か.
+         */
+        public static final String ENABLED = KEY_ROOT + "metrics.enabled";
+        /**
+         * 集計するCell/Box/サービスの上限数. 超えた分はまとめて集計する.
+         */
+        public static final String MAX_KEYS = KEY_ROOT + "metrics.maxKeys";
+    }
+
+    /**
+     * 起動時のウォームアップの設定.
+     */
+    public static final class WarmUp {
+        /**
+         * 起動時にウォームアップを行うか否か.
+         */
+        public static final String ENABLED = KEY_ROOT + "warmUp.enabled";
+        /**
+         * ウォームアップ対象のサービスを保存するファイル. 空の場合は保存しない.
+         */
+        public static final String SERVICES_FILE = KEY_ROOT + "warmUp.servicesFile";
+        /**
+         * ウォームアップ対象とする最近呼び出されたサービスの上限数.
+         */
+        public static final String MAX_SERVICES = KEY_ROOT + "warmUp.maxServices";
+    }
+
     /**
      * バージョン廻りの設定.
      */
@@ -391,4 +520,117 @@ public class DcEngineConfig {
     public static String getUnitPrefix() {
         return get(ES.UNIT_PREFIX);
     }
+
+    /**
+     * Cell、サービスごとの設定値を取得します.
+     * 「キー.Cell名.サービス名」、「キー.Cell名」、「キー」の順に設定を参照し、最初に見つかった値を返却する。
+     * @param key 設定キー
+     * @param cell Cell名
+     * @param service サービス名. nullの場合はCellごとの設定まで参照する
+     * @return 設定値
+     */
+    public static long getLimit(final String key, final String cell, final String service) {
+        String value = null;
+        if (cell != null && service != null) {
+            value = get(key + "." + cell + "." + service);
+        }
+        if (value == null && cell != null) {
+            value = get(key + "." + cell);
+        }
+        if (value == null) {
+            value = get(key);
+        }
+        return Long.parseLong(value);
+    }
+
+    /**
+     * @return サービスコレクションの情報及びソースのキャッシュの有効期間(ミリ秒).
+     */
+    public static long getServiceCacheTtl() {
+        return Long.parseLong(get(ServiceCache.TTL));
+    }
+
+    /**
+     * @return キャッシュするサービスコレクション及びソースの上限件数.
+     */
+    public static int getServiceCacheMaxEntries() {
+        return Integer.parseInt(get(ServiceCache.MAX_ENTRIES));
+    }
+
+    /**
+     * @return キャッシュするソースの中身の上限サイズ(文字数の合計).
+     */
+    public static long getServiceCacheMaxSourceSize() {
+        return Long.parseLong(get(ServiceCache.MAX_SOURCE_SIZE));
+    }
+
+    /**
+     * @return 標準オブジェクトのスコープを全リクエストで共有する場合はtrue.
+     */
+    public static boolean isRhinoSharedScope() {
+        return Boolean.parseBoolean(get(Rhino.SHARED_SCOPE));
+    }
+
+    /**
+     * @return ユーザースクリプトの最適化レベル.
+     */
+    public static int getRhinoOptimizationLevel() {
+        return Integer.parseInt(get(Rhino.OPTIMIZATION_LEVEL));
+    }
+
+    /**
+     * @return Engineライブラリの最適化レベル.
+     */
+    public static int getRhinoLibOptimizationLevel() {
+        return Integer.parseInt(get(Rhino.LIB_OPTIMIZATION_LEVEL));
+    }
+
+    /**
+     * @return コンパイル済みユーザースクリプトのキャッシュの上限サイズ(ソースの文字数の合計).
+     */
+    public static long getUserScriptCacheMaxSize() {
+        return Long.parseLong(get(UserScript.CACHE_MAX_SIZE));
+    }
+
+    /**
+     * @return コンパイル済みユーザースクリプトのキャッシュのCellあたりの上限サイズ(ソースの文字数の合計).
+     */
+    public static long getUserScriptCacheMaxSizePerCell() {
+        return Long.parseLong(get(UserScript.CACHE_MAX_SIZE_PER_CELL));
+    }
+
+    /**
+     * @return ユーザースクリプトの実行メトリクスを集計する場合はtrue.
+     */
+    public static boolean isMetricsEnabled() {
+        return Boolean.parseBoolean(get(Metrics.ENABLED));
+    }
+
+    /**
+     * @return 実行メトリクスを集計するCell/Box/サービスの上限数.
+     */
+    public static int getMetricsMaxKeys() {
+        return Integer.parseInt(get(Metrics.MAX_KEYS));
+    }
+
+    /**
+     * @return 起動時にウォームアップを行う場合はtrue.
+     */
+    public static boolean isWarmUpEnabled() {
+        return Boolean.parseBoolean(get(WarmUp.ENABLED));
+    }
+
+    /**
+     * @return ウォームアップ対象のサービスを保存するファイル.
+     */
+    public static String getWarmUpServicesFile() {
+        return get(WarmUp.SERVICES_FILE);
+    }
+
+    /**
+     * @return ウォームアップ対象とする最近呼び出されたサービスの上限数.
+     */
+    public static int getWarmUpMaxServices() {
+        return Integer.parseInt(get(WarmUp.MAX_SERVICES));
+    }
 }
@@ -549,9 +549,11 @@ dc.Webdav.prototype.getStream = function(path) {
  *       charset: "UTF-8",<br>
  *       etag: "*"<br>
  *    });<br>
+ * 3. リクエストボディをメモリに読み込まずにそのまま登録する<br>
+ *   .put("upload.csv", "text/csv", request.input.stream(), "*");<br>
  * @param {string または Object} param 対象のDavのパス または、すべてのパラメタを含んだJSONオブジェクト
  * @param {string} contentType 登録するファイルのメディアタイプ
- * @param {string} data 登録するデータ(文字列形式)
+ * @param {string または stream} data 登録するデータ(文字列形式 または ストリーム)
  * @param {string} etag 対象のEtag
  * @exception {dc.DcException} DAO例外
  */
@@ -93,6 +93,39 @@ public class EsClient {
         InternalEsClient.setEventHandler(ev, handler);
     }
 
+    /**
+     * 同一内容の読み込みリクエスト(ドキュメントの１件取得・検索)を集約するか否かを設定する.
+     * 集約する場合、同一内容のリクエストが実行中であればESへリクエストを送らずにその応答を共有する.
+     * @param enabled 集約する場合はtrue
+     */
+    public static void setReadCoalescingEnabled(boolean enabled) {
+        InternalEsClient.setReadCoalescingEnabled(enabled);
+    }
+
+    /**
+     * 接続先ノードの一覧をクラスタから取得するか否かを設定する.
+     * @param enabled 取得する場合はtrue
+     */
+    public static void setSniff(boolean enabled) {
+        InternalEsClient.setSniff(enabled);
+    }
+
+    /**
+     * 読み込みリクエストの送信先ノードの選択方針を設定する.
+     * <ul>
+     * <li>default: Elasticsearchの既定の振り分け</li>
+     * <li>local: preferenceに _local を指定する</li>
+     * <li>routing: preferenceにroutingIdを指定し、同じCellのリクエストを同じシャードコピーへ振り分ける</li>
+     * <li>latency: 応答時間が短いノードほど高い確率で選択し、_prefer_node で指定する. 同一ラックのノードを優先する</li>
+     * </ul>
+     * @param mode 選択方針
+     * @param rackAttribute ラックを表すノード属性名
+     * @param localRack 自ノードのラック(未指定の場合はnull)
+     */
+    public static void setNodeSelection(String mode, String rackAttribute, String localRack) {
+        InternalEsClient.setNodeSelection(mode, rackAttribute, localRack);
+    }
+
     /**
      * 管理用のIndex操作オブジェクトを返します.
      * @param prefix インデックス名プレフィックス
@@ -186,6 +219,14 @@ public class EsClient {
         return internalClient.checkHealth();
     }
 
+    /**
+     * ノード毎の応答時間の統計情報を返す.
+     * @return 統計情報
+     */
+    public Map<String, Object> getNodeStats() {
+        return internalClient.getNodeStats();
+    }
+
     /**
      * インデックスステータスを取得する.
      * @return インデックスステータス
@@ -23,6 +23,7 @@ import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
 import com.fujitsu.dc.common.es.response.DcMappingMetaData;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
 import com.fujitsu.dc.common.es.response.DcPutMappingResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
@@ -59,6 +60,14 @@ public interface EsType {
      */
     DcGetResponse get(String id, boolean realtime);
 
+    /**
+     * realtimeモード指定で複数のドキュメントを一括取得する.
+     * 取得に失敗したドキュメントがある場合は、EsMultiGetItemFailedExceptionをスローする.
+     * @param ids ドキュメントのIDのリスト
+     * @return 応答
+     */
+    DcMultiGetResponse multiGet(List<String> ids);
+
     /**
      * ドキュメント新規作成.
      * @param data ドキュメント
@@ -25,6 +25,7 @@ import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest.OpType;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.MultiSearchResponse;
@@ -45,6 +46,7 @@ import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
 import com.fujitsu.dc.common.es.response.DcMappingMetaData;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
 import com.fujitsu.dc.common.es.response.DcPutMappingResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
@@ -54,6 +56,7 @@ import com.fujitsu.dc.common.es.response.impl.DcDeleteResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcGetResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcIndexResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcMappingMetaDataImpl;
+import com.fujitsu.dc.common.es.response.impl.DcMultiGetResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcMultiSearchResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcNullSearchResponse;
 import com.fujitsu.dc.common.es.response.impl.DcPutMappingResponseImpl;
@@ -133,6 +136,13 @@ public class EsTypeImpl implements EsType {
         return DcGetResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public DcMultiGetResponse multiGet(final List<String> ids) {
+        MultiGetRetryableRequest request = new MultiGetRetryableRequest(retryCount, retryInterval, ids, true);
+        // 必要な場合、メソッド内でリトライが行われる.
+        return DcMultiGetResponseImpl.getInstance(request.doRequest());
+    }
+
     @Override
     @SuppressWarnings("rawtypes")
     public DcIndexResponse create(final Map data) {
@@ -214,7 +224,7 @@ public class EsTypeImpl implements EsType {
 
         @Override
         GetResponse doProcess() {
-            GetResponse response = asyncGet(id, realTime).actionGet();
+            GetResponse response = esClient.get(indexName, name, id, routingId, realTime);
             if (!response.isExists()) {
                 // データがなかったらｎullを返す
                 return null;
@@ -236,6 +246,39 @@ public class EsTypeImpl implements EsType {
         }
     }
 
+    /**
+     * Elasticsearchへの multiget処理実装.
+     */
+    class MultiGetRetryableRequest extends AbstractRetryableEsRequest<MultiGetResponse> {
+        List<String> ids;
+        boolean realTime;
+
+        public MultiGetRetryableRequest(int retryCount, long retryInterval,
+                List<String> argIds, boolean argRealTime) {
+            super(retryCount, retryInterval, "ES multiget");
+            ids = argIds;
+            realTime = argRealTime;
+        }
+
+        @Override
+        MultiGetResponse doProcess() {
+            return asyncMultiGet(ids, realTime).actionGet();
+        }
+
+        @Override
+        boolean isParticularError(ElasticsearchException e) {
+            return e instanceof IndexMissingException || e.getCause() instanceof IndexMissingException;
+        }
+
+        @Override
+        MultiGetResponse onParticularError(ElasticsearchException e) {
+            if (e instanceof IndexMissingException || e.getCause() instanceof IndexMissingException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     /**
      * Elasticsearchへの create処理実装.
      */
@@ -254,7 +297,11 @@ public class EsTypeImpl implements EsType {
         @SuppressWarnings("unchecked")
         @Override
         IndexResponse doProcess() {
-            return asyncIndex(id, data, OpType.CREATE, -1).actionGet();
+            try {
+                return asyncIndex(id, data, OpType.CREATE, -1).actionGet();
+            } finally {
+                esClient.notifyWrite();
+            }
         }
 
         @Override
@@ -339,7 +386,11 @@ public class EsTypeImpl implements EsType {
         @SuppressWarnings("unchecked")
         @Override
         IndexResponse doProcess() {
-            return asyncIndex(id, data, OpType.INDEX, version).actionGet();
+            try {
+                return asyncIndex(id, data, OpType.INDEX, version).actionGet();
+            } finally {
+                esClient.notifyWrite();
+            }
         }
 
         @Override
@@ -378,7 +429,7 @@ public class EsTypeImpl implements EsType {
 
         @Override
         SearchResponse doProcess() {
-            return asyncSearch(query).actionGet();
+            return esClient.search(indexName, name, routingId, query);
         }
 
         @Override
@@ -445,7 +496,11 @@ public class EsTypeImpl implements EsType {
 
         @Override
         DeleteResponse doProcess() {
-            return asyncDelete(docId, version).actionGet();
+            try {
+                return asyncDelete(docId, version).actionGet();
+            } finally {
+                esClient.notifyWrite();
+            }
         }
 
         @Override
@@ -512,6 +567,16 @@ public class EsTypeImpl implements EsType {
         return esClient.asyncGet(this.indexName, this.name, id, this.routingId, realtime);
     }
 
+    /**
+     * 非同期で複数のドキュメントを一括取得.
+     * @param ids ドキュメントのIDのリスト
+     * @param realtime リアルタイムモードなら真
+     * @return 非同期応答
+     */
+    public ActionFuture<MultiGetResponse> asyncMultiGet(final List<String> ids, final boolean realtime) {
+        return esClient.asyncMultiGet(this.indexName, this.name, ids, this.routingId, realtime);
+    }
+
     /**
      * 非同期でドキュメントを検索.
      * @param builder クエリ情報
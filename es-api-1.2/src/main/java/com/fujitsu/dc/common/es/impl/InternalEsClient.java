@@ -16,18 +16,23 @@
  */
 package com.fujitsu.dc.common.es.impl;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.WriteConsistencyLevel;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
@@ -45,6 +50,8 @@ import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest.OpType;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
@@ -53,15 +60,18 @@ import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.collect.ImmutableList;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.get.GetResult;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.json.simple.JSONArray;
@@ -87,6 +97,43 @@ public class InternalEsClient {
     private TransportClient esTransportClient;
     private boolean routingFlag;
 
+    // 同一内容の読み込みリクエストを集約するか否か
+    private static boolean readCoalescingEnabled = false;
+    // 接続先ノードの一覧をクラスタから取得するか否か
+    private static boolean sniff = false;
+    // 読み込みリクエストの送信先ノードの選択方針
+    private static String nodeSelectionMode = PreferenceNodeSelector.MODE_DEFAULT;
+    // ラックを表すノード属性名
+    private static String rackAttribute = "rack";
+    // 自ノードのラック
+    private static String localRack = null;
+
+    private NodeSelector nodeSelector = new PreferenceNodeSelector(PreferenceNodeSelector.MODE_DEFAULT);
+    // 書き込みの完了数(集約した読み込みに書き込み結果が反映されていることを判定するために利用する)
+    private AtomicLong writeSequence = new AtomicLong();
+
+    private SingleFlightEsRequest<GetResponse> getFlight = new SingleFlightEsRequest<GetResponse>() {
+        @Override
+        GetResponse copy(GetResponse response) {
+            return new GetResponse(new GetResult(response.getIndex(), response.getType(), response.getId(),
+                    response.getVersion(), response.isExists(), response.getSourceAsBytesRef(),
+                    response.getFields()));
+        }
+    };
+
+    private SingleFlightEsRequest<SearchResponse> searchFlight = new SingleFlightEsRequest<SearchResponse>() {
+        @Override
+        SearchResponse copy(SearchResponse response) {
+            try {
+                BytesStreamOutput out = new BytesStreamOutput();
+                response.writeTo(out);
+                return SearchResponse.readSearchResponse(out.bytes().streamInput());
+            } catch (IOException e) {
+                throw new ElasticsearchException("Failed to copy search response.", e);
+            }
+        }
+    };
+
     /**
      * デフォルトコンストラクタ.
      */
@@ -101,6 +148,7 @@ public class InternalEsClient {
     protected InternalEsClient(String cluster, String hosts) {
         routingFlag = true;
         prepareClient(cluster, hosts);
+        nodeSelector = createNodeSelector();
     }
 
     /**
@@ -134,7 +182,8 @@ public class InternalEsClient {
             return;
         }
 
-        Settings st = ImmutableSettings.settingsBuilder().put("cluster.name", clusterName).build();
+        Settings st = ImmutableSettings.settingsBuilder().put("cluster.name", clusterName)
+                .put("client.transport.sniff", sniff).build();
         ImmutableList<DiscoveryNode> connectedNodes = null;
         esTransportClient = new TransportClient(st);
 
@@ -175,8 +224,50 @@ public class InternalEsClient {
     }
 
     private void loggingConnectedNode(ImmutableList<DiscoveryNode> list) {
-        DiscoveryNode node = list.get(0);
-        this.fireEvent(Event.connected, node.address().toString());
+        for (DiscoveryNode node : list) {
+            this.fireEvent(Event.connected, node.address().toString());
+        }
+    }
+
+    /**
+     * 接続中のノードの一覧を返す.
+     * @return 接続中のノードの一覧
+     */
+    List<DiscoveryNode> connectedNodes() {
+        TransportClient client = esTransportClient;
+        if (client == null) {
+            return new ArrayList<DiscoveryNode>();
+        }
+        return client.connectedNodes();
+    }
+
+    /**
+     * ルーティングテーブルを非同期で取得する.
+     * @param listener 取得結果を受け取るリスナー
+     * @return 取得を開始した場合はtrue
+     */
+    boolean asyncRoutingTable(ActionListener<ClusterStateResponse> listener) {
+        TransportClient client = esTransportClient;
+        if (client == null) {
+            return false;
+        }
+        client.admin().cluster().prepareState().clear().setRoutingTable(true).execute(listener);
+        return true;
+    }
+
+    /**
+     * ノード毎の応答時間の統計情報を返す.
+     * @return 統計情報
+     */
+    public Map<String, Object> getNodeStats() {
+        return nodeSelector.getStats();
+    }
+
+    private NodeSelector createNodeSelector() {
+        if (LatencyAwareNodeSelector.MODE.equals(nodeSelectionMode)) {
+            return new LatencyAwareNodeSelector(this, rackAttribute, localRack);
+        }
+        return new PreferenceNodeSelector(nodeSelectionMode);
     }
 
     /**
@@ -211,6 +302,42 @@ public class InternalEsClient {
         eventHandlerMap.put(ev, handler);
     }
 
+    /**
+     * 同一内容の読み込みリクエストを集約するか否かを設定する.
+     * @param enabled 集約する場合はtrue
+     */
+    public static void setReadCoalescingEnabled(boolean enabled) {
+        readCoalescingEnabled = enabled;
+    }
+
+    /**
+     * 接続先ノードの一覧をクラスタから取得するか否かを設定する.
+     * @param enabled 取得する場合はtrue
+     */
+    public static void setSniff(boolean enabled) {
+        sniff = enabled;
+    }
+
+    /**
+     * 読み込みリクエストの送信先ノードの選択方針を設定する.
+     * @param mode 選択方針(default/local/routing/latency)
+     * @param rackAttr ラックを表すノード属性名
+     * @param rack 自ノードのラック(未指定の場合はnull)
+     */
+    public static void setNodeSelection(String mode, String rackAttr, String rack) {
+        nodeSelectionMode = mode;
+        rackAttribute = rackAttr;
+        localRack = rack;
+    }
+
+    /**
+     * 書き込みの完了を通知する.
+     * 通知前に発行された読み込みリクエストには、以降の読み込みを集約しない.
+     */
+    void notifyWrite() {
+        writeSequence.incrementAndGet();
+    }
+
     void fireEvent(Event ev, final Object... params) {
         this.fireEvent(ev, null, params);
     }
@@ -316,6 +443,53 @@ public class InternalEsClient {
         return cirb.execute();
     }
 
+    /**
+     * 送信先ノードの選択結果をpreferenceに指定して検索リクエストを送る.
+     * @param req 検索リクエスト
+     * @param routingId routingId
+     * @return 非同期応答
+     */
+    private ActionFuture<SearchResponse> executeSearch(SearchRequest req, String routingId) {
+        String[] indices = req.indices();
+        String index = null;
+        if (indices != null && indices.length == 1) {
+            index = indices[0];
+        }
+        String preference = nodeSelector.select(index, routingId);
+        if (preference != null) {
+            req.preference(preference);
+        }
+        TimedActionListener<SearchResponse> listener = new TimedActionListener<SearchResponse>(preference);
+        esTransportClient.search(req, listener);
+        return listener.future;
+    }
+
+    /**
+     * 応答時間をNodeSelectorに記録するリスナー.
+     * @param <T> レスポンスの型
+     */
+    private class TimedActionListener<T> implements ActionListener<T> {
+        private final PlainActionFuture<T> future = PlainActionFuture.newFuture();
+        private final String preference;
+        private final long start = System.currentTimeMillis();
+
+        TimedActionListener(String preference) {
+            this.preference = preference;
+        }
+
+        @Override
+        public void onResponse(T response) {
+            nodeSelector.record(preference, System.currentTimeMillis() - start, true);
+            future.onResponse(response);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            nodeSelector.record(preference, System.currentTimeMillis() - start, false);
+            future.onFailure(e);
+        }
+    }
+
     /**
      * 非同期でドキュメントを取得.
      * @param index インデックス名
@@ -334,11 +508,73 @@ public class InternalEsClient {
         }
 
         req.realtime(realtime);
-        ActionFuture<GetResponse> ret = esTransportClient.get(req);
+        String preference = nodeSelector.select(index, routingId);
+        if (preference != null) {
+            req.preference(preference);
+        }
+        TimedActionListener<GetResponse> listener = new TimedActionListener<GetResponse>(preference);
+        esTransportClient.get(req, listener);
+        ActionFuture<GetResponse> ret = listener.future;
         this.fireEvent(Event.afterRequest, index, type, id, null, "Get");
         return ret;
     }
 
+    /**
+     * ドキュメントを取得する. 同一内容の取得が実行中の場合は、その応答を共有する.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param id ドキュメントのID
+     * @param routingId routingId
+     * @param realtime リアルタイムモードなら真
+     * @return 応答
+     */
+    public GetResponse get(final String index, final String type, final String id, final String routingId,
+            final boolean realtime) {
+        SingleFlightEsRequest.Request<GetResponse> request = new SingleFlightEsRequest.Request<GetResponse>() {
+            @Override
+            public ActionFuture<GetResponse> send() {
+                return asyncGet(index, type, id, routingId, realtime);
+            }
+        };
+        if (!readCoalescingEnabled) {
+            return request.send().actionGet();
+        }
+        String key = index + "/" + type + "/" + routingId + "/" + id + "/" + realtime;
+        return getFlight.execute(key, writeSequence.get(), request);
+    }
+
+    /**
+     * 非同期で複数のドキュメントを一括取得.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param ids ドキュメントのIDのリスト
+     * @param routingId routingId
+     * @param realtime リアルタイムモードなら真
+     * @return 非同期応答
+     */
+    public ActionFuture<MultiGetResponse> asyncMultiGet(String index, String type, List<String> ids,
+            String routingId, boolean realtime) {
+        MultiGetRequest req = new MultiGetRequest();
+        for (String id : ids) {
+            MultiGetRequest.Item item = new MultiGetRequest.Item(index, type, id);
+            if (routingFlag) {
+                item = item.routing(routingId);
+            }
+            req.add(item);
+        }
+
+        req.realtime(realtime);
+        String preference = nodeSelector.select(index, routingId);
+        if (preference != null) {
+            req.preference(preference);
+        }
+        TimedActionListener<MultiGetResponse> listener = new TimedActionListener<MultiGetResponse>(preference);
+        esTransportClient.multiGet(req, listener);
+        ActionFuture<MultiGetResponse> ret = listener.future;
+        this.fireEvent(Event.afterRequest, index, type, null, JSONArray.toJSONString(ids), "MultiGet");
+        return ret;
+    }
+
     /**
      * 非同期でドキュメントを検索.
      * @param index インデックス名
@@ -356,7 +592,7 @@ public class InternalEsClient {
         if (routingFlag) {
             req = req.routing(routingId);
         }
-        ActionFuture<SearchResponse> ret = esTransportClient.search(req);
+        ActionFuture<SearchResponse> ret = executeSearch(req, routingId);
         this.fireEvent(Event.afterRequest, index, type, null,
                 new String(builder.buildAsBytes().toBytes()), "Search");
         return ret;
@@ -382,11 +618,34 @@ public class InternalEsClient {
         if (routingFlag) {
             req = req.routing(routingId);
         }
-        ActionFuture<SearchResponse> ret = esTransportClient.search(req);
+        ActionFuture<SearchResponse> ret = executeSearch(req, routingId);
         this.fireEvent(Event.afterRequest, index, type, null, JSONObject.toJSONString(query), "Search");
         return ret;
     }
 
+    /**
+     * ドキュメントを検索する. 同一内容の検索が実行中の場合は、その応答を共有する.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param routingId routingId
+     * @param query クエリ情報
+     * @return 応答
+     */
+    public SearchResponse search(final String index, final String type, final String routingId,
+            final Map<String, Object> query) {
+        SingleFlightEsRequest.Request<SearchResponse> request = new SingleFlightEsRequest.Request<SearchResponse>() {
+            @Override
+            public ActionFuture<SearchResponse> send() {
+                return asyncSearch(index, type, routingId, query);
+            }
+        };
+        if (!readCoalescingEnabled) {
+            return request.send().actionGet();
+        }
+        String key = index + "/" + type + "/" + routingId + "/" + JSONObject.toJSONString(query);
+        return searchFlight.execute(key, writeSequence.get(), request);
+    }
+
     /**
      * 非同期でドキュメントを検索. <br />
      * Queryの指定方法をMapで直接記述せずにQueryBuilderにするため、非推奨とする.
@@ -406,7 +665,7 @@ public class InternalEsClient {
         if (routingFlag) {
             req = req.routing(routingId);
         }
-        ActionFuture<SearchResponse> ret = esTransportClient.search(req);
+        ActionFuture<SearchResponse> ret = executeSearch(req, routingId);
         this.fireEvent(Event.afterRequest, index, null, null, JSONObject.toJSONString(query), "Search");
         return ret;
     }
@@ -432,7 +691,7 @@ public class InternalEsClient {
         if (routingFlag) {
             req = req.routing(routingId);
         }
-        ActionFuture<SearchResponse> ret = esTransportClient.search(req);
+        ActionFuture<SearchResponse> ret = executeSearch(req, routingId);
         this.fireEvent(Event.afterRequest, index, null, null, queryString, "Search");
         return ret;
     }
@@ -470,8 +729,12 @@ public class InternalEsClient {
         if (queryList == null || queryList.size() == 0) {
             throw new EsMultiSearchQueryParseException();
         }
+        String preference = nodeSelector.select(index, routingId);
         for (Map<String, Object> query : queryList) {
             SearchRequest req = new SearchRequest(index).searchType(SearchType.DEFAULT);
+            if (preference != null) {
+                req.preference(preference);
+            }
             if (type != null) {
                 req.types(type);
             }
@@ -485,7 +748,9 @@ public class InternalEsClient {
             mrequest.add(req);
         }
 
-        ActionFuture<MultiSearchResponse> ret = esTransportClient.multiSearch(mrequest);
+        TimedActionListener<MultiSearchResponse> listener = new TimedActionListener<MultiSearchResponse>(preference);
+        esTransportClient.multiSearch(mrequest, listener);
+        ActionFuture<MultiSearchResponse> ret = listener.future;
         this.fireEvent(Event.afterRequest, index, type, null, JSONArray.toJSONString(queryList), "MultiSearch");
         return ret;
     }
@@ -537,7 +802,7 @@ public class InternalEsClient {
         if (query != null) {
             req.source(query);
         }
-        ActionFuture<SearchResponse> ret = esTransportClient.search(req);
+        ActionFuture<SearchResponse> ret = executeSearch(req, null);
         this.fireEvent(Event.afterRequest, index, null, null, JSONObject.toJSONString(query), "Search");
         return ret;
     }
@@ -620,8 +885,12 @@ public class InternalEsClient {
             bulkRequest.add(req);
         }
 
-        BulkResponse ret = bulkRequest.setRefresh(true).execute().actionGet();
-        return ret;
+        try {
+            BulkResponse ret = bulkRequest.setRefresh(true).execute().actionGet();
+            return ret;
+        } finally {
+            notifyWrite();
+        }
     }
 
     /**
@@ -646,8 +915,12 @@ public class InternalEsClient {
                 bulkRequest.add(req);
             }
         }
-        DcBulkResponse response = DcBulkResponseImpl.getInstance(bulkRequest.execute().actionGet());
-        return response;
+        try {
+            DcBulkResponse response = DcBulkResponseImpl.getInstance(bulkRequest.execute().actionGet());
+            return response;
+        } finally {
+            notifyWrite();
+        }
     }
 
     /**
@@ -656,9 +929,13 @@ public class InternalEsClient {
      * @return レスポンス
      */
     public DcRefreshResponse refresh(String index) {
-        RefreshResponse response = esTransportClient.admin().indices()
-                .refresh(new RefreshRequest(index)).actionGet();
-        return DcRefreshResponseImpl.getInstance(response);
+        try {
+            RefreshResponse response = esTransportClient.admin().indices()
+                    .refresh(new RefreshRequest(index)).actionGet();
+            return DcRefreshResponseImpl.getInstance(response);
+        } finally {
+            notifyWrite();
+        }
     }
 
     /**
@@ -668,8 +945,12 @@ public class InternalEsClient {
      * @return ES応答
      */
     public DeleteByQueryResponse deleteByQuery(String index, QueryBuilder deleteQuery) {
-        DeleteByQueryResponse response = esTransportClient.prepareDeleteByQuery(index)
-                .setQuery(deleteQuery).execute().actionGet();
-        return response;
+        try {
+            DeleteByQueryResponse response = esTransportClient.prepareDeleteByQuery(index)
+                    .setQuery(deleteQuery).execute().actionGet();
+            return response;
+        } finally {
+            notifyWrite();
+        }
     }
 }
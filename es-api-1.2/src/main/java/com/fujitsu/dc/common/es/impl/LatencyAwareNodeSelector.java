@@ -0,0 +1,235 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.operation.hash.djb.DjbHashFunction;
+
+/**
+ * 応答時間に応じて送信先ノードを選択するNodeSelector.
+ * routingIdのシャードの開始済みのコピーを持つデータノードから、応答時間のEWMAの逆数を重みとしてランダムに1ノードを選び、
+ * _prefer_node で指定する. 同一ラックのノードが存在する場合は、同一ラックのノードのみを選択対象とする.
+ * シャードを特定できない場合は、指定したノード以外が応答して別ノードの応答時間として記録されるのを防ぐため、preferenceを指定しない.
+ */
+class LatencyAwareNodeSelector implements NodeSelector {
+
+    /** 方針名. */
+    static final String MODE = "latency";
+
+    private static final String PREFER_NODE = "_prefer_node:";
+
+    /**
+     * 未計測のノードの応答時間として扱う値(ミリ秒).
+     */
+    private static final double MIN_EWMA_MILLIS = 1.0;
+
+    /**
+     * ルーティングテーブルを再取得する間隔(ミリ秒).
+     */
+    private static final long ROUTING_TABLE_REFRESH_MILLIS = 10000L;
+
+    private InternalEsClient client;
+    private String rackAttribute;
+    private String localRack;
+    private ConcurrentMap<String, LatencyStats> nodeStats = new ConcurrentHashMap<String, LatencyStats>();
+    private LatencyStats unassignedStats = new LatencyStats();
+    private volatile RoutingTable routingTable;
+    private volatile long routingTableUpdated;
+    private AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    /**
+     * コンストラクタ.
+     * @param client 接続中のノードを取得するクライアント
+     * @param rackAttribute ラックを表すノード属性名
+     * @param localRack 自ノードのラック(未指定の場合はnull)
+     */
+    LatencyAwareNodeSelector(InternalEsClient client, String rackAttribute, String localRack) {
+        this.client = client;
+        this.rackAttribute = rackAttribute;
+        this.localRack = localRack;
+    }
+
+    @Override
+    public String select(String index, String routingId) {
+        Set<String> shardNodeIds = getShardNodeIds(index, routingId);
+        if (shardNodeIds == null) {
+            return null;
+        }
+        List<DiscoveryNode> candidates = getCandidates(shardNodeIds);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        double[] weights = new double[candidates.size()];
+        double total = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            double ewma = getStats(candidates.get(i).id()).getEwmaMillis();
+            weights[i] = 1.0 / Math.max(ewma, MIN_EWMA_MILLIS);
+            total += weights[i];
+        }
+        double point = ThreadLocalRandom.current().nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            point -= weights[i];
+            if (point < 0) {
+                return PREFER_NODE + candidates.get(i).id();
+            }
+        }
+        return PREFER_NODE + candidates.get(candidates.size() - 1).id();
+    }
+
+    /**
+     * routingIdのシャードの開始済みのコピーを持つノードのIDを返す.
+     * @param index インデックス名
+     * @param routingId routingId
+     * @return ノードのID。シャードを特定できない場合はnull
+     */
+    private Set<String> getShardNodeIds(String index, String routingId) {
+        refreshRoutingTable();
+        RoutingTable table = this.routingTable;
+        if (index == null || routingId == null || table == null) {
+            return null;
+        }
+        IndexRoutingTable indexTable = table.index(index);
+        if (indexTable == null || indexTable.shards().isEmpty()) {
+            return null;
+        }
+        // Elasticsearchの既定のシャードの決定方法(DJBハッシュ)に合わせる
+        int shardId = Math.abs(DjbHashFunction.DJB_HASH(routingId) % indexTable.shards().size());
+        IndexShardRoutingTable shardTable = indexTable.shard(shardId);
+        if (shardTable == null) {
+            return null;
+        }
+        Set<String> nodeIds = new HashSet<String>();
+        for (ShardRouting shard : shardTable) {
+            if (shard.started()) {
+                nodeIds.add(shard.currentNodeId());
+            }
+        }
+        return nodeIds;
+    }
+
+    /**
+     * 一定間隔でルーティングテーブルを非同期に再取得する.
+     */
+    private void refreshRoutingTable() {
+        if (System.currentTimeMillis() - routingTableUpdated < ROUTING_TABLE_REFRESH_MILLIS
+                || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        boolean started = false;
+        try {
+            started = client.asyncRoutingTable(new ActionListener<ClusterStateResponse>() {
+                @Override
+                public void onResponse(ClusterStateResponse response) {
+                    routingTable = response.getState().routingTable();
+                    routingTableUpdated = System.currentTimeMillis();
+                    refreshing.set(false);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    // 取得済みのルーティングテーブルを使い続け、次の間隔で再取得する
+                    routingTableUpdated = System.currentTimeMillis();
+                    refreshing.set(false);
+                }
+            });
+        } finally {
+            if (!started) {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    /**
+     * 選択対象のノードを返す.
+     * @param shardNodeIds シャードのコピーを持つノードのID
+     * @return シャードのコピーを持つ同一ラックのデータノード。存在しない場合はシャードのコピーを持つ全データノード
+     */
+    private List<DiscoveryNode> getCandidates(Set<String> shardNodeIds) {
+        List<DiscoveryNode> dataNodes = new ArrayList<DiscoveryNode>();
+        List<DiscoveryNode> rackNodes = new ArrayList<DiscoveryNode>();
+        for (DiscoveryNode node : client.connectedNodes()) {
+            if (!node.dataNode() || !shardNodeIds.contains(node.id())) {
+                continue;
+            }
+            dataNodes.add(node);
+            if (localRack != null && localRack.equals(node.attributes().get(rackAttribute))) {
+                rackNodes.add(node);
+            }
+        }
+        if (rackNodes.isEmpty()) {
+            return dataNodes;
+        }
+        return rackNodes;
+    }
+
+    private LatencyStats getStats(String nodeId) {
+        LatencyStats stats = nodeStats.get(nodeId);
+        if (stats == null) {
+            LatencyStats newStats = new LatencyStats();
+            stats = nodeStats.putIfAbsent(nodeId, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public void record(String preference, long elapsedMillis, boolean succeeded) {
+        if (preference != null && preference.startsWith(PREFER_NODE)) {
+            getStats(preference.substring(PREFER_NODE.length())).record(elapsedMillis, succeeded);
+        } else {
+            unassignedStats.record(elapsedMillis, succeeded);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> nodes = new HashMap<String, Object>();
+        for (DiscoveryNode node : client.connectedNodes()) {
+            Map<String, Object> nodeMap = getStats(node.id()).toMap();
+            nodeMap.put("name", node.name());
+            nodeMap.put("address", node.address().toString());
+            nodeMap.put("rack", node.attributes().get(rackAttribute));
+            nodeMap.put("data", node.dataNode());
+            nodes.put(node.id(), nodeMap);
+        }
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("mode", MODE);
+        map.put("local_rack", localRack);
+        map.put("nodes", nodes);
+        map.put("unassigned", unassignedStats.toMap());
+        return map;
+    }
+}
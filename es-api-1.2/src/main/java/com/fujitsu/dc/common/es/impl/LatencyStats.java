@@ -0,0 +1,80 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 応答時間の統計情報を扱うクラス.
+ * 応答時間は指数加重移動平均(EWMA)で保持する.
+ */
+class LatencyStats {
+
+    /**
+     * EWMAの平滑化係数.
+     */
+    static final double ALPHA = 0.3;
+
+    /**
+     * 失敗したリクエストの応答時間として扱う最小値(ミリ秒).
+     */
+    static final long FAILURE_PENALTY_MILLIS = 1000;
+
+    private double ewmaMillis = -1;
+    private long requests = 0;
+    private long failures = 0;
+
+    /**
+     * 応答時間を記録する.
+     * @param elapsedMillis 応答時間(ミリ秒)
+     * @param succeeded リクエストが成功した場合はtrue
+     */
+    synchronized void record(long elapsedMillis, boolean succeeded) {
+        long sample = elapsedMillis;
+        if (!succeeded) {
+            failures++;
+            sample = Math.max(elapsedMillis, FAILURE_PENALTY_MILLIS);
+        }
+        requests++;
+        if (ewmaMillis < 0) {
+            ewmaMillis = sample;
+        } else {
+            ewmaMillis = ALPHA * sample + (1 - ALPHA) * ewmaMillis;
+        }
+    }
+
+    /**
+     * 応答時間のEWMAを返す.
+     * @return 応答時間のEWMA(ミリ秒)。未計測の場合は負の値
+     */
+    synchronized double getEwmaMillis() {
+        return ewmaMillis;
+    }
+
+    /**
+     * 統計情報をMapで返す.
+     * @return 統計情報
+     */
+    synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("ewma_millis", ewmaMillis < 0 ? null : Math.round(ewmaMillis * 100) / 100.0);
+        map.put("requests", requests);
+        map.put("failures", failures);
+        return map;
+    }
+}
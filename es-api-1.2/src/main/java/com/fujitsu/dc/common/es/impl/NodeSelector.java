@@ -0,0 +1,48 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.Map;
+
+/**
+ * 読み込みリクエストの送信先ノードを選択するためのinterface.
+ * 選択結果はElasticsearchのpreferenceとしてリクエストに指定する.
+ */
+interface NodeSelector {
+
+    /**
+     * 読み込みリクエストに指定するpreferenceを返す.
+     * @param index インデックス名
+     * @param routingId routingId
+     * @return preference。指定しない場合はnull
+     */
+    String select(String index, String routingId);
+
+    /**
+     * リクエストの応答時間を記録する.
+     * @param preference リクエストに指定したpreference
+     * @param elapsedMillis 応答時間(ミリ秒)
+     * @param succeeded リクエストが成功した場合はtrue
+     */
+    void record(String preference, long elapsedMillis, boolean succeeded);
+
+    /**
+     * 応答時間の統計情報を返す.
+     * @return 統計情報
+     */
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,75 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 固定の方針でpreferenceを指定するNodeSelector.
+ * <ul>
+ * <li>default: preferenceを指定しない(Elasticsearchの既定の振り分け)</li>
+ * <li>local: _local を指定する</li>
+ * <li>routing: routingIdをカスタムのpreferenceとして指定し、同じCellのリクエストを同じシャードコピーへ振り分ける</li>
+ * </ul>
+ * 送信先ノードは特定できないため、応答時間は方針単位で集計する.
+ */
+class PreferenceNodeSelector implements NodeSelector {
+
+    /** preferenceを指定しない. */
+    static final String MODE_DEFAULT = "default";
+    /** _localを指定する. */
+    static final String MODE_LOCAL = "local";
+    /** routingIdを指定する. */
+    static final String MODE_ROUTING = "routing";
+
+    private static final String PREFERENCE_LOCAL = "_local";
+
+    private String mode;
+    private LatencyStats stats = new LatencyStats();
+
+    /**
+     * コンストラクタ.
+     * @param mode 方針
+     */
+    PreferenceNodeSelector(String mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public String select(String index, String routingId) {
+        if (MODE_LOCAL.equals(mode)) {
+            return PREFERENCE_LOCAL;
+        } else if (MODE_ROUTING.equals(mode)) {
+            return routingId;
+        }
+        return null;
+    }
+
+    @Override
+    public void record(String preference, long elapsedMillis, boolean succeeded) {
+        stats.record(elapsedMillis, succeeded);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("mode", mode);
+        map.put("all", stats.toMap());
+        return map;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.support.PlainActionFuture;
+
+/**
+ * 同一内容の読み込みリクエストを集約する抽象クラス.
+ * 同じキーのリクエストが実行中の場合はElasticsearchへリクエストを送らず、実行中のリクエストの応答を共有する.
+ * 応答は呼出し元で加工される場合があるため、後から合流したスレッドには {@link #copy(Object)} で複製した応答を返す.
+ * 実行中のリクエストの発行後に書き込みが完了している場合は、書き込み結果が反映されていない可能性があるため合流しない.
+ * @param <T> レスポンスの型
+ */
+abstract class SingleFlightEsRequest<T> {
+
+    /**
+     * 実際のリクエスト.
+     * @param <T> レスポンスの型
+     */
+    interface Request<T> {
+        /**
+         * Elasticsearchへリクエストを送る.
+         * @return 非同期応答
+         */
+        ActionFuture<T> send();
+    }
+
+    /**
+     * 実行中のリクエスト.
+     */
+    private static final class Flight<T> {
+        private final long writeSequence;
+        private final PlainActionFuture<T> future = PlainActionFuture.newFuture();
+
+        Flight(long writeSequence) {
+            this.writeSequence = writeSequence;
+        }
+    }
+
+    private final ConcurrentMap<String, Flight<T>> flights = new ConcurrentHashMap<String, Flight<T>>();
+
+    /**
+     * リクエストを実行する.
+     * @param key リクエスト内容を表すキー
+     * @param writeSequence 呼出し時点の書き込み完了数
+     * @param request 実際のリクエスト
+     * @return 応答
+     */
+    T execute(String key, long writeSequence, Request<T> request) {
+        Flight<T> flight = new Flight<T>(writeSequence);
+        Flight<T> current = flights.putIfAbsent(key, flight);
+        if (current != null) {
+            if (current.writeSequence == writeSequence) {
+                return copy(current.future.actionGet());
+            }
+            // 実行中のリクエストの発行後に書き込みが完了しているため、単独でリクエストする
+            return request.send().actionGet();
+        }
+        try {
+            T response = request.send().actionGet();
+            flight.future.onResponse(response);
+            return response;
+        } catch (RuntimeException e) {
+            flight.future.onFailure(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * 後から合流したスレッドに返す応答を複製する.
+     * @param response 応答
+     * @return 複製した応答
+     */
+    abstract T copy(T response);
+}
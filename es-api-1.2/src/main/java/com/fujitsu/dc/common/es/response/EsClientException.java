@@ -16,6 +16,8 @@
  */
 package com.fujitsu.dc.common.es.response;
 
+import java.util.List;
+
 /**
  * EsModel関連の例外を扱うクラス. これが発生したときはすべて500系エラーとして扱うので、RuntimeExceptionを継承しており、 利用者はこれをcatchしてもよいがせずに放置してもよいという考え方としている。
  */
@@ -141,6 +143,43 @@ public class EsClientException extends RuntimeException {
         }
     }
 
+    /**
+     * ESの一括取得で一部のドキュメントの取得に失敗した場合の例外を扱うクラス.
+     */
+    public static class EsMultiGetItemFailedException extends EsClientException {
+        /**
+         * デフォルトシリアルバージョンID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 例外メッセージ定義.
+         */
+        public static final String MESSAGE = "Es multiget item failed [FailedIds: %s].";
+
+        /**
+         * 取得に失敗したドキュメントのID.
+         */
+        private final List<String> failedIds;
+
+        /**
+         * コンストラクタ.
+         * @param failedIds 取得に失敗したドキュメントのID
+         */
+        public EsMultiGetItemFailedException(List<String> failedIds) {
+            super(String.format(MESSAGE, failedIds));
+            this.failedIds = failedIds;
+        }
+
+        /**
+         * 取得に失敗したドキュメントのIDを返す.
+         * @return 取得に失敗したドキュメントのID
+         */
+        public List<String> getFailedIds() {
+            return failedIds;
+        }
+    }
+
     /**
      * ESのマルチ検索でクエリに空の配列やnullといった不正な検索条件を指定した場合の例外を扱うクラス.
      */
@@ -0,0 +1,105 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.response.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.es.response.DcGetResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
+import com.fujitsu.dc.common.es.response.EsClientException;
+
+/**
+ * MultiGetResponseのラッパークラス.
+ */
+public class DcMultiGetResponseImpl extends DcActionResponseImpl implements DcMultiGetResponse {
+    static Logger log = LoggerFactory.getLogger(DcMultiGetResponseImpl.class);
+
+    private MultiGetResponse multiGetResponse;
+
+    /**
+     * .
+     */
+    private DcMultiGetResponseImpl() {
+        super(null);
+        throw new IllegalStateException();
+    }
+
+    /**
+     * MultiGetResponseを指定してインスタンスを生成する.
+     * @param response ESからのレスポンスオブジェクト
+     */
+    private DcMultiGetResponseImpl(MultiGetResponse response) {
+        super(response);
+        this.multiGetResponse = response;
+    }
+
+    /**
+     * MultiGetResponseを指定してインスタンスを生成する.
+     * 取得に失敗したドキュメントがある場合は、存在しないドキュメントと区別できるように例外をスローする.
+     * @param response ESからのレスポンスオブジェクト
+     * @return インスタンス
+     */
+    public static DcMultiGetResponse getInstance(MultiGetResponse response) {
+        if (response == null) {
+            return null;
+        }
+        List<String> failedIds = new ArrayList<String>();
+        for (MultiGetItemResponse item : response.getResponses()) {
+            if (item.isFailed()) {
+                log.warn("multiget item failed. id: " + item.getId() + " " + item.getFailure().getMessage());
+                failedIds.add(item.getId());
+            }
+        }
+        if (!failedIds.isEmpty()) {
+            throw new EsClientException.EsMultiGetItemFailedException(failedIds);
+        }
+        return new DcMultiGetResponseImpl(response);
+    }
+
+    /* (non-Javadoc)
+     * @see com.fujitsu.dc.common.es.response.DcMultiGetResponse#getResponses()
+     */
+    @Override
+    public DcGetResponse[] getResponses() {
+        return toList().toArray(new DcGetResponse[0]);
+    }
+
+    /* (non-Javadoc)
+     * @see com.fujitsu.dc.common.es.response.DcMultiGetResponse#iterator()
+     */
+    @Override
+    public Iterator<DcGetResponse> iterator() {
+        return toList().iterator();
+    }
+
+    private List<DcGetResponse> toList() {
+        List<DcGetResponse> list = new ArrayList<DcGetResponse>();
+        for (MultiGetItemResponse item : this.multiGetResponse.getResponses()) {
+            if (item.getResponse().isExists()) {
+                list.add(DcGetResponseImpl.getInstance(item.getResponse()));
+            }
+        }
+        return list;
+    }
+}